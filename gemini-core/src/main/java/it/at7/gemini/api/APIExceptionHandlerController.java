@@ -2,6 +2,8 @@ package it.at7.gemini.api;
 
 import it.at7.gemini.exceptions.EntityRecordException;
 import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.exceptions.QueryBudgetException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -16,20 +18,54 @@ public class APIExceptionHandlerController {
     @ExceptionHandler(EntityRecordException.class)
     public ResponseEntity<?> handleEntityFoundException(EntityRecordException exception) {
         logger.error("EntityRecordException", exception);
-        HttpStatus httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
-        switch (exception.getErrorCode()) {
-            case MULTIPLE_LK_FOUND:
-                httpStatus = HttpStatus.CONFLICT;
-                break;
-            case LK_NOTFOUND:
-            case UUID_NOTFOUND:
-            case INSERTED_RECORD_NOT_FOUND:
-                httpStatus = HttpStatus.NOT_FOUND;
-                break;
-        }
+        HttpStatus httpStatus = httpStatusOf(exception);
+        return new ResponseEntity<>(new ApiError(httpStatus, exception.getErrorCodeName(), exception.getMessage()), httpStatus);
+    }
+
+    @ExceptionHandler(InvalidRequesException.class)
+    public ResponseEntity<?> handleInvalidRequestException(InvalidRequesException exception) {
+        logger.warn("InvalidRequesException: {}", exception.getMessage());
+        HttpStatus httpStatus = httpStatusOf(exception);
+        return new ResponseEntity<>(new ApiError(httpStatus, exception.getErrorCodeName(), exception.getMessage()), httpStatus);
+    }
+
+    @ExceptionHandler(QueryBudgetException.class)
+    public ResponseEntity<?> handleQueryBudgetException(QueryBudgetException exception) {
+        logger.warn("QueryBudgetException: {}", exception.getMessage());
+        HttpStatus httpStatus = httpStatusOf(exception);
         return new ResponseEntity<>(new ApiError(httpStatus, exception.getErrorCodeName(), exception.getMessage()), httpStatus);
     }
 
+    public static HttpStatus httpStatusOf(GeminiException exception) {
+        if (exception instanceof EntityRecordException) {
+            switch (((EntityRecordException) exception).getErrorCode()) {
+                case MULTIPLE_LK_FOUND:
+                    return HttpStatus.CONFLICT;
+                case LK_NOTFOUND:
+                case UUID_NOTFOUND:
+                case INSERTED_RECORD_NOT_FOUND:
+                    return HttpStatus.NOT_FOUND;
+            }
+        }
+        if (exception instanceof InvalidRequesException) {
+            switch (((InvalidRequesException) exception).getErrorCode()) {
+                case NAMED_QUERY_NOT_FOUND:
+                case UNKNOWN_ENTITY:
+                    return HttpStatus.NOT_FOUND;
+                case CHANGE_TOKEN_TOO_OLD:
+                    return HttpStatus.GONE;
+                default:
+                    return HttpStatus.BAD_REQUEST;
+            }
+        }
+        if (exception instanceof QueryBudgetException) {
+            // a narrower request can succeed, a slow one may succeed later
+            return ((QueryBudgetException) exception).getErrorCode() == QueryBudgetException.Code.TOO_MANY_ROWS ?
+                    HttpStatus.BAD_REQUEST : HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
     @ExceptionHandler(GeminiException.class)
     public ResponseEntity<?> handleRestoCheckedException(GeminiException exception) {
         logger.error("GeminiException", exception);
@@ -0,0 +1,72 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.Aggregation;
+import it.at7.gemini.core.AggregationResult;
+import it.at7.gemini.core.FilterContext;
+import it.at7.gemini.core.RecordConverters;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static it.at7.gemini.core.Aggregation.AGGREGATE_PARAMETER;
+import static it.at7.gemini.core.Aggregation.GROUP_BY_PARAMETER;
+import static it.at7.gemini.core.FilterContextBuilder.*;
+
+public class AggregationResultApiMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public AggregationResultApiMessageConverter() {
+        super();
+    }
+
+    public AggregationResultApiMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return super.canWrite(mediaType) && GeminiWrappers.AggregationResultApiType.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        GeminiWrappers.AggregationResultApiType apiType = GeminiWrappers.AggregationResultApiType.class.cast(object);
+        AggregationResult result = apiType.getResult(); // unwrap
+
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("meta", getMeta(result.getAggregation()));
+        responseBody.put("data", RecordConverters.aggregationToListMap(result));
+        super.writeInternal(responseBody, type, outputMessage);
+    }
+
+    private Map<String, Object> getMeta(Aggregation aggregation) {
+        Map<String, Object> meta = new HashMap<>();
+        meta.put(GROUP_BY_PARAMETER, aggregation.getGroupBy().stream().map(Aggregation.GroupBy::getName).collect(Collectors.toList()));
+        meta.put(AGGREGATE_PARAMETER, aggregation.getAggregates().stream().map(Aggregation.Aggregate::getName).collect(Collectors.toList()));
+        FilterContext filterContext = aggregation.getFilterContext();
+        if (filterContext.getLimit() > 0) {
+            meta.put(LIMIT_PARAMETER, filterContext.getLimit());
+        }
+        if (filterContext.getStart() > 0) {
+            meta.put(START_PARAMETER, filterContext.getStart());
+        }
+        if (filterContext.getOrderBy() != null && filterContext.getOrderBy().length > 0) {
+            meta.put(ORDER_BY_PARAMETER, filterContext.getOrderBy());
+        }
+        return meta;
+    }
+}
@@ -0,0 +1,41 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.AggregationResult;
+import it.at7.gemini.core.RecordConverters;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+public class AggregationResultMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public AggregationResultMessageConverter() {
+        super();
+    }
+
+    public AggregationResultMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return super.canWrite(mediaType) && AggregationResult.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        AggregationResult result = AggregationResult.class.cast(object);
+        super.writeInternal(RecordConverters.aggregationToListMap(result), type, outputMessage);
+    }
+}
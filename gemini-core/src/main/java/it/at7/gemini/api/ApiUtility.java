@@ -1,7 +1,12 @@
 package it.at7.gemini.api;
 
+import it.at7.gemini.core.AggregationResult;
+import it.at7.gemini.core.EntityManager;
 import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.EntityRecordChanges;
+import it.at7.gemini.exceptions.EntityException;
 import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -36,9 +41,39 @@ public class ApiUtility {
         if (results instanceof GeminiWrappers.CountRequest) {
             return GeminiWrappers.CountRequestApiType.of((GeminiWrappers.CountRequest) results);
         }
+        if (results instanceof GeminiWrappers.EntityRecordsMultiGet) {
+            return GeminiWrappers.EntityRecordsMultiGetApiType.of((GeminiWrappers.EntityRecordsMultiGet) results);
+        }
+        if (results instanceof EntityRecordChanges) {
+            return GeminiWrappers.EntityRecordChangesApiType.of((EntityRecordChanges) results);
+        }
+        if (results instanceof AggregationResult) {
+            return GeminiWrappers.AggregationResultApiType.of((AggregationResult) results);
+        }
         throw InvalidRequesException.CANNOT_HANDLE_REQUEST();
     }
 
+    public static Entity checkEntity(EntityManager entityManager, String entityStr, String method) throws EntityException {
+        Entity entity = entityManager.getEntity(entityStr);
+        if (entity == null) {
+            throw EntityException.ENTITY_NOT_FOUND(entityStr.toUpperCase());
+        }
+        if (entity.isEmbedable()) {
+            throw EntityException.API_NOT_ALLOWED_ON_EMBEDABLE(entityStr.toUpperCase());
+        }
+        if (entity.isOneRecord()) {
+            if (method.equals("POST") || method.equals("DELETE")) {
+                throw EntityException.API_NOT_ALLOWED_ON_ONEREC(entityStr.toUpperCase());
+            }
+        }
+        if (entity.isClosedDomain()) {
+            if (!method.equals("GET")) {
+                throw EntityException.API_NOT_ALLOWED_ON_CLOSED_DOMAIN(entityStr.toUpperCase());
+            }
+        }
+        return entity;
+    }
+
     public static boolean geminiDataType(List<String> geminiHeader) {
         return geminiHeader != null && !geminiHeader.isEmpty() && geminiHeader.contains(GEMINI_API_META_TYPE);
     }
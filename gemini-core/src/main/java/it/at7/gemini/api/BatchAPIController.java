@@ -0,0 +1,311 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.*;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.*;
+
+import static it.at7.gemini.api.ApiUtility.checkEntity;
+import static it.at7.gemini.api.RestAPIController.API_URL;
+
+/**
+ * Executes an ordered list of operations on any entity in a single transaction. Body example:
+ * <pre>
+ * {
+ *   "atomic": true,
+ *   "operations": [
+ *     {"id": "order", "op": "create", "entity": "Order", "data": {"code": "O1"}},
+ *     {"op": "create", "entity": "OrderRow", "data": {"order": "$ref:order", "row": 1}},
+ *     {"op": "get", "entity": "Order", "key": "$ref:order"}
+ *   ]
+ * }
+ * </pre>
+ * A <code>$ref:&lt;id&gt;</code> string points to the record produced by a previous operation: used as a key it is
+ * resolved to the record UUID, used as a data value it is the record itself (for entity reference fields).
+ * <p>
+ * With <code>atomic</code> (the default) the first failure rolls back everything and the remaining operations are
+ * skipped. Otherwise each operation runs inside its own savepoint and only the failed ones are undone.
+ */
+@RestController
+@RequestMapping(BatchAPIController.BATCH_URL)
+public class BatchAPIController {
+    private static final Logger logger = LoggerFactory.getLogger(BatchAPIController.class);
+
+    public static final String BATCH_URL = API_URL + "/_batch";
+    public static final String REF_PREFIX = "$ref:";
+
+    public static final String ATOMIC_FIELD = "atomic";
+    public static final String OPERATIONS_FIELD = "operations";
+    public static final String ID_FIELD = "id";
+    public static final String OP_FIELD = "op";
+    public static final String ENTITY_FIELD = "entity";
+    public static final String KEY_FIELD = "key";
+    public static final String DATA_FIELD = "data";
+
+    enum Operation {
+        CREATE("POST"),
+        UPDATE("PUT"),
+        UPSERT("PUT"),
+        DELETE("DELETE"),
+        GET("GET");
+
+        private final String httpMethod;
+
+        Operation(String httpMethod) {
+            this.httpMethod = httpMethod;
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final RestAPIControllerInterface restAPIController;
+
+    @Autowired
+    public BatchAPIController(EntityManager entityManager, RestAPIControllerInterface restAPIController) {
+        this.entityManager = entityManager;
+        this.restAPIController = restAPIController;
+    }
+
+    @RequestMapping(method = RequestMethod.POST)
+    public ResponseEntity<Map<String, Object>> batchHandler(@RequestBody(required = false) Object body, HttpServletRequest request) throws GeminiException {
+        if (body == null) {
+            throw InvalidRequesException.BODY_REQUIRED();
+        }
+        if (!Map.class.isAssignableFrom(body.getClass())) {
+            throw InvalidRequesException.INVALID_BODY();
+        }
+        Map<String, Object> batch = (Map<String, Object>) body;
+        Object operationsObj = batch.get(OPERATIONS_FIELD);
+        if (operationsObj == null || !List.class.isAssignableFrom(operationsObj.getClass())) {
+            throw InvalidRequesException.INVALID_BODY();
+        }
+        List<Object> operations = (List<Object>) operationsObj;
+        boolean atomic = !Boolean.FALSE.equals(batch.get(ATOMIC_FIELD));
+
+        List<Map<String, Object>> results = new ArrayList<>(operations.size());
+        Map<String, EntityRecord> resultsById = new HashMap<>();
+        HttpStatus failedStatus = null;
+        try (Transaction transaction = entityManager.getTransactionManager().openTransaction(ConnectionPool.BULK)) {
+            for (int i = 0; i < operations.size(); i++) {
+                if (atomic && failedStatus != null) {
+                    results.add(skippedResult(i, operations.get(i)));
+                    continue;
+                }
+                String savepoint = "batch_op_" + i;
+                if (!atomic) {
+                    transaction.savepoint(savepoint);
+                }
+                try {
+                    results.add(executeOperation(i, operations.get(i), resultsById, request, transaction));
+                    if (!atomic) {
+                        transaction.releaseSavepoint(savepoint);
+                    }
+                } catch (GeminiException e) {
+                    logger.info("Batch operation {} failed: {}", i, e.getMessage());
+                    HttpStatus status = APIExceptionHandlerController.httpStatusOf(e);
+                    results.add(errorResult(i, operations.get(i), status, e));
+                    if (atomic) {
+                        failedStatus = status;
+                    } else {
+                        transaction.rollbackToSavepoint(savepoint);
+                    }
+                }
+            }
+            if (failedStatus == null) {
+                transaction.commit();
+            }
+        }
+        // when not committed the transaction is rolled back on close
+        Map<String, Object> response = new HashMap<>();
+        response.put(ATOMIC_FIELD, atomic);
+        response.put("committed", failedStatus == null);
+        response.put("results", results);
+        return new ResponseEntity<>(response, failedStatus == null ? HttpStatus.OK : failedStatus);
+    }
+
+    private Map<String, Object> executeOperation(int index, Object operationObj, Map<String, EntityRecord> resultsById, HttpServletRequest request, Transaction transaction) throws GeminiException {
+        if (operationObj == null || !Map.class.isAssignableFrom(operationObj.getClass())) {
+            throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "operation must be an object");
+        }
+        Map<String, Object> operationMap = (Map<String, Object>) operationObj;
+        Operation operation = getOperation(index, operationMap);
+        Object entityName = operationMap.get(ENTITY_FIELD);
+        if (!(entityName instanceof String)) {
+            throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "entity is required");
+        }
+        Entity entity = checkEntity(entityManager, ((String) entityName).toUpperCase(), operation.httpMethod);
+        Object data = resolveReferences(operationMap.get(DATA_FIELD), resultsById);
+        EntityOperationContext entityOperationContext = restAPIController.createEntityOperationContext(request, entity.getName(), data);
+
+        EntityRecord result;
+        switch (operation) {
+            case CREATE:
+                result = entityManager.putIfAbsent(recordFromData(index, entity, data), entityOperationContext, transaction);
+                break;
+            case UPSERT:
+                result = entityManager.putOrUpdate(recordFromData(index, entity, data), entityOperationContext, transaction);
+                break;
+            case UPDATE: {
+                EntityRecord record = recordFromData(index, entity, data);
+                if (entity.isOneRecord()) {
+                    result = entityManager.update(record, entityOperationContext, transaction);
+                    break;
+                }
+                Object key = getKey(index, operationMap, resultsById);
+                if (key instanceof UUID) {
+                    result = entityManager.update((UUID) key, record, entityOperationContext, transaction);
+                } else {
+                    result = entityManager.update((List<EntityFieldValue>) key, record, entityOperationContext, transaction);
+                }
+                break;
+            }
+            case DELETE: {
+                Object key = getKey(index, operationMap, resultsById);
+                if (key instanceof UUID) {
+                    result = entityManager.delete(entity, (UUID) key, entityOperationContext, transaction);
+                } else {
+                    result = entityManager.delete(entity, (List<EntityFieldValue>) key, entityOperationContext, transaction);
+                }
+                break;
+            }
+            case GET: {
+                if (entity.isOneRecord()) {
+                    result = entityManager.getOneRecordEntity(entity, entityOperationContext, transaction);
+                    break;
+                }
+                Object key = getKey(index, operationMap, resultsById);
+                if (key instanceof UUID) {
+                    result = entityManager.get(entity, (UUID) key, transaction);
+                } else {
+                    result = entityManager.get(entity, (List<EntityFieldValue>) key, transaction);
+                }
+                break;
+            }
+            default:
+                throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "unsupported operation");
+        }
+
+        Object id = operationMap.get(ID_FIELD);
+        if (id != null) {
+            resultsById.put(id.toString(), result);
+        }
+        Map<String, Object> opResult = baseResult(index, operationMap);
+        opResult.put("status", HttpStatus.OK.value());
+        opResult.put("result", EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(result));
+        return opResult;
+    }
+
+    private Operation getOperation(int index, Map<String, Object> operationMap) throws InvalidRequesException {
+        Object op = operationMap.get(OP_FIELD);
+        if (!(op instanceof String)) {
+            throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "op is required");
+        }
+        try {
+            return Operation.valueOf(((String) op).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "unknown op " + op);
+        }
+    }
+
+    private EntityRecord recordFromData(int index, Entity entity, Object data) throws GeminiException {
+        if (data == null || !Map.class.isAssignableFrom(data.getClass())) {
+            throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "data object is required");
+        }
+        return RecordConverters.entityRecordFromMap(entity, (Map<String, Object>) data);
+    }
+
+    /**
+     * @return the record {@link UUID} or its logical key values
+     */
+    private Object getKey(int index, Map<String, Object> operationMap, Map<String, EntityRecord> resultsById) throws GeminiException {
+        Object key = operationMap.get(KEY_FIELD);
+        if (key == null) {
+            throw InvalidRequesException.INVALID_BATCH_OPERATION(index, "key is required");
+        }
+        Entity entity = entityManager.getEntity(((String) operationMap.get(ENTITY_FIELD)).toUpperCase());
+        if (key instanceof String && ((String) key).startsWith(REF_PREFIX)) {
+            return getReferencedRecord((String) key, resultsById).getUUID();
+        }
+        if (key instanceof List) {
+            List<Object> keyList = (List<Object>) key;
+            String[] keys = keyList.stream().map(String::valueOf).toArray(String[]::new);
+            return RecordConverters.logicalKeyFromStrings(entity, keys);
+        }
+        String keyString = String.valueOf(key);
+        try {
+            return UUID.fromString(keyString);
+        } catch (IllegalArgumentException e) {
+            // it is not a UUID
+            return RecordConverters.logicalKeyFromStrings(entity, keyString);
+        }
+    }
+
+    private Object resolveReferences(Object value, Map<String, EntityRecord> resultsById) throws InvalidRequesException {
+        if (value instanceof String && ((String) value).startsWith(REF_PREFIX)) {
+            return getReferencedRecord((String) value, resultsById);
+        }
+        if (value instanceof Map) {
+            Map<String, Object> resolved = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                resolved.put(entry.getKey(), resolveReferences(entry.getValue(), resultsById));
+            }
+            return resolved;
+        }
+        if (value instanceof List) {
+            List<Object> resolved = new ArrayList<>();
+            for (Object elem : (List<Object>) value) {
+                resolved.add(resolveReferences(elem, resultsById));
+            }
+            return resolved;
+        }
+        return value;
+    }
+
+    private EntityRecord getReferencedRecord(String reference, Map<String, EntityRecord> resultsById) throws InvalidRequesException {
+        EntityRecord record = resultsById.get(reference.substring(REF_PREFIX.length()));
+        if (record == null) {
+            throw InvalidRequesException.BATCH_REFERENCE_NOT_FOUND(reference);
+        }
+        return record;
+    }
+
+    private Map<String, Object> baseResult(int index, Object operationObj) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("index", index);
+        if (operationObj instanceof Map) {
+            Map<String, Object> operationMap = (Map<String, Object>) operationObj;
+            if (operationMap.containsKey(ID_FIELD)) {
+                result.put(ID_FIELD, operationMap.get(ID_FIELD));
+            }
+            result.put(OP_FIELD, operationMap.get(OP_FIELD));
+            result.put(ENTITY_FIELD, operationMap.get(ENTITY_FIELD));
+        }
+        return result;
+    }
+
+    private Map<String, Object> errorResult(int index, Object operationObj, HttpStatus status, GeminiException e) {
+        Map<String, Object> result = baseResult(index, operationObj);
+        result.put("status", status.value());
+        result.put("errorcode", e.getErrorCodeName());
+        result.put("message", e.getMessage());
+        return result;
+    }
+
+    private Map<String, Object> skippedResult(int index, Object operationObj) {
+        Map<String, Object> result = baseResult(index, operationObj);
+        result.put("status", HttpStatus.FAILED_DEPENDENCY.value());
+        result.put("errorcode", "SKIPPED");
+        return result;
+    }
+}
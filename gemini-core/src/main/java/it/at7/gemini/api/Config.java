@@ -1,21 +1,78 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.List;
 
 @Configuration
 public class Config implements WebMvcConfigurer {
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+    public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+
+    private final SerializedRecordCache serializedRecordCache;
+
+    @Autowired
+    public Config(SerializedRecordCache serializedRecordCache) {
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadConsistencyInterceptor());
+    }
 
     @Override
     public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
-        converters.add(0, new EntityRecordMessageConverter());
-        converters.add(1, new EntityRecordListMessageConverter());
-        converters.add(2, new EntityRecordApiTypeMessageConverter());
-        converters.add(3, new EntityRecordListApiMessageConverter());
+        converters.add(0, new EntityRecordMessageConverter(serializedRecordCache));
+        converters.add(1, new EntityRecordListMessageConverter(serializedRecordCache));
+        converters.add(2, new EntityRecordApiTypeMessageConverter(serializedRecordCache));
+        converters.add(3, new EntityRecordListApiMessageConverter(serializedRecordCache));
         converters.add(4, new CountRequestMessageConverter());
         converters.add(5, new CountRequestApiMessageConverter());
+        converters.add(6, new EntityRecordMultiGetMessageConverter(serializedRecordCache));
+        converters.add(7, new EntityRecordMultiGetApiMessageConverter(serializedRecordCache));
+        converters.add(8, new EntityRecordChangesMessageConverter());
+        converters.add(9, new EntityRecordChangesApiMessageConverter());
+        converters.add(10, new AggregationResultMessageConverter());
+        converters.add(11, new AggregationResultApiMessageConverter());
+
+        // binary formats use the same Gemini converters with a different object mapper
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+        int nextIndex = addGeminiConverters(converters, 12, smileMapper, APPLICATION_SMILE);
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        addGeminiConverters(converters, nextIndex, cborMapper, APPLICATION_CBOR);
+
+        // generic readers for request bodies (Map / List)
+        if (converters.stream().noneMatch(c -> c instanceof MappingJackson2SmileHttpMessageConverter)) {
+            converters.add(new MappingJackson2SmileHttpMessageConverter(smileMapper));
+        }
+        if (converters.stream().noneMatch(c -> c instanceof MappingJackson2CborHttpMessageConverter)) {
+            converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper));
+        }
+    }
+
+    private int addGeminiConverters(List<HttpMessageConverter<?>> converters, int startIndex, ObjectMapper objectMapper, MediaType mediaType) {
+        converters.add(startIndex, new EntityRecordMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 1, new EntityRecordListMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 2, new EntityRecordApiTypeMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 3, new EntityRecordListApiMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 4, new CountRequestMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 5, new CountRequestApiMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 6, new EntityRecordMultiGetMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 7, new EntityRecordMultiGetApiMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 8, new EntityRecordChangesMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 9, new EntityRecordChangesApiMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 10, new AggregationResultMessageConverter(objectMapper, mediaType));
+        converters.add(startIndex + 11, new AggregationResultApiMessageConverter(objectMapper, mediaType));
+        return startIndex + 12;
     }
 }
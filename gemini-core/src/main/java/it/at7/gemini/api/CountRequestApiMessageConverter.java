@@ -1,5 +1,6 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.at7.gemini.core.FilterContext;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
@@ -8,12 +9,23 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static it.at7.gemini.core.FilterContextBuilder.*;
 
 public class CountRequestApiMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public CountRequestApiMessageConverter() {
+        super();
+    }
+
+    public CountRequestApiMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+    }
+
     @Override
     protected boolean canRead(MediaType mediaType) {
         return false;
@@ -47,6 +59,9 @@ public class CountRequestApiMessageConverter extends MappingJackson2HttpMessageC
         if (filterContext.getOrderBy() != null && filterContext.getOrderBy().length > 0) {
             meta.put(ORDER_BY_PARAMETER, filterContext.getOrderBy());
         }
+        if (filterContext.getCountMode() != FilterContext.CountMode.EXACT) {
+            meta.put(COUNT_MODE_PARAMETER, filterContext.getCountMode().name().toLowerCase());
+        }
         return meta;
     }
 
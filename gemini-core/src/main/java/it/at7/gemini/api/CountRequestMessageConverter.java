@@ -1,5 +1,6 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageNotWritableException;
@@ -7,11 +8,21 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 public class CountRequestMessageConverter extends MappingJackson2HttpMessageConverter {
 
+    public CountRequestMessageConverter() {
+        super();
+    }
+
+    public CountRequestMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+    }
+
     @Override
     protected boolean canRead(MediaType mediaType) {
         return false;
@@ -0,0 +1,62 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.EntityManager;
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.EntityRecordMatcher;
+import it.at7.gemini.core.FilterContextBuilder;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.function.Predicate;
+
+import static it.at7.gemini.api.ApiUtility.checkEntity;
+import static it.at7.gemini.api.RestAPIController.ENTITY_URL;
+
+/**
+ * Server-Sent Events stream of the committed changes of an Entity. Each event is named <code>insert</code>,
+ * <code>update</code> or <code>delete</code> and carries the record in the Gemini API format (meta + data).
+ * <p>
+ * The optional <code>search</code> parameter is the same RSQL filter of the list API, evaluated in memory on the
+ * changed records. Reconnecting clients send the standard <code>Last-Event-ID</code> header to receive the events
+ * they missed.
+ */
+@RestController
+@RequestMapping(ENTITY_URL + "/" + EntityEventStreamController.EVENTS_PATH)
+public class EntityEventStreamController {
+    public static final String EVENTS_PATH = "_events";
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    private final EntityManager entityManager;
+    private final EntityEventStreamService eventStreamService;
+
+    @Autowired
+    public EntityEventStreamController(EntityManager entityManager, EntityEventStreamService eventStreamService) {
+        this.entityManager = entityManager;
+        this.eventStreamService = eventStreamService;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable String entity,
+                                @RequestParam(value = FilterContextBuilder.SEARCH_PARAMETER, required = false) String search,
+                                @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) throws GeminiException {
+        Entity e = checkEntity(entityManager, entity.toUpperCase(), "GET");
+        Predicate<EntityRecord> filter = EntityRecordMatcher.compile(e, search);
+        return eventStreamService.subscribe(e, filter, parseLastEventId(lastEventId));
+    }
+
+    private Long parseLastEventId(String lastEventId) throws InvalidRequesException {
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId);
+        } catch (NumberFormatException e) {
+            throw InvalidRequesException.INVALID_LAST_EVENT_ID(lastEventId);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityManager;
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.EntityRecordChangeListener;
+import it.at7.gemini.core.GeminiConfigurationService;
+import it.at7.gemini.schema.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Pushes committed Entity Record changes to the subscribed Server-Sent Events connections.
+ * <p>
+ * Changes are matched by a single thread, so each subscriber receives them in commit notification order, and queued
+ * to each connection. Connections are written by a sender pool: a slow connection never delays the committing
+ * transaction nor the other connections. When more than {@code gemini.api.events.queue} events wait for a connection
+ * they are dropped and a {@code reset} event is sent, telling the client to reload its data.
+ * <p>
+ * An updated record that no longer matches the subscription filter is sent as a {@code remove} event. The last
+ * {@code gemini.api.events.buffer} events are kept to resume a connection from its Last-Event-ID. When the requested
+ * event is no longer buffered a {@code reset} event is sent.
+ */
+@Service
+public class EntityEventStreamService implements EntityRecordChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(EntityEventStreamService.class);
+
+    public static final String RESET_EVENT = "reset";
+    public static final String REMOVE_EVENT = "remove";
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int queueSize;
+    private final long timeout;
+    private final ExecutorService dispatcher;
+    private final ExecutorService senders;
+
+    // accessed only by the dispatcher thread
+    private final Deque<ChangeEvent> buffer = new ArrayDeque<>();
+    private final Map<String, List<Subscription>> subscriptionsByEntity = new HashMap<>();
+    private long lastEventId = 0;
+
+    @Autowired
+    public EntityEventStreamService(EntityManager entityManager, ObjectMapper objectMapper, GeminiConfigurationService configurationService) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = configurationService.getApiEventsBuffer();
+        this.queueSize = configurationService.getApiEventsQueue();
+        this.timeout = configurationService.getApiEventsTimeout();
+        this.dispatcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "gemini-sse-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // a thread is used only while a connection has queued events
+        this.senders = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "gemini-sse-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        entityManager.registerChangeListener(this);
+    }
+
+    public SseEmitter subscribe(Entity entity, Predicate<EntityRecord> filter, @Nullable Long lastSeenEventId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscription subscription = new Subscription(entity.getName(), emitter, filter);
+        dispatcher.execute(() -> {
+            if (lastSeenEventId != null) {
+                replay(subscription, lastSeenEventId);
+            }
+            subscriptionsByEntity.computeIfAbsent(entity.getName(), k -> new ArrayList<>()).add(subscription);
+        });
+        Runnable remove = subscription::close;
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        return emitter;
+    }
+
+    @Override
+    public void onCommittedChange(ChangeType changeType, EntityRecord record) {
+        onCommittedChange(changeType, null, record);
+    }
+
+    @Override
+    public void onCommittedChange(ChangeType changeType, @Nullable EntityRecord previous, EntityRecord record) {
+        if (record.getEntity().isEmbedable() || dispatcher.isShutdown()) {
+            return;
+        }
+        dispatcher.execute(() -> dispatch(changeType, previous, record));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscriptionsByEntity.values().forEach(l -> l.forEach(s -> s.emitter.complete()));
+    }
+
+    private void dispatch(ChangeType changeType, @Nullable EntityRecord previous, EntityRecord record) {
+        String payload;
+        try {
+            Map<String, Object> data = EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(record);
+            payload = objectMapper.writeValueAsString(data); // serialized once for all the subscribers
+        } catch (JsonProcessingException e) {
+            logger.error("Unable to serialize change event", e);
+            return;
+        }
+        ChangeEvent event = new ChangeEvent(++lastEventId, changeType, previous, record, payload);
+        buffer.addLast(event);
+        if (buffer.size() > bufferSize) {
+            buffer.removeFirst();
+        }
+        List<Subscription> subscriptions = subscriptionsByEntity.get(record.getEntity().getName());
+        if (subscriptions != null) {
+            subscriptions.removeIf(s -> s.closed);
+            subscriptions.forEach(s -> offer(s, event));
+        }
+    }
+
+    private void replay(Subscription subscription, long lastSeenEventId) {
+        boolean unknownEvent = lastSeenEventId > lastEventId; // for example ids of a previous server run
+        boolean lostEvents = lastSeenEventId < lastEventId && (buffer.isEmpty() || buffer.getFirst().id > lastSeenEventId + 1);
+        if (unknownEvent || lostEvents) {
+            subscription.offer(resetEvent(lastEventId));
+            return;
+        }
+        for (ChangeEvent event : buffer) {
+            if (event.id > lastSeenEventId && event.record.getEntity().getName().equals(subscription.entityName)) {
+                offer(subscription, event);
+            }
+        }
+    }
+
+    /**
+     * Queue the event if the record matches the subscription filter, or if it matched before the update (as a remove)
+     */
+    private void offer(Subscription subscription, ChangeEvent event) {
+        String name;
+        try {
+            if (subscription.filter.test(event.record)) {
+                name = event.changeType.name().toLowerCase();
+            } else if (event.previous != null && subscription.filter.test(event.previous)) {
+                name = REMOVE_EVENT;
+            } else {
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unable to match change event against the subscription filter", e);
+            return;
+        }
+        subscription.offer(SseEmitter.event()
+                .id(String.valueOf(event.id))
+                .name(name)
+                .data(event.payload));
+    }
+
+    private static SseEmitter.SseEventBuilder resetEvent(long eventId) {
+        return SseEmitter.event().id(String.valueOf(eventId)).name(RESET_EVENT).data("");
+    }
+
+    private class Subscription {
+        final String entityName;
+        final SseEmitter emitter;
+        final Predicate<EntityRecord> filter;
+
+        // guarded by the queue
+        final Deque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        boolean draining;
+        volatile boolean closed;
+
+        Subscription(String entityName, SseEmitter emitter, Predicate<EntityRecord> filter) {
+            this.entityName = entityName;
+            this.emitter = emitter;
+            this.filter = filter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            synchronized (queue) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= queueSize) {
+                    // the connection is too slow: its pending events are replaced by a reset
+                    logger.warn("Events of {} dropped for a slow connection, sending a reset", entityName);
+                    queue.clear();
+                    queue.add(resetEvent(lastEventId)); // offered by the dispatcher thread
+                } else {
+                    queue.add(event);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (queue) {
+                    event = queue.poll();
+                    if (event == null || closed) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // client gone
+                    close();
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            synchronized (queue) {
+                closed = true;
+                queue.clear();
+            }
+        }
+    }
+
+    private static class ChangeEvent {
+        final long id;
+        final ChangeType changeType;
+        final EntityRecord previous;
+        final EntityRecord record;
+        final String payload;
+
+        ChangeEvent(long id, ChangeType changeType, @Nullable EntityRecord previous, EntityRecord record, String payload) {
+            this.id = id;
+            this.changeType = changeType;
+            this.previous = previous;
+            this.record = record;
+            this.payload = payload;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.at7.gemini.core.EntityRecord;
 import it.at7.gemini.core.RecordConverters;
 import org.springframework.http.HttpOutputMessage;
@@ -9,12 +10,33 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class EntityRecordApiTypeMessageConverter extends MappingJackson2HttpMessageConverter {
 
+    private final SerializedRecordCache serializedRecordCache;
+
+    public EntityRecordApiTypeMessageConverter() {
+        this((SerializedRecordCache) null);
+    }
+
+    /**
+     * JSON converter that writes the records from the {@link SerializedRecordCache}
+     */
+    public EntityRecordApiTypeMessageConverter(SerializedRecordCache serializedRecordCache) {
+        super();
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    public EntityRecordApiTypeMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+        this.serializedRecordCache = null; // binary formats cannot embed the serialized JSON
+    }
+
     @Override
     protected boolean canRead(MediaType mediaType) {
         return false;
@@ -34,6 +56,12 @@ public class EntityRecordApiTypeMessageConverter extends MappingJackson2HttpMess
     protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
         GeminiWrappers.EntityRecordApiType record = GeminiWrappers.EntityRecordApiType.class.cast(object);
         EntityRecord entityRecord = record.get();
+        SerializedRecordCache.Fragment fragment = serializedRecordCache == null ? null :
+                serializedRecordCache.getFragment(entityRecord, SerializedRecordCache.Representation.API, getObjectMapper());
+        if (fragment != null) {
+            serializedRecordCache.write(fragment, outputMessage);
+            return;
+        }
         Map<String, Object> results = createGeminiApiEntityRecordMap(entityRecord);
         super.writeInternal(results, type, outputMessage);
     }
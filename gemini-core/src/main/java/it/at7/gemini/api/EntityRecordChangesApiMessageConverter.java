@@ -0,0 +1,62 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecordChanges;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.*;
+
+import static it.at7.gemini.api.EntityRecordChangesMessageConverter.*;
+
+public class EntityRecordChangesApiMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public EntityRecordChangesApiMessageConverter() {
+        super();
+    }
+
+    public EntityRecordChangesApiMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return super.canWrite(mediaType) && GeminiWrappers.EntityRecordChangesApiType.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        GeminiWrappers.EntityRecordChangesApiType apiType = GeminiWrappers.EntityRecordChangesApiType.class.cast(object);
+        EntityRecordChanges changes = apiType.getChanges(); // unwrap
+
+        Map<String, Object> meta = new HashMap<>();
+        meta.put(NEXT_FIELD, changes.getNextToken());
+        meta.put(HAS_MORE_FIELD, changes.hasMore());
+        List<Map<String, Object>> dataList = new ArrayList<>();
+        for (EntityRecordChanges.Change change : changes.getChanges()) {
+            Map<String, Object> changeMap = new HashMap<>();
+            if (change.isDeleted()) {
+                changeMap.put(OP_FIELD, DELETE_OP);
+                changeMap.put("uuid", change.getUUID());
+            } else {
+                changeMap = EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(change.getRecord());
+                changeMap.put(OP_FIELD, UPSERT_OP);
+            }
+            dataList.add(changeMap);
+        }
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("meta", meta);
+        responseBody.put("data", dataList);
+        super.writeInternal(responseBody, type, outputMessage);
+    }
+}
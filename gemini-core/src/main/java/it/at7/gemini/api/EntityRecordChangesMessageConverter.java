@@ -0,0 +1,63 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecordChanges;
+import it.at7.gemini.core.RecordConverters;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.*;
+
+public class EntityRecordChangesMessageConverter extends MappingJackson2HttpMessageConverter {
+    public static final String CHANGES_FIELD = "changes";
+    public static final String NEXT_FIELD = "next";
+    public static final String HAS_MORE_FIELD = "hasMore";
+    public static final String OP_FIELD = "op";
+    public static final String UPSERT_OP = "upsert";
+    public static final String DELETE_OP = "delete";
+
+    public EntityRecordChangesMessageConverter() {
+        super();
+    }
+
+    public EntityRecordChangesMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return super.canWrite(mediaType) && EntityRecordChanges.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        EntityRecordChanges changes = EntityRecordChanges.class.cast(object);
+        List<Map<String, Object>> changeList = new ArrayList<>(changes.getChanges().size());
+        for (EntityRecordChanges.Change change : changes.getChanges()) {
+            Map<String, Object> changeMap = new HashMap<>();
+            if (change.isDeleted()) {
+                changeMap.put(OP_FIELD, DELETE_OP);
+                changeMap.put("uuid", change.getUUID());
+            } else {
+                changeMap.put(OP_FIELD, UPSERT_OP);
+                changeMap.put("data", RecordConverters.fieldsToJSONMap(change.getRecord()));
+            }
+            changeList.add(changeMap);
+        }
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put(CHANGES_FIELD, changeList);
+        responseBody.put(NEXT_FIELD, changes.getNextToken());
+        responseBody.put(HAS_MORE_FIELD, changes.hasMore());
+        super.writeInternal(responseBody, type, outputMessage);
+    }
+}
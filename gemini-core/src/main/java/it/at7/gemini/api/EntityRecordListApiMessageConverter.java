@@ -1,5 +1,6 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.at7.gemini.core.EntityRecord;
 import it.at7.gemini.core.FilterContext;
 import it.at7.gemini.core.RecordConverters;
@@ -17,6 +18,26 @@ import static it.at7.gemini.core.FilterContextBuilder.*;
 
 public class EntityRecordListApiMessageConverter extends MappingJackson2HttpMessageConverter {
 
+    private final SerializedRecordCache serializedRecordCache;
+
+    public EntityRecordListApiMessageConverter() {
+        this((SerializedRecordCache) null);
+    }
+
+    /**
+     * JSON converter that writes the records from the {@link SerializedRecordCache}
+     */
+    public EntityRecordListApiMessageConverter(SerializedRecordCache serializedRecordCache) {
+        super();
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    public EntityRecordListApiMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+        this.serializedRecordCache = null; // binary formats cannot embed the serialized JSON
+    }
+
     @Override
     protected boolean canRead(MediaType mediaType) {
         return false;
@@ -50,13 +71,17 @@ public class EntityRecordListApiMessageConverter extends MappingJackson2HttpMess
         if (filterContext.getOrderBy() != null && filterContext.getOrderBy().length > 0) {
             meta.put(ORDER_BY_PARAMETER, filterContext.getOrderBy());
         }
+        if (record.getTotal() != null) {
+            meta.put(TOTAL_PARAMETER, record.getTotal());
+        }
         return meta;
     }
 
-    private List<Map<String, Object>> getData(GeminiWrappers.EntityRecordsList entityRecordList) {
-        List<Map<String, Object>> dataList = new ArrayList<>();
+    private List<Object> getData(GeminiWrappers.EntityRecordsList entityRecordList) {
+        List<Object> dataList = new ArrayList<>();
         for (EntityRecord eRec : entityRecordList.getRecords()) {
-            dataList.add(EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(eRec));
+            dataList.add(serializedRecordCache == null ? EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(eRec) :
+                    serializedRecordCache.toJsonValue(eRec, SerializedRecordCache.Representation.API, getObjectMapper()));
         }
         return dataList;
     }
@@ -1,5 +1,6 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.at7.gemini.core.RecordConverters;
 import it.at7.gemini.core.EntityRecord;
 import org.springframework.http.HttpOutputMessage;
@@ -10,10 +11,32 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 public class EntityRecordListMessageConverter extends MappingJackson2HttpMessageConverter {
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private final SerializedRecordCache serializedRecordCache;
+
+    public EntityRecordListMessageConverter() {
+        this((SerializedRecordCache) null);
+    }
+
+    /**
+     * JSON converter that writes the records from the {@link SerializedRecordCache}
+     */
+    public EntityRecordListMessageConverter(SerializedRecordCache serializedRecordCache) {
+        super();
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    public EntityRecordListMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+        this.serializedRecordCache = null; // binary formats cannot embed the serialized JSON
+    }
 
     @Override
     protected boolean canRead(MediaType mediaType) {
@@ -28,10 +51,15 @@ public class EntityRecordListMessageConverter extends MappingJackson2HttpMessage
     @Override
     protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
         GeminiWrappers.EntityRecordsList recordsWrapper = GeminiWrappers.EntityRecordsList.class.cast(object);
+        if (recordsWrapper.getTotal() != null) {
+            // plain lists are JSON arrays, the total goes in a header
+            outputMessage.getHeaders().set(TOTAL_COUNT_HEADER, String.valueOf(recordsWrapper.getTotal()));
+        }
         Collection<EntityRecord> records = recordsWrapper.getRecords();
         List<Object> listOfFields = new ArrayList<>(records.size());
         for (EntityRecord record : records) {
-            listOfFields.add(RecordConverters.fieldsToJSONMap(record));
+            listOfFields.add(serializedRecordCache == null ? RecordConverters.fieldsToJSONMap(record) :
+                    serializedRecordCache.toJsonValue(record, SerializedRecordCache.Representation.FIELDS, getObjectMapper()));
         }
         super.writeInternal(listOfFields, type, outputMessage);
     }
@@ -1,5 +1,6 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.at7.gemini.core.RecordConverters;
 import it.at7.gemini.core.EntityRecord;
 import org.springframework.http.HttpOutputMessage;
@@ -9,10 +10,31 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Map;
 
 public class EntityRecordMessageConverter extends MappingJackson2HttpMessageConverter {
 
+    private final SerializedRecordCache serializedRecordCache;
+
+    public EntityRecordMessageConverter() {
+        this((SerializedRecordCache) null);
+    }
+
+    /**
+     * JSON converter that writes the records from the {@link SerializedRecordCache}
+     */
+    public EntityRecordMessageConverter(SerializedRecordCache serializedRecordCache) {
+        super();
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    public EntityRecordMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+        this.serializedRecordCache = null; // binary formats cannot embed the serialized JSON
+    }
+
     @Override
     protected boolean canRead(MediaType mediaType) {
         return false;
@@ -26,6 +48,12 @@ public class EntityRecordMessageConverter extends MappingJackson2HttpMessageConv
     @Override
     protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
         EntityRecord record = EntityRecord.class.cast(object);
+        SerializedRecordCache.Fragment fragment = serializedRecordCache == null ? null :
+                serializedRecordCache.getFragment(record, SerializedRecordCache.Representation.FIELDS, getObjectMapper());
+        if (fragment != null) {
+            serializedRecordCache.write(fragment, outputMessage);
+            return;
+        }
         Map<String, Object> recordMap = RecordConverters.fieldsToJSONMap(record);
         super.writeInternal(recordMap, type, outputMessage);
     }
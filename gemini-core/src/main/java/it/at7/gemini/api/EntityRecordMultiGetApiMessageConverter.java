@@ -0,0 +1,65 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecord;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.*;
+
+import static it.at7.gemini.api.EntityRecordMultiGetMessageConverter.NOT_FOUND_FIELD;
+
+public class EntityRecordMultiGetApiMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final SerializedRecordCache serializedRecordCache;
+
+    public EntityRecordMultiGetApiMessageConverter() {
+        this((SerializedRecordCache) null);
+    }
+
+    /**
+     * JSON converter that writes the records from the {@link SerializedRecordCache}
+     */
+    public EntityRecordMultiGetApiMessageConverter(SerializedRecordCache serializedRecordCache) {
+        super();
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    public EntityRecordMultiGetApiMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+        this.serializedRecordCache = null; // binary formats cannot embed the serialized JSON
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return super.canWrite(mediaType) && GeminiWrappers.EntityRecordsMultiGetApiType.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        GeminiWrappers.EntityRecordsMultiGetApiType apiType = GeminiWrappers.EntityRecordsMultiGetApiType.class.cast(object);
+        GeminiWrappers.EntityRecordsMultiGet multiGet = apiType.getMultiGet(); // unwrap
+
+        Map<String, Object> meta = new HashMap<>();
+        meta.put(NOT_FOUND_FIELD, multiGet.getNotFound());
+        List<Object> dataList = new ArrayList<>();
+        for (EntityRecord eRec : multiGet.getRecords()) {
+            dataList.add(serializedRecordCache == null ? EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(eRec) :
+                    serializedRecordCache.toJsonValue(eRec, SerializedRecordCache.Representation.API, getObjectMapper()));
+        }
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("meta", meta);
+        responseBody.put("data", dataList);
+        super.writeInternal(responseBody, type, outputMessage);
+    }
+}
@@ -0,0 +1,62 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.RecordConverters;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.*;
+
+public class EntityRecordMultiGetMessageConverter extends MappingJackson2HttpMessageConverter {
+    public static final String RECORDS_FIELD = "records";
+    public static final String NOT_FOUND_FIELD = "notFound";
+
+    private final SerializedRecordCache serializedRecordCache;
+
+    public EntityRecordMultiGetMessageConverter() {
+        this((SerializedRecordCache) null);
+    }
+
+    /**
+     * JSON converter that writes the records from the {@link SerializedRecordCache}
+     */
+    public EntityRecordMultiGetMessageConverter(SerializedRecordCache serializedRecordCache) {
+        super();
+        this.serializedRecordCache = serializedRecordCache;
+    }
+
+    public EntityRecordMultiGetMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(objectMapper);
+        setSupportedMediaTypes(Arrays.asList(supportedMediaTypes));
+        this.serializedRecordCache = null; // binary formats cannot embed the serialized JSON
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return super.canWrite(mediaType) && GeminiWrappers.EntityRecordsMultiGet.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        GeminiWrappers.EntityRecordsMultiGet multiGet = GeminiWrappers.EntityRecordsMultiGet.class.cast(object);
+        List<Object> records = new ArrayList<>(multiGet.getRecords().size());
+        for (EntityRecord record : multiGet.getRecords()) {
+            records.add(serializedRecordCache == null ? RecordConverters.fieldsToJSONMap(record) :
+                    serializedRecordCache.toJsonValue(record, SerializedRecordCache.Representation.FIELDS, getObjectMapper()));
+        }
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put(RECORDS_FIELD, records);
+        responseBody.put(NOT_FOUND_FIELD, multiGet.getNotFound());
+        super.writeInternal(responseBody, type, outputMessage);
+    }
+}
@@ -1,18 +1,28 @@
 package it.at7.gemini.api;
 
+import it.at7.gemini.core.AggregationResult;
 import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.EntityRecordChanges;
+import it.at7.gemini.core.EntityRecordsPage;
 import it.at7.gemini.core.FilterContext;
 
 import java.util.Collection;
+import java.util.List;
 
 public class GeminiWrappers {
     public static class EntityRecordsList {
         private Collection<EntityRecord> records;
         private final FilterContext filterContext;
+        private final Long total;
 
         public EntityRecordsList(Collection<EntityRecord> records, FilterContext filterContext) {
+            this(records, filterContext, null);
+        }
+
+        public EntityRecordsList(Collection<EntityRecord> records, FilterContext filterContext, Long total) {
             this.records = records;
             this.filterContext = filterContext;
+            this.total = total;
         }
 
         public EntityRecordsList(Collection<EntityRecord> records) {
@@ -27,6 +37,17 @@ public class GeminiWrappers {
             return filterContext;
         }
 
+        /**
+         * @return the total number of records matching the filter or null if not requested
+         */
+        public Long getTotal() {
+            return total;
+        }
+
+        public static EntityRecordsList of(EntityRecordsPage page, FilterContext filterContext) {
+            return new EntityRecordsList(page.getRecords(), filterContext, page.getTotal());
+        }
+
         public static EntityRecordsList of(Collection<EntityRecord> records, FilterContext filterContext) {
             return new EntityRecordsList(records, filterContext);
         }
@@ -105,4 +126,77 @@ public class GeminiWrappers {
             return new CountRequestApiType(countRequest);
         }
     }
+
+    public static class EntityRecordsMultiGet {
+        private final List<EntityRecord> records;
+        private final List<Object> notFound;
+
+        public EntityRecordsMultiGet(List<EntityRecord> records, List<Object> notFound) {
+            this.records = records;
+            this.notFound = notFound;
+        }
+
+        /**
+         * @return records found, in the same order of the requested keys
+         */
+        public List<EntityRecord> getRecords() {
+            return records;
+        }
+
+        public List<Object> getNotFound() {
+            return notFound;
+        }
+
+        public static EntityRecordsMultiGet of(List<EntityRecord> records, List<Object> notFound) {
+            return new EntityRecordsMultiGet(records, notFound);
+        }
+    }
+
+    public static class EntityRecordsMultiGetApiType {
+        private final EntityRecordsMultiGet multiGet;
+
+        public EntityRecordsMultiGetApiType(EntityRecordsMultiGet multiGet) {
+            this.multiGet = multiGet;
+        }
+
+        public EntityRecordsMultiGet getMultiGet() {
+            return multiGet;
+        }
+
+        public static EntityRecordsMultiGetApiType of(EntityRecordsMultiGet multiGet) {
+            return new EntityRecordsMultiGetApiType(multiGet);
+        }
+    }
+
+    public static class EntityRecordChangesApiType {
+        private final EntityRecordChanges changes;
+
+        public EntityRecordChangesApiType(EntityRecordChanges changes) {
+            this.changes = changes;
+        }
+
+        public EntityRecordChanges getChanges() {
+            return changes;
+        }
+
+        public static EntityRecordChangesApiType of(EntityRecordChanges changes) {
+            return new EntityRecordChangesApiType(changes);
+        }
+    }
+
+    public static class AggregationResultApiType {
+        private final AggregationResult result;
+
+        public AggregationResultApiType(AggregationResult result) {
+            this.result = result;
+        }
+
+        public AggregationResult getResult() {
+            return result;
+        }
+
+        public static AggregationResultApiType of(AggregationResult result) {
+            return new AggregationResultApiType(result);
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.*;
+import it.at7.gemini.exceptions.GeminiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static it.at7.gemini.api.ApiUtility.*;
+import static it.at7.gemini.api.RestAPIController.API_URL;
+
+/**
+ * Executes the named queries declared by the modules (see {@link NamedQueries}). Query parameters are passed in the
+ * query string with the list parameters <code>limit</code> and <code>start</code>.
+ * <p>
+ * Queries with an Entity return its records in the format of the list API (Gemini header included), the others
+ * return a list of plain rows.
+ */
+@RestController
+@RequestMapping(NamedQueryController.QUERY_URL + "/{name}")
+public class NamedQueryController {
+    public static final String QUERY_URL = API_URL + "/_query";
+
+    private final NamedQueries namedQueries;
+    private final GeminiConfigurationService configurationService;
+    private final RestAPIControllerInterface restAPIController;
+    private final QueryBudgets queryBudgets;
+
+    @Autowired
+    public NamedQueryController(NamedQueries namedQueries, GeminiConfigurationService configurationService,
+                                RestAPIControllerInterface restAPIController, QueryBudgets queryBudgets) {
+        this.namedQueries = namedQueries;
+        this.configurationService = configurationService;
+        this.restAPIController = restAPIController;
+        this.queryBudgets = queryBudgets;
+    }
+
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public Object query(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws GeminiException {
+        NamedQuery query = namedQueries.getQuery(name);
+        Map<String, String[]> requestParameters = request.getParameterMap();
+        Map<String, Object> parameters = query.convertParameters(requestParameters);
+        FilterContext filterContext = new FilterContextBuilder(configurationService)
+                .fromParameters(requestParameters)
+                .build();
+        QueryBudget budget = queryBudgets.open(query.getEntity(), request.getRemoteUser());
+        try {
+            if (query.getEntity() == null) {
+                return namedQueries.getRows(query, parameters, filterContext);
+            }
+            EntityOperationContext entityOperationContext = restAPIController.createEntityOperationContext(request);
+            List<EntityRecord> records = namedQueries.getRecords(query, parameters, filterContext, entityOperationContext);
+            GeminiWrappers.EntityRecordsList results = GeminiWrappers.EntityRecordsList.of(records, filterContext);
+            if (noGeminiDataType(getGeminiHeader(request), request.getHeader("Accept"))) {
+                return results;
+            }
+            return handleGeminiDataTypeResponse(results, request, response);
+        } finally {
+            budget.close();
+        }
+    }
+
+    private List<String> getGeminiHeader(HttpServletRequest request) {
+        String header = request.getHeader(GEMINI_HEADER);
+        return header == null ? Collections.emptyList() : Arrays.asList(header.split(","));
+    }
+}
@@ -0,0 +1,105 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.*;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static it.at7.gemini.api.ApiUtility.checkEntity;
+import static it.at7.gemini.api.RestAPIController.API_URL;
+
+/**
+ * Query plan of the list API: same entity and parameters (search, orderBy, limit, start) of the list request. The
+ * response has the generated SQL, the bound parameters, the output of <code>EXPLAIN (ANALYZE, BUFFERS, FORMAT
+ * JSON)</code> and the number of reference resolution queries needed to convert the rows. Served outside the entity
+ * URLs, like the named queries, so it cannot shadow a record whose logical key is <code>_explain</code>.
+ * <p>
+ * The query is executed (twice), so the endpoint is disabled by default. When enabled the authenticated user must be
+ * one of <code>gemini.api.explain.users</code>; requests without a user are denied unless
+ * <code>gemini.api.explain.anonymous</code> is set (no authentication module).
+ */
+@RestController
+@RequestMapping(QueryPlanController.EXPLAIN_URL + "/{entity}")
+public class QueryPlanController {
+    public static final String EXPLAIN_URL = API_URL + "/_explain";
+
+    private final EntityManager entityManager;
+    private final GeminiConfigurationService configurationService;
+    private final RestAPIControllerInterface restAPIController;
+    private final QueryBudgets queryBudgets;
+
+    @Autowired
+    public QueryPlanController(EntityManager entityManager, GeminiConfigurationService configurationService,
+                               RestAPIControllerInterface restAPIController, QueryBudgets queryBudgets) {
+        this.entityManager = entityManager;
+        this.configurationService = configurationService;
+        this.restAPIController = restAPIController;
+        this.queryBudgets = queryBudgets;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> explain(@PathVariable String entity, HttpServletRequest request) throws GeminiException {
+        if (!configurationService.isApiExplainEnabled()) {
+            return forbidden("Query plans are disabled");
+        }
+        String user = request.getRemoteUser();
+        if (user == null && !configurationService.isApiExplainAnonymous()) {
+            return forbidden("Query plans require an authenticated user");
+        }
+        if (user != null && !configurationService.getApiExplainUsers().contains(user)) {
+            return forbidden(String.format("User %s cannot inspect query plans", user));
+        }
+        if (entityManager.getEntity(entity.toUpperCase()) == null) {
+            throw InvalidRequesException.UNKNOWN_ENTITY(entity);
+        }
+        Entity e = checkEntity(entityManager, entity.toUpperCase(), "GET");
+        FilterContext filterContext = new FilterContextBuilder(configurationService)
+                .fromParameters(request.getParameterMap())
+                .build();
+        EntityOperationContext entityOperationContext = restAPIController.createEntityOperationContext(request, entity, null);
+        QueryPlan queryPlan;
+        // the budget of the list request, the plan is of the query the list would run
+        QueryBudget budget = queryBudgets.open(e, user);
+        try {
+            queryPlan = entityManager.explain(e, filterContext, entityOperationContext);
+        } finally {
+            budget.close();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("entity", e.getName());
+        response.put("sql", queryPlan.getSql());
+        response.put("params", paramsToJSON(queryPlan.getParams()));
+        response.put("rows", queryPlan.getRows());
+        response.put("referenceQueries", queryPlan.getReferenceQueries());
+        response.put("plan", queryPlan.getPlan());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    private Map<String, Object> paramsToJSON(Map<String, Object> params) {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            Object value = entry.getValue();
+            boolean plain = value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                    || value instanceof Collection;
+            ret.put(entry.getKey(), plain ? value : value.toString());
+        }
+        return ret;
+    }
+
+    private ResponseEntity<?> forbidden(String message) {
+        return new ResponseEntity<>(new ApiError(HttpStatus.FORBIDDEN, "EXPLAIN_NOT_ALLOWED", message), HttpStatus.FORBIDDEN);
+    }
+}
@@ -0,0 +1,36 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.ReadConsistency;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.regex.Pattern;
+
+/**
+ * Binds the {@link ReadConsistency} scope of each request: the position of the client comes from the
+ * {@link ReadConsistency#HEADER} request header, the position of the committed writes is returned in the same response
+ * header.
+ */
+public class ReadConsistencyInterceptor implements AsyncHandlerInterceptor {
+    // a PostgreSQL log sequence number
+    private static final Pattern POSITION = Pattern.compile("[0-9A-Fa-f]{1,8}/[0-9A-Fa-f]{1,8}");
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String position = request.getHeader(ReadConsistency.HEADER);
+        ReadConsistency.open(position != null && POSITION.matcher(position).matches() ? position : null,
+                committed -> response.setHeader(ReadConsistency.HEADER, committed));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReadConsistency.close();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReadConsistency.close();
+    }
+}
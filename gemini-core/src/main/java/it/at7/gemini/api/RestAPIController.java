@@ -1,7 +1,6 @@
 package it.at7.gemini.api;
 
 import it.at7.gemini.core.*;
-import it.at7.gemini.exceptions.EntityException;
 import it.at7.gemini.exceptions.GeminiException;
 import it.at7.gemini.exceptions.InvalidRequesException;
 import it.at7.gemini.schema.Entity;
@@ -9,8 +8,12 @@ import it.at7.gemini.schema.EntityField;
 import it.at7.gemini.schema.EntityRef;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -19,11 +22,14 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.util.*;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import static it.at7.gemini.api.ApiUtility.*;
 import static it.at7.gemini.api.RestAPIController.API_URL;
+import static it.at7.gemini.schema.CoreMetaRef.FIELDS.MODIFIED;
 
 @RestController
 @RequestMapping(API_URL + "/{entity}")
@@ -31,16 +37,28 @@ public class RestAPIController implements RestAPIControllerInterface {
 
     public static final String API_URL = "/api";
     public static final String ENTITY_URL = API_URL + "/{entity}";
+    public static final String MGET_PATH = "_mget";
+    public static final String AGGREGATE_PATH = "_aggregate";
+    public static final String UUIDS_PARAMETER = "uuids";
+    public static final String KEYS_FIELD = "keys";
 
     private EntityManager entityManager;
     private GeminiConfigurationService configurationService;
     private ApiListenersManager apiListenersManager;
+    private WriteCoalescer writeCoalescer;
+    private EntityListCache entityListCache;
+    private EntityVersions entityVersions;
+    private QueryBudgets queryBudgets;
 
     @Autowired
-    public RestAPIController(EntityManager entityManager, GeminiConfigurationService configurationService, ApiListenersManager apiListenersManager) {
+    public RestAPIController(EntityManager entityManager, GeminiConfigurationService configurationService, ApiListenersManager apiListenersManager, WriteCoalescer writeCoalescer, EntityListCache entityListCache, EntityVersions entityVersions, QueryBudgets queryBudgets) {
         this.entityManager = entityManager;
         this.configurationService = configurationService;
         this.apiListenersManager = apiListenersManager;
+        this.writeCoalescer = writeCoalescer;
+        this.entityListCache = entityListCache;
+        this.entityVersions = entityVersions;
+        this.queryBudgets = queryBudgets;
     }
 
     @RequestMapping(value = "/**")
@@ -51,7 +69,20 @@ public class RestAPIController implements RestAPIControllerInterface {
                              HttpServletResponse response) throws GeminiException {
 
         List<String> geminiHeaderValues = getGeminiHeader(request);
-        Object results = requestHandler(entity, body, request, response);
+        Object results;
+        String method = request.getMethod();
+        Entity e = checkEntity(entityManager, entity.toUpperCase(), method);
+        // the row budget limits the lists, writes only have the time budget
+        QueryBudget budget = method.equals("GET") || method.equals("HEAD") ?
+                queryBudgets.open(e, clientOf(request)) : queryBudgets.openForWrite(e, clientOf(request));
+        try {
+            results = requestHandler(entity, body, request, response);
+        } finally {
+            budget.close();
+        }
+        if (results instanceof ResponseEntity) {
+            return results; // not modified
+        }
         if (noGeminiDataType(geminiHeaderValues, request.getHeader("Accept"))) {
             return results;
         }
@@ -60,7 +91,7 @@ public class RestAPIController implements RestAPIControllerInterface {
 
     private Object requestHandler(String entityString, Object body, HttpServletRequest request, HttpServletResponse response) throws GeminiException {
         String method = request.getMethod();
-        Entity entity = checkEntity(entityString.toUpperCase(), method);
+        Entity entity = checkEntity(entityManager, entityString.toUpperCase(), method);
         UriComponents uriComponents = UriComponentsBuilder.fromUriString(request.getRequestURI()).build();
         List<String> paths = uriComponents.getPathSegments();
         ensurePathsAreConsistent(paths, entity);
@@ -78,7 +109,9 @@ public class RestAPIController implements RestAPIControllerInterface {
                 case "GET": {
                     if (entity.isOneRecord())
                         return handleGetEntityOneRecord(entity, parameters, entityOperationContext);
-                    return handleGetEntityList(entity, parameters, entityOperationContext);
+                    if (parameters.containsKey(UUIDS_PARAMETER))
+                        return handleMultiGet(entity, uuidsFromParameter(parameters.get(UUIDS_PARAMETER)));
+                    return handleGetEntityList(entity, parameters, entityOperationContext, request, response);
                 }
                 case "PUT": {
                     if (entity.isOneRecord()) {
@@ -90,6 +123,14 @@ public class RestAPIController implements RestAPIControllerInterface {
             }
         }
 
+        if (paths.size() == 3 && paths.get(2).equals(MGET_PATH) && method.equals("POST")) {
+            return handleMultiGet(entity, keysFromBody(body));
+        }
+
+        if (paths.size() == 3 && paths.get(2).equals(AGGREGATE_PATH) && method.equals("GET")) {
+            return handleAggregate(entity, parameters, entityOperationContext, request, response);
+        }
+
         if (paths.size() > 2) {
             int requestLkLenght = paths.size() - 2;
             Entity.LogicalKey logicalKey = entity.getLogicalKey();
@@ -103,7 +144,8 @@ public class RestAPIController implements RestAPIControllerInterface {
                 String[] lkStringsArray = decodeLogicalKeyStrings(paths);
                 switch (method) {
                     case "GET":
-                        return handleGetRecord(entity, entityOperationContext, lkStringsArray);
+                        EntityRecord record = handleGetRecord(entity, entityOperationContext, lkStringsArray);
+                        return notModifiedOr(record, recordETag(record, request), request, response);
                     case "PUT":
                         return handleUpdateRecord(entity, body, entityOperationContext, lkStringsArray);
                     case "DELETE":
@@ -142,6 +184,12 @@ public class RestAPIController implements RestAPIControllerInterface {
         return lkStrings.toArray(new String[0]);
     }
 
+    @Nullable
+    private String clientOf(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal == null ? null : principal.getName();
+    }
+
     private List<String> getGeminiHeader(HttpServletRequest request) {
         String header = request.getHeader(GEMINI_HEADER);
         return header == null ? Collections.emptyList() : Arrays.asList(header.split(","));
@@ -151,17 +199,238 @@ public class RestAPIController implements RestAPIControllerInterface {
         return entityManager.getOneRecordEntity(entity, entityOperationContext);
     }
 
-    private Object handleGetEntityList(Entity e, Map<String, String[]> parameters, EntityOperationContext entityOperationContext) throws GeminiException {
+    private Object handleGetEntityList(Entity e, Map<String, String[]> parameters, EntityOperationContext entityOperationContext, HttpServletRequest request, HttpServletResponse response) throws GeminiException {
         FilterContext filterContext = new FilterContextBuilder(configurationService)
                 .fromParameters(parameters)
                 .build();
+        TransactionManager transactionManager = entityManager.getTransactionManager();
+        if (filterContext.isChangedSince()) {
+            return transactionManager.executeInSingleReadOnlyTrasaction(transaction -> {
+                return entityManager.getChangesSince(e, filterContext, entityOperationContext, transaction);
+            });
+        }
+        if (!isVersioned(e, request)) {
+            if (filterContext.isCount()) {
+                long count = entityManager.coalescedRead(readKey(e, "count", request), transaction -> {
+                    return entityManager.countRecordsMatching(e, filterContext, entityOperationContext, transaction);
+                }, UnaryOperator.identity());
+                return GeminiWrappers.CountRequest.of(count, filterContext);
+            }
+            EntityRecordsPage page = entityManager.coalescedRead(readKey(e, "list", request), transaction -> {
+                return loadEntityList(e, filterContext, entityOperationContext, transaction);
+            }, EntityRecordsPage::copy);
+            return entityList(page, filterContext);
+        }
+        VersionedRead versioned = entityManager.coalescedRead(readKey(e, "versioned", request), transaction -> {
+            // checked before the query: a matching version skips the query and the serialization
+            String dataVersion = dataVersion(e, transaction);
+            if (new ServletWebRequest(request).checkNotModified(listETag(dataVersion, request))) {
+                return new VersionedRead(dataVersion, null);
+            }
+            if (filterContext.isCount()) {
+                return new VersionedRead(dataVersion, entityManager.countRecordsMatching(e, filterContext, entityOperationContext, transaction));
+            }
+            return new VersionedRead(dataVersion, entityListCache.getOrLoad(e, filterContext, dataVersion, () -> loadEntityList(e, filterContext, entityOperationContext, transaction)));
+        }, VersionedRead::copy);
+        ResponseEntity<?> notModified = notModified(listETag(versioned.dataVersion, request), request, response);
+        if (notModified != null) {
+            return notModified;
+        }
         if (filterContext.isCount()) {
-            return GeminiWrappers.CountRequest.of(entityManager.countRecordsMatching(e, filterContext, entityOperationContext), filterContext);
-        } else {
-            List<EntityRecord> recordList = entityManager.getRecordsMatching(e, filterContext, entityOperationContext);
-            // TODO add entity Operation Context ??
-            return GeminiWrappers.EntityRecordsList.of(recordList, filterContext);
+            return GeminiWrappers.CountRequest.of((Long) versioned.result, filterContext);
         }
+        return entityList((EntityRecordsPage) versioned.result, filterContext);
+    }
+
+    private Object entityList(EntityRecordsPage page, FilterContext filterContext) {
+        if (filterContext.isWithTotal()) {
+            return GeminiWrappers.EntityRecordsList.of(page, filterContext);
+        }
+        // TODO add entity Operation Context ??
+        return GeminiWrappers.EntityRecordsList.of(page.getRecords(), filterContext);
+    }
+
+    private Object handleAggregate(Entity e, Map<String, String[]> parameters, EntityOperationContext entityOperationContext, HttpServletRequest request, HttpServletResponse response) throws GeminiException {
+        FilterContext filterContext = new FilterContextBuilder(configurationService)
+                .fromParameters(parameters)
+                .build();
+        Aggregation aggregation = Aggregation.fromParameters(e, parameters, filterContext);
+        if (!isVersioned(e, request)) {
+            return entityManager.aggregate(e, aggregation, entityOperationContext);
+        }
+        // same versioning of the list: the aggregates change with the records
+        return entityManager.getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            ResponseEntity<?> notModified = notModified(listETag(dataVersion(e, transaction), request), request, response);
+            if (notModified != null) {
+                return notModified;
+            }
+            return entityManager.aggregate(e, aggregation, entityOperationContext, transaction);
+        });
+    }
+
+    private EntityRecordsPage loadEntityList(Entity e, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
+        if (filterContext.isWithTotal()) {
+            return entityManager.getRecordsPage(e, filterContext, entityOperationContext, transaction);
+        }
+        List<EntityRecord> records = entityManager.getRecordsMatching(e, filterContext, entityOperationContext, transaction);
+        return new EntityRecordsPage(records, records.size());
+    }
+
+    /**
+     * The version of the list responses is read only when it can save work: there is a validator to check or the
+     * Entity has cached pages. Only those responses have an ETag.
+     */
+    private boolean isVersioned(Entity e, HttpServletRequest request) {
+        return entityListCache.isCached(e) || request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+    }
+
+    /**
+     * Data version of the Entity and of the referenced ones (whose logical keys are in the responses): an index
+     * lookup of the versions maintained by the database. It is read before the query in the same transaction, so the
+     * response (and the cached page) is never older than its version, also on a replica.
+     */
+    private String dataVersion(Entity e, Transaction transaction) throws GeminiException {
+        List<Entity> entities = new ArrayList<>(List.of(e));
+        entities.addAll(entityVersions.getReferencedEntities(e));
+        return entityManager.getDataVersion(entities, transaction);
+    }
+
+    /**
+     * Weak ETag of a list (or count) response: it changes with the data version and with the request parameters and
+     * representation.
+     */
+    private String listETag(String dataVersion, HttpServletRequest request) {
+        return String.format("W/\"l-%s-%s\"", dataVersion, Integer.toHexString(representation(request).hashCode()));
+    }
+
+    private String representation(HttpServletRequest request) {
+        String parameters = new TreeMap<>(request.getParameterMap()).entrySet().stream()
+                .map(p -> p.getKey() + "=" + String.join(",", p.getValue()))
+                .collect(Collectors.joining("&"));
+        return String.join("|", parameters, String.valueOf(request.getHeader("Accept")), String.valueOf(request.getHeader(GEMINI_HEADER)));
+    }
+
+    /**
+     * Reads of the same Entity with the same parameters, representation and validator are identical: they can share
+     * a single execution (see {@link EntityManager#coalescedRead})
+     */
+    private Object readKey(Entity e, String read, HttpServletRequest request) {
+        return Arrays.asList(e.getName().toUpperCase(), read, representation(request), String.valueOf(request.getHeader(HttpHeaders.IF_NONE_MATCH)));
+    }
+
+    /**
+     * Weak ETag of a single record: its UUID and last modification time, plus the version of the referenced Entities
+     * (whose logical keys are in the response).
+     */
+    private String recordETag(EntityRecord record, HttpServletRequest request) {
+        Object modified = record.getStore().get(MODIFIED);
+        if (modified == null || record.getUUID() == null) {
+            return null;
+        }
+        String representation = String.join("|", String.valueOf(request.getHeader("Accept")), String.valueOf(request.getHeader(GEMINI_HEADER)));
+        StringBuilder tag = new StringBuilder("W/\"r-")
+                .append(record.getUUID())
+                .append('-').append(Integer.toHexString(modified.toString().hashCode()))
+                .append('-').append(Integer.toHexString(representation.hashCode()));
+        long referencesVersion = entityVersions.getReferencesVersion(record.getEntity());
+        if (referencesVersion > 0) {
+            tag.append('-').append(entityVersions.getInstanceTag()).append('-').append(referencesVersion);
+        }
+        return tag.append('"').toString();
+    }
+
+    private Object notModifiedOr(Object result, String etag, HttpServletRequest request, HttpServletResponse response) {
+        ResponseEntity<?> notModified = notModified(etag, request, response);
+        return notModified != null ? notModified : result;
+    }
+
+    /**
+     * Set the ETag header and check the If-None-Match request header
+     *
+     * @return the empty 304 response to return, or null if the resource changed
+     */
+    private ResponseEntity<?> notModified(String etag, HttpServletRequest request, HttpServletResponse response) {
+        if (etag == null || !new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    private List<Object> uuidsFromParameter(String[] uuidsParameter) {
+        List<Object> keys = new ArrayList<>();
+        for (String uuids : uuidsParameter) {
+            for (String uuid : uuids.split(",")) {
+                if (!uuid.trim().isEmpty()) {
+                    keys.add(uuid.trim());
+                }
+            }
+        }
+        return keys;
+    }
+
+    private List<Object> keysFromBody(Object body) throws InvalidRequesException {
+        if (body == null) {
+            throw InvalidRequesException.BODY_REQUIRED();
+        }
+        if (List.class.isAssignableFrom(body.getClass())) {
+            return (List<Object>) body;
+        }
+        if (Map.class.isAssignableFrom(body.getClass())) {
+            Object keys = ((Map<String, Object>) body).get(KEYS_FIELD);
+            if (keys != null && List.class.isAssignableFrom(keys.getClass())) {
+                return (List<Object>) keys;
+            }
+        }
+        throw InvalidRequesException.INVALID_BODY();
+    }
+
+    /**
+     * Resolve each key as UUID or logical key (a list of strings for multiple field logical keys). UUIDs and logical
+     * keys are resolved with a query each, records are returned in the request order.
+     */
+    private Object handleMultiGet(Entity entity, List<Object> keys) throws GeminiException {
+        int limit = configurationService.getApiMultiGetLimit();
+        if (keys.size() > limit) {
+            throw InvalidRequesException.TOO_MANY_KEYS(limit);
+        }
+        List<UUID> uuids = new ArrayList<>();
+        List<List<EntityFieldValue>> logicalKeys = new ArrayList<>();
+        List<Object> parsedKeys = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            if (key instanceof List) {
+                String[] lkStrings = ((List<Object>) key).stream().map(String::valueOf).toArray(String[]::new);
+                List<EntityFieldValue> lk = RecordConverters.logicalKeyFromStrings(entity, lkStrings);
+                logicalKeys.add(lk);
+                parsedKeys.add(lk);
+                continue;
+            }
+            String keyString = String.valueOf(key);
+            try {
+                UUID uuid = UUID.fromString(keyString);
+                uuids.add(uuid);
+                parsedKeys.add(uuid);
+            } catch (IllegalArgumentException e1) {
+                // it is not a UUID
+                List<EntityFieldValue> lk = RecordConverters.logicalKeyFromStrings(entity, keyString);
+                logicalKeys.add(lk);
+                parsedKeys.add(lk);
+            }
+        }
+        return entityManager.getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            Iterator<Optional<EntityRecord>> byUUID = entityManager.getRecordsByUUIDs(entity, uuids, transaction).iterator();
+            Iterator<Optional<EntityRecord>> byLk = entityManager.getRecordsByLogicalKeys(entity, logicalKeys, transaction).iterator();
+            List<EntityRecord> records = new ArrayList<>();
+            List<Object> notFound = new ArrayList<>();
+            for (int i = 0; i < parsedKeys.size(); i++) {
+                Optional<EntityRecord> record = parsedKeys.get(i) instanceof UUID ? byUUID.next() : byLk.next();
+                if (record.isPresent()) {
+                    records.add(record.get());
+                } else {
+                    notFound.add(keys.get(i));
+                }
+            }
+            return GeminiWrappers.EntityRecordsMultiGet.of(records, notFound);
+        });
     }
 
     private Object handleInsertRecord(Entity e, List<String> geminiHeader, Object body, EntityOperationContext entityOperationContext) throws GeminiException {
@@ -187,7 +456,7 @@ public class RestAPIController implements RestAPIControllerInterface {
 
     private EntityRecord handleInsertRecord(Map<String, Object> body, Entity e, EntityOperationContext entityOperationContext) throws GeminiException {
         EntityRecord rec = RecordConverters.entityRecordFromMap(e, body);
-        return entityManager.putIfAbsent(rec, entityOperationContext);
+        return writeCoalescer.putIfAbsent(rec, entityOperationContext);
     }
 
     private Object handleInsertRecords(List<Map<String, Object>> body, Entity e, EntityOperationContext entityOperationContext) throws GeminiException {
@@ -195,7 +464,10 @@ public class RestAPIController implements RestAPIControllerInterface {
         for (Map<String, Object> record : body) {
             records.add(RecordConverters.entityRecordFromMap(e, record));
         }
-        Collection<EntityRecord> entityRecords = entityManager.putIfAbsent(records, entityOperationContext);
+        // multi record inserts are bulk work, they must not exhaust the interactive pool
+        Collection<EntityRecord> entityRecords = entityManager.getTransactionManager().executeInSingleTrasaction(ConnectionPool.BULK, transaction -> {
+            return entityManager.putIfAbsent(records, entityOperationContext, transaction);
+        });
         return GeminiWrappers.EntityRecordsList.of(entityRecords);
     }
 
@@ -235,34 +507,16 @@ public class RestAPIController implements RestAPIControllerInterface {
     }
 
     private EntityRecord handleGetRecord(Entity e, EntityOperationContext entityOperationContext, String... logicalKey) throws GeminiException {
-        try {
-            UUID uuid = UUID.fromString(logicalKey[0]);
-            return entityManager.get(e, uuid);
-        } catch (IllegalArgumentException e1) {
-            List<EntityFieldValue> logicalKeyValues = RecordConverters.logicalKeyFromStrings(e, logicalKey);
-            return entityManager.get(e, logicalKeyValues);
-        }
-    }
-
-    private Entity checkEntity(String entityStr, String method) throws EntityException {
-        Entity entity = entityManager.getEntity(entityStr);
-        if (entity == null) {
-            throw EntityException.ENTITY_NOT_FOUND(entityStr.toUpperCase());
-        }
-        if (entity.isEmbedable()) {
-            throw EntityException.API_NOT_ALLOWED_ON_EMBEDABLE(entityStr.toUpperCase());
-        }
-        if (entity.isOneRecord()) {
-            if (method.equals("POST") || method.equals("DELETE")) {
-                throw EntityException.API_NOT_ALLOWED_ON_ONEREC(entityStr.toUpperCase());
-            }
-        }
-        if (entity.isClosedDomain()) {
-            if (!method.equals("GET")) {
-                throw EntityException.API_NOT_ALLOWED_ON_CLOSED_DOMAIN(entityStr.toUpperCase());
+        Object key = Arrays.asList(e.getName().toUpperCase(), "record", Arrays.asList(logicalKey));
+        return entityManager.coalescedRead(key, transaction -> {
+            try {
+                UUID uuid = UUID.fromString(logicalKey[0]);
+                return entityManager.get(e, uuid, transaction);
+            } catch (IllegalArgumentException e1) {
+                List<EntityFieldValue> logicalKeyValues = RecordConverters.logicalKeyFromStrings(e, logicalKey);
+                return entityManager.get(e, logicalKeyValues, transaction);
             }
-        }
-        return entity;
+        }, EntityRecord::copy);
     }
 
     private void ensureMethodsAreConsistent(String method, Entity entity) {
@@ -279,4 +533,23 @@ public class RestAPIController implements RestAPIControllerInterface {
         assert paths.get(0).equals("api");
         assert paths.get(1).toUpperCase().equals(e.getName().toUpperCase());
     }
+
+    /**
+     * Data version and result of a versioned list read: null when the validator of the request matched the version,
+     * the record page or the count otherwise
+     */
+    private static class VersionedRead {
+        final String dataVersion;
+        @Nullable
+        final Object result;
+
+        VersionedRead(String dataVersion, @Nullable Object result) {
+            this.dataVersion = dataVersion;
+            this.result = result;
+        }
+
+        VersionedRead copy() {
+            return result instanceof EntityRecordsPage ? new VersionedRead(dataVersion, ((EntityRecordsPage) result).copy()) : this;
+        }
+    }
 }
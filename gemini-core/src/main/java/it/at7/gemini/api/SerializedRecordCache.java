@@ -0,0 +1,187 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import it.at7.gemini.core.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static it.at7.gemini.schema.CoreMetaRef.FIELDS.MODIFIED;
+
+/**
+ * Serialized JSON of the records of the Entities listed in {@code gemini.api.jsonCache.entities}, to skip the record
+ * conversion and the Jackson serialization of the most requested records.
+ * <p>
+ * A serialized record is valid for its version: the modified meta field and the {@link EntityVersions} version of the
+ * referenced Entities (whose logical keys are serialized). Committed changes remove the record, the least recently used
+ * records are evicted after {@code gemini.api.jsonCache.maxEntries}. Single record responses are written from the
+ * cached bytes (or their gzip variant, computed once), lists and multi-get responses embed the cached JSON.
+ * <p>
+ * Only textual JSON can be embedded: the binary formats (Smile, CBOR) don't use the cache.
+ */
+@Service
+public class SerializedRecordCache implements EntityRecordChangeListener {
+    static final int GZIP_MIN_SIZE = 2048;
+
+    public enum Representation {
+        FIELDS, API
+    }
+
+    private final EntityVersions entityVersions;
+    private final Set<String> cachedEntities;
+    private final int maxEntries;
+
+    // guarded by itself
+    private final Map<String, Fragment> fragments;
+
+    @Autowired
+    public SerializedRecordCache(EntityManager entityManager, EntityVersions entityVersions, GeminiConfigurationService configurationService) {
+        this.entityVersions = entityVersions;
+        this.cachedEntities = configurationService.getApiJsonCacheEntities().stream()
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet());
+        this.maxEntries = configurationService.getApiJsonCacheMaxEntries();
+        this.fragments = new LinkedHashMap<String, Fragment>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Fragment> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        entityManager.registerChangeListener(this);
+    }
+
+    /**
+     * @return the serialized record, or null if the record is not cached (the Entity has no cache or the record has
+     * no version)
+     */
+    public Fragment getFragment(EntityRecord record, Representation representation, ObjectMapper objectMapper) throws JsonProcessingException {
+        String version = version(record);
+        if (version == null) {
+            return null;
+        }
+        String key = key(record.getUUID(), representation);
+        Fragment fragment;
+        synchronized (fragments) {
+            fragment = fragments.get(key);
+        }
+        if (fragment != null && fragment.version.equals(version)) {
+            return fragment;
+        }
+        fragment = new Fragment(version, objectMapper.writeValueAsString(toMap(record, representation)));
+        synchronized (fragments) {
+            fragments.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * @return the value to embed in a response (the raw serialized JSON, or the map to serialize if the record is not
+     * cached)
+     */
+    public Object toJsonValue(EntityRecord record, Representation representation, ObjectMapper objectMapper) {
+        try {
+            Fragment fragment = getFragment(record, representation, objectMapper);
+            if (fragment != null) {
+                return new RawValue(fragment.json);
+            }
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + e.getOriginalMessage(), e);
+        }
+        return toMap(record, representation);
+    }
+
+    /**
+     * Write the serialized record as the whole response body, compressed if the client accepts it
+     */
+    public void write(Fragment fragment, HttpOutputMessage outputMessage) throws IOException {
+        byte[] body = fragment.bytes;
+        if (body.length >= GZIP_MIN_SIZE && acceptsGzip()) {
+            outputMessage.getHeaders().set("Content-Encoding", "gzip");
+            body = fragment.gzip();
+        }
+        outputMessage.getHeaders().add("Vary", "Accept-Encoding");
+        outputMessage.getBody().write(body);
+    }
+
+    @Override
+    public void onCommittedChange(ChangeType changeType, EntityRecord record) {
+        if (record.getUUID() == null || !isCached(record)) {
+            return;
+        }
+        synchronized (fragments) {
+            for (Representation representation : Representation.values()) {
+                fragments.remove(key(record.getUUID(), representation));
+            }
+        }
+    }
+
+    private boolean isCached(EntityRecord record) {
+        return cachedEntities.contains(record.getEntity().getName().toUpperCase());
+    }
+
+    private String version(EntityRecord record) {
+        Object modified = record.getStore().get(MODIFIED);
+        if (modified == null || record.getUUID() == null || !isCached(record)) {
+            return null;
+        }
+        return modified + "-" + entityVersions.getInstanceTag() + "-" + entityVersions.getReferencesVersion(record.getEntity());
+    }
+
+    private static String key(UUID uuid, Representation representation) {
+        return uuid + "|" + representation;
+    }
+
+    private static Map<String, Object> toMap(EntityRecord record, Representation representation) {
+        return representation == Representation.API ?
+                EntityRecordApiTypeMessageConverter.createGeminiApiEntityRecordMap(record) :
+                RecordConverters.fieldsToJSONMap(record);
+    }
+
+    private static boolean acceptsGzip() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+        String acceptEncoding = ((ServletRequestAttributes) attributes).getRequest().getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    public static class Fragment {
+        private final String version;
+        private final String json;
+        private final byte[] bytes;
+        private volatile byte[] gzip;
+
+        Fragment(String version, String json) {
+            this.version = version;
+            this.json = json;
+            this.bytes = json.getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] gzip() throws IOException {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                // a concurrent request may compress it too: same result
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+                try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                    gzipOut.write(bytes);
+                }
+                compressed = gzip = out.toByteArray();
+            }
+            return compressed;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.EntityFieldNotFoundException;
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.EntityField;
+import it.at7.gemini.schema.FieldType;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+
+/**
+ * Aggregates (count, sum, avg, min, max) of the records matching a filter, grouped by some fields of the Entity. Group
+ * fields can be dotted reference paths; a reference field groups by the referenced record and its logical key is
+ * returned.
+ * <p>
+ * Request parameters: {@code groupBy=status,customer} and {@code aggregate=count,sum:amount,max:date}. The
+ * {@link FilterContext} filters the records, its limit, start and orderBy apply to the groups.
+ */
+public class Aggregation {
+    public static final String GROUP_BY_PARAMETER = "groupBy";
+    public static final String AGGREGATE_PARAMETER = "aggregate";
+
+    private static final String LIST_SEPARATOR = ",";
+    private static final String FUNCTION_SEPARATOR = ":";
+    private static final Set<FieldType> GROUP_TYPES = EnumSet.of(FieldType.TEXT, FieldType.NUMBER, FieldType.LONG, FieldType.DOUBLE,
+            FieldType.BOOL, FieldType.DATE, FieldType.TIME, FieldType.DATETIME, FieldType.ENTITY_REF);
+    private static final Set<FieldType> NUMERIC_TYPES = EnumSet.of(FieldType.NUMBER, FieldType.LONG, FieldType.DOUBLE);
+    private static final Set<FieldType> COMPARABLE_TYPES = EnumSet.of(FieldType.NUMBER, FieldType.LONG, FieldType.DOUBLE,
+            FieldType.TEXT, FieldType.DATE, FieldType.TIME, FieldType.DATETIME);
+
+    public enum Function {
+        COUNT,
+        SUM,
+        AVG,
+        MIN,
+        MAX
+    }
+
+    private final List<GroupBy> groupBy;
+    private final List<Aggregate> aggregates;
+    private final FilterContext filterContext;
+
+    public Aggregation(List<GroupBy> groupBy, List<Aggregate> aggregates, FilterContext filterContext) {
+        this.groupBy = groupBy;
+        this.aggregates = aggregates;
+        this.filterContext = filterContext;
+    }
+
+    public List<GroupBy> getGroupBy() {
+        return groupBy;
+    }
+
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    public FilterContext getFilterContext() {
+        return filterContext;
+    }
+
+    /**
+     * @return the position (0 based) of the group or aggregate in the result columns, -1 if not found
+     */
+    public int columnIndex(String name) {
+        for (int i = 0; i < groupBy.size(); i++) {
+            if (groupBy.get(i).getName().equalsIgnoreCase(name))
+                return i;
+        }
+        for (int i = 0; i < aggregates.size(); i++) {
+            if (aggregates.get(i).getName().equalsIgnoreCase(name))
+                return groupBy.size() + i;
+        }
+        return -1;
+    }
+
+    public static Aggregation fromParameters(Entity entity, Map<String, String[]> parameters, FilterContext filterContext) throws InvalidRequesException {
+        List<GroupBy> groupBy = new ArrayList<>();
+        for (String path : listParameter(parameters.get(GROUP_BY_PARAMETER))) {
+            EntityField field = resolvePath(entity, path);
+            if (!GROUP_TYPES.contains(field.getType())) {
+                throw InvalidRequesException.INVALID_AGGREGATION(String.format("cannot group by %s of type %s", path, field.getType()));
+            }
+            groupBy.add(new GroupBy(path, field));
+        }
+        List<Aggregate> aggregates = new ArrayList<>();
+        for (String aggregate : listParameter(parameters.get(AGGREGATE_PARAMETER))) {
+            aggregates.add(parseAggregate(entity, aggregate));
+        }
+        if (aggregates.isEmpty()) {
+            aggregates.add(new Aggregate(Function.COUNT, null, null));
+        }
+        Aggregation aggregation = new Aggregation(groupBy, aggregates, filterContext);
+        String[] orderBy = filterContext.getOrderBy();
+        if (orderBy != null) {
+            for (String obElem : orderBy) {
+                String name = obElem.startsWith("-") ? obElem.substring(1) : obElem;
+                if (aggregation.columnIndex(name) < 0) {
+                    throw InvalidRequesException.INVALID_AGGREGATION(String.format("orderBy %s is not a group or an aggregate", name));
+                }
+            }
+        }
+        return aggregation;
+    }
+
+    private static Aggregate parseAggregate(Entity entity, String aggregate) throws InvalidRequesException {
+        String[] functionAndPath = aggregate.split(FUNCTION_SEPARATOR, 2);
+        Function function;
+        try {
+            function = Function.valueOf(functionAndPath[0].trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw InvalidRequesException.INVALID_AGGREGATION(String.format("unknown aggregate function %s", functionAndPath[0]));
+        }
+        if (functionAndPath.length == 1) {
+            if (function != Function.COUNT) {
+                throw InvalidRequesException.INVALID_AGGREGATION(String.format("%s requires a field", aggregate));
+            }
+            return new Aggregate(function, null, null);
+        }
+        String path = functionAndPath[1].trim();
+        EntityField field = resolvePath(entity, path);
+        boolean supported;
+        switch (function) {
+            case SUM:
+            case AVG:
+                supported = NUMERIC_TYPES.contains(field.getType());
+                break;
+            case MIN:
+            case MAX:
+                supported = COMPARABLE_TYPES.contains(field.getType());
+                break;
+            default:
+                supported = false; // count is for records, not field values
+        }
+        if (!supported) {
+            throw InvalidRequesException.INVALID_AGGREGATION(String.format("%s is not supported on %s of type %s", function.name().toLowerCase(), path, field.getType()));
+        }
+        return new Aggregate(function, path, field);
+    }
+
+    /**
+     * Walk the references of a dotted path, up to the last field
+     */
+    private static EntityField resolvePath(Entity entity, String path) throws InvalidRequesException {
+        Entity current = entity;
+        EntityField field = null;
+        for (String element : path.split("\\.")) {
+            if (current == null) {
+                throw InvalidRequesException.INVALID_AGGREGATION(String.format("invalid path %s - %s is not a reference", path, field.getName()));
+            }
+            try {
+                field = current.getField(element);
+            } catch (EntityFieldNotFoundException e) {
+                throw InvalidRequesException.INVALID_AGGREGATION(String.format("invalid path %s - %s is not a field of %s", path, element, current.getName()));
+            }
+            current = field.getType() == FieldType.ENTITY_REF || field.getType() == FieldType.ENTITY_EMBEDED ? field.getEntityRef() : null;
+        }
+        return field;
+    }
+
+    private static List<String> listParameter(@Nullable String[] parameter) {
+        List<String> ret = new ArrayList<>();
+        if (parameter != null && parameter.length > 0) {
+            for (String elem : parameter[0].split(LIST_SEPARATOR)) { // only the first supported
+                if (!elem.trim().isEmpty()) {
+                    ret.add(elem.trim());
+                }
+            }
+        }
+        return ret;
+    }
+
+    public static class GroupBy {
+        private final String path;
+        private final EntityField field;
+
+        public GroupBy(String path, EntityField field) {
+            this.path = path;
+            this.field = field;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the last field of the path
+         */
+        public EntityField getField() {
+            return field;
+        }
+
+        public String getName() {
+            return path;
+        }
+    }
+
+    public static class Aggregate {
+        private final Function function;
+        private final String path;
+        private final EntityField field;
+
+        public Aggregate(Function function, @Nullable String path, @Nullable EntityField field) {
+            this.function = function;
+            this.path = path;
+            this.field = field;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        @Nullable
+        public String getPath() {
+            return path;
+        }
+
+        @Nullable
+        public EntityField getField() {
+            return field;
+        }
+
+        /**
+         * @return the name of the aggregate in the results - for example count or sum_amount
+         */
+        public String getName() {
+            String name = function.name().toLowerCase();
+            return path == null ? name : name + "_" + path;
+        }
+
+        /**
+         * @return the type of the aggregated value: count is a LONG, avg a DOUBLE, the others have the type of the field
+         */
+        public FieldType getResultType() {
+            switch (function) {
+                case COUNT:
+                    return FieldType.LONG;
+                case AVG:
+                    return FieldType.DOUBLE;
+                default:
+                    assert field != null;
+                    return field.getType();
+            }
+        }
+    }
+}
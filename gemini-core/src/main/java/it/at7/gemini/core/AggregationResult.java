@@ -0,0 +1,26 @@
+package it.at7.gemini.core;
+
+import java.util.List;
+
+/**
+ * The groups of an {@link Aggregation}. Every row has the values of the groups followed by the values of the
+ * aggregates, in the order of the request: references are {@link EntityReferenceRecord}, dates and times are
+ * java.time values, numbers have the type of the aggregated field (count is a Long, avg a Double).
+ */
+public class AggregationResult {
+    private final Aggregation aggregation;
+    private final List<Object[]> rows;
+
+    public AggregationResult(Aggregation aggregation, List<Object[]> rows) {
+        this.aggregation = aggregation;
+        this.rows = rows;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,20 @@
+package it.at7.gemini.core;
+
+/**
+ * Isolated connection pools. Work on a non interactive pool can wait for a connection or exhaust it without
+ * affecting the interactive API traffic.
+ */
+public enum ConnectionPool {
+    /**
+     * The default pool (the Spring DataSource), used by the API requests
+     */
+    INTERACTIVE,
+    /**
+     * Bulk imports and batch requests
+     */
+    BULK,
+    /**
+     * Schema synchronization and background jobs
+     */
+    BACKGROUND
+}
@@ -0,0 +1,70 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.conf.State;
+import it.at7.gemini.core.persistence.PersistenceEntityManager;
+import it.at7.gemini.exceptions.GeminiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds the logged writes into the Entity data versions every {@code gemini.dataVersion.foldIntervalSeconds}. The
+ * versions do not change, the log read by each versioned list request stays short.
+ */
+@Service
+public class DataVersionFolding implements StateListener {
+    private static final Logger logger = LoggerFactory.getLogger(DataVersionFolding.class);
+
+    private final TransactionManager transactionManager;
+    private final PersistenceEntityManager persistenceEntityManager;
+    private final long intervalSeconds;
+    private ScheduledExecutorService folder;
+
+    @Autowired
+    public DataVersionFolding(StateManager stateManager, TransactionManager transactionManager,
+                              PersistenceEntityManager persistenceEntityManager, GeminiConfigurationService configurationService) {
+        this.transactionManager = transactionManager;
+        this.persistenceEntityManager = persistenceEntityManager;
+        this.intervalSeconds = configurationService.getDataVersionFoldIntervalSeconds();
+        stateManager.register(this);
+    }
+
+    @Override
+    public void onChange(State previous, State actual, Optional<Transaction> transaction) throws GeminiException {
+        if (actual == State.INITIALIZED && intervalSeconds > 0) {
+            folder = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "gemini-data-version-folding");
+                thread.setDaemon(true);
+                return thread;
+            });
+            folder.scheduleWithFixedDelay(this::fold, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (folder != null) {
+            folder.shutdownNow();
+        }
+    }
+
+    public int fold() {
+        try {
+            int folded = transactionManager.executeInSingleTrasaction(transaction -> {
+                return persistenceEntityManager.foldDataVersions(transaction);
+            });
+            logger.debug("Folded {} logged writes into the data versions", folded);
+            return folded;
+        } catch (GeminiException | RuntimeException e) {
+            logger.error("Unable to fold the data versions", e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.schema.Entity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Result cache of the list requests, for the Entities listed in {@code gemini.api.listCache.entities}.
+ * <p>
+ * Pages are keyed by the normalized {@link FilterContext} and tagged with the data version (see
+ * {@link EntityManager#getDataVersion}) of the Entity and of the referenced ones, read before the query in the same
+ * transaction: any committed change makes them stale. The version is maintained by the database, a hit does not scan
+ * the data. Each Entity keeps at most {@code gemini.api.listCache.maxEntries} pages (least recently used are evicted),
+ * pages bigger than {@code gemini.api.listCache.maxRecords} are not cached and
+ * {@code gemini.api.listCache.ttl} milliseconds bound the life of a page.
+ */
+@Service
+public class EntityListCache {
+    private final Set<String> cachedEntities;
+    private final int maxEntries;
+    private final int maxRecords;
+    private final long ttlMillis;
+
+    private final Map<String, Map<String, CachedPage>> pagesByEntity = new ConcurrentHashMap<>();
+
+    @Autowired
+    public EntityListCache(GeminiConfigurationService configurationService) {
+        this.cachedEntities = configurationService.getApiListCacheEntities().stream()
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet());
+        this.maxEntries = configurationService.getApiListCacheMaxEntries();
+        this.maxRecords = configurationService.getApiListCacheMaxRecords();
+        this.ttlMillis = configurationService.getApiListCacheTtl();
+    }
+
+    public boolean isCached(Entity entity) {
+        return cachedEntities.contains(entity.getName().toUpperCase());
+    }
+
+    /**
+     * Get the cached page or load (and cache) it. The loader is always used for the Entities without cache and for the
+     * filters that cannot be cached (persistence queries).
+     */
+    public EntityRecordsPage getOrLoad(Entity entity, FilterContext filterContext, String dataVersion, Loader loader) throws GeminiException {
+        String key = cacheKey(filterContext);
+        if (!isCached(entity) || key == null) {
+            return loader.load();
+        }
+        Map<String, CachedPage> pages = pagesByEntity.computeIfAbsent(entity.getName().toUpperCase(), k -> newLruMap());
+        long now = System.currentTimeMillis();
+        CachedPage cached;
+        synchronized (pages) {
+            cached = pages.get(key);
+        }
+        if (cached != null && cached.version.equals(dataVersion) && now - cached.created < ttlMillis) {
+            return cached.page.copy();
+        }
+        EntityRecordsPage page = loader.load();
+        if (page.getRecords().size() <= maxRecords) {
+            // EntityRecords are mutable: the cache keeps its own copies and every hit gets new ones
+            // the version was read before the query: a change committed in the meantime makes the page stale
+            synchronized (pages) {
+                pages.put(key, new CachedPage(dataVersion, now, page.copy()));
+            }
+        }
+        return page;
+    }
+
+    private Map<String, CachedPage> newLruMap() {
+        return new LinkedHashMap<String, CachedPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    static String cacheKey(FilterContext filterContext) {
+        if (filterContext.getFilterType() == FilterContext.FilterType.PERSISTENCE) {
+            return null;
+        }
+        String search = filterContext.getSearchString() == null ? "" : filterContext.getSearchString().trim();
+        String orderBy = filterContext.getOrderBy() == null ? "" : Arrays.stream(filterContext.getOrderBy())
+                .map(o -> o.trim().toLowerCase())
+                .collect(Collectors.joining(","));
+        return String.join("|", search, orderBy, String.valueOf(filterContext.getLimit()),
+                String.valueOf(filterContext.getStart()), String.valueOf(filterContext.isWithTotal()));
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        EntityRecordsPage load() throws GeminiException;
+    }
+
+    private static class CachedPage {
+        final String version;
+        final long created;
+        final EntityRecordsPage page;
+
+        CachedPage(String version, long created, EntityRecordsPage page) {
+            this.version = version;
+            this.created = created;
+            this.page = page;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import it.at7.gemini.schema.EntityField;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 public interface EntityManager {
 
@@ -18,6 +19,11 @@ public interface EntityManager {
      */
     Collection<Entity> getAllEntities();
 
+    /**
+     * Register a listener notified of the records changes, once they are committed
+     */
+    void registerChangeListener(EntityRecordChangeListener listener);
+
     /**
      * @return the transaction manager (useful to implement default interface methods)
      */
@@ -548,6 +554,28 @@ public interface EntityManager {
 
     EntityRecord get(Entity e, UUID uuid) throws GeminiException;
 
+    EntityRecord get(Entity e, UUID uuid, Transaction transaction) throws GeminiException;
+
+    /**
+     * Get all the records of the entity with the provided UUIDs, using a single query.
+     *
+     * @return one element for each requested UUID, in the same order (empty if not found)
+     */
+    default List<Optional<EntityRecord>> getRecordsByUUIDs(Entity entity, Collection<UUID> uuids) throws GeminiException {
+        return getTransactionManager().executeInSingleTrasaction(transaction -> {
+            return getRecordsByUUIDs(entity, uuids, transaction);
+        });
+    }
+
+    List<Optional<EntityRecord>> getRecordsByUUIDs(Entity entity, Collection<UUID> uuids, Transaction transaction) throws GeminiException;
+
+    /**
+     * Get all the records of the entity with the provided logical keys
+     *
+     * @return one element for each requested logical key, in the same order (empty if not found)
+     */
+    List<Optional<EntityRecord>> getRecordsByLogicalKeys(Entity entity, Collection<? extends Collection<? extends FieldValue>> logicalKeys, Transaction transaction) throws GeminiException;
+
     default List<EntityRecord> getRecordsMatching(Entity entity, DynamicRecord searchRecord) throws GeminiException {
         assert searchRecord != null;
         return getRecordsMatching(entity, searchRecord.getFieldValues());
@@ -597,4 +625,58 @@ public interface EntityManager {
 
     long countRecordsMatching(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException;
 
+    /**
+     * Run the read in a new read only transaction. With {@code gemini.coalesce.reads} an identical read in flight (same
+     * key) is joined before the transaction is opened: the waiting callers share its result and hold no connection
+     *
+     * @param key  identifies identical reads, null if the read cannot be coalesced
+     * @param copy copies the shared result for each caller
+     */
+    <T> T coalescedRead(@Nullable Object key, TransactionCallback<T> read, UnaryOperator<T> copy) throws GeminiException;
+
+    /**
+     * @return the version of the stored data of the Entities, read from the versions maintained by the database in the
+     * snapshot of the transaction
+     */
+    String getDataVersion(Collection<Entity> entities, Transaction transaction) throws GeminiException;
+
+    default AggregationResult aggregate(Entity entity, Aggregation aggregation, EntityOperationContext entityOperationContext) throws GeminiException {
+        return getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            return aggregate(entity, aggregation, entityOperationContext, transaction);
+        });
+    }
+
+    /**
+     * Compute the aggregates of the records matching the filter of the {@link Aggregation}, one row for each group
+     */
+    AggregationResult aggregate(Entity entity, Aggregation aggregation, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException;
+
+    default QueryPlan explain(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext) throws GeminiException {
+        return getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            return explain(entity, filterContext, entityOperationContext, transaction);
+        });
+    }
+
+    /**
+     * Execute the list query of the filter and return its SQL, parameters and plan. Caches are bypassed
+     */
+    QueryPlan explain(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException;
+
+    /**
+     * Get a page of the records matching the filter and the total number of matching records
+     */
+    EntityRecordsPage getRecordsPage(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException;
+
+    default EntityRecordChanges getChangesSince(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext) throws GeminiException {
+        return getTransactionManager().executeInSingleTrasaction(transaction -> {
+            return getChangesSince(entity, filterContext, entityOperationContext, transaction);
+        });
+    }
+
+    /**
+     * Get the records changed (inserted, updated or deleted) after the {@link FilterContext#getChangedSince()} token.
+     * The filter limit is the page size, the search string applies only to inserted/updated records.
+     */
+    EntityRecordChanges getChangesSince(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException;
+
 }
@@ -13,6 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
 
 import static it.at7.gemini.conf.State.PROVIDED_CLASSPATH_RECORDS_HANDLED;
 
@@ -27,6 +29,8 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
     private StateManager stateManager;
     private GeminiConfigurationService configurationService;
     private EventManager eventManager;
+    private final List<EntityRecordChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final ReadCoalescer readCoalescer;
 
     @Autowired
     public EntityManagerImpl(SchemaManager schemaManager, TransactionManager transactionManager, PersistenceEntityManager persistenceEntityManager, StateManager stateManager, GeminiConfigurationService configurationService, EventManager eventManager) {
@@ -36,6 +40,13 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
         this.stateManager = stateManager;
         this.configurationService = configurationService;
         this.eventManager = eventManager;
+        this.readCoalescer = new ReadCoalescer(configurationService.isCoalesceReads(), configurationService.getCoalesceReadWindow());
+        this.changeListeners.add(readCoalescer);
+    }
+
+    @Override
+    public void registerChangeListener(EntityRecordChangeListener listener) {
+        changeListeners.add(listener);
     }
 
     @Override
@@ -204,6 +215,7 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
         eventManager.beforeDeleteRecord(persistedRecord, entityOperationContext, transaction);
         handleDeleteResolution(persistedRecord, transaction); // TODO ? use entityOperationContext ??
         persistenceEntityManager.deleteEntityRecordByID(persistedRecord, transaction);
+        notifyChangeAfterCommit(EntityRecordChangeListener.ChangeType.DELETE, persistedRecord, transaction);
         return persistedRecord;
     }
 
@@ -222,6 +234,18 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
         });
     }
 
+    @Override
+    public List<Optional<EntityRecord>> getRecordsByUUIDs(Entity entity, Collection<UUID> uuids, Transaction transaction) throws GeminiException {
+        checkEnabledState();
+        return persistenceEntityManager.getEntityRecordsByUUIDs(entity, uuids, transaction);
+    }
+
+    @Override
+    public List<Optional<EntityRecord>> getRecordsByLogicalKeys(Entity entity, Collection<? extends Collection<? extends FieldValue>> logicalKeys, Transaction transaction) throws GeminiException {
+        checkEnabledState();
+        return persistenceEntityManager.getEntityRecordsByLogicalKeys(entity, logicalKeys, transaction);
+    }
+
     @Override
     public List<EntityRecord> getRecordsMatching(Entity entity, Set<FieldValue> filterFielValueType) throws GeminiException {
         return transactionManager.executeInSingleTrasaction(transaction -> {
@@ -248,11 +272,45 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
         return persistenceEntityManager.getEntityRecordsMatching(entity, filterContext, transaction);
     }
 
+    @Override
+    public EntityRecordsPage getRecordsPage(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
+        return persistenceEntityManager.getEntityRecordsPage(entity, filterContext, transaction);
+    }
+
     @Override
     public long countRecordsMatching(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
         return persistenceEntityManager.countEntityRecordsMatching(entity, filterContext, entityOperationContext, transaction);
     }
 
+    @Override
+    public String getDataVersion(Collection<Entity> entities, Transaction transaction) throws GeminiException {
+        return persistenceEntityManager.getEntitiesDataVersion(entities, transaction);
+    }
+
+    @Override
+    public AggregationResult aggregate(Entity entity, Aggregation aggregation, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
+        return persistenceEntityManager.aggregateEntityRecords(entity, aggregation, transaction);
+    }
+
+    @Override
+    public QueryPlan explain(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
+        return persistenceEntityManager.explainEntityRecordsMatching(entity, filterContext, transaction);
+    }
+
+    @Override
+    public <T> T coalescedRead(@Nullable Object key, TransactionCallback<T> read, UnaryOperator<T> copy) throws GeminiException {
+        String requiredPosition = ReadConsistency.getRequiredPosition();
+        // a read that must see a commit position shares only with the reads requiring the same one
+        Object readKey = key == null || requiredPosition == null ? key : Arrays.asList(key, requiredPosition);
+        return readCoalescer.read(readKey, () -> transactionManager.executeInSingleReadOnlyTrasaction(read), copy);
+    }
+
+    @Override
+    public EntityRecordChanges getChangesSince(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
+        checkEnabledState();
+        return persistenceEntityManager.getEntityRecordChanges(entity, filterContext, transaction);
+    }
+
     @Override
     public EntityRecord getOneRecordEntity(Entity entity, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
         notAllowedyOnNOTSingleRecordEntity(entity);
@@ -272,6 +330,7 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
         this.eventManager.beforeInsertFields(record, entityOperationContext, transaction);
         EntityRecord newEntityRecord = persistenceEntityManager.createNewEntityRecord(record, transaction);
         this.eventManager.onInsertedRecord(newEntityRecord, entityOperationContext, transaction);
+        notifyChangeAfterCommit(EntityRecordChangeListener.ChangeType.INSERT, newEntityRecord, transaction);
         return newEntityRecord;
     }
 
@@ -281,12 +340,25 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
         eventManager.onUpdateFields(record, persistedRecord, entityOperationContext, transaction);
         if (record.someRealUpdatedNeeded(persistedRecord)) {
             // if (someRealUpdatedNeeded(record, persistedRecord)) {
+            EntityRecord previousRecord = changeListeners.isEmpty() ? null : persistedRecord.copy();
             persistedRecord.update(record);
-            return persistenceEntityManager.updateEntityRecordByID(persistedRecord, transaction);
+            EntityRecord updatedRecord = persistenceEntityManager.updateEntityRecordByID(persistedRecord, transaction);
+            notifyChangeAfterCommit(EntityRecordChangeListener.ChangeType.UPDATE, previousRecord, updatedRecord, transaction);
+            return updatedRecord;
         }
         return persistedRecord;
     }
 
+    private void notifyChangeAfterCommit(EntityRecordChangeListener.ChangeType changeType, EntityRecord record, Transaction transaction) {
+        notifyChangeAfterCommit(changeType, null, record, transaction);
+    }
+
+    private void notifyChangeAfterCommit(EntityRecordChangeListener.ChangeType changeType, @Nullable EntityRecord previous, EntityRecord record, Transaction transaction) {
+        if (!changeListeners.isEmpty()) {
+            transaction.afterCommit(() -> changeListeners.forEach(l -> l.onCommittedChange(changeType, previous, record)));
+        }
+    }
+
 
     /* TODO on dynamic schema
     private boolean checkFieldisNew(EntityField fieldFromRecord) {
@@ -329,7 +401,8 @@ public class EntityManagerImpl implements EntityManager, EntityManagerInit {
     }
 
 
-    private EntityRecord get(Entity entity, UUID uuid, Transaction transaction) throws GeminiException {
+    @Override
+    public EntityRecord get(Entity entity, UUID uuid, Transaction transaction) throws GeminiException {
         checkEnabledState();
         Optional<EntityRecord> uuidPersisted = persistenceEntityManager.getEntityRecordByUUID(entity, uuid, transaction);
         if (uuidPersisted.isPresent()) {
@@ -170,6 +170,31 @@ public class EntityRecord implements RecordBase {
         }
     }
 
+    /**
+     * @return a copy of the record: values are copied, embedded records and collections included, so changes of the
+     * copy never affect the original record
+     */
+    public EntityRecord copy() {
+        EntityRecord ret = new EntityRecord(entity);
+        store.forEach((k, v) -> ret.store.put(k, copyValue(v)));
+        ret.fields.addAll(fields);
+        ret.uuid = uuid;
+        return ret;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof EntityRecord) {
+            return ((EntityRecord) value).copy();
+        }
+        if (value instanceof List) {
+            return new ArrayList<>((List<?>) value);
+        }
+        if (value instanceof Set) {
+            return new HashSet<>((Set<?>) value);
+        }
+        return value;
+    }
+
     @Nullable
     public Object getID() {
         return get(getEntity().getIdEntityField());
@@ -0,0 +1,26 @@
+package it.at7.gemini.core;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Listener of every Entity Record inserted, updated or deleted by the {@link EntityManager}. It is notified only after
+ * the owning transaction is committed. Register it with {@link EntityManager#registerChangeListener}.
+ */
+public interface EntityRecordChangeListener {
+
+    void onCommittedChange(ChangeType changeType, EntityRecord record);
+
+    /**
+     * Same as {@link #onCommittedChange(ChangeType, EntityRecord)} with the state of the record before an update (null
+     * for inserts and deletes), for listeners that match the changes against a filter
+     */
+    default void onCommittedChange(ChangeType changeType, @Nullable EntityRecord previous, EntityRecord record) {
+        onCommittedChange(changeType, record);
+    }
+
+    enum ChangeType {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+}
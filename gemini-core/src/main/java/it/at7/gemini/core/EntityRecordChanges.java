@@ -0,0 +1,81 @@
+package it.at7.gemini.core;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A page of changes (inserted/updated and deleted records) of an entity, ordered by the id of the writing transaction
+ * and their change marker. Clients apply the changes in order and use {@link #getNextToken()} as the starting point of
+ * the next request.
+ */
+public class EntityRecordChanges {
+    private final List<Change> changes;
+    private final String nextToken;
+    private final boolean hasMore;
+
+    public EntityRecordChanges(List<Change> changes, String nextToken, boolean hasMore) {
+        this.changes = changes;
+        this.nextToken = nextToken;
+        this.hasMore = hasMore;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public static class Change {
+        private final long tx;
+        private final long marker;
+        private final EntityRecord record;
+        private final UUID deletedUUID;
+
+        private Change(long tx, long marker, EntityRecord record, UUID deletedUUID) {
+            this.tx = tx;
+            this.marker = marker;
+            this.record = record;
+            this.deletedUUID = deletedUUID;
+        }
+
+        /**
+         * @return id of the transaction that wrote the change
+         */
+        public long getTx() {
+            return tx;
+        }
+
+        public long getMarker() {
+            return marker;
+        }
+
+        public boolean isDeleted() {
+            return record == null;
+        }
+
+        /**
+         * @return the actual record or null for deleted records
+         */
+        public EntityRecord getRecord() {
+            return record;
+        }
+
+        public UUID getUUID() {
+            return record == null ? deletedUUID : record.getUUID();
+        }
+
+        public static Change upsert(long tx, long marker, EntityRecord record) {
+            return new Change(tx, marker, record, null);
+        }
+
+        public static Change delete(long tx, long marker, UUID uuid) {
+            return new Change(tx, marker, null, uuid);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package it.at7.gemini.core;
+
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.*;
+import it.at7.gemini.exceptions.EntityFieldException;
+import it.at7.gemini.exceptions.EntityFieldNotFoundException;
+import it.at7.gemini.exceptions.EntityMetaFieldNotFoundException;
+import it.at7.gemini.exceptions.EntityRecordException;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.GeminiRuntimeException;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.EntityField;
+import it.at7.gemini.schema.FieldType;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static cz.jirutka.rsql.parser.ast.RSQLOperators.*;
+
+/**
+ * In memory counterpart of the persistence RSQL filter. The filter is parsed and its fields resolved once, the
+ * resulting predicate is then evaluated against Entity Records without querying the storage.
+ */
+public class EntityRecordMatcher implements RSQLVisitor<Predicate<EntityRecord>, Entity> {
+    public static final ComparisonOperator LIKE_OPERATOR = new ComparisonOperator("=like=", false);
+    public static final ComparisonOperator ILIKE_OPERATOR = new ComparisonOperator("=ilike=", false);
+    public static final ComparisonOperator EMPTY_OPERATOR = new ComparisonOperator("=empty=", false);
+    public static final ComparisonOperator CONTAINS_OPERATOR = new ComparisonOperator("=contains=", true);
+    public static final ComparisonOperator OVERLAPS_OPERATOR = new ComparisonOperator("=overlaps=", true);
+    public static final ComparisonOperator CONTAINED_BY_OPERATOR = new ComparisonOperator("=containedby=", true);
+
+    private static final Set<FieldType> COMPARABLE_TYPES = EnumSet.of(FieldType.TEXT, FieldType.LONG, FieldType.BOOL,
+            FieldType.DOUBLE, FieldType.NUMBER, FieldType.DATE, FieldType.DATETIME, FieldType.TIME);
+
+    private static final String PATH_SEPARATOR = ".";
+
+    private static final EntityRecordMatcher INSTANCE = new EntityRecordMatcher();
+
+    private final Set<ComparisonOperator> operators;
+
+    private EntityRecordMatcher() {
+        operators = RSQLOperators.defaultOperators();
+        operators.add(LIKE_OPERATOR);
+        operators.add(ILIKE_OPERATOR);
+        operators.add(EMPTY_OPERATOR);
+        operators.add(CONTAINS_OPERATOR);
+        operators.add(OVERLAPS_OPERATOR);
+        operators.add(CONTAINED_BY_OPERATOR);
+    }
+
+    /**
+     * Compile the RSQL search string for the target Entity. An empty search string matches all the records.
+     *
+     * @throws GeminiRuntimeException if the filter uses unknown fields or unsupported field types
+     */
+    public static Predicate<EntityRecord> compile(Entity entity, String searchString) {
+        if (searchString == null || searchString.isEmpty()) {
+            return r -> true;
+        }
+        Node rootNode = new RSQLParser(INSTANCE.operators).parse(searchString);
+        return rootNode.accept(INSTANCE, entity);
+    }
+
+    @Override
+    public Predicate<EntityRecord> visit(AndNode node, Entity entity) {
+        return node.getChildren().stream()
+                .map(c -> c.accept(this, entity))
+                .reduce(Predicate::and)
+                .orElse(r -> true);
+    }
+
+    @Override
+    public Predicate<EntityRecord> visit(OrNode node, Entity entity) {
+        return node.getChildren().stream()
+                .map(c -> c.accept(this, entity))
+                .reduce(Predicate::or)
+                .orElse(r -> false);
+    }
+
+    @Override
+    public Predicate<EntityRecord> visit(ComparisonNode node, Entity entity) {
+        if (node.getSelector().contains(PATH_SEPARATOR)) {
+            return pathPredicate(node, entity);
+        }
+        EntityField field = resolveEntityField(entity, node.getSelector());
+        ComparisonOperator operator = node.getOperator();
+        List<String> arguments = node.getArguments();
+        if (operator.equals(EMPTY_OPERATOR)) {
+            boolean empty = Boolean.parseBoolean(arguments.get(0));
+            return r -> isEmpty(r.get(field)) == empty;
+        }
+        if (field.getType().equals(FieldType.ENTITY_REF)) {
+            return entityRefPredicate(field, operator, arguments);
+        }
+        if (field.getType().equals(FieldType.TEXT_ARRAY) || field.getType().equals(FieldType.ENTITY_REF_ARRAY)) {
+            return arrayPredicate(field, operator, arguments);
+        }
+        if (!COMPARABLE_TYPES.contains(field.getType())) {
+            throw new GeminiRuntimeException(String.format("Filter Not Implemented for type %s", field.getType()));
+        }
+        if (operator.equals(LIKE_OPERATOR) || operator.equals(ILIKE_OPERATOR)) {
+            Pattern pattern = likeToPattern(arguments.get(0), operator.equals(ILIKE_OPERATOR));
+            return r -> {
+                Object value = r.get(field);
+                return value != null && pattern.matcher(String.valueOf(value)).matches();
+            };
+        }
+        List<Object> values = arguments.stream()
+                .map(a -> FieldConverters.getConvertedFieldValue(field, a))
+                .collect(Collectors.toList());
+        Object value = values.get(0);
+        if (operator.equals(EQUAL)) {
+            return r -> compare(r.get(field), value) == 0;
+        }
+        if (operator.equals(NOT_EQUAL)) {
+            return r -> compare(r.get(field), value) != 0;
+        }
+        if (operator.equals(GREATER_THAN)) {
+            return r -> r.get(field) != null && compare(r.get(field), value) > 0;
+        }
+        if (operator.equals(GREATER_THAN_OR_EQUAL)) {
+            return r -> r.get(field) != null && compare(r.get(field), value) >= 0;
+        }
+        if (operator.equals(LESS_THAN)) {
+            return r -> r.get(field) != null && compare(r.get(field), value) < 0;
+        }
+        if (operator.equals(LESS_THAN_OR_EQUAL)) {
+            return r -> r.get(field) != null && compare(r.get(field), value) <= 0;
+        }
+        if (operator.equals(IN)) {
+            return r -> values.stream().anyMatch(v -> compare(r.get(field), v) == 0);
+        }
+        if (operator.equals(NOT_IN)) {
+            return r -> values.stream().noneMatch(v -> compare(r.get(field), v) == 0);
+        }
+        throw new GeminiRuntimeException(String.format("Filter operator %s not implemented", operator));
+    }
+
+    /**
+     * Dotted reference paths (for example {@code domain1.code}): the comparison applies to the referenced record, loaded
+     * when the reference only has its logical key. A missing reference is compared as a record without values, like the
+     * left joins of the persistence filter.
+     */
+    private Predicate<EntityRecord> pathPredicate(ComparisonNode node, Entity entity) {
+        String[] elements = node.getSelector().split("\\.");
+        List<EntityField> references = new ArrayList<>();
+        Entity current = entity;
+        for (int i = 0; i < elements.length - 1; i++) {
+            EntityField field = resolveEntityField(current, elements[i]);
+            if (field.getType() != FieldType.ENTITY_REF && field.getType() != FieldType.ENTITY_EMBEDED) {
+                throw new GeminiRuntimeException(String.format("Invalid path %s - %s is not a reference of %s", node.getSelector(), elements[i], current.getName()));
+            }
+            references.add(field);
+            current = field.getEntityRef();
+        }
+        Entity target = current;
+        ComparisonNode targetNode = new ComparisonNode(node.getOperator(), elements[elements.length - 1], node.getArguments());
+        Predicate<EntityRecord> targetPredicate = targetNode.accept(this, target);
+        return r -> {
+            EntityRecord referenced = r;
+            for (EntityField reference : references) {
+                referenced = referenced == null ? null : referencedRecord(referenced, reference);
+            }
+            return targetPredicate.test(referenced == null ? new EntityRecord(target) : referenced);
+        };
+    }
+
+    private static EntityRecord referencedRecord(EntityRecord record, EntityField field) {
+        Object value = record.get(field);
+        if (value instanceof EntityRecord) {
+            return (EntityRecord) value;
+        }
+        if (!(value instanceof EntityReferenceRecord)) {
+            return null;
+        }
+        EntityReferenceRecord referenceRecord = (EntityReferenceRecord) value;
+        if (referenceRecord.hasFullEntityRecord()) {
+            return referenceRecord.getFullEntityRecord();
+        }
+        if (!referenceRecord.hasLogicalKey()) {
+            return null;
+        }
+        try {
+            return Services.getEntityManager().get(field.getEntityRef(), referenceRecord.getLogicalKeyRecord().getFieldValues());
+        } catch (GeminiException e) {
+            if (e.is(EntityRecordException.Code.LK_NOTFOUND)) {
+                return null;
+            }
+            throw new GeminiRuntimeException("Unable to resolve the reference path", e);
+        }
+    }
+
+    private Predicate<EntityRecord> entityRefPredicate(EntityField field, ComparisonOperator operator, List<String> arguments) {
+        // references are matched by their logical key, the same representation used by the API
+        String fieldName = RecordConverters.toFieldName(field);
+        if (operator.equals(EQUAL) || operator.equals(IN)) {
+            return r -> arguments.contains(logicalKeyString(r, field, fieldName));
+        }
+        if (operator.equals(NOT_EQUAL) || operator.equals(NOT_IN)) {
+            return r -> !arguments.contains(logicalKeyString(r, field, fieldName));
+        }
+        if (operator.equals(LIKE_OPERATOR) || operator.equals(ILIKE_OPERATOR)) {
+            Pattern pattern = likeToPattern(arguments.get(0), operator.equals(ILIKE_OPERATOR));
+            return r -> {
+                String logicalKey = logicalKeyString(r, field, fieldName);
+                return logicalKey != null && pattern.matcher(logicalKey).matches();
+            };
+        }
+        throw new GeminiRuntimeException(String.format("Filter operator %s not implemented for type %s", operator, field.getType()));
+    }
+
+    /**
+     * Containment operators of the array fields. References are matched by logical key, or by UUID when the referenced
+     * record is loaded.
+     */
+    private Predicate<EntityRecord> arrayPredicate(EntityField field, ComparisonOperator operator, List<String> arguments) {
+        String fieldName = RecordConverters.toFieldName(field);
+        if (operator.equals(CONTAINS_OPERATOR)) {
+            return r -> arrayElements(r, field, fieldName).containsAll(arguments);
+        }
+        if (operator.equals(OVERLAPS_OPERATOR)) {
+            return r -> {
+                Set<String> elements = arrayElements(r, field, fieldName);
+                return arguments.stream().anyMatch(elements::contains);
+            };
+        }
+        if (operator.equals(CONTAINED_BY_OPERATOR)) {
+            // an element matches when it is one of the arguments, through any of its keys
+            return r -> {
+                Object value = r.get(field);
+                if (isEmpty(value)) {
+                    return true;
+                }
+                if (field.getType().equals(FieldType.TEXT_ARRAY)) {
+                    return arguments.containsAll(arrayElements(r, field, fieldName));
+                }
+                return ((Collection<?>) value).stream()
+                        .allMatch(e -> referenceKeys(e).stream().anyMatch(arguments::contains));
+            };
+        }
+        throw new GeminiRuntimeException(String.format("Filter operator %s not implemented for type %s", operator, field.getType()));
+    }
+
+    private static Set<String> arrayElements(EntityRecord record, EntityField field, String fieldName) {
+        Object value = record.get(field);
+        Set<String> elements = new HashSet<>();
+        if (value == null) {
+            return elements;
+        }
+        if (field.getType().equals(FieldType.TEXT_ARRAY)) {
+            Collection<?> values = value instanceof Object[] ? Arrays.asList((Object[]) value) : (Collection<?>) value;
+            values.forEach(v -> elements.add(String.valueOf(v)));
+            return elements;
+        }
+        ((Collection<?>) value).forEach(e -> elements.addAll(referenceKeys(e)));
+        return elements;
+    }
+
+    /**
+     * @return the logical key (as in the API) and the UUID (if known) of a referenced record
+     */
+    private static Set<String> referenceKeys(Object reference) {
+        Set<String> keys = new HashSet<>();
+        if (reference instanceof String) {
+            keys.add((String) reference);
+            return keys;
+        }
+        EntityReferenceRecord referenceRecord;
+        EntityRecord fullRecord;
+        if (reference instanceof EntityRecord) {
+            fullRecord = (EntityRecord) reference;
+            referenceRecord = EntityReferenceRecord.fromEntityRecord(fullRecord);
+        } else {
+            referenceRecord = (EntityReferenceRecord) reference;
+            fullRecord = referenceRecord.hasFullEntityRecord() ? referenceRecord.getFullEntityRecord() : null;
+        }
+        if (referenceRecord.hasLogicalKey()) {
+            keys.add(String.valueOf(RecordConverters.toLogicalKey(referenceRecord)));
+        }
+        if (fullRecord != null && fullRecord.getUUID() != null) {
+            keys.add(fullRecord.getUUID().toString());
+        }
+        return keys;
+    }
+
+    private static String logicalKeyString(EntityRecord record, EntityField field, String fieldName) {
+        Object value = record.get(field);
+        if (value == null) {
+            return null;
+        }
+        Object lk = RecordConverters.dataToMap(List.of(record.getEntityFieldValue(field))).get(fieldName);
+        return lk == null ? null : String.valueOf(lk);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object recordValue, Object filterValue) {
+        if (recordValue == null || filterValue == null) {
+            return recordValue == filterValue ? 0 : -1;
+        }
+        if (recordValue instanceof Number && filterValue instanceof Number) {
+            return Double.compare(((Number) recordValue).doubleValue(), ((Number) filterValue).doubleValue());
+        }
+        if (recordValue instanceof Comparable && recordValue.getClass().isAssignableFrom(filterValue.getClass())) {
+            return ((Comparable<Object>) recordValue).compareTo(filterValue);
+        }
+        return String.valueOf(recordValue).compareTo(String.valueOf(filterValue));
+    }
+
+    private static boolean isEmpty(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof String) {
+            return ((String) value).isEmpty();
+        }
+        if (value instanceof Collection) {
+            return ((Collection) value).isEmpty();
+        }
+        return value instanceof Object[] && ((Object[]) value).length == 0;
+    }
+
+    private static Pattern likeToPattern(String like, boolean caseInsensitive) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        int flags = caseInsensitive ? Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : Pattern.DOTALL;
+        return Pattern.compile(regex.toString(), flags);
+    }
+
+    private static EntityField resolveEntityField(Entity entity, String selector) {
+        try {
+            return entity.getField(selector);
+        } catch (EntityFieldNotFoundException e) {
+            try {
+                return entity.getMetaField(selector);
+            } catch (EntityMetaFieldNotFoundException ex) {
+                throw new GeminiRuntimeException("Filter Not Supported", EntityFieldException.ENTITYFIELD_NOT_FOUND(entity, selector));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package it.at7.gemini.core;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A page of the records matching a filter, together with the total number of matching records
+ */
+public class EntityRecordsPage {
+    private final List<EntityRecord> records;
+    private final long total;
+
+    public EntityRecordsPage(List<EntityRecord> records, long total) {
+        this.records = records;
+        this.total = total;
+    }
+
+    public List<EntityRecord> getRecords() {
+        return records;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return a page with copies of the records (see {@link EntityRecord#copy()})
+     */
+    public EntityRecordsPage copy() {
+        return new EntityRecordsPage(records.stream().map(EntityRecord::copy).collect(Collectors.toList()), total);
+    }
+}
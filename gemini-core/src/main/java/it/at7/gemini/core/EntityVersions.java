@@ -0,0 +1,111 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.EntityField;
+import it.at7.gemini.schema.FieldType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory version of the Entities data, incremented after every committed change. Records expose the logical key
+ * of their references, so a change also increments the version of the Entities referencing (directly or through other
+ * references) the changed one.
+ * <p>
+ * Versions are local to the running instance and only track the changes done through the {@link EntityManager}. The
+ * {@link #getInstanceTag()} distinguishes them from the versions of other instances (or of a previous run).
+ */
+@Service
+public class EntityVersions implements EntityRecordChangeListener {
+    private final SchemaManager schemaManager;
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final String instanceTag = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+
+    @Autowired
+    public EntityVersions(EntityManager entityManager, SchemaManager schemaManager) {
+        this.schemaManager = schemaManager;
+        entityManager.registerChangeListener(this);
+    }
+
+    public long getVersion(Entity entity) {
+        AtomicLong version = versions.get(entity.getName().toUpperCase());
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * @return a version that changes with the Entities referenced (directly or transitively) by the target one, or 0 if
+     * it has no references
+     */
+    public long getReferencesVersion(Entity entity) {
+        long version = 0;
+        for (Entity referenced : getReferencedEntities(entity)) {
+            version += getVersion(referenced); // versions never decrease: the sum changes with any of them
+        }
+        return version;
+    }
+
+    public String getInstanceTag() {
+        return instanceTag;
+    }
+
+    @Override
+    public void onCommittedChange(ChangeType changeType, EntityRecord record) {
+        for (String entityName : withDependentEntities(record.getEntity())) {
+            versions.computeIfAbsent(entityName, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private Set<String> withDependentEntities(Entity changed) {
+        // computed on each change: the schema can change at runtime (dynamic schema)
+        Set<String> result = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(changed.getName().toUpperCase());
+        while (!toVisit.isEmpty()) {
+            String entityName = toVisit.poll();
+            if (!result.add(entityName)) {
+                continue;
+            }
+            for (Entity entity : schemaManager.getAllEntities()) {
+                if (references(entity, entityName)) {
+                    toVisit.add(entity.getName().toUpperCase());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the Entities referenced directly or transitively by the target one
+     */
+    public Set<Entity> getReferencedEntities(Entity entity) {
+        Set<Entity> result = new HashSet<>();
+        Deque<Entity> toVisit = new ArrayDeque<>(List.of(entity));
+        while (!toVisit.isEmpty()) {
+            Entity current = toVisit.poll();
+            for (Entity candidate : schemaManager.getAllEntities()) {
+                if (!result.contains(candidate) && references(current, candidate.getName())) {
+                    result.add(candidate);
+                    toVisit.add(candidate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean references(Entity entity, String entityName) {
+        for (EntityField field : entity.getAllRootEntityFields()) {
+            FieldType type = field.getType();
+            if (type == FieldType.GENERIC_ENTITY_REF) {
+                return true;
+            }
+            if ((type == FieldType.ENTITY_REF || type == FieldType.ENTITY_REF_ARRAY || type == FieldType.ENTITY_EMBEDED)
+                    && field.getEntityRef() != null && field.getEntityRef().getName().equalsIgnoreCase(entityName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -10,8 +10,19 @@ public class FilterContext {
     private final String[] orderBy;
     private final boolean count;
     private final Map<String, Object> params;
+    private final String changedSince;
+    private final CountMode countMode;
+    private final boolean withTotal;
 
     public FilterContext(FilterType filterType, String searchString, int limit, int start, String[] orderBy, boolean count, Map<String, Object> params) {
+        this(filterType, searchString, limit, start, orderBy, count, params, null);
+    }
+
+    public FilterContext(FilterType filterType, String searchString, int limit, int start, String[] orderBy, boolean count, Map<String, Object> params, String changedSince) {
+        this(filterType, searchString, limit, start, orderBy, count, params, changedSince, CountMode.EXACT, false);
+    }
+
+    public FilterContext(FilterType filterType, String searchString, int limit, int start, String[] orderBy, boolean count, Map<String, Object> params, String changedSince, CountMode countMode, boolean withTotal) {
         this.filterType = filterType;
         this.searchString = searchString;
         this.limit = limit;
@@ -19,6 +30,9 @@ public class FilterContext {
         this.orderBy = orderBy;
         this.count = count;
         this.params = params;
+        this.changedSince = changedSince;
+        this.countMode = countMode;
+        this.withTotal = withTotal;
     }
 
     public String getSearchString() {
@@ -45,10 +59,32 @@ public class FilterContext {
         return count;
     }
 
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    /**
+     * @return true if the list must also return the total number of matching records
+     */
+    public boolean isWithTotal() {
+        return withTotal;
+    }
+
     public Map<String, Object> getParams() {
         return params;
     }
 
+    /**
+     * @return the delta sync token (from a previous changes request) or null for a standard list request
+     */
+    public String getChangedSince() {
+        return changedSince;
+    }
+
+    public boolean isChangedSince() {
+        return changedSince != null;
+    }
+
 // ============ static binding to builder ===========
 
     public static FilterContext withGeminiSearchString(String searchString) {
@@ -65,4 +101,20 @@ public class FilterContext {
         GEMINI,
         PERSISTENCE
     }
+
+    public enum CountMode {
+        /**
+         * COUNT(*) of the matching records
+         */
+        EXACT,
+        /**
+         * Planner estimate (table statistics or the EXPLAIN of the filtered query). Small tables are counted exactly
+         */
+        ESTIMATED,
+        /**
+         * Per Entity counter maintained by the storage, only for unfiltered counts of the Entities that enable it.
+         * Otherwise the exact count is used
+         */
+        MAINTAINED
+    }
 }
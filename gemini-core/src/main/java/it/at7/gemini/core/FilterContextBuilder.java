@@ -1,5 +1,7 @@
 package it.at7.gemini.core;
 
+import it.at7.gemini.exceptions.InvalidRequesException;
+
 import java.util.Map;
 
 public class FilterContextBuilder {
@@ -8,6 +10,9 @@ public class FilterContextBuilder {
     public static final String START_PARAMETER = "start";
     public static final String ORDER_BY_PARAMETER = "orderBy";
     public static final String COUNT_PARAMETER = "count";
+    public static final String COUNT_MODE_PARAMETER = "countMode";
+    public static final String TOTAL_PARAMETER = "total";
+    public static final String CHANGED_SINCE_PARAMETER = "changedSince";
 
     private static final String ORDER_BY_SEPARATOR = ",";
 
@@ -19,7 +24,10 @@ public class FilterContextBuilder {
     private int start;
     private String[] orderBy;
     private boolean count = false;
+    private FilterContext.CountMode countMode = FilterContext.CountMode.EXACT;
+    private boolean withTotal = false;
     private Map<String, Object> params;
+    private String changedSince;
 
     public FilterContextBuilder() {
         this.configurationService = null;
@@ -29,12 +37,15 @@ public class FilterContextBuilder {
         this.configurationService = configurationService;
     }
 
-    public FilterContextBuilder fromParameters(Map<String, String[]> parameters) {
+    public FilterContextBuilder fromParameters(Map<String, String[]> parameters) throws InvalidRequesException {
         withGeminiSearchString(getSearchFromParameters(parameters.get(SEARCH_PARAMETER)));
         withLimit(getLimitFromParameters(parameters.get(LIMIT_PARAMETER)));
         withStart(getStartFromParameters(parameters.get(START_PARAMETER)));
         withOrderBy(getOrderByFromParameters(parameters.get(ORDER_BY_PARAMETER)));
         withCount(getCountFromParameters(parameters.get(COUNT_PARAMETER)));
+        withCountMode(getCountModeFromParameters(parameters.get(COUNT_MODE_PARAMETER)));
+        withTotal(getCountFromParameters(parameters.get(TOTAL_PARAMETER)));
+        withChangedSince(getChangedSinceFromParameters(parameters.get(CHANGED_SINCE_PARAMETER)));
         return this;
     }
 
@@ -57,12 +68,12 @@ public class FilterContextBuilder {
         return this;
     }
 
-    private FilterContextBuilder withStart(int start) {
+    public FilterContextBuilder withStart(int start) {
         this.start = start;
         return this;
     }
 
-    private FilterContextBuilder withOrderBy(String[] orderByFromParameters) {
+    public FilterContextBuilder withOrderBy(String[] orderByFromParameters) {
         this.orderBy = orderByFromParameters;
         return this;
     }
@@ -72,6 +83,21 @@ public class FilterContextBuilder {
         return this;
     }
 
+    public FilterContextBuilder withCountMode(FilterContext.CountMode countMode) {
+        this.countMode = countMode;
+        return this;
+    }
+
+    public FilterContextBuilder withTotal(boolean withTotal) {
+        this.withTotal = withTotal;
+        return this;
+    }
+
+    public FilterContextBuilder withChangedSince(String changedSince) {
+        this.changedSince = changedSince;
+        return this;
+    }
+
     public FilterContextBuilder withPersistenceTypeSearchString(String searchString) {
         this.filterType = FilterContext.FilterType.PERSISTENCE;
         this.searchString = searchString;
@@ -79,7 +105,7 @@ public class FilterContextBuilder {
     }
 
     public FilterContext build() {
-        return new FilterContext(filterType, searchString, limit, start, orderBy, count, params);
+        return new FilterContext(filterType, searchString, limit, start, orderBy, count, params, changedSince, countMode, withTotal);
     }
 
     private int getLimitFromParameters(String[] limitParams) {
@@ -118,4 +144,23 @@ public class FilterContextBuilder {
         }
         return false;
     }
+
+    private FilterContext.CountMode getCountModeFromParameters(String[] countModeParameters) throws InvalidRequesException {
+        if (countModeParameters != null && countModeParameters.length > 0) {
+            String countMode = countModeParameters[0].trim();
+            try {
+                return FilterContext.CountMode.valueOf(countMode.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw InvalidRequesException.INVALID_COUNT_MODE(countMode);
+            }
+        }
+        return FilterContext.CountMode.EXACT;
+    }
+
+    private String getChangedSinceFromParameters(String[] changedSinceParameters) {
+        if (changedSinceParameters != null && changedSinceParameters.length > 0) {
+            return changedSinceParameters[0].trim(); // only the first supporterd
+        }
+        return null;
+    }
 }
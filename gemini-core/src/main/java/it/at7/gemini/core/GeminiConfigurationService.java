@@ -5,6 +5,11 @@ import it.at7.gemini.conf.SchemaMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 public class GeminiConfigurationService {
 
@@ -22,6 +27,284 @@ public class GeminiConfigurationService {
         return apiListLimit;
     }
 
+    @Value("${gemini.api.mget.limit:1000}")
+    private int apiMultiGetLimit;
+
+    public int getApiMultiGetLimit() {
+        return apiMultiGetLimit;
+    }
+
+    @Value("${gemini.api.changes.retentionDays:30}")
+    private int apiChangesRetentionDays;
+
+    /**
+     * @return days the deletes are kept for the changedSince requests, 0 keeps them forever
+     */
+    public int getApiChangesRetentionDays() {
+        return apiChangesRetentionDays;
+    }
+
+    @Value("${gemini.api.changes.purgeIntervalMinutes:60}")
+    private long apiChangesPurgeIntervalMinutes;
+
+    public long getApiChangesPurgeIntervalMinutes() {
+        return apiChangesPurgeIntervalMinutes;
+    }
+
+    @Value("${gemini.dataVersion.foldIntervalSeconds:60}")
+    private long dataVersionFoldIntervalSeconds;
+
+    /**
+     * @return seconds between the folds of the logged writes into the data versions, 0 disables the folding
+     */
+    public long getDataVersionFoldIntervalSeconds() {
+        return dataVersionFoldIntervalSeconds;
+    }
+
+    @Value("${gemini.api.listCache.entities:}")
+    private String apiListCacheEntities;
+
+    /**
+     * @return names of the Entities whose list results are cached
+     */
+    public Set<String> getApiListCacheEntities() {
+        return Arrays.stream(apiListCacheEntities.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @Value("${gemini.api.listCache.maxEntries:100}")
+    private int apiListCacheMaxEntries;
+
+    /**
+     * @return max number of cached pages for each Entity
+     */
+    public int getApiListCacheMaxEntries() {
+        return apiListCacheMaxEntries;
+    }
+
+    @Value("${gemini.api.listCache.maxRecords:1000}")
+    private int apiListCacheMaxRecords;
+
+    /**
+     * @return max number of records of a cached page (bigger pages are not cached)
+     */
+    public int getApiListCacheMaxRecords() {
+        return apiListCacheMaxRecords;
+    }
+
+    @Value("${gemini.api.listCache.ttl:60000}")
+    private long apiListCacheTtl;
+
+    /**
+     * @return milliseconds a cached page can be used, even if the Entity is not changed
+     */
+    public long getApiListCacheTtl() {
+        return apiListCacheTtl;
+    }
+
+    @Value("${gemini.api.jsonCache.entities:}")
+    private String apiJsonCacheEntities;
+
+    /**
+     * @return names of the Entities whose records are kept serialized (JSON)
+     */
+    public Set<String> getApiJsonCacheEntities() {
+        return Arrays.stream(apiJsonCacheEntities.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @Value("${gemini.api.jsonCache.maxEntries:10000}")
+    private int apiJsonCacheMaxEntries;
+
+    /**
+     * @return max number of serialized records (the least recently used are evicted)
+     */
+    public int getApiJsonCacheMaxEntries() {
+        return apiJsonCacheMaxEntries;
+    }
+
+    @Value("${gemini.api.events.buffer:1000}")
+    private int apiEventsBuffer;
+
+    public int getApiEventsBuffer() {
+        return apiEventsBuffer;
+    }
+
+    @Value("${gemini.api.events.queue:1000}")
+    private int apiEventsQueue;
+
+    /**
+     * @return max events waiting to be sent to a connection, a slower connection gets a reset event
+     */
+    public int getApiEventsQueue() {
+        return apiEventsQueue;
+    }
+
+    @Value("${gemini.api.events.timeout:0}")
+    private long apiEventsTimeout;
+
+    /**
+     * @return SSE connection timeout in milliseconds, 0 means no timeout
+     */
+    public long getApiEventsTimeout() {
+        return apiEventsTimeout;
+    }
+
+    @Value("${gemini.coalesce.entities:}")
+    private String coalesceEntities;
+
+    /**
+     * @return names of the Entities whose concurrent inserts share a single commit
+     */
+    public Set<String> getCoalesceEntities() {
+        return Arrays.stream(coalesceEntities.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @Value("${gemini.coalesce.window:5}")
+    private long coalesceWindow;
+
+    /**
+     * @return milliseconds a coalesced insert waits for other inserts before the commit
+     */
+    public long getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    @Value("${gemini.coalesce.maxBatch:100}")
+    private int coalesceMaxBatch;
+
+    public int getCoalesceMaxBatch() {
+        return coalesceMaxBatch;
+    }
+
+    @Value("${gemini.coalesce.timeout:30000}")
+    private long coalesceTimeout;
+
+    /**
+     * @return time budget in milliseconds of a group commit, 0 means no limit
+     */
+    public long getCoalesceTimeout() {
+        return coalesceTimeout;
+    }
+
+    @Value("${gemini.coalesce.reads:false}")
+    private boolean coalesceReads;
+
+    /**
+     * @return true if identical concurrent reads share a single database execution
+     */
+    public boolean isCoalesceReads() {
+        return coalesceReads;
+    }
+
+    @Value("${gemini.coalesce.readWindow:0}")
+    private long coalesceReadWindow;
+
+    /**
+     * @return milliseconds the result of a coalesced read can still be shared after its execution
+     */
+    public long getCoalesceReadWindow() {
+        return coalesceReadWindow;
+    }
+
+    @Value("${gemini.fts.config:simple}")
+    private String ftsConfig;
+
+    /**
+     * @return PostgreSQL text search configuration of the searchable fields (changing it rebuilds the search columns)
+     */
+    public String getFtsConfig() {
+        return ftsConfig;
+    }
+
+    @Value("${gemini.count.maintained.entities:}")
+    private String countMaintainedEntities;
+
+    /**
+     * @return names of the Entities whose record count is maintained by the storage (countMode=maintained)
+     */
+    public Set<String> getCountMaintainedEntities() {
+        return Arrays.stream(countMaintainedEntities.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @Value("${gemini.query.timeout:0}")
+    private long queryTimeout;
+
+    /**
+     * @return default time budget in milliseconds of the queries of an API request, 0 means no limit
+     */
+    public long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    @Value("${gemini.query.maxRows:0}")
+    private int queryMaxRows;
+
+    /**
+     * @return default maximum number of rows of a query of an API request, 0 means no limit
+     */
+    public int getQueryMaxRows() {
+        return queryMaxRows;
+    }
+
+    @Value("${gemini.query.budgets:}")
+    private String queryBudgets;
+
+    /**
+     * @return per Entity ({@code entity:Name}) and per client ({@code client:name}) query budgets, as
+     * {@code timeout/maxRows} strings
+     */
+    public Map<String, String> getQueryBudgets() {
+        return Arrays.stream(queryBudgets.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .map(e -> e.split("=", 2))
+                .collect(Collectors.toMap(e -> e[0].trim(), e -> e.length > 1 ? e[1].trim() : ""));
+    }
+
+    @Value("${gemini.api.explain.enabled:false}")
+    private boolean apiExplainEnabled;
+
+    /**
+     * @return true if the query plan of the list requests can be inspected (EXPLAIN ANALYZE executes the query)
+     */
+    public boolean isApiExplainEnabled() {
+        return apiExplainEnabled;
+    }
+
+    @Value("${gemini.api.explain.users:Admin}")
+    private String apiExplainUsers;
+
+    /**
+     * @return names of the authenticated users allowed to inspect the query plans
+     */
+    public Set<String> getApiExplainUsers() {
+        return Arrays.stream(apiExplainUsers.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @Value("${gemini.api.explain.anonymous:false}")
+    private boolean apiExplainAnonymous;
+
+    /**
+     * @return true if the query plans can be inspected by requests without an authenticated user
+     */
+    public boolean isApiExplainAnonymous() {
+        return apiExplainAnonymous;
+    }
+
     @Value("${gemini.api.openapi.schema:false}")
     private boolean openapiSchema;
 
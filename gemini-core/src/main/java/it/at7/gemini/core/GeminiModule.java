@@ -47,6 +47,14 @@ public interface GeminiModule extends ModuleBase {
         return String.format(pattern, getName());
     }
 
+    /**
+     * Named queries of the module (YAML), next to its schema
+     */
+    default String getNamedQueriesResourceLocation() {
+        String pattern = "classpath:/schemas/%s-queries.yml";
+        return String.format(pattern, getName());
+    }
+
     default String getSchemaRecordResourceLocation() {
         String pattern = "classpath:/records/%s.atr";
         return String.format(pattern, getName());
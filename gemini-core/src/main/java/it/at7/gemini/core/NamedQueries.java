@@ -0,0 +1,205 @@
+package it.at7.gemini.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import it.at7.gemini.conf.State;
+import it.at7.gemini.core.persistence.PersistenceEntityManager;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.GeminiRuntimeException;
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.FieldType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Named queries declared by the modules in <code>schemas/&lt;MODULE&gt;-queries.yml</code>, next to the schema:
+ * <pre>
+ * queries:
+ *   - name: ordersByCustomer
+ *     entity: Order
+ *     search: customer.code==${customer};status!=CLOSED
+ *     orderBy: -date
+ *     params:
+ *       customer: TEXT
+ *   - name: customerTotals
+ *     sql: SELECT c.code, sum(o.amount) AS total FROM customer c JOIN "order" o ON o.customer = c.id
+ *          WHERE o.date >= :from GROUP BY c.code
+ *     params:
+ *       from: DATE
+ * </pre>
+ * Queries are loaded and validated when the schema storage is initialized: the Entity and the parameters must exist
+ * and the resulting SQL is prepared on the database. An invalid query stops the startup.
+ */
+@Service
+public class NamedQueries implements StateListener {
+    private static final Logger logger = LoggerFactory.getLogger(NamedQueries.class);
+
+    private final ApplicationContext context;
+    private final SchemaManager schemaManager;
+    private final EntityManager entityManager;
+    private final PersistenceEntityManager persistenceEntityManager;
+
+    private final Map<String, NamedQuery> queries = new HashMap<>();
+
+    @Autowired
+    public NamedQueries(ApplicationContext context, StateManager stateManager, SchemaManager schemaManager,
+                        EntityManager entityManager, PersistenceEntityManager persistenceEntityManager) {
+        this.context = context;
+        this.schemaManager = schemaManager;
+        this.entityManager = entityManager;
+        this.persistenceEntityManager = persistenceEntityManager;
+        stateManager.register(this);
+    }
+
+    @Override
+    public void onChange(State previous, State actual, Optional<Transaction> transaction) throws GeminiException {
+        if (actual == State.SCHEMA_STORAGE_INITIALIZED) {
+            assert transaction.isPresent();
+            loadNamedQueries(transaction.get());
+        }
+    }
+
+    public NamedQuery getQuery(String name) throws InvalidRequesException {
+        NamedQuery query = queries.get(name);
+        if (query == null) {
+            throw InvalidRequesException.NAMED_QUERY_NOT_FOUND(name);
+        }
+        return query;
+    }
+
+    public Collection<NamedQuery> getQueries() {
+        return Collections.unmodifiableCollection(queries.values());
+    }
+
+    /**
+     * Records of a query with an Entity. The limit and start of the filter context are applied to the results
+     */
+    public List<EntityRecord> getRecords(NamedQuery query, Map<String, Object> parameters, FilterContext filterContext, EntityOperationContext entityOperationContext) throws GeminiException {
+        Entity entity = query.getEntity();
+        assert entity != null;
+        if (query.isSearch()) {
+            FilterContext searchContext = new FilterContextBuilder()
+                    .withGeminiSearchString(query.searchWith(parameters))
+                    .withOrderBy(query.getOrderBy())
+                    .withLimit(filterContext.getLimit())
+                    .withStart(filterContext.getStart())
+                    .build();
+            return entityManager.getRecordsMatching(entity, searchContext, entityOperationContext);
+        }
+        return entityManager.getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            return persistenceEntityManager.getEntityRecordsByNamedQuery(query, parameters, filterContext, transaction);
+        });
+    }
+
+    /**
+     * Plain rows of a query without an Entity, column name to value
+     */
+    public List<Map<String, Object>> getRows(NamedQuery query, Map<String, Object> parameters, FilterContext filterContext) throws GeminiException {
+        assert query.getEntity() == null;
+        return entityManager.getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            return persistenceEntityManager.getRowsByNamedQuery(query, parameters, filterContext, transaction);
+        });
+    }
+
+    private void loadNamedQueries(Transaction transaction) throws GeminiException {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        for (GeminiModule module : context.getBeansOfType(GeminiModule.class).values()) {
+            String location = module.getNamedQueriesResourceLocation();
+            Resource resource = location == null ? null : context.getResource(location);
+            if (resource == null || !resource.exists()) {
+                continue;
+            }
+            logger.info("Named queries found for module {}: location {}", module.getName(), location);
+            NamedQueriesFile file;
+            try (InputStream stream = resource.getInputStream()) {
+                file = mapper.readValue(stream, NamedQueriesFile.class);
+            } catch (IOException e) {
+                throw new GeminiRuntimeException(String.format("Unable to read the named queries of module %s", module.getName()), e);
+            }
+            for (NamedQueryDefinition definition : file.queries) {
+                NamedQuery query = createNamedQuery(module, definition);
+                try {
+                    persistenceEntityManager.prepareNamedQuery(query, transaction);
+                } catch (GeminiException e) {
+                    throw new GeminiRuntimeException(String.format("Invalid named query %s of module %s: %s", query.getName(), module.getName(), e.getMessage()), e);
+                }
+                queries.put(query.getName(), query);
+            }
+        }
+        logger.info("Named queries loaded: {}", queries.keySet());
+    }
+
+    private NamedQuery createNamedQuery(GeminiModule module, NamedQueryDefinition definition) {
+        String name = definition.name;
+        if (name == null || name.trim().isEmpty()) {
+            throw invalid(module, name, "name is required");
+        }
+        if (queries.containsKey(name)) {
+            throw invalid(module, name, String.format("already declared by module %s", queries.get(name).getModule()));
+        }
+        if ((definition.sql == null) == (definition.search == null)) {
+            throw invalid(module, name, "exactly one of sql and search is required");
+        }
+        Entity entity = null;
+        if (definition.entity != null) {
+            entity = schemaManager.getEntity(definition.entity);
+            if (entity == null) {
+                throw invalid(module, name, String.format("entity %s not found", definition.entity));
+            }
+        } else if (definition.search != null) {
+            throw invalid(module, name, "search requires an entity");
+        }
+        Map<String, FieldType> parameters = new LinkedHashMap<>();
+        for (Map.Entry<String, String> param : definition.params.entrySet()) {
+            FieldType type;
+            try {
+                type = FieldType.valueOf(param.getValue().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                type = null;
+            }
+            if (type == null || !NamedQuery.PARAMETER_TYPES.contains(type)) {
+                throw invalid(module, name, String.format("unsupported type %s of parameter %s", param.getValue(), param.getKey()));
+            }
+            parameters.put(param.getKey(), type);
+        }
+        String sql = definition.sql == null ? null : definition.sql.trim().replaceAll(";+$", "");
+        String[] orderBy = definition.orderBy == null ? null : Arrays.stream(definition.orderBy.split(","))
+                .map(String::trim)
+                .toArray(String[]::new);
+        NamedQuery query = new NamedQuery(name, module.getName(), entity, sql, definition.search, orderBy, parameters);
+        Set<String> used = query.getUsedParameters();
+        if (!used.equals(parameters.keySet())) {
+            Set<String> undeclared = used.stream().filter(p -> !parameters.containsKey(p)).collect(Collectors.toSet());
+            Set<String> unused = parameters.keySet().stream().filter(p -> !used.contains(p)).collect(Collectors.toSet());
+            throw invalid(module, name, String.format("undeclared parameters %s - unused parameters %s", undeclared, unused));
+        }
+        return query;
+    }
+
+    private static GeminiRuntimeException invalid(GeminiModule module, String name, String reason) {
+        return new GeminiRuntimeException(String.format("Invalid named query %s of module %s: %s", name, module.getName(), reason));
+    }
+
+    static class NamedQueriesFile {
+        public List<NamedQueryDefinition> queries = List.of();
+    }
+
+    static class NamedQueryDefinition {
+        public String name;
+        public String entity;
+        public String sql;
+        public String search;
+        public String orderBy;
+        public Map<String, String> params = Map.of();
+    }
+}
@@ -0,0 +1,193 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.InvalidRequesException;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.FieldType;
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parameterized query declared by a module and exposed by name. It is one of:
+ * <ul>
+ * <li><b>search</b>: an RSQL filter (reference paths included) on an Entity, parameters are <code>${name}</code>
+ * placeholders of the filter arguments. Results are the Entity Records</li>
+ * <li><b>sql</b>: a native query with <code>:name</code> parameters. If an Entity is declared the query must select
+ * all its columns and results are its records, otherwise results are plain rows</li>
+ * </ul>
+ * Parameters are declared with their type (TEXT, NUMBER, LONG, DOUBLE, BOOL, DATE, TIME, DATETIME), request values are
+ * converted before the execution.
+ */
+public class NamedQuery {
+    public static final Set<FieldType> PARAMETER_TYPES = EnumSet.of(FieldType.TEXT, FieldType.NUMBER, FieldType.LONG,
+            FieldType.DOUBLE, FieldType.BOOL, FieldType.DATE, FieldType.TIME, FieldType.DATETIME);
+
+    private static final Pattern SEARCH_PARAMETER = Pattern.compile("\\$\\{(\\w+)}");
+
+    private final String name;
+    private final String module;
+    private final Entity entity;
+    private final String sql;
+    private final String search;
+    private final String[] orderBy;
+    private final Map<String, FieldType> parameters;
+
+    public NamedQuery(String name, String module, @Nullable Entity entity, @Nullable String sql, @Nullable String search,
+                      @Nullable String[] orderBy, Map<String, FieldType> parameters) {
+        this.name = name;
+        this.module = module;
+        this.entity = entity;
+        this.sql = sql;
+        this.search = search;
+        this.orderBy = orderBy;
+        this.parameters = parameters;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    /**
+     * @return the Entity of the results, null for plain rows
+     */
+    @Nullable
+    public Entity getEntity() {
+        return entity;
+    }
+
+    @Nullable
+    public String getSql() {
+        return sql;
+    }
+
+    @Nullable
+    public String getSearch() {
+        return search;
+    }
+
+    @Nullable
+    public String[] getOrderBy() {
+        return orderBy;
+    }
+
+    public Map<String, FieldType> getParameters() {
+        return parameters;
+    }
+
+    public boolean isSearch() {
+        return search != null;
+    }
+
+    /**
+     * @return names of the parameters used by the search or the sql
+     */
+    public Set<String> getUsedParameters() {
+        Set<String> used = new HashSet<>();
+        Matcher matcher = isSearch() ? SEARCH_PARAMETER.matcher(search) : Pattern.compile("(?<![:\\w]):(\\w+)").matcher(sql);
+        while (matcher.find()) {
+            used.add(matcher.group(1));
+        }
+        return used;
+    }
+
+    /**
+     * Convert the request parameters to the declared types. All the declared parameters are required
+     */
+    public Map<String, Object> convertParameters(Map<String, String[]> requestParameters) throws InvalidRequesException {
+        Map<String, Object> ret = new HashMap<>();
+        for (Map.Entry<String, FieldType> parameter : parameters.entrySet()) {
+            String[] values = requestParameters.get(parameter.getKey());
+            if (values == null || values.length == 0) {
+                throw InvalidRequesException.INVALID_QUERY_PARAMETER(name, parameter.getKey(), "required");
+            }
+            try {
+                ret.put(parameter.getKey(), convert(parameter.getValue(), values[0])); // only the first supported
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw InvalidRequesException.INVALID_QUERY_PARAMETER(name, parameter.getKey(), String.format("%s is not a %s", values[0], parameter.getValue()));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return a value for each parameter, used to prepare the query
+     */
+    public Map<String, Object> sampleParameters() {
+        Map<String, Object> ret = new HashMap<>();
+        for (Map.Entry<String, FieldType> parameter : parameters.entrySet()) {
+            ret.put(parameter.getKey(), sampleValue(parameter.getValue()));
+        }
+        return ret;
+    }
+
+    /**
+     * @return the search filter with the placeholders replaced by the quoted values
+     */
+    public String searchWith(Map<String, Object> values) {
+        assert search != null;
+        Matcher matcher = SEARCH_PARAMETER.matcher(search);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String value = String.valueOf(values.get(matcher.group(1)));
+            String quoted = "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(quoted));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static Object convert(FieldType type, String value) {
+        switch (type) {
+            case TEXT:
+                return value;
+            case NUMBER:
+            case LONG:
+                return Long.parseLong(value);
+            case DOUBLE:
+                return Double.parseDouble(value);
+            case BOOL:
+                if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+                    throw new IllegalArgumentException(value);
+                }
+                return Boolean.parseBoolean(value);
+            case DATE:
+                return LocalDate.parse(value);
+            case TIME:
+                return LocalTime.parse(value);
+            case DATETIME:
+                return LocalDateTime.parse(value);
+            default:
+                throw new IllegalArgumentException(type.name());
+        }
+    }
+
+    private static Object sampleValue(FieldType type) {
+        switch (type) {
+            case NUMBER:
+            case LONG:
+                return 0L;
+            case DOUBLE:
+                return 0.0;
+            case BOOL:
+                return false;
+            case DATE:
+                return LocalDate.now();
+            case TIME:
+                return LocalTime.MIDNIGHT;
+            case DATETIME:
+                return LocalDateTime.now();
+            default:
+                return "sample"; // empty strings are converted to null by the filters
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.QueryBudgetException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Limits of the queries run by the current thread for a request: a time budget (from the request start) and a maximum
+ * number of rows mapped by its top level query (list, page, named query). It is bound to the thread by
+ * {@link QueryBudgets#open} until closed.
+ * <p>
+ * Transactions opened inside the budget set the remaining time as their statement timeout; the running statement is
+ * also cancelled when the budget expires, so a request made of many statements cannot exceed it.
+ */
+public class QueryBudget implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(QueryBudget.class);
+    private static final ThreadLocal<QueryBudget> current = new ThreadLocal<>();
+
+    private final String name;
+    private final long timeoutMillis;
+    private final int maxRows;
+    private final long deadline;
+    private final QueryBudget previous;
+    private ScheduledFuture<?> expiration;
+    private Statement running;
+    private boolean expired;
+
+    QueryBudget(String name, long timeoutMillis, int maxRows) {
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+        this.maxRows = maxRows;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        this.previous = current.get();
+        current.set(this);
+    }
+
+    public static Optional<QueryBudget> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    /**
+     * Check the number of rows mapped by a query against the budget of the current thread (if any)
+     */
+    public static void checkRows(int rows) throws QueryBudgetException {
+        QueryBudget budget = current.get();
+        if (budget != null && budget.maxRows > 0 && rows > budget.maxRows) {
+            throw QueryBudgetException.TOO_MANY_ROWS(budget.name, budget.maxRows);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the time budget in milliseconds, 0 means no limit
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return the maximum number of rows of a query, 0 means no limit
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return milliseconds left (at least 1), 0 if there is no time limit
+     */
+    public long remainingMillis() {
+        if (timeoutMillis <= 0) {
+            return 0;
+        }
+        return Math.max(1, (deadline - System.nanoTime()) / 1_000_000);
+    }
+
+    /**
+     * Register the statement about to run, the one cancelled on expiration
+     */
+    public synchronized void started(Statement statement) throws QueryBudgetException {
+        if (expired) {
+            throw QueryBudgetException.QUERY_TIMEOUT(name, timeoutMillis);
+        }
+        running = statement;
+    }
+
+    public synchronized void finished(Statement statement) {
+        if (running == statement) {
+            running = null;
+        }
+    }
+
+    public synchronized boolean isExpired() {
+        return expired;
+    }
+
+    synchronized void expire() {
+        expired = true;
+        if (running != null) {
+            try {
+                running.cancel();
+            } catch (SQLException e) {
+                logger.warn("Unable to cancel the statement of the expired query budget {}", name, e);
+            }
+        }
+    }
+
+    void setExpiration(@Nullable ScheduledFuture<?> expiration) {
+        this.expiration = expiration;
+    }
+
+    @Override
+    public void close() {
+        if (expiration != null) {
+            expiration.cancel(false);
+        }
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.schema.Entity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query budgets of the API requests ({@code gemini.query.*}). The budget of a request is the one of its client if
+ * configured, otherwise the one of its Entity, otherwise the default.
+ */
+@Service
+public class QueryBudgets {
+    private static final String ENTITY_PREFIX = "entity:";
+    private static final String CLIENT_PREFIX = "client:";
+    private static final String LIMITS_SEPARATOR = "/";
+
+    private final Limits defaultLimits;
+    private final Map<String, Limits> entityLimits = new HashMap<>();
+    private final Map<String, Limits> clientLimits = new HashMap<>();
+    private final ScheduledExecutorService expirations;
+
+    @Autowired
+    public QueryBudgets(GeminiConfigurationService configurationService) {
+        this(configurationService.getQueryTimeout(), configurationService.getQueryMaxRows(), configurationService.getQueryBudgets());
+    }
+
+    QueryBudgets(long timeoutMillis, int maxRows, Map<String, String> budgets) {
+        this.defaultLimits = new Limits("default budget", timeoutMillis, maxRows);
+        boolean timeouts = defaultLimits.timeoutMillis > 0;
+        for (Map.Entry<String, String> budget : budgets.entrySet()) {
+            Limits limits = parseLimits(budget.getKey(), budget.getValue());
+            if (budget.getKey().startsWith(ENTITY_PREFIX)) {
+                entityLimits.put(budget.getKey().substring(ENTITY_PREFIX.length()).toUpperCase(), limits);
+            } else if (budget.getKey().startsWith(CLIENT_PREFIX)) {
+                clientLimits.put(budget.getKey().substring(CLIENT_PREFIX.length()), limits);
+            } else {
+                throw new IllegalArgumentException(String.format("Invalid query budget %s - expected entity:<Entity> or client:<name>", budget.getKey()));
+            }
+            timeouts |= limits.timeoutMillis > 0;
+        }
+        this.expirations = timeouts ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gemini-query-budget");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Bind the budget of the request to the current thread, until it is closed
+     *
+     * @param entity the target Entity of the request, null for requests not bound to an Entity
+     * @param client the authenticated client of the request, if any
+     */
+    public QueryBudget open(@Nullable Entity entity, @Nullable String client) {
+        return open(entity, client, true);
+    }
+
+    /**
+     * Same as {@link #open} for the requests that write: only the time budget applies, their rows are not limited
+     */
+    public QueryBudget openForWrite(@Nullable Entity entity, @Nullable String client) {
+        return open(entity, client, false);
+    }
+
+    private QueryBudget open(@Nullable Entity entity, @Nullable String client, boolean maxRows) {
+        Limits limits = client == null ? null : clientLimits.get(client);
+        if (limits == null) {
+            limits = entity == null ? defaultLimits : entityLimits.getOrDefault(entity.getName().toUpperCase(), defaultLimits);
+        }
+        QueryBudget budget = new QueryBudget(limits.name, limits.timeoutMillis, maxRows ? limits.maxRows : 0);
+        if (limits.timeoutMillis > 0) {
+            budget.setExpiration(expirations.schedule(budget::expire, limits.timeoutMillis, TimeUnit.MILLISECONDS));
+        }
+        return budget;
+    }
+
+    /**
+     * Bind a time budget not tied to a request, for the work done on behalf of many of them (a group commit). It
+     * replaces the budget of the current request until closed
+     */
+    public QueryBudget open(String name, long timeoutMillis) {
+        QueryBudget budget = new QueryBudget(name, timeoutMillis, 0);
+        if (timeoutMillis > 0 && expirations != null) {
+            budget.setExpiration(expirations.schedule(budget::expire, timeoutMillis, TimeUnit.MILLISECONDS));
+        }
+        return budget;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (expirations != null) {
+            expirations.shutdownNow();
+        }
+    }
+
+    private static Limits parseLimits(String key, String value) {
+        String[] limits = value.split(LIMITS_SEPARATOR);
+        try {
+            long timeoutMillis = Long.parseLong(limits[0].trim());
+            int maxRows = limits.length > 1 ? Integer.parseInt(limits[1].trim()) : 0;
+            return new Limits("budget of " + key, timeoutMillis, maxRows);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid query budget %s=%s - expected <timeout>/<maxRows>", key, value), e);
+        }
+    }
+
+    private static class Limits {
+        final String name;
+        final long timeoutMillis;
+        final int maxRows;
+
+        Limits(String name, long timeoutMillis, int maxRows) {
+            this.name = name;
+            this.timeoutMillis = timeoutMillis;
+            this.maxRows = maxRows;
+        }
+    }
+}
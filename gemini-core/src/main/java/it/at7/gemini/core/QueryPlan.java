@@ -0,0 +1,47 @@
+package it.at7.gemini.core;
+
+import java.util.Map;
+
+/**
+ * How the persistence executes a list request: the generated SQL with its bound parameters, the plan of the database
+ * (already executed, with timings and buffers) and the number of queries the conversion of the rows needed to resolve
+ * the references not found in the Transaction Cache.
+ */
+public class QueryPlan {
+    private final String sql;
+    private final Map<String, Object> params;
+    private final Object plan;
+    private final int rows;
+    private final int referenceQueries;
+
+    public QueryPlan(String sql, Map<String, Object> params, Object plan, int rows, int referenceQueries) {
+        this.sql = sql;
+        this.params = params;
+        this.plan = plan;
+        this.rows = rows;
+        this.referenceQueries = referenceQueries;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Map<String, Object> getParams() {
+        return params;
+    }
+
+    /**
+     * @return the plan as returned by the database, converted to Map / List
+     */
+    public Object getPlan() {
+        return plan;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getReferenceQueries() {
+        return referenceQueries;
+    }
+}
@@ -0,0 +1,157 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.GeminiGenericException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Single flight of identical reads. When enabled ({@code gemini.coalesce.reads}) a read that finds an identical read in
+ * flight waits for it and gets its result, instead of running its own query. The result can still be shared for
+ * {@code gemini.coalesce.readWindow} milliseconds after the query (0 to share only the reads in flight).
+ * <p>
+ * Each read opens its own read only transaction, so a shared result never contains (or misses) uncommitted writes and
+ * the callers waiting for a flight do not hold a transaction or a connection. A read joins only the flights started
+ * after the last committed change, to keep read-your-writes for the callers that committed a change. Every caller gets
+ * its own copy of the shared result, made with the copy function of the read.
+ * <p>
+ * Completed flights are kept for the window: the expired ones are pruned on each completion and at most
+ * {@link #MAX_FLIGHTS} completed flights are kept.
+ */
+class ReadCoalescer implements EntityRecordChangeListener {
+    static final int MAX_FLIGHTS = 1000;
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final Map<Object, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    ReadCoalescer(boolean enabled, long windowMillis) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Run the read, or wait for the result of an identical one. The result must be immutable.
+     *
+     * @param key identifies identical reads, null if the read cannot be coalesced
+     */
+    <T> T read(Object key, Read<T> read) throws GeminiException {
+        return read(key, read, UnaryOperator.identity());
+    }
+
+    /**
+     * Run the read, or wait for the result of an identical one
+     *
+     * @param key  identifies identical reads, null if the read cannot be coalesced
+     * @param copy copies the shared result for each caller
+     */
+    @SuppressWarnings("unchecked")
+    <T> T read(Object key, Read<T> read, UnaryOperator<T> copy) throws GeminiException {
+        if (!enabled || key == null) {
+            return read.read();
+        }
+        long currentGeneration = generation.get();
+        while (true) {
+            Flight flight = new Flight(currentGeneration);
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return copy.apply((T) fly(key, flight, read));
+            }
+            if (existing.generation == currentGeneration && !existing.isExpired(windowMillis)) {
+                return copy.apply((T) existing.await());
+            }
+            flights.remove(key, existing); // stale: a change was committed after it started
+        }
+    }
+
+    @Override
+    public void onCommittedChange(ChangeType changeType, EntityRecord record) {
+        if (enabled) {
+            generation.incrementAndGet();
+            flights.clear(); // waiting callers keep their flight
+        }
+    }
+
+    private Object fly(Object key, Flight flight, Read<?> read) throws GeminiException {
+        try {
+            Object result = read.read();
+            flight.complete(result);
+            return result;
+        } catch (GeminiException | RuntimeException e) {
+            flight.future.completeExceptionally(e);
+            flights.remove(key, flight);
+            throw e;
+        } finally {
+            if (windowMillis <= 0) {
+                flights.remove(key, flight);
+            } else {
+                prune();
+            }
+        }
+    }
+
+    private void prune() {
+        flights.values().removeIf(f -> f.isExpired(windowMillis));
+        if (flights.size() > MAX_FLIGHTS) {
+            // the window is still open for too many results: drop the completed ones, flights in progress stay
+            flights.values().removeIf(Flight::isCompleted);
+        }
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    @FunctionalInterface
+    interface Read<T> {
+        T read() throws GeminiException;
+    }
+
+    private static class Flight {
+        final long generation;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        volatile long completed = 0;
+
+        Flight(long generation) {
+            this.generation = generation;
+        }
+
+        void complete(Object result) {
+            completed = System.currentTimeMillis();
+            future.complete(result);
+        }
+
+        boolean isCompleted() {
+            return completed != 0;
+        }
+
+        boolean isExpired(long windowMillis) {
+            long completedAt = completed;
+            return completedAt != 0 && System.currentTimeMillis() - completedAt > windowMillis;
+        }
+
+        Object await() throws GeminiException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw GeminiGenericException.wrap(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof GeminiException) {
+                    throw (GeminiException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw GeminiGenericException.wrap(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package it.at7.gemini.core;
+
+import org.springframework.lang.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * Read-your-writes position of the current request. Write commits hand back their position in the database log
+ * (returned to the client in the {@link #HEADER} response header), the client sends it back with the next requests and
+ * their read only transactions use only a replica that already replayed it.
+ * <p>
+ * The scope is bound to the request by the API layer: without a scope nothing is tracked.
+ */
+public final class ReadConsistency {
+    public static final String HEADER = "Gemini-Commit-Position";
+
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private ReadConsistency() {
+    }
+
+    /**
+     * Bind the scope of a request to the current thread
+     *
+     * @param requiredPosition  the position sent by the client, if any
+     * @param committedPosition receives the position of each write committed by the request
+     */
+    public static void open(@Nullable String requiredPosition, Consumer<String> committedPosition) {
+        SCOPE.set(new Scope(requiredPosition, committedPosition));
+    }
+
+    public static void close() {
+        SCOPE.remove();
+    }
+
+    /**
+     * Unbind the scope of the current thread, for the work done on behalf of other requests
+     *
+     * @return the unbound scope, to restore with {@link #resume}
+     */
+    @Nullable
+    static Scope suspend() {
+        Scope scope = SCOPE.get();
+        SCOPE.remove();
+        return scope;
+    }
+
+    static void resume(@Nullable Scope scope) {
+        if (scope != null) {
+            SCOPE.set(scope);
+        }
+    }
+
+    /**
+     * @return the position the read only transactions of the current request must see, null if any replica is fine
+     */
+    @Nullable
+    public static String getRequiredPosition() {
+        Scope scope = SCOPE.get();
+        return scope == null ? null : scope.requiredPosition;
+    }
+
+    /**
+     * Register the position of a write committed for the current request: following reads of the same request must
+     * see it too
+     */
+    public static void writeCommitted(@Nullable String position) {
+        Scope scope = SCOPE.get();
+        if (scope != null && position != null) {
+            scope.requiredPosition = position;
+            scope.committedPosition.accept(position);
+        }
+    }
+
+    static class Scope {
+        String requiredPosition;
+        final Consumer<String> committedPosition;
+
+        Scope(@Nullable String requiredPosition, Consumer<String> committedPosition) {
+            this.requiredPosition = requiredPosition;
+            this.committedPosition = committedPosition;
+        }
+    }
+}
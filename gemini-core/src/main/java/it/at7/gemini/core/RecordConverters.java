@@ -124,6 +124,40 @@ public class RecordConverters {
         return records.stream().map(RecordConverters::dataToMap).collect(Collectors.toList());
     }
 
+    /**
+     * One map for each group, with the group paths and the aggregate names as keys (in the request order)
+     */
+    public static List<Map<String, Object>> aggregationToListMap(AggregationResult result) {
+        Aggregation aggregation = result.getAggregation();
+        List<Aggregation.GroupBy> groupBy = aggregation.getGroupBy();
+        List<Aggregation.Aggregate> aggregates = aggregation.getAggregates();
+        List<Map<String, Object>> ret = new ArrayList<>();
+        for (Object[] row : result.getRows()) {
+            Map<String, Object> convertedMap = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.size(); i++) {
+                convertedMap.put(groupBy.get(i).getName(), fieldValueToJSON(groupBy.get(i).getField(), row[i]));
+            }
+            for (int i = 0; i < aggregates.size(); i++) {
+                Aggregation.Aggregate aggregate = aggregates.get(i);
+                Object value = row[groupBy.size() + i];
+                boolean fieldTyped = aggregate.getFunction() == Aggregation.Function.MIN || aggregate.getFunction() == Aggregation.Function.MAX;
+                convertedMap.put(aggregate.getName(), fieldTyped ? fieldValueToJSON(aggregate.getField(), value) : value);
+            }
+            ret.add(convertedMap);
+        }
+        return ret;
+    }
+
+    @Nullable
+    private static Object fieldValueToJSON(EntityField field, @Nullable Object value) {
+        if (value == null) {
+            return null; // no default value for groups and aggregates
+        }
+        Map<String, Object> convertedMap = new HashMap<>();
+        convertSingleFieldTOJSONValue(convertedMap, EntityFieldValue.create(field, value));
+        return convertedMap.get(toFieldName(field));
+    }
+
     static void putValueToRecord(DynamicRecord r, Field field, @Nullable Object objValue) {
         if (objValue == null) {
             r.put(field, null);
@@ -276,7 +310,7 @@ public class RecordConverters {
         throw new RuntimeException("Unsupported OPE");
     }
 
-    private static Object toLogicalKey(EntityReferenceRecord pkRefRec) {
+    static Object toLogicalKey(EntityReferenceRecord pkRefRec) {
         if (pkRefRec.hasPrimaryKey() && pkRefRec.getPrimaryKey().equals(0L)) {
             return null; // null value if we have a no key;
         }
@@ -29,6 +29,12 @@ public class RuntimeModule implements GeminiModule {
         return String.format(pattern, getName());
     }
 
+    @Override
+    public String getNamedQueriesResourceLocation() {
+        String pattern = "file:./schema/%s-queries.yml";
+        return String.format(pattern, getName());
+    }
+
     @Override
     public String getEntityRecordResourceLocation(String entityName) {
         String pattern = "file:./records/%s.atr";
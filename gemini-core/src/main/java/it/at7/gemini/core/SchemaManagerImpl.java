@@ -606,6 +606,15 @@ public class SchemaManagerImpl implements SchemaManager, SchemaManagerInit {
         String type = entry.getType().toUpperCase();
 
         Optional<FieldType> fieldType = FieldType.of(type);
+        if (entry.isSearchable() && !fieldType.equals(Optional.of(TEXT))) {
+            throw FieldException.CANNOT_BE_SEARCHABLE(entry.getName());
+        }
+        if (entry.getTrigramIndex() != null && !fieldType.equals(Optional.of(TEXT))) {
+            throw FieldException.CANNOT_HAVE_TRIGRAM_INDEX(entry.getName());
+        }
+        if (entry.isIndexed() && !(type.startsWith("[") && type.endsWith("]"))) {
+            throw FieldException.CANNOT_BE_INDEXED(entry.getName());
+        }
         if (!fieldType.isPresent()) {
             // it is not a reconducible 1 to 1 type
 
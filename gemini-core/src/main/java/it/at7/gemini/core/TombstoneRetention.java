@@ -0,0 +1,77 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.conf.State;
+import it.at7.gemini.core.persistence.PersistenceEntityManager;
+import it.at7.gemini.exceptions.GeminiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the tombstones of the deleted records after {@code gemini.api.changes.retentionDays}. Clients with a
+ * changedSince token older than the removed tombstones get a CHANGE_TOKEN_TOO_OLD error and must start a full sync.
+ */
+@Service
+public class TombstoneRetention implements StateListener {
+    private static final Logger logger = LoggerFactory.getLogger(TombstoneRetention.class);
+
+    private final TransactionManager transactionManager;
+    private final PersistenceEntityManager persistenceEntityManager;
+    private final int retentionDays;
+    private final long intervalMinutes;
+    private ScheduledExecutorService purger;
+
+    @Autowired
+    public TombstoneRetention(StateManager stateManager, TransactionManager transactionManager,
+                              PersistenceEntityManager persistenceEntityManager, GeminiConfigurationService configurationService) {
+        this.transactionManager = transactionManager;
+        this.persistenceEntityManager = persistenceEntityManager;
+        this.retentionDays = configurationService.getApiChangesRetentionDays();
+        this.intervalMinutes = configurationService.getApiChangesPurgeIntervalMinutes();
+        stateManager.register(this);
+    }
+
+    @Override
+    public void onChange(State previous, State actual, Optional<Transaction> transaction) throws GeminiException {
+        if (actual == State.INITIALIZED && retentionDays > 0 && intervalMinutes > 0) {
+            purger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "gemini-tombstone-retention");
+                thread.setDaemon(true);
+                return thread;
+            });
+            purger.scheduleWithFixedDelay(this::purge, 0, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (purger != null) {
+            purger.shutdownNow();
+        }
+    }
+
+    public int purge() {
+        LocalDateTime before = LocalDateTime.now(ZoneOffset.UTC).minusDays(retentionDays);
+        try {
+            int purged = transactionManager.executeInSingleTrasaction(transaction -> {
+                return persistenceEntityManager.purgeTombstones(before, transaction);
+            });
+            if (purged > 0) {
+                logger.info("Removed {} tombstones of records deleted before {}", purged, before);
+            }
+            return purged;
+        } catch (GeminiException | RuntimeException e) {
+            logger.error("Unable to remove the tombstones", e);
+            return 0;
+        }
+    }
+}
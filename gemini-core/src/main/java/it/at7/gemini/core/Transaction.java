@@ -1,6 +1,7 @@
 package it.at7.gemini.core;
 
 import it.at7.gemini.exceptions.GeminiException;
+import org.springframework.lang.Nullable;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -15,7 +16,36 @@ public interface Transaction extends AutoCloseable {
 
     void rollback() throws GeminiException;
 
+    /**
+     * Mark a named point inside the transaction. A later {@link #rollbackToSavepoint(String)} undoes only the
+     * work done after the savepoint, leaving the transaction usable.
+     */
+    void savepoint(String name) throws GeminiException;
+
+    void rollbackToSavepoint(String name) throws GeminiException;
+
+    void releaseSavepoint(String name) throws GeminiException;
+
+    /**
+     * Register an action to run once the transaction is successfully committed. Actions registered after a savepoint
+     * are discarded by {@link #rollbackToSavepoint(String)}, all of them are discarded by a rollback.
+     */
+    void afterCommit(Runnable action);
+
     Optional<TransactionCache> getTransactionCache();
 
+    /**
+     * @return true if the transaction can only read data (any write fails)
+     */
+    boolean isReadOnly();
+
     LocalDateTime getOpenTime();
+
+    /**
+     * @return position in the database log of the committed writes (see {@link ReadConsistency}), null if not tracked
+     */
+    @Nullable
+    default String getCommitPosition() {
+        return null;
+    }
 }
@@ -0,0 +1,17 @@
+package it.at7.gemini.core;
+
+/**
+ * Persistence specific provider of the transactions that are not Spring managed beans.
+ */
+public interface TransactionFactory {
+
+    /**
+     * @return a new (not yet opened) read only transaction
+     */
+    Transaction newReadOnlyTransaction();
+
+    /**
+     * @return a new (not yet opened) transaction using a connection of the target pool
+     */
+    Transaction newTransaction(ConnectionPool pool);
+}
@@ -12,4 +12,21 @@ public interface TransactionManager {
 
     void executeInSingleTrasaction(VoidTransactionCallback callback) throws GeminiException;
 
+    /**
+     * Open a transaction using a connection of the target pool
+     */
+    Transaction openTransaction(ConnectionPool pool) throws GeminiException;
+
+    <T> T executeInSingleTrasaction(ConnectionPool pool, TransactionCallback callback) throws GeminiException;
+
+    void executeInSingleTrasaction(ConnectionPool pool, VoidTransactionCallback callback) throws GeminiException;
+
+    /**
+     * Open a lightweight read only transaction. It is cheaper than {@link #openTransaction()} and lets the database
+     * skip the write bookkeeping, but any write executed inside it fails.
+     */
+    Transaction openReadOnlyTransaction() throws GeminiException;
+
+    <T> T executeInSingleReadOnlyTrasaction(TransactionCallback callback) throws GeminiException;
+
 }
@@ -11,11 +11,13 @@ import org.springframework.stereotype.Service;
 public class TransactionManagerImpl implements TransactionManager {
     private final static Logger logger = LoggerFactory.getLogger(TransactionManagerImpl.class);
     private final ApplicationContext applicationContext;
+    private final TransactionFactory transactionFactory;
 
 
     @Autowired
-    public TransactionManagerImpl(ApplicationContext applicationContext) {
+    public TransactionManagerImpl(ApplicationContext applicationContext, TransactionFactory transactionFactory) {
         this.applicationContext = applicationContext;
+        this.transactionFactory = transactionFactory;
     }
 
     @Override
@@ -41,4 +43,47 @@ public class TransactionManagerImpl implements TransactionManager {
             transaction.commit();
         }
     }
+
+    @Override
+    public Transaction openTransaction(ConnectionPool pool) throws GeminiException {
+        if (pool == ConnectionPool.INTERACTIVE) {
+            return openTransaction();
+        }
+        Transaction transaction = transactionFactory.newTransaction(pool);
+        transaction.open();
+        return transaction;
+    }
+
+    @Override
+    public <T> T executeInSingleTrasaction(ConnectionPool pool, TransactionCallback callback) throws GeminiException {
+        try (Transaction transaction = openTransaction(pool)) {
+            Object o = callback.doInTransaction(transaction);
+            transaction.commit();
+            return (T) o;
+        }
+    }
+
+    @Override
+    public void executeInSingleTrasaction(ConnectionPool pool, VoidTransactionCallback callback) throws GeminiException {
+        try (Transaction transaction = openTransaction(pool)) {
+            callback.doInTransaction(transaction);
+            transaction.commit();
+        }
+    }
+
+    @Override
+    public Transaction openReadOnlyTransaction() throws GeminiException {
+        Transaction transaction = transactionFactory.newReadOnlyTransaction();
+        transaction.open();
+        return transaction;
+    }
+
+    @Override
+    public <T> T executeInSingleReadOnlyTrasaction(TransactionCallback callback) throws GeminiException {
+        try (Transaction transaction = openReadOnlyTransaction()) {
+            Object o = callback.doInTransaction(transaction);
+            transaction.commit();
+            return (T) o;
+        }
+    }
 }
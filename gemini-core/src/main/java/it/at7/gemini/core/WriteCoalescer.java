@@ -0,0 +1,205 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.GeminiGenericException;
+import it.at7.gemini.schema.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit of concurrent inserts. For the entities listed in {@code gemini.coalesce.entities} the inserts arriving
+ * within {@code gemini.coalesce.window} milliseconds (or up to {@code gemini.coalesce.maxBatch} records) share one
+ * transaction and one commit.
+ * <p>
+ * The first caller of a batch is its leader: it waits for the window to expire (or the batch to fill up) and then
+ * inserts all the records, each one inside its own savepoint. Every record runs the usual insert path (events and
+ * change notifications included) and a failing record is rolled back alone, its caller gets its own error while the
+ * others are committed. If the commit fails all the callers of the batch get the error.
+ * <p>
+ * The batch runs on behalf of all its callers, not under the query budget and the read consistency of the leader
+ * request: they are suspended and the batch has its own time budget, {@code gemini.coalesce.timeout} milliseconds.
+ */
+@Service
+public class WriteCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    private final EntityManager entityManager;
+    private final QueryBudgets queryBudgets;
+    private final Set<String> coalescedEntities;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final long timeoutMillis;
+
+    // guarded by itself
+    private final Map<String, Batch> pendingByEntity = new HashMap<>();
+
+    @Autowired
+    public WriteCoalescer(EntityManager entityManager, QueryBudgets queryBudgets, GeminiConfigurationService configurationService) {
+        this(entityManager, queryBudgets, configurationService.getCoalesceEntities(), configurationService.getCoalesceWindow(),
+                configurationService.getCoalesceMaxBatch(), configurationService.getCoalesceTimeout());
+    }
+
+    WriteCoalescer(EntityManager entityManager, QueryBudgets queryBudgets, Set<String> coalescedEntities, long windowMillis, int maxBatchSize, long timeoutMillis) {
+        this.entityManager = entityManager;
+        this.queryBudgets = queryBudgets;
+        this.coalescedEntities = coalescedEntities.stream().map(String::toUpperCase).collect(Collectors.toSet());
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isCoalesced(Entity entity) {
+        return coalescedEntities.contains(entity.getName().toUpperCase());
+    }
+
+    /**
+     * Same as {@link EntityManager#putIfAbsent(EntityRecord, EntityOperationContext)}, but the record shares the commit
+     * with the concurrent inserts of its Entity (if coalescing is enabled for it)
+     */
+    public EntityRecord putIfAbsent(EntityRecord record, EntityOperationContext entityOperationContext) throws GeminiException {
+        if (!isCoalesced(record.getEntity())) {
+            return entityManager.putIfAbsent(record, entityOperationContext);
+        }
+        String entityName = record.getEntity().getName().toUpperCase();
+        PendingWrite write = new PendingWrite(record, entityOperationContext);
+        Batch batch;
+        boolean leader = false;
+        synchronized (pendingByEntity) {
+            batch = pendingByEntity.get(entityName);
+            if (batch == null) {
+                batch = new Batch();
+                pendingByEntity.put(entityName, batch);
+                leader = true;
+            }
+            batch.writes.add(write);
+            if (batch.writes.size() >= maxBatchSize) {
+                // closed: next writes start a new batch
+                pendingByEntity.remove(entityName);
+                batch.signalFull();
+            }
+        }
+        if (leader) {
+            batch.awaitFull(windowMillis);
+            List<PendingWrite> writes;
+            synchronized (pendingByEntity) {
+                pendingByEntity.remove(entityName, batch);
+                writes = new ArrayList<>(batch.writes);
+            }
+            ReadConsistency.Scope consistency = ReadConsistency.suspend();
+            QueryBudget budget = queryBudgets.open("group commit of " + entityName, timeoutMillis);
+            try {
+                flush(writes);
+            } finally {
+                budget.close();
+                ReadConsistency.resume(consistency);
+            }
+        }
+        EntityRecord result = write.await();
+        ReadConsistency.writeCommitted(write.commitPosition); // the commit of the leader is shared
+        return result;
+    }
+
+    private void flush(List<PendingWrite> writes) {
+        boolean savepoints = writes.size() > 1;
+        try (Transaction transaction = entityManager.getTransactionManager().openTransaction()) {
+            for (int i = 0; i < writes.size(); i++) {
+                PendingWrite write = writes.get(i);
+                String savepoint = "coalesce_" + i;
+                if (savepoints) {
+                    transaction.savepoint(savepoint);
+                }
+                try {
+                    write.result = entityManager.putIfAbsent(write.record, write.entityOperationContext, transaction);
+                    if (savepoints) {
+                        transaction.releaseSavepoint(savepoint);
+                    }
+                } catch (GeminiException | RuntimeException e) {
+                    write.error = e;
+                    if (savepoints) {
+                        transaction.rollbackToSavepoint(savepoint);
+                    }
+                }
+            }
+            transaction.commit();
+            String commitPosition = transaction.getCommitPosition();
+            writes.forEach(w -> w.commitPosition = commitPosition);
+        } catch (GeminiException | RuntimeException e) {
+            logger.error("Coalesced insert of {} records failed", writes.size(), e);
+            for (PendingWrite write : writes) {
+                if (write.error == null) {
+                    write.result = null;
+                    write.error = e;
+                }
+            }
+        }
+        for (PendingWrite write : writes) {
+            if (write.error != null) {
+                write.future.completeExceptionally(write.error);
+            } else {
+                write.future.complete(write.result);
+            }
+        }
+    }
+
+    private static class Batch {
+        final List<PendingWrite> writes = new ArrayList<>();
+        private boolean full;
+
+        synchronized void signalFull() {
+            full = true;
+            notifyAll();
+        }
+
+        synchronized void awaitFull(long windowMillis) {
+            long deadline = System.currentTimeMillis() + windowMillis;
+            long remaining = windowMillis;
+            try {
+                while (!full && remaining > 0) {
+                    wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // flush what we have
+            }
+        }
+    }
+
+    private static class PendingWrite {
+        final EntityRecord record;
+        final EntityOperationContext entityOperationContext;
+        final CompletableFuture<EntityRecord> future = new CompletableFuture<>();
+        EntityRecord result;
+        Exception error;
+        String commitPosition;
+
+        PendingWrite(EntityRecord record, EntityOperationContext entityOperationContext) {
+            this.record = record;
+            this.entityOperationContext = entityOperationContext;
+        }
+
+        EntityRecord await() throws GeminiException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw GeminiGenericException.wrap(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof GeminiException) {
+                    throw (GeminiException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw GeminiGenericException.wrap(cause);
+            }
+        }
+    }
+}
@@ -4,8 +4,10 @@ import it.at7.gemini.core.*;
 import it.at7.gemini.exceptions.GeminiException;
 import it.at7.gemini.schema.Entity;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -33,6 +35,20 @@ public interface PersistenceEntityManager {
 
     Optional<EntityRecord> getEntityRecordByUUID(Entity entity, UUID uuid, Transaction transaction) throws GeminiException;
 
+    /**
+     * Get all the records matching the provided UUIDs with a single query. Referenced records are resolved in bulk.
+     *
+     * @return one element for each requested UUID, in the same order (empty if not found)
+     */
+    List<Optional<EntityRecord>> getEntityRecordsByUUIDs(Entity entity, Collection<UUID> uuids, Transaction transaction) throws GeminiException;
+
+    /**
+     * Get all the records matching the provided logical keys. Referenced records are resolved in bulk.
+     *
+     * @return one element for each requested logical key, in the same order (empty if not found)
+     */
+    List<Optional<EntityRecord>> getEntityRecordsByLogicalKeys(Entity entity, Collection<? extends Collection<? extends FieldValue>> logicalKeys, Transaction transaction) throws GeminiException;
+
     EntityRecord createNewEntityRecord(EntityRecord record, Transaction transaction) throws GeminiException;
 
     void createNewEntityRecordNoResults(EntityRecord record, Transaction transaction) throws GeminiException;
@@ -50,5 +66,53 @@ public interface PersistenceEntityManager {
 
     EntityRecord getEntityRecordSingleton(Entity entity, Transaction transaction) throws GeminiException;
 
+    EntityRecordChanges getEntityRecordChanges(Entity entity, FilterContext filterContext, Transaction transaction) throws GeminiException;
+
+    /**
+     * Version of the stored data of the Entities: it changes with any committed insert, update or delete, done by any
+     * instance or directly with SQL. It is maintained by the database, reading it does not scan the data
+     */
+    String getEntitiesDataVersion(Collection<Entity> entities, Transaction transaction) throws GeminiException;
+
+    /**
+     * Fold the logged writes into the data versions, without changing them: it keeps the version reads short
+     *
+     * @return number of folded log entries
+     */
+    int foldDataVersions(Transaction transaction) throws GeminiException;
+
+    /**
+     * Remove the tombstones of the records deleted before the given time. Change tokens older than the removed
+     * tombstones are rejected
+     *
+     * @return number of removed tombstones
+     */
+    int purgeTombstones(LocalDateTime deletedBefore, Transaction transaction) throws GeminiException;
+
+    /**
+     * Same as {@link #getEntityRecordsMatching(Entity, FilterContext, Transaction)} but also computes the total number of
+     * matching records, ignoring the limit and start of the filter
+     */
+    EntityRecordsPage getEntityRecordsPage(Entity entity, FilterContext filterContext, Transaction transaction) throws GeminiException;
+
     long countEntityRecordsMatching(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException;
+
+    /**
+     * Aggregates of the records matching the filter, computed by a single grouped query
+     */
+    AggregationResult aggregateEntityRecords(Entity entity, Aggregation aggregation, Transaction transaction) throws GeminiException;
+
+    /**
+     * Execute the query of {@link #getEntityRecordsMatching(Entity, FilterContext, Transaction)} and explain it
+     */
+    QueryPlan explainEntityRecordsMatching(Entity entity, FilterContext filterContext, Transaction transaction) throws GeminiException;
+
+    /**
+     * Prepare the SQL of the query on the database, checking that it is valid for the schema
+     */
+    void prepareNamedQuery(NamedQuery namedQuery, Transaction transaction) throws GeminiException;
+
+    List<EntityRecord> getEntityRecordsByNamedQuery(NamedQuery namedQuery, Map<String, Object> parameters, FilterContext filterContext, Transaction transaction) throws GeminiException;
+
+    List<Map<String, Object>> getRowsByNamedQuery(NamedQuery namedQuery, Map<String, Object> parameters, FilterContext filterContext, Transaction transaction) throws GeminiException;
 }
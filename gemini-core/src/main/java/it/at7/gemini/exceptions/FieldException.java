@@ -2,13 +2,15 @@ package it.at7.gemini.exceptions;
 
 import it.at7.gemini.schema.FieldType;
 
-import static it.at7.gemini.exceptions.FieldException.Code.FIELD_NOT_FOUND;
-import static it.at7.gemini.exceptions.FieldException.Code.INVALID_LK_TYPE;
+import static it.at7.gemini.exceptions.FieldException.Code.*;
 
 public class FieldException extends GeminiException {
     public enum Code {
         FIELD_NOT_FOUND,
-        INVALID_LK_TYPE
+        INVALID_LK_TYPE,
+        INVALID_SEARCHABLE_TYPE,
+        INVALID_TRIGRAM_TYPE,
+        INVALID_INDEXED_TYPE
     }
 
     public FieldException(Code errorCode, String message) {
@@ -22,4 +24,16 @@ public class FieldException extends GeminiException {
     public static FieldException CANNOT_BE_LOGICAL_KEY(FieldType ft) {
         return new FieldException(INVALID_LK_TYPE, String.format("Field Type %s cannot be a logical key", ft.name()));
     }
+
+    public static FieldException CANNOT_BE_SEARCHABLE(String name) {
+        return new FieldException(INVALID_SEARCHABLE_TYPE, String.format("Field %s cannot be searchable - only TEXT fields are", name));
+    }
+
+    public static FieldException CANNOT_HAVE_TRIGRAM_INDEX(String name) {
+        return new FieldException(INVALID_TRIGRAM_TYPE, String.format("Field %s cannot have a trigram index - only TEXT fields can", name));
+    }
+
+    public static FieldException CANNOT_BE_INDEXED(String name) {
+        return new FieldException(INVALID_INDEXED_TYPE, String.format("Field %s cannot be indexed - only array fields can", name));
+    }
 }
@@ -3,15 +3,33 @@ package it.at7.gemini.exceptions;
 import static it.at7.gemini.exceptions.InvalidRequesException.Code.*;
 
 public class InvalidRequesException extends GeminiException {
-    enum Code {
+    public enum Code {
         INVALID_METHOD_FOR_REQUEST,
         BODY_REQUIRED,
         CANNOT_HANDLE_REQUEST,
-        INVALID_BODY
+        INVALID_BODY,
+        INVALID_BATCH_OPERATION,
+        BATCH_REFERENCE_NOT_FOUND,
+        TOO_MANY_KEYS,
+        INVALID_CHANGE_TOKEN,
+        CHANGE_TOKEN_TOO_OLD,
+        INVALID_LAST_EVENT_ID,
+        INVALID_AGGREGATION,
+        NAMED_QUERY_NOT_FOUND,
+        INVALID_QUERY_PARAMETER,
+        INVALID_COUNT_MODE,
+        UNKNOWN_ENTITY
     }
 
+    private final Code errorCode;
+
     public InvalidRequesException(Code errorCode, String message) {
         super(errorCode.name(), message);
+        this.errorCode = errorCode;
+    }
+
+    public Code getErrorCode() {
+        return errorCode;
     }
 
     public static InvalidRequesException INVALID_METHOD_FOR_REQUEST(String method) {
@@ -29,4 +47,48 @@ public class InvalidRequesException extends GeminiException {
     public static InvalidRequesException CANNOT_HANDLE_REQUEST() {
         return new InvalidRequesException(CANNOT_HANDLE_REQUEST, "Cannot handle Request");
     }
+
+    public static InvalidRequesException INVALID_BATCH_OPERATION(int index, String reason) {
+        return new InvalidRequesException(INVALID_BATCH_OPERATION, String.format("Invalid batch operation %d: %s", index, reason));
+    }
+
+    public static InvalidRequesException BATCH_REFERENCE_NOT_FOUND(String reference) {
+        return new InvalidRequesException(BATCH_REFERENCE_NOT_FOUND, String.format("Batch reference %s not found among previous operations", reference));
+    }
+
+    public static InvalidRequesException TOO_MANY_KEYS(int limit) {
+        return new InvalidRequesException(TOO_MANY_KEYS, String.format("Too many keys requested - max %d", limit));
+    }
+
+    public static InvalidRequesException INVALID_CHANGE_TOKEN(String token) {
+        return new InvalidRequesException(INVALID_CHANGE_TOKEN, String.format("Invalid changedSince token %s", token));
+    }
+
+    public static InvalidRequesException CHANGE_TOKEN_TOO_OLD(String token) {
+        return new InvalidRequesException(CHANGE_TOKEN_TOO_OLD, String.format("changedSince token %s is older than the retained deletes, start a full sync with token 0", token));
+    }
+
+    public static InvalidRequesException INVALID_LAST_EVENT_ID(String lastEventId) {
+        return new InvalidRequesException(INVALID_LAST_EVENT_ID, String.format("Invalid Last-Event-ID %s", lastEventId));
+    }
+
+    public static InvalidRequesException INVALID_AGGREGATION(String reason) {
+        return new InvalidRequesException(INVALID_AGGREGATION, String.format("Invalid aggregation: %s", reason));
+    }
+
+    public static InvalidRequesException NAMED_QUERY_NOT_FOUND(String name) {
+        return new InvalidRequesException(NAMED_QUERY_NOT_FOUND, String.format("Named query %s not found", name));
+    }
+
+    public static InvalidRequesException INVALID_QUERY_PARAMETER(String query, String parameter, String reason) {
+        return new InvalidRequesException(INVALID_QUERY_PARAMETER, String.format("Invalid parameter %s of query %s: %s", parameter, query, reason));
+    }
+
+    public static InvalidRequesException INVALID_COUNT_MODE(String countMode) {
+        return new InvalidRequesException(INVALID_COUNT_MODE, String.format("Invalid countMode %s", countMode));
+    }
+
+    public static InvalidRequesException UNKNOWN_ENTITY(String entity) {
+        return new InvalidRequesException(UNKNOWN_ENTITY, String.format("Entity %s not found", entity));
+    }
 }
@@ -0,0 +1,29 @@
+package it.at7.gemini.exceptions;
+
+import static it.at7.gemini.exceptions.QueryBudgetException.Code.*;
+
+public class QueryBudgetException extends GeminiException {
+    public enum Code {
+        QUERY_TIMEOUT,
+        TOO_MANY_ROWS
+    }
+
+    private final Code errorCode;
+
+    public QueryBudgetException(Code errorCode, String message) {
+        super(errorCode.name(), message);
+        this.errorCode = errorCode;
+    }
+
+    public Code getErrorCode() {
+        return errorCode;
+    }
+
+    public static QueryBudgetException QUERY_TIMEOUT(String budget, long timeoutMillis) {
+        return new QueryBudgetException(QUERY_TIMEOUT, String.format("Query time budget exceeded - %s allows %d ms", budget, timeoutMillis));
+    }
+
+    public static QueryBudgetException TOO_MANY_ROWS(String budget, int maxRows) {
+        return new QueryBudgetException(TOO_MANY_ROWS, String.format("Query row budget exceeded - %s allows %d rows, use a narrower filter or a lower limit", budget, maxRows));
+    }
+}
@@ -35,7 +35,10 @@ public class EntityBuilder {
     }
 
     public EntityBuilder addField(FieldType fieldType, RawEntity.Entry entry, String refEntityName, String interfaceName, EntityField.Scope scope) {
-        fieldsBuilders.add(new EntityFieldBuilder(fieldType, entry.getName(), entry.isLogicalKey(), entry.getLkOrder(), refEntityName, interfaceName, scope));
+        fieldsBuilders.add(new EntityFieldBuilder(fieldType, entry.getName(), entry.isLogicalKey(), entry.getLkOrder(), refEntityName, interfaceName, scope)
+                .setSearchable(entry.isSearchable())
+                .setTrigramIndex(entry.getTrigramIndex() == null ? null : EntityField.TrigramIndex.valueOf(entry.getTrigramIndex()))
+                .setIndexed(entry.isIndexed()));
         return this;
     }
 
@@ -19,9 +19,19 @@ public class EntityField extends Field {
     private final Scope scope;
     private final String interfaceName;
     private final int lkOrder;
+    private final boolean searchable;
+    private final TrigramIndex trigramIndex;
+    private final boolean indexed;
 
     public EntityField(Entity entity, FieldType fieldType, String fieldName, boolean isLogicalKey, int lkOrder, String entityRefName, String interfaceName, Scope scope) {
+        this(entity, fieldType, fieldName, isLogicalKey, lkOrder, entityRefName, interfaceName, scope, false, null, false);
+    }
+
+    public EntityField(Entity entity, FieldType fieldType, String fieldName, boolean isLogicalKey, int lkOrder, String entityRefName, String interfaceName, Scope scope, boolean searchable, TrigramIndex trigramIndex, boolean indexed) {
         super(fieldType, fieldName, entityRefName);
+        this.searchable = searchable;
+        this.trigramIndex = trigramIndex;
+        this.indexed = indexed;
         Assert.notNull(entity, "EntityField must have a not null entity");
         this.isLogicalKey = isLogicalKey;
         this.lkOrder = lkOrder;
@@ -51,6 +61,27 @@ public class EntityField extends Field {
         return lkOrder;
     }
 
+    /**
+     * @return true if the field is part of the Entity full text search
+     */
+    public boolean isSearchable() {
+        return searchable;
+    }
+
+    /**
+     * @return the trigram index serving the LIKE / ILIKE filters of the field, null if it has no trigram index
+     */
+    public TrigramIndex getTrigramIndex() {
+        return trigramIndex;
+    }
+
+    /**
+     * @return true if the array field has a GIN index serving the containment filters
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
     public Scope getScope() {
         return scope;
     }
@@ -102,4 +133,12 @@ public class EntityField extends Field {
         META,
         DATA
     }
+
+    /**
+     * PostgreSQL pg_trgm index access method
+     */
+    public enum TrigramIndex {
+        GIN,
+        GIST
+    }
 }
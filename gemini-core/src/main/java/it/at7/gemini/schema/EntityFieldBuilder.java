@@ -9,6 +9,9 @@ public class EntityFieldBuilder {
     private String refEntityName;
     private final String interfaceName;
     private final EntityField.Scope scope;
+    private boolean searchable;
+    private EntityField.TrigramIndex trigramIndex;
+    private boolean indexed;
 
     public EntityFieldBuilder(FieldType fieldType, String name, boolean logicalKey, int lkOrder, String refEntityName, String interfaceName, EntityField.Scope scope) {
         this.fieldType = fieldType;
@@ -25,12 +28,27 @@ public class EntityFieldBuilder {
         return this;
     }
 
+    public EntityFieldBuilder setSearchable(boolean searchable) {
+        this.searchable = searchable;
+        return this;
+    }
+
+    public EntityFieldBuilder setTrigramIndex(EntityField.TrigramIndex trigramIndex) {
+        this.trigramIndex = trigramIndex;
+        return this;
+    }
+
+    public EntityFieldBuilder setIndexed(boolean indexed) {
+        this.indexed = indexed;
+        return this;
+    }
+
     public EntityField.Scope getScope() {
         return scope;
     }
 
     public EntityField build() {
-        return new EntityField(entity, fieldType, name, logicalKey, lkOrder, refEntityName, interfaceName, scope);
+        return new EntityField(entity, fieldType, name, logicalKey, lkOrder, refEntityName, interfaceName, scope, searchable, trigramIndex, indexed);
     }
 
     public static EntityField ID(Entity entity) {
@@ -0,0 +1,86 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BatchAPIControllerAbstTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void n1_batchWithReferences() throws Exception {
+        Map<String, Object> batch = Map.of("operations", List.of(
+                Map.of("id", "dom", "op", "create", "entity", "TestDomain1", "data", Map.of("code", "batch-dm")),
+                Map.of("id", "rec", "op", "create", "entity", "TestDataType", "data", Map.of("text", "batch-lk", "domain1", "$ref:dom")),
+                Map.of("op", "update", "entity", "TestDataType", "key", "$ref:rec", "data", Map.of("numberLong", 42)),
+                Map.of("op", "get", "entity", "TestDataType", "key", "batch-lk")
+        ));
+        mockMvc.perform(post(API_PATH + "/_batch")
+                .contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results.length()").value(4))
+                .andExpect(jsonPath("$.results[1].result.data.domain1").value("batch-dm"))
+                .andExpect(jsonPath("$.results[3].result.data.numberLong").value(42));
+    }
+
+    @Test
+    public void n2_atomicBatchRollback() throws Exception {
+        Map<String, Object> batch = Map.of("operations", List.of(
+                Map.of("op", "create", "entity", "TestDomain1", "data", Map.of("code", "batch-rollback")),
+                Map.of("op", "create", "entity", "TestDomain1", "data", Map.of("code", "batch-dm")), // duplicated
+                Map.of("op", "get", "entity", "TestDomain1", "key", "batch-dm")
+        ));
+        mockMvc.perform(post(API_PATH + "/_batch")
+                .contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[1].errorcode").value("MULTIPLE_LK_FOUND"))
+                .andExpect(jsonPath("$.results[2].errorcode").value("SKIPPED"));
+
+        mockMvc.perform(get(API_PATH + "/TestDomain1/batch-rollback")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void n3_notAtomicBatch() throws Exception {
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("atomic", false);
+        batch.put("operations", List.of(
+                Map.of("op", "create", "entity", "TestDomain1", "data", Map.of("code", "batch-partial")),
+                Map.of("op", "create", "entity", "TestDomain1", "data", Map.of("code", "batch-dm")), // duplicated
+                Map.of("op", "delete", "entity", "TestDomain1", "key", "not-existent")
+        ));
+        mockMvc.perform(post(API_PATH + "/_batch")
+                .contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[0].status").value(200))
+                .andExpect(jsonPath("$.results[1].status").value(409))
+                .andExpect(jsonPath("$.results[2].status").value(404));
+
+        mockMvc.perform(get(API_PATH + "/TestDomain1/batch-partial")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+}
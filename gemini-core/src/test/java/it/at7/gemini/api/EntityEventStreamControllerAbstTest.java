@@ -0,0 +1,101 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class EntityEventStreamControllerAbstTest {
+    private static String lastEventId;
+
+    @Test
+    public void n1_filteredEvents() throws Exception {
+        MvcResult result = mockMvc.perform(get(API_PATH + "/TestDataType/_events")
+                .param("search", "text==sse-1")
+                .accept(TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Services.getEntityManager().putIfAbsent(TestData.getTestDataTypeEntityRecord("sse-2"));
+        EntityRecord rec = TestData.getTestDataTypeEntityRecord("sse-1");
+        Services.getEntityManager().putIfAbsent(rec);
+        rec.put("numberLong", 11);
+        Services.getEntityManager().update(rec);
+
+        String content = waitFor(result.getResponse(), "event:update");
+        Assert.assertTrue(content.contains("event:insert"));
+        Assert.assertTrue(content.contains("\"text\":\"sse-1\""));
+        Assert.assertFalse(content.contains("sse-2"));
+
+        Matcher matcher = Pattern.compile("id:(\\d+)").matcher(content);
+        Assert.assertTrue(matcher.find());
+        lastEventId = matcher.group(1); // the insert event
+    }
+
+    @Test
+    public void n2_resumeFromLastEventId() throws Exception {
+        MvcResult result = mockMvc.perform(get(API_PATH + "/TestDataType/_events")
+                .param("search", "text==sse-1")
+                .header(EntityEventStreamController.LAST_EVENT_ID_HEADER, lastEventId)
+                .accept(TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = waitFor(result.getResponse(), "event:update");
+        Assert.assertFalse(content.contains("event:insert"));
+        Assert.assertTrue(content.contains("\"numberLong\":11"));
+    }
+
+    @Test
+    public void n3_unknownLastEventIdResets() throws Exception {
+        MvcResult result = mockMvc.perform(get(API_PATH + "/TestDataType/_events")
+                .header(EntityEventStreamController.LAST_EVENT_ID_HEADER, Long.MAX_VALUE)
+                .accept(TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        waitFor(result.getResponse(), "event:" + EntityEventStreamService.RESET_EVENT);
+    }
+
+    @Test
+    public void n4_updatedRecordLeavingTheFilter() throws Exception {
+        MvcResult result = mockMvc.perform(get(API_PATH + "/TestDataType/_events")
+                .param("search", "numberLong==11")
+                .accept(TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        EntityRecord rec = TestData.getTestDataTypeEntityRecord("sse-1");
+        rec.put("numberLong", 12);
+        Services.getEntityManager().update(rec);
+
+        String content = waitFor(result.getResponse(), "event:" + EntityEventStreamService.REMOVE_EVENT);
+        Assert.assertTrue(content.contains("\"numberLong\":12"));
+        Assert.assertFalse(content.contains("event:update"));
+    }
+
+    private static String waitFor(MockHttpServletResponse response, String text) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            String content = response.getContentAsString();
+            if (content.contains(text)) {
+                return content;
+            }
+            Thread.sleep(50);
+        }
+        Assert.fail(String.format("%s not received: %s", text, response.getContentAsString()));
+        return null;
+    }
+}
@@ -1,7 +1,16 @@
 package it.at7.gemini.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.lang.Nullable;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
 public class MockMVCUtils {
 
     /**
@@ -13,4 +22,40 @@ public class MockMVCUtils {
 
 
     public static String API_PATH = "/api";
+
+    /**
+     * Create a record with the API
+     */
+    public static void create(String entity, Map<String, Object> body) throws Exception {
+        mockMvc.perform(post(API_PATH + "/" + entity)
+                .contentType(APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(body))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Create the two TestDomain1 records <code>prefix-dm-a</code> and <code>prefix-dm-b</code>
+     */
+    public static void createDomains(String prefix) throws Exception {
+        create("TestDomain1", Map.of("code", prefix + "-dm-a"));
+        create("TestDomain1", Map.of("code", prefix + "-dm-b"));
+    }
+
+    /**
+     * @param domain      the TestDomain1 logical key, null for no reference
+     * @param fieldValues other fields, as name value pairs
+     * @return the body of a TestDataType record
+     */
+    public static Map<String, Object> dataType(String text, @Nullable String domain, Object... fieldValues) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("text", text);
+        if (domain != null) {
+            body.put("domain1", domain);
+        }
+        for (int i = 0; i < fieldValues.length; i += 2) {
+            body.put((String) fieldValues[i], fieldValues[i + 1]);
+        }
+        return body;
+    }
 }
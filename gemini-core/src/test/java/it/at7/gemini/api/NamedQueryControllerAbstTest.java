@@ -0,0 +1,93 @@
+package it.at7.gemini.api;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.create;
+import static it.at7.gemini.api.MockMVCUtils.createDomains;
+import static it.at7.gemini.api.MockMVCUtils.dataType;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class NamedQueryControllerAbstTest {
+
+    @Test
+    public void n1_searchQuery() throws Exception {
+        createDomains("nq");
+        create("TestDataType", dataType("nq-1", "nq-dm-a", "long", 10, "date", "2020-01-01"));
+        create("TestDataType", dataType("nq-2", "nq-dm-a", "long", 20, "date", "2020-02-01"));
+        create("TestDataType", dataType("nq-3", "nq-dm-b", "long", 5, "date", "2020-03-01"));
+
+        mockMvc.perform(get(API_PATH + "/_query/dataTypesByDomain")
+                .param("domain", "nq-dm-a")
+                .param("min", "0")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].text").value("nq-2"))
+                .andExpect(jsonPath("$[0].domain1").value("nq-dm-a"))
+                .andExpect(jsonPath("$[1].text").value("nq-1"));
+
+        mockMvc.perform(get(API_PATH + "/_query/dataTypesByDomain")
+                .param("domain", "nq-dm-a")
+                .param("min", "15")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].data.text").value("nq-2"));
+    }
+
+    @Test
+    public void n2_sqlQueries() throws Exception {
+        mockMvc.perform(get(API_PATH + "/_query/dataTypesByDomainSql")
+                .param("domain", "nq-dm-a")
+                .param("limit", "1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].text").value("nq-1"))
+                .andExpect(jsonPath("$[0].long").value(10));
+
+        mockMvc.perform(get(API_PATH + "/_query/domainTotals")
+                .param("prefix", "nq-dm-%")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].code").value("nq-dm-a"))
+                .andExpect(jsonPath("$[0].records").value(2))
+                .andExpect(jsonPath("$[0].total").value(30))
+                .andExpect(jsonPath("$[0].last").value("2020-02-01"))
+                .andExpect(jsonPath("$[1].code").value("nq-dm-b"))
+                .andExpect(jsonPath("$[1].total").value(5));
+    }
+
+    @Test
+    public void n3_invalidRequests() throws Exception {
+        mockMvc.perform(get(API_PATH + "/_query/notExisting")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorcode").value("NAMED_QUERY_NOT_FOUND"));
+
+        mockMvc.perform(get(API_PATH + "/_query/dataTypesByDomain")
+                .param("domain", "nq-dm-a")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_QUERY_PARAMETER"));
+
+        mockMvc.perform(get(API_PATH + "/_query/dataTypesByDomain")
+                .param("domain", "nq-dm-a")
+                .param("min", "ten")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_QUERY_PARAMETER"));
+    }
+}
@@ -0,0 +1,77 @@
+package it.at7.gemini.api;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.create;
+import static it.at7.gemini.api.MockMVCUtils.createDomains;
+import static it.at7.gemini.api.MockMVCUtils.dataType;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class QueryPlanControllerAbstTest {
+
+    @Test
+    public void n1_explainList() throws Exception {
+        createDomains("explain");
+        create("TestDataType", dataType("explain-1", "explain-dm-a"));
+        create("TestDataType", dataType("explain-2", "explain-dm-a"));
+        create("TestDataType", dataType("explain-3", "explain-dm-b"));
+
+        // one query for each referenced record, the others come from the transaction cache
+        mockMvc.perform(get(API_PATH + "/_explain/TestDataType")
+                .param("search", "text=like=explain-%")
+                .param("orderBy", "-text")
+                .param("limit", "10")
+                .with(asUser("Admin"))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entity").value("TESTDATATYPE"))
+                .andExpect(jsonPath("$.sql").value(containsString("ORDER BY \"testdatatype\".\"text\" DESC")))
+                .andExpect(jsonPath("$.sql").value(containsString("LIMIT 10")))
+                .andExpect(jsonPath("$.params.length()").value(1))
+                .andExpect(jsonPath("$.rows").value(3))
+                .andExpect(jsonPath("$.referenceQueries").value(2))
+                .andExpect(jsonPath("$.plan[0].Plan['Node Type']").exists())
+                .andExpect(jsonPath("$.plan[0]['Execution Time']").exists());
+    }
+
+    @Test
+    public void n2_invalidEntity() throws Exception {
+        mockMvc.perform(get(API_PATH + "/_explain/NotExistingEntity")
+                .with(asUser("Admin"))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorcode").value("UNKNOWN_ENTITY"));
+    }
+
+    @Test
+    public void n3_anonymousIsDenied() throws Exception {
+        mockMvc.perform(get(API_PATH + "/_explain/TestDataType")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void n4_userNotListedIsDenied() throws Exception {
+        mockMvc.perform(get(API_PATH + "/_explain/TestDataType")
+                .with(asUser("guest"))
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isForbidden());
+    }
+
+    private static RequestPostProcessor asUser(String user) {
+        return request -> {
+            request.setRemoteUser(user);
+            return request;
+        };
+    }
+}
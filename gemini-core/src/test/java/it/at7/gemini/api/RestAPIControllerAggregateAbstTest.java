@@ -0,0 +1,105 @@
+package it.at7.gemini.api;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.create;
+import static it.at7.gemini.api.MockMVCUtils.createDomains;
+import static it.at7.gemini.api.MockMVCUtils.dataType;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerAggregateAbstTest {
+
+    @Test
+    public void n1_groupByReference() throws Exception {
+        createDomains("agg");
+        create("TestDataType", dataType("agg-1", "agg-dm-a", "long", 10, "double", 1.5, "date", "2020-01-01"));
+        create("TestDataType", dataType("agg-2", "agg-dm-a", "long", 20, "double", 2.5, "date", "2020-02-01"));
+        create("TestDataType", dataType("agg-3", "agg-dm-b", "long", 5, "double", 4.0, "date", "2020-03-01"));
+        create("TestDataType", dataType("agg-4", null, "long", 7));
+
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .param("search", "text=like=agg-%")
+                .param("groupBy", "domain1")
+                .param("aggregate", "count,sum:long,avg:double,min:date,max:date")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].domain1").value("agg-dm-a"))
+                .andExpect(jsonPath("$[0].count").value(2))
+                .andExpect(jsonPath("$[0].sum_long").value(30))
+                .andExpect(jsonPath("$[0].avg_double").value(2.0))
+                .andExpect(jsonPath("$[0].min_date").value("2020-01-01"))
+                .andExpect(jsonPath("$[0].max_date").value("2020-02-01"))
+                .andExpect(jsonPath("$[1].domain1").value("agg-dm-b"))
+                .andExpect(jsonPath("$[1].count").value(1))
+                .andExpect(jsonPath("$[1].sum_long").value(5))
+                .andExpect(jsonPath("$[2].count").value(1))
+                .andExpect(jsonPath("$[2].sum_long").value(7));
+    }
+
+    @Test
+    public void n2_noGroupsAndOrderByAggregate() throws Exception {
+        // a single group with all the matching records
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .param("search", "text=like=agg-%;domain1.code=like=agg-dm-%")
+                .param("aggregate", "count,max:long")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].count").value(3))
+                .andExpect(jsonPath("$[0].max_long").value(20));
+
+        // groups by path, ordered by an aggregate
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .param("search", "text=like=agg-%;domain1.code=like=agg-dm-%")
+                .param("groupBy", "domain1.code")
+                .param("orderBy", "-sum_long")
+                .param("aggregate", "sum:long")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0]['domain1.code']").value("agg-dm-a"))
+                .andExpect(jsonPath("$[1]['domain1.code']").value("agg-dm-b"));
+
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .param("search", "text=like=agg-%")
+                .param("groupBy", "domain1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.meta.groupBy[0]").value("domain1"))
+                .andExpect(jsonPath("$.meta.aggregate[0]").value("count"))
+                .andExpect(jsonPath("$.data.length()").value(3));
+    }
+
+    @Test
+    public void n3_invalidAggregation() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .param("aggregate", "sum:text")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_AGGREGATION"));
+
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .param("aggregate", "median:long")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_AGGREGATION"));
+
+        mockMvc.perform(get(API_PATH + "/TestDataType/_aggregate")
+                .param("groupBy", "textArray")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_AGGREGATION"));
+    }
+}
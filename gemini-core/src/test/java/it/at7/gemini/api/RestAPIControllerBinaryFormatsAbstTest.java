@@ -0,0 +1,106 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.Config.APPLICATION_CBOR;
+import static it.at7.gemini.api.Config.APPLICATION_SMILE;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerBinaryFormatsAbstTest {
+    private static final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    @Test
+    public void n1_smileInsertAndGet() throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("code", "smile-dm");
+        MvcResult result = mockMvc.perform(post(API_PATH + "/TestDomain1")
+                .contentType(APPLICATION_SMILE)
+                .content(smileMapper.writeValueAsBytes(body))
+                .accept(APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(APPLICATION_SMILE))
+                .andReturn();
+        Map<String, Object> record = smileMapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<Map<String, Object>>() {
+        });
+        Assert.assertEquals("smile-dm", record.get("code"));
+
+        result = mockMvc.perform(get(API_PATH + "/TestDomain1/smile-dm")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andReturn();
+        Map<String, Object> apiRecord = smileMapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<Map<String, Object>>() {
+        });
+        Assert.assertTrue(apiRecord.containsKey("meta"));
+        Assert.assertEquals("smile-dm", ((Map) apiRecord.get("data")).get("code"));
+    }
+
+    @Test
+    public void n2_cborInsertAndList() throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("code", "cbor-dm");
+        MvcResult result = mockMvc.perform(post(API_PATH + "/TestDomain1")
+                .contentType(APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(body))
+                .accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(APPLICATION_CBOR))
+                .andReturn();
+        Map<String, Object> record = cborMapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<Map<String, Object>>() {
+        });
+        Assert.assertEquals("cbor-dm", record.get("code"));
+
+        result = mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn();
+        List<Map<String, Object>> list = cborMapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<List<Map<String, Object>>>() {
+        });
+        Assert.assertTrue(list.stream().anyMatch(r -> "cbor-dm".equals(r.get("code"))));
+
+        result = mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("limit", "1")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn();
+        Map<String, Object> apiList = cborMapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<Map<String, Object>>() {
+        });
+        Assert.assertEquals(1, ((Map) apiList.get("meta")).get("limit"));
+        Assert.assertEquals(1, ((List) apiList.get("data")).size());
+    }
+
+    @Test
+    public void n3_smileCount() throws Exception {
+        MvcResult result = mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("count", "true")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andReturn();
+        Map<String, Object> count = smileMapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<Map<String, Object>>() {
+        });
+        Assert.assertTrue(((Number) ((Map) count.get("data")).get("count")).longValue() >= 2);
+    }
+}
@@ -0,0 +1,155 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.Transaction;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerChangesAbstTest {
+    private static String token;
+    private static String domainToken;
+
+    @Test
+    public void n1_changesFromStart() throws Exception {
+        Services.getEntityManager().putIfAbsent(TestData.getTestDataTypeEntityRecord("changes-1"));
+        MvcResult result = mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("changedSince", "0")
+                .param("search", "text==changes-1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                // deletions cannot be matched against the filter, they are always part of the changes
+                .andExpect(jsonPath("$.changes[?(@.op == 'upsert')].data.text").value("changes-1"))
+                .andExpect(jsonPath("$.hasMore").value(false))
+                .andReturn();
+        token = (String) new ObjectMapper().readValue(result.getResponse().getContentAsString(), Map.class).get("next");
+
+        // nothing changed since the last token
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("changedSince", token)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(0))
+                .andExpect(jsonPath("$.next").value(token));
+    }
+
+    @Test
+    public void n2_updateAndDeleteAreTracked() throws Exception {
+        EntityRecord rec = TestData.getTestDataTypeEntityRecord("changes-1");
+        rec.put("numberLong", 7);
+        Services.getEntityManager().update(rec);
+        Services.getEntityManager().putIfAbsent(TestData.getTestDataTypeEntityRecord("changes-2"));
+        mockMvc.perform(delete(API_PATH + "/TestDataType/changes-2")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("changedSince", token)
+                .param("limit", "2")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].data.numberLong").value(7))
+                .andExpect(jsonPath("$.data[1].op").value("delete"))
+                .andExpect(jsonPath("$.meta.hasMore").value(false));
+    }
+
+    @Test
+    public void n3_invalidToken() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("changedSince", "not-a-token")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_CHANGE_TOKEN"));
+    }
+
+    @Test
+    public void n4_changesOfOpenTransactionsAreNotSkipped() throws Exception {
+        // TestDataType has a maintained count: concurrent inserts wait for each other
+        domainToken = nextToken("TestDomain1", "0");
+
+        // the first transaction writes before the second, but commits after it
+        Transaction first = Services.getTransactionManager().openTransaction();
+        try {
+            Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("changes-open"), first);
+            Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("changes-committed"));
+
+            // nothing after the open transaction is returned yet
+            mockMvc.perform(get(API_PATH + "/TestDomain1")
+                    .param("changedSince", domainToken)
+                    .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.changes.length()").value(0))
+                    .andExpect(jsonPath("$.next").value(domainToken));
+            first.commit();
+        } finally {
+            first.close();
+        }
+
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("changedSince", domainToken)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(2))
+                .andExpect(jsonPath("$.changes[0].data.code").value("changes-open"))
+                .andExpect(jsonPath("$.changes[1].data.code").value("changes-committed"));
+    }
+
+    @Test
+    public void n5_tokenOlderThanRetainedDeletes() throws Exception {
+        mockMvc.perform(delete(API_PATH + "/TestDomain1/changes-committed")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        Services.getTransactionManager().executeInSingleTrasaction(transaction -> {
+            Services.getPersistenceEntityManager().purgeTombstones(LocalDateTime.now(ZoneOffset.UTC).plusMinutes(1), transaction);
+        });
+
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("changedSince", domainToken)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.errorcode").value("CHANGE_TOKEN_TOO_OLD"));
+
+        // a full sync is still possible
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("changedSince", "0")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[?(@.op == 'delete')]").isEmpty());
+    }
+
+    private static String nextToken(String entity, String since) throws Exception {
+        String next = since;
+        boolean hasMore = true;
+        while (hasMore) {
+            MvcResult result = mockMvc.perform(get(API_PATH + "/" + entity)
+                    .param("changedSince", next)
+                    .accept(APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            Map<?, ?> body = new ObjectMapper().readValue(result.getResponse().getContentAsString(), Map.class);
+            next = (String) body.get("next");
+            hasMore = (Boolean) body.get("hasMore");
+        }
+        return next;
+    }
+}
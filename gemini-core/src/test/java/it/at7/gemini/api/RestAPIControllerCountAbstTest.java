@@ -0,0 +1,87 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Map;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerCountAbstTest {
+
+    @Test
+    public void n1_countIgnoresLimitAndStart() throws Exception {
+        for (String text : new String[]{"count-1", "count-2", "count-3"}) {
+            Services.getEntityManager().putIfAbsent(TestData.getTestDataTypeEntityRecord(text));
+        }
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("count", "true")
+                .param("search", "text=like=count-%")
+                .param("limit", "1")
+                .param("start", "1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(3));
+    }
+
+    @Test
+    public void n2_estimatedCountOfSmallTableIsExact() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .param("count", "true")
+                .param("countMode", "estimated")
+                .param("search", "text=like=count-%")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.meta.countMode").value("estimated"))
+                .andExpect(jsonPath("$.data.count").value(3));
+    }
+
+    @Test
+    public void n3_maintainedCount() throws Exception {
+        mockMvc.perform(delete(API_PATH + "/TestDataType/count-3")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        long exact = count(get(API_PATH + "/TestDataType").param("count", "true"));
+        long maintained = count(get(API_PATH + "/TestDataType").param("count", "true").param("countMode", "maintained"));
+        Assert.assertEquals(exact, maintained);
+
+        // not enabled for the Entity: exact count
+        long domainExact = count(get(API_PATH + "/TestDomain1").param("count", "true"));
+        long domainMaintained = count(get(API_PATH + "/TestDomain1").param("count", "true").param("countMode", "maintained"));
+        Assert.assertEquals(domainExact, domainMaintained);
+    }
+
+    @Test
+    public void n4_invalidCountMode() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("count", "true")
+                .param("countMode", "approximate")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorcode").value("INVALID_COUNT_MODE"));
+    }
+
+    private long count(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request.accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        Map<?, ?> body = new ObjectMapper().readValue(result.getResponse().getContentAsString(), Map.class);
+        return ((Number) body.get("count")).longValue();
+    }
+}
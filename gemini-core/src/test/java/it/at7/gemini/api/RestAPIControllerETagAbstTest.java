@@ -0,0 +1,132 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerETagAbstTest {
+
+    @Test
+    public void n1_recordNotModified() throws Exception {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("etag-1");
+        record.put("numberLong", 1);
+        Services.getEntityManager().putIfAbsent(record);
+        String etag = getRecord(null)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        getRecord(etag)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        record.put("numberLong", 2);
+        Services.getEntityManager().update(record);
+        String newEtag = getRecord(etag)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, newEtag);
+    }
+
+    @Test
+    public void n2_referencedEntityChangeModifiesRecord() throws Exception {
+        EntityRecord domain = Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("etag-1"));
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("etag-1");
+        record.put("domain1", domain);
+        Services.getEntityManager().update(record);
+        String etag = getRecord(null).andReturn().getResponse().getHeader("ETag");
+
+        // the record is unchanged but its response contains the domain logical key
+        mockMvc.perform(put(API_PATH + "/TestDomain1/etag-1")
+                .contentType(APPLICATION_JSON)
+                .content("{\"code\": \"etag-1b\"}")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        getRecord(etag)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.domain1").value("etag-1b"));
+    }
+
+    @Test
+    public void n3_listNotModified() throws Exception {
+        String etag = mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code=like=etag-%")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code=like=etag-%")
+                .header("If-None-Match", etag)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+
+        // same version, different request
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code==etag-1b")
+                .header("If-None-Match", etag)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put(API_PATH + "/TestDomain1/etag-1b")
+                .contentType(APPLICATION_JSON)
+                .content("{\"code\": \"etag-1c\"}")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code=like=etag-%")
+                .header("If-None-Match", etag)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].code").value("etag-1c"));
+    }
+
+    @Test
+    public void n4_listChangedByAnotherInstanceIsModified() throws Exception {
+        String etag = mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code=like=etag-%")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // written with the persistence layer: no change event, as done by another instance
+        Services.getTransactionManager().executeInSingleTrasaction(transaction -> {
+            EntityRecord domain = Services.getEntityManager().get(TestData.getDomain_singlelk_EntityRecord("etag-1c"));
+            domain.put("code", "etag-1d");
+            Services.getPersistenceEntityManager().updateEntityRecordByID(domain, transaction);
+        });
+        mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code=like=etag-%")
+                .header("If-None-Match", etag)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].code").value("etag-1d"));
+    }
+
+    private ResultActions getRecord(String ifNoneMatch) throws Exception {
+        MockHttpServletRequestBuilder request = get(API_PATH + "/TestDataType/etag-1")
+                .accept(APPLICATION_JSON);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return mockMvc.perform(request);
+    }
+}
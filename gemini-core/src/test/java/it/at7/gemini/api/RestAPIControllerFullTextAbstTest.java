@@ -0,0 +1,102 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.schema.Entity;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerFullTextAbstTest {
+
+    @Test
+    public void n1_searchAllSearchableFields() throws Exception {
+        Entity entity = Services.getSchemaManager().getEntity("TestFullText");
+        putRecord(entity, "fts-1", "the quick brown fox jumps over the lazy dog", 1);
+        putRecord(entity, "fts-2", "a brown bear", 2);
+        putRecord(entity, "fts-3", "nothing to see here", 3);
+        putRecord(entity, "fox", "fox fox fox", 4);
+
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "_search=fts=brown")
+                .param("orderBy", "code")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].code").value("fts-1"))
+                .andExpect(jsonPath("$[1].code").value("fts-2"));
+
+        // web search syntax
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "_search=fts='brown -bear'")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].code").value("fts-1"));
+
+        // combined with the other conditions
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "_search=fts=brown;number>1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].code").value("fts-2"));
+    }
+
+    @Test
+    public void n2_searchSingleField() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "code=fts=fox")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].code").value("fox"));
+
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "number=fts=fox")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().is5xxServerError());
+    }
+
+    @Test
+    public void n3_orderByRank() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "_search=fts=fox")
+                .param("orderBy", "_rank")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].code").value("fox"))
+                .andExpect(jsonPath("$[1].code").value("fts-1"));
+
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("search", "_search=fts=fox")
+                .param("orderBy", "-_rank")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].code").value("fts-1"))
+                .andExpect(jsonPath("$[1].code").value("fox"));
+
+        // no relevance without a full text search
+        mockMvc.perform(get(API_PATH + "/TestFullText")
+                .param("orderBy", "_rank")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().is5xxServerError());
+    }
+
+    private static void putRecord(Entity entity, String code, String description, long number) throws Exception {
+        EntityRecord record = new EntityRecord(entity);
+        record.put("code", code);
+        record.put("description", description);
+        record.put("number", number);
+        Services.getEntityManager().putIfAbsent(record);
+    }
+}
@@ -0,0 +1,123 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerJsonCacheAbstTest {
+
+    @Test
+    public void n1_recordServedUntilChanged() throws Exception {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("jcache-1");
+        record.put("numberLong", 1);
+        Services.getEntityManager().putIfAbsent(record);
+
+        String first = getRecord().andExpect(jsonPath("$.numberLong").value(1))
+                .andReturn().getResponse().getContentAsString();
+        String second = getRecord().andReturn().getResponse().getContentAsString();
+        assertEquals(first, second);
+
+        mockMvc.perform(put(API_PATH + "/TestDataType/jcache-1")
+                .contentType(APPLICATION_JSON)
+                .content("{\"numberLong\": 2}")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        getRecord().andExpect(jsonPath("$.numberLong").value(2));
+    }
+
+    @Test
+    public void n2_referencedEntityChange() throws Exception {
+        EntityRecord domain = Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("jcache-dom"));
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("jcache-1");
+        record.put("domain1", domain);
+        Services.getEntityManager().update(record);
+        getRecord().andExpect(jsonPath("$.domain1").value("jcache-dom"));
+
+        mockMvc.perform(put(API_PATH + "/TestDomain1/jcache-dom")
+                .contentType(APPLICATION_JSON)
+                .content("{\"code\": \"jcache-dom2\"}")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        getRecord().andExpect(jsonPath("$.domain1").value("jcache-dom2"));
+    }
+
+    @Test
+    public void n3_listsEmbedSerializedRecords() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text==jcache-1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text").value("jcache-1"))
+                .andExpect(jsonPath("$[0].domain1").value("jcache-dom2"));
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text==jcache-1")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].data.text").value("jcache-1"))
+                .andExpect(jsonPath("$.data[0].meta.uuid").exists());
+        mockMvc.perform(get(API_PATH + "/TestDataType/jcache-1")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.numberLong").value(2));
+    }
+
+    @Test
+    public void n4_gzipVariant() throws Exception {
+        List<String> textArray = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            textArray.add("jcache-array-element-" + i);
+        }
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("jcache-big");
+        record.put("textArray", textArray);
+        Services.getEntityManager().putIfAbsent(record);
+
+        MockHttpServletResponse response = mockMvc.perform(get(API_PATH + "/TestDataType/jcache-big")
+                .header("Accept-Encoding", "gzip")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse();
+        try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            JsonNode json = new ObjectMapper().readTree(body);
+            assertEquals("jcache-big", json.get("text").asText());
+            assertEquals(200, json.get("textArray").size());
+        }
+
+        mockMvc.perform(get(API_PATH + "/TestDataType/jcache-big")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.textArray.length()").value(200));
+    }
+
+    private ResultActions getRecord() throws Exception {
+        return mockMvc.perform(get(API_PATH + "/TestDataType/jcache-1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+}
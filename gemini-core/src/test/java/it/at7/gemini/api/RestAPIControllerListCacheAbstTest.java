@@ -0,0 +1,66 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerListCacheAbstTest {
+
+    @Test
+    public void n1_cachedUntilEntityChanges() throws Exception {
+        Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("lcache-1"));
+        listDomains().andExpect(jsonPath("$.length()").value(1));
+        listDomains().andExpect(jsonPath("$.length()").value(1));
+
+        // written below the entity manager (as another instance would do): the data version read from the database changes
+        Services.getTransactionManager().executeInSingleTrasaction(transaction -> {
+            return Services.getPersistenceEntityManager().createNewEntityRecord(TestData.getDomain_singlelk_EntityRecord("lcache-2"), transaction);
+        });
+        listDomains().andExpect(jsonPath("$.length()").value(2));
+
+        Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("lcache-3"));
+        listDomains().andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    public void n2_referencedEntityChangeInvalidates() throws Exception {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("lcache-ref");
+        record.put("domain1", Services.getEntityManager().get(TestData.getDomain_singlelk_EntityRecord("lcache-1")));
+        Services.getEntityManager().putIfAbsent(record);
+        listDataTypes().andExpect(jsonPath("$[0].domain1").value("lcache-1"));
+
+        // no change to TestDataType records, but their references are resolved through TestDomain1
+        mockMvc.perform(put(API_PATH + "/TestDomain1/lcache-1")
+                .contentType(APPLICATION_JSON)
+                .content("{\"code\": \"lcache-1b\"}")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+        listDataTypes().andExpect(jsonPath("$[0].domain1").value("lcache-1b"));
+    }
+
+    private ResultActions listDomains() throws Exception {
+        return mockMvc.perform(get(API_PATH + "/TestDomain1")
+                .param("search", "code=like=lcache-%")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions listDataTypes() throws Exception {
+        return mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text==lcache-ref")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+}
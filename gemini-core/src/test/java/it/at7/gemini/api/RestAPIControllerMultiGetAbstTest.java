@@ -0,0 +1,64 @@
+package it.at7.gemini.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.EntityRecord;
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerMultiGetAbstTest {
+
+    private static UUID mget1;
+    private static UUID mget2;
+
+    @Test
+    public void n1_multiGetByUUIDs() throws Exception {
+        EntityRecord domain = Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("mget-dm"));
+        EntityRecord r1 = TestData.getTestDataTypeEntityRecord("mget-1");
+        r1.put("domain1", domain);
+        mget1 = Services.getEntityManager().putIfAbsent(r1).getUUID();
+        mget2 = Services.getEntityManager().putIfAbsent(TestData.getTestDataTypeEntityRecord("mget-2")).getUUID();
+        UUID notExistent = UUID.randomUUID();
+
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("uuids", mget2 + "," + notExistent + "," + mget1)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.records.length()").value(2))
+                .andExpect(jsonPath("$.records[0].text").value("mget-2"))
+                .andExpect(jsonPath("$.records[1].text").value("mget-1"))
+                .andExpect(jsonPath("$.records[1].domain1").value("mget-dm"))
+                .andExpect(jsonPath("$.notFound[0]").value(notExistent.toString()));
+    }
+
+    @Test
+    public void n2_multiGetMixedKeys() throws Exception {
+        String body = new ObjectMapper().writeValueAsString(Map.of("keys", List.of("mget-1", mget2.toString(), "not-existent")));
+        mockMvc.perform(post(API_PATH + "/TestDataType/_mget")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .contentType(APPLICATION_JSON)
+                .content(body)
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].data.text").value("mget-1"))
+                .andExpect(jsonPath("$.data[1].meta.uuid").value(mget2.toString()))
+                .andExpect(jsonPath("$.meta.notFound[0]").value("not-existent"));
+    }
+}
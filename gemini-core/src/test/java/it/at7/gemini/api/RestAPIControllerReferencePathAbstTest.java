@@ -0,0 +1,86 @@
+package it.at7.gemini.api;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Map;
+
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.create;
+import static it.at7.gemini.api.MockMVCUtils.createDomains;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerReferencePathAbstTest {
+
+    @Test
+    public void n1_filterByReferencePath() throws Exception {
+        createDomains("path");
+        create("TestDomainHierarchy", Map.of("code", "path-h1", "domain1", "path-dm-a"));
+        create("TestDomainHierarchy", Map.of("code", "path-h2", "domain1", "path-dm-b"));
+        create("TestDataTypeWithHierachy", Map.of("text", "path-1", "dmHierarchy", Map.of("code", "path-h1", "domain1", "path-dm-a")));
+        create("TestDataTypeWithHierachy", Map.of("text", "path-2", "dmHierarchy", Map.of("code", "path-h2", "domain1", "path-dm-b")));
+        create("TestDataTypeWithHierachy", Map.of("text", "path-3", "dmHierarchy", Map.of("code", "path-h2", "domain1", "path-dm-b")));
+
+        mockMvc.perform(get(API_PATH + "/TestDataTypeWithHierachy")
+                .param("search", "dmHierarchy.domain1.code==path-dm-a")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].text").value("path-1"));
+
+        // predicates on the same path share the joins
+        mockMvc.perform(get(API_PATH + "/TestDataTypeWithHierachy")
+                .param("search", "dmHierarchy.code==path-h2;dmHierarchy.domain1.code=like=path-dm-%;text!=path-3")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].text").value("path-2"));
+
+        // the last element can be a reference too (filtered by its logical key)
+        mockMvc.perform(get(API_PATH + "/TestDataTypeWithHierachy")
+                .param("search", "dmHierarchy.domain1==path-dm-b")
+                .param("orderBy", "text")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].text").value("path-2"))
+                .andExpect(jsonPath("$[1].text").value("path-3"));
+    }
+
+    @Test
+    public void n2_orderByReferencePath() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataTypeWithHierachy")
+                .param("search", "text=like=path-%")
+                .param("orderBy", "-dmHierarchy.domain1.code,text")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].text").value("path-2"))
+                .andExpect(jsonPath("$[1].text").value("path-3"))
+                .andExpect(jsonPath("$[2].text").value("path-1"));
+
+        mockMvc.perform(get(API_PATH + "/TestDataTypeWithHierachy")
+                .param("search", "dmHierarchy.domain1.code=in=(path-dm-a,path-dm-b)")
+                .param("orderBy", "dmHierarchy.code,-text")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].text").value("path-1"))
+                .andExpect(jsonPath("$[1].text").value("path-3"))
+                .andExpect(jsonPath("$[2].text").value("path-2"));
+    }
+
+    @Test
+    public void n3_invalidPath() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataTypeWithHierachy")
+                .param("search", "text.code==path-1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().is5xxServerError());
+    }
+}
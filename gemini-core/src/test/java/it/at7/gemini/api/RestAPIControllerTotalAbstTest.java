@@ -0,0 +1,77 @@
+package it.at7.gemini.api;
+
+import it.at7.gemini.core.Services;
+import it.at7.gemini.core.entitymanager.TestData;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static it.at7.gemini.api.ApiUtility.GEMINI_API_META_TYPE;
+import static it.at7.gemini.api.ApiUtility.GEMINI_HEADER;
+import static it.at7.gemini.api.EntityRecordListMessageConverter.TOTAL_COUNT_HEADER;
+import static it.at7.gemini.api.MockMVCUtils.API_PATH;
+import static it.at7.gemini.api.MockMVCUtils.mockMvc;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RestAPIControllerTotalAbstTest {
+
+    @Test
+    public void n1_pageWithTotal() throws Exception {
+        for (String text : new String[]{"total-1", "total-2", "total-3"}) {
+            Services.getEntityManager().putIfAbsent(TestData.getTestDataTypeEntityRecord(text));
+        }
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text=like=total-%")
+                .param("orderBy", "text")
+                .param("limit", "2")
+                .param("total", "true")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TOTAL_COUNT_HEADER, "3"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].text").value("total-1"));
+
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .header(GEMINI_HEADER, GEMINI_API_META_TYPE)
+                .param("search", "text=like=total-%")
+                .param("limit", "2")
+                .param("start", "2")
+                .param("total", "true")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.meta.total").value(3))
+                .andExpect(jsonPath("$.data.length()").value(1));
+    }
+
+    @Test
+    public void n2_emptyPageWithTotal() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text=like=total-%")
+                .param("limit", "2")
+                .param("start", "10")
+                .param("total", "true")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TOTAL_COUNT_HEADER, "3"))
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text==total-none")
+                .param("total", "true")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TOTAL_COUNT_HEADER, "0"));
+    }
+
+    @Test
+    public void n3_noTotalByDefault() throws Exception {
+        mockMvc.perform(get(API_PATH + "/TestDataType")
+                .param("search", "text=like=total-%")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(TOTAL_COUNT_HEADER));
+    }
+}
@@ -0,0 +1,95 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.core.entitymanager.TestData;
+import it.at7.gemini.schema.Entity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+public class EntityRecordMatcherAbstTest {
+
+    @Test
+    public void testLikeAndIlike() throws Exception {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("Matcher-Text");
+        Assert.assertTrue(matches("text=like=Matcher-%", record));
+        Assert.assertFalse(matches("text=like=matcher-%", record));
+        Assert.assertTrue(matches("text=ilike=matcher-%", record));
+        Assert.assertTrue(matches("text=ilike=%TEXT", record));
+        Assert.assertFalse(matches("text=ilike=other%", record));
+    }
+
+    @Test
+    public void testIlikeOnReference() throws Exception {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("matcher-ref");
+        record.put("domain1", Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("Matcher-Domain")));
+        Assert.assertTrue(matches("domain1=ilike=matcher-%", record));
+        Assert.assertFalse(matches("domain1=like=matcher-%", record));
+    }
+
+    @Test
+    public void testArrayContainment() throws Exception {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("matcher-array");
+        record.put("textArray", new String[]{"a", "b"});
+        Assert.assertTrue(matches("textArray=contains=(a,b)", record));
+        Assert.assertFalse(matches("textArray=contains=(a,c)", record));
+        Assert.assertTrue(matches("textArray=overlaps=(c,b)", record));
+        Assert.assertFalse(matches("textArray=overlaps=(c,d)", record));
+        Assert.assertTrue(matches("textArray=containedby=(a,b,c)", record));
+        Assert.assertFalse(matches("textArray=containedby=(a,c)", record));
+    }
+
+    @Test
+    public void testReferenceArrayContainment() throws Exception {
+        EntityRecord d1 = Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("matcher-d1"));
+        EntityRecord d2 = Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("matcher-d2"));
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("matcher-refarray");
+        record.put("domain1Array", List.of(d1, d2));
+        Assert.assertTrue(matches("domain1Array=contains=(matcher-d1,matcher-d2)", record));
+        Assert.assertTrue(matches("domain1Array=contains=" + d1.getUUID(), record));
+        Assert.assertTrue(matches("domain1Array=overlaps=(matcher-d2,other)", record));
+        Assert.assertFalse(matches("domain1Array=containedby=matcher-d1", record));
+        Assert.assertTrue(matches("domain1Array=containedby=(matcher-d1,matcher-d2,other)", record));
+
+        // as loaded from the storage: references with the logical key only
+        record.put("domain1Array", List.of(EntityReferenceRecord.fromEntityRecord(d1)));
+        Assert.assertTrue(matches("domain1Array=contains=matcher-d1", record));
+        Assert.assertTrue(matches("domain1Array=containedby=(matcher-d1,matcher-d2)", record));
+        Assert.assertFalse(matches("domain1Array=overlaps=matcher-d2", record));
+    }
+
+    @Test
+    public void testReferencePath() throws Exception {
+        Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("matcher-path"));
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("matcher-path");
+        // as loaded from the storage: the referenced record is read to evaluate the path
+        EntityRecord domain = Services.getEntityManager().get(TestData.getDomain_singlelk_EntityRecord("matcher-path"));
+        record.put("domain1", EntityReferenceRecord.fromEntityRecord(domain));
+        Assert.assertTrue(matches("domain1.code==matcher-path", record));
+        Assert.assertTrue(matches("domain1.code=ilike=MATCHER-%", record));
+        Assert.assertFalse(matches("domain1.code==other", record));
+
+        // no reference: no values
+        EntityRecord noReference = TestData.getTestDataTypeEntityRecord("matcher-nopath");
+        Assert.assertFalse(matches("domain1.code==matcher-path", noReference));
+        Assert.assertTrue(matches("domain1.code=empty=true", noReference));
+    }
+
+    @Test
+    public void testInvalidPath() {
+        EntityRecord record = TestData.getTestDataTypeEntityRecord("matcher-path");
+        try {
+            matches("text.code==x", record);
+            Assert.fail("text is not a reference");
+        } catch (Exception e) {
+            Assert.assertTrue(e.getMessage().contains("Invalid path"));
+        }
+    }
+
+    private static boolean matches(String search, EntityRecord record) throws Exception {
+        Entity entity = Services.getSchemaManager().getEntity("TestDataType");
+        Predicate<EntityRecord> predicate = EntityRecordMatcher.compile(entity, search);
+        return predicate.test(record);
+    }
+}
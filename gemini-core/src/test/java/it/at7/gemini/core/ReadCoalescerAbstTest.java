@@ -0,0 +1,156 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.core.entitymanager.TestData;
+import it.at7.gemini.exceptions.GeminiException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+public class ReadCoalescerAbstTest {
+
+    @Test
+    public void testConcurrentIdenticalReadsShareTheQuery() throws Exception {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 0);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> leader = executor.submit(() -> readOnly(coalescer, "key", () -> {
+                executions.incrementAndGet();
+                leaderStarted.countDown();
+                release.await();
+                return "result";
+            }));
+            leaderStarted.await();
+            Future<Object> follower = executor.submit(() -> readOnly(coalescer, "key", () -> {
+                executions.incrementAndGet();
+                return "other";
+            }));
+            Thread.sleep(100); // the follower is waiting for the leader
+            release.countDown();
+            Assert.assertEquals("result", leader.get());
+            Assert.assertEquals("result", follower.get());
+            Assert.assertEquals(1, executions.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        // nothing in flight
+        Assert.assertEquals("again", readOnly(coalescer, "key", () -> "again"));
+    }
+
+    @Test
+    public void testCommittedChangeEndsSharing() throws Exception {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 60000);
+        Assert.assertEquals("first", readOnly(coalescer, "key", () -> "first"));
+        Assert.assertEquals("first", readOnly(coalescer, "key", () -> "second")); // inside the window
+
+        coalescer.onCommittedChange(EntityRecordChangeListener.ChangeType.UPDATE, TestData.getDomain_singlelk_EntityRecord("read-coalesce"));
+        Assert.assertEquals("third", readOnly(coalescer, "key", () -> "third"));
+    }
+
+    @Test
+    public void testRequiredCommitPositionIsPartOfTheKey() throws Exception {
+        EntityManager entityManager = Services.getEntityManager();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<Object> leader = executor.submit(() -> entityManager.coalescedRead("position-key", transaction -> {
+                Assert.assertTrue(transaction.isReadOnly());
+                executions.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return "leader";
+            }, UnaryOperator.identity()));
+            leaderStarted.await();
+            // a client that committed a write must see it: it does not join the flight started without its position
+            Future<Object> positioned = executor.submit(() -> {
+                ReadConsistency.open("0/0", p -> {
+                });
+                try {
+                    return entityManager.coalescedRead("position-key", transaction -> {
+                        executions.incrementAndGet();
+                        return "positioned";
+                    }, UnaryOperator.identity());
+                } finally {
+                    ReadConsistency.close();
+                }
+            });
+            Assert.assertEquals("positioned", positioned.get());
+            Future<Object> follower = executor.submit(() -> entityManager.coalescedRead("position-key", transaction -> {
+                executions.incrementAndGet();
+                return "follower";
+            }, UnaryOperator.identity()));
+            Thread.sleep(100); // the follower is waiting for the leader
+            release.countDown();
+            Assert.assertEquals("leader", leader.get());
+            Assert.assertEquals("leader", follower.get());
+            Assert.assertEquals(2, executions.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCallersGetCopiesOfTheResult() throws Exception {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 60000);
+        EntityRecord shared = TestData.getDomain_singlelk_EntityRecord("read-copy");
+        EntityRecord first = readOnlyRecord(coalescer, shared);
+        first.put("code", "changed");
+        EntityRecord second = readOnlyRecord(coalescer, TestData.getDomain_singlelk_EntityRecord("other"));
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("read-copy", second.get("code"));
+        Assert.assertEquals("read-copy", shared.get("code"));
+    }
+
+    @Test
+    public void testExpiredFlightsArePruned() throws Exception {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 50);
+        for (int i = 0; i < 10; i++) {
+            readOnly(coalescer, "key-" + i, () -> "result");
+        }
+        Assert.assertEquals(10, coalescer.size());
+        Thread.sleep(100);
+        readOnly(coalescer, "key", () -> "result");
+        Assert.assertEquals(1, coalescer.size());
+    }
+
+    @Test
+    public void testCompletedFlightsAreBounded() throws Exception {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 60000);
+        for (int i = 0; i <= ReadCoalescer.MAX_FLIGHTS; i++) {
+            readOnly(coalescer, "key-" + i, () -> "result");
+        }
+        Assert.assertTrue(coalescer.size() <= ReadCoalescer.MAX_FLIGHTS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static EntityRecord readOnlyRecord(ReadCoalescer coalescer, EntityRecord record) throws GeminiException {
+        return coalescer.read("record", () -> record, EntityRecord::copy);
+    }
+
+    private static Object readOnly(ReadCoalescer coalescer, Object key, Callable<Object> read) throws GeminiException {
+        return coalescer.read(key, () -> {
+            try {
+                return read.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package it.at7.gemini.core;
 
+import it.at7.gemini.core.entitymanager.TestData;
 import it.at7.gemini.exceptions.GeminiException;
 import org.junit.Assert;
 import org.junit.Test;
@@ -14,4 +15,34 @@ public class TransactionManagerAbstTest {
         Assert.assertNotEquals(t1, t2);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testReadOnlyTransactionReuse() throws GeminiException {
+        TransactionManager transactionManager = Services.getTransactionManager();
+        Transaction t1 = transactionManager.openReadOnlyTransaction();
+        Transaction nested = transactionManager.openReadOnlyTransaction();
+        Assert.assertTrue(t1.isReadOnly());
+        Assert.assertNotEquals(t1, nested);
+        nested.close();
+        t1.close();
+        try (Transaction t2 = transactionManager.openReadOnlyTransaction()) {
+            Assert.assertSame(t1, t2);
+        }
+    }
+
+    @Test(expected = GeminiException.class)
+    public void testReadOnlyTransactionRejectsWrites() throws GeminiException {
+        Services.getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+            return Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("read-only"), transaction);
+        });
+    }
+
+    @Test
+    public void testBulkPoolTransaction() throws GeminiException {
+        EntityRecord record = Services.getTransactionManager().executeInSingleTrasaction(ConnectionPool.BULK, transaction -> {
+            Assert.assertFalse(transaction.isReadOnly());
+            return Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("bulk-pool"), transaction);
+        });
+        Assert.assertEquals("bulk-pool", record.get("code"));
+    }
+
+}
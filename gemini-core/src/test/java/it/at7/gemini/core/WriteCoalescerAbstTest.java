@@ -0,0 +1,79 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.core.entitymanager.TestData;
+import it.at7.gemini.exceptions.EntityRecordException;
+import it.at7.gemini.exceptions.GeminiException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WriteCoalescerAbstTest {
+
+    private final QueryBudgets budgets = new QueryBudgets(50, 0, Map.of());
+
+    @After
+    public void clean() {
+        budgets.shutdown();
+    }
+
+    @Test
+    public void testConcurrentInsertsShareTheCommit() throws Exception {
+        WriteCoalescer coalescer = new WriteCoalescer(Services.getEntityManager(), budgets, Set.of("TestDomain1"), 200, 3, 0);
+        Services.getEntityManager().putIfAbsent(TestData.getDomain_singlelk_EntityRecord("coalesce-dup"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<EntityRecord>> results = new ArrayList<>();
+            for (String code : List.of("coalesce-1", "coalesce-dup", "coalesce-2")) {
+                results.add(executor.submit(() -> coalescer.putIfAbsent(TestData.getDomain_singlelk_EntityRecord(code), EntityOperationContext.EMPTY)));
+            }
+            int inserted = 0;
+            int failed = 0;
+            for (Future<EntityRecord> result : results) {
+                try {
+                    Assert.assertNotNull(result.get().getUUID());
+                    inserted++;
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof EntityRecordException);
+                    failed++;
+                }
+            }
+            Assert.assertEquals(2, inserted);
+            Assert.assertEquals(1, failed);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals("coalesce-1", Services.getEntityManager().get(TestData.getDomain_singlelk_EntityRecord("coalesce-1")).get("code"));
+        Assert.assertEquals("coalesce-2", Services.getEntityManager().get(TestData.getDomain_singlelk_EntityRecord("coalesce-2")).get("code"));
+    }
+
+    @Test
+    public void testBatchHasItsOwnBudget() throws GeminiException {
+        WriteCoalescer coalescer = new WriteCoalescer(Services.getEntityManager(), budgets, Set.of("TestDomain1"), 200, 3, 0);
+        // the window outlasts the budget of the leader request, the batch is not cancelled by it
+        QueryBudget budget = budgets.open(null, null);
+        try {
+            EntityRecord record = coalescer.putIfAbsent(TestData.getDomain_singlelk_EntityRecord("coalesce-budget"), EntityOperationContext.EMPTY);
+            Assert.assertEquals("coalesce-budget", record.get("code"));
+            Assert.assertTrue(budget.isExpired());
+        } finally {
+            budget.close();
+        }
+    }
+
+    @Test
+    public void testNotCoalescedEntity() throws GeminiException {
+        WriteCoalescer coalescer = new WriteCoalescer(Services.getEntityManager(), budgets, Set.of(), 200, 3, 0);
+        EntityRecord record = coalescer.putIfAbsent(TestData.getDomain_singlelk_EntityRecord("coalesce-off"), EntityOperationContext.EMPTY);
+        Assert.assertEquals("coalesce-off", record.get("code"));
+    }
+}
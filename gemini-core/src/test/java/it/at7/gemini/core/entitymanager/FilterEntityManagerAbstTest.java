@@ -11,6 +11,7 @@ import org.junit.runners.MethodSorters;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class FilterEntityManagerAbstTest {
@@ -153,4 +154,67 @@ public class FilterEntityManagerAbstTest {
         // in n1 we have inserted 10 value
         Assert.assertEquals(10, (long) records.get(20).get("numberLong", Long.class));
     }
+
+    @Test
+    public void n6_testCaseInsensitiveLike() throws GeminiException {
+        EntityManager entityManager = Services.getEntityManager();
+        Entity fieldEntity = entityManager.getEntity("FIELD");
+
+        FilterContext filterContext = FilterContext.withGeminiSearchString("name=ilike=NAM%");
+        List<EntityRecord> nameFields = entityManager.getRecordsMatching(fieldEntity, filterContext);
+        Assert.assertTrue(!nameFields.isEmpty());
+        for (EntityRecord nameField : nameFields) {
+            String name = nameField.get("name");
+            Assert.assertTrue(name.toLowerCase().startsWith("nam"));
+        }
+        filterContext = FilterContext.withGeminiSearchString("name=like=NAM%");
+        Assert.assertTrue(entityManager.getRecordsMatching(fieldEntity, filterContext).isEmpty());
+
+        // on the logical key of the referenced entity
+        filterContext = FilterContext.withGeminiSearchString("entity=ilike=entity");
+        List<EntityRecord> entityFields = entityManager.getRecordsMatching(fieldEntity, filterContext);
+        Assert.assertTrue(!entityFields.isEmpty());
+        for (EntityRecord field : entityFields) {
+            EntityReferenceRecord ererf = field.get("entity");
+            Assert.assertEquals("ENTITY", ererf.getLogicalKeyRecord().get("name"));
+        }
+    }
+
+    @Test
+    public void n7_testArrayContainment() throws GeminiException {
+        EntityManager entityManager = Services.getEntityManager();
+        EntityRecord red = entityManager.putOrUpdate(TestData.getDomain_singlelk_EntityRecord("arr-red"));
+        EntityRecord blue = entityManager.putOrUpdate(TestData.getDomain_singlelk_EntityRecord("arr-blue"));
+        putArrays("arr-1", List.of("a", "b"), List.of(red));
+        putArrays("arr-2", List.of("b", "c"), List.of(red, blue));
+        putArrays("arr-3", List.of(), List.of());
+
+        Assert.assertEquals(List.of("arr-1", "arr-2"), matching("textArray=contains=b"));
+        Assert.assertEquals(List.of("arr-2"), matching("textArray=contains=(b,c)"));
+        Assert.assertEquals(List.of("arr-1", "arr-2"), matching("textArray=overlaps=(a,c)"));
+        Assert.assertEquals(List.of("arr-1", "arr-3"), matching("textArray=containedby=(a,b)"));
+        Assert.assertEquals(List.of("arr-3"), matching("textArray=empty=true"));
+
+        Assert.assertEquals(List.of("arr-1", "arr-2"), matching("domain1Array=contains=arr-red"));
+        Assert.assertEquals(List.of("arr-2"), matching("domain1Array=contains=(arr-red,arr-blue)"));
+        Assert.assertEquals(List.of(), matching("domain1Array=contains=(arr-red,not-existent)"));
+        Assert.assertEquals(List.of("arr-2"), matching("domain1Array=overlaps=" + blue.getUUID()));
+        Assert.assertEquals(List.of("arr-1", "arr-3"), matching("domain1Array=containedby=arr-red"));
+        Assert.assertEquals(List.of("arr-3"), matching("domain1Array=empty=true"));
+    }
+
+    private static void putArrays(String lk, List<String> textArray, List<EntityRecord> domain1Array) throws GeminiException {
+        EntityRecord entityRecord = TestData.getTestDataTypeForFilterEntityRecord(lk);
+        entityRecord.put("textArray", textArray);
+        entityRecord.put("domain1Array", domain1Array);
+        Services.getEntityManager().putOrUpdate(entityRecord);
+    }
+
+    private static List<String> matching(String search) throws GeminiException {
+        FilterContext filterContext = FilterContext.withGeminiSearchString(search + ";text=like=arr-%");
+        return Services.getEntityManager().getRecordsMatching(TestData.getTestDataTypeFilterEntity(), filterContext).stream()
+                .map(r -> (String) r.get("text"))
+                .sorted()
+                .collect(Collectors.toList());
+    }
 }
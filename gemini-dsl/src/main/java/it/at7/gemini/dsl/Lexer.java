@@ -14,6 +14,9 @@ public class Lexer {
         IMPLEMENTS("IMPLEMENTS"),
         ONEREC("ONEREC"),
         TREE("TREE"),
+        SEARCHABLE("SEARCHABLE"),
+        TRIGRAM("TRIGRAM(_GIN|_GIST)?"),
+        INDEXED("INDEXED"),
         L_BRACE("\\{"),
         R_BRACE("\\}"),
         ASTERISK("\\*[0-9]*"),
@@ -106,6 +106,16 @@ public class SchemaParser {
             }
             entryBuilder.isLogicalKey(lkOrder);
             parseEntryQualifier(entryBuilder);
+        } else if (currentToken.equals(SEARCHABLE)) {
+            entryBuilder.isSearchable();
+            parseEntryQualifier(entryBuilder);
+        } else if (currentToken.equals(TRIGRAM)) {
+            String trigramToken = lexer.getVal();
+            entryBuilder.trigramIndex(trigramToken.endsWith("_GIST") ? "GIST" : "GIN");
+            parseEntryQualifier(entryBuilder);
+        } else if (currentToken.equals(INDEXED)) {
+            entryBuilder.isIndexed();
+            parseEntryQualifier(entryBuilder);
         }
     }
 
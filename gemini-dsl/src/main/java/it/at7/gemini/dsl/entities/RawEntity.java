@@ -72,12 +72,30 @@ public class RawEntity {
         private final String name;
         private final boolean isLogicalKey;
         private final int lkOrder;
+        private final boolean isSearchable;
+        private final String trigramIndex;
+        private final boolean isIndexed;
 
         public Entry(String type, String name, boolean isLogicalKey, int lkOrder) {
+            this(type, name, isLogicalKey, lkOrder, false);
+        }
+
+        public Entry(String type, String name, boolean isLogicalKey, int lkOrder, boolean isSearchable) {
+            this(type, name, isLogicalKey, lkOrder, isSearchable, null);
+        }
+
+        public Entry(String type, String name, boolean isLogicalKey, int lkOrder, boolean isSearchable, String trigramIndex) {
+            this(type, name, isLogicalKey, lkOrder, isSearchable, trigramIndex, false);
+        }
+
+        public Entry(String type, String name, boolean isLogicalKey, int lkOrder, boolean isSearchable, String trigramIndex, boolean isIndexed) {
             this.type = type;
             this.name = name;
             this.isLogicalKey = isLogicalKey;
             this.lkOrder = lkOrder;
+            this.isSearchable = isSearchable;
+            this.trigramIndex = trigramIndex;
+            this.isIndexed = isIndexed;
             assert !isLogicalKey || lkOrder > 0;
         }
 
@@ -97,6 +115,27 @@ public class RawEntity {
             return lkOrder;
         }
 
+        /**
+         * @return true if the field is part of the Entity full text search
+         */
+        public boolean isSearchable() {
+            return isSearchable;
+        }
+
+        /**
+         * @return the access method of the trigram index of the field (GIN or GIST), null if the field has no trigram index
+         */
+        public String getTrigramIndex() {
+            return trigramIndex;
+        }
+
+        /**
+         * @return true if the (array) field has a GIN index serving the containment filters
+         */
+        public boolean isIndexed() {
+            return isIndexed;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -104,18 +143,21 @@ public class RawEntity {
             Entry entry = (Entry) o;
             return isLogicalKey == entry.isLogicalKey &&
                     lkOrder == entry.lkOrder &&
+                    isSearchable == entry.isSearchable &&
+                    isIndexed == entry.isIndexed &&
+                    Objects.equals(trigramIndex, entry.trigramIndex) &&
                     type.equals(entry.type) &&
                     name.equals(entry.name);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(type, name, isLogicalKey, lkOrder);
+            return Objects.hash(type, name, isLogicalKey, lkOrder, isSearchable, trigramIndex, isIndexed);
         }
 
         @Override
         public String toString() {
-            return type + "\t\t" + name + (isLogicalKey ? (" *" + lkOrder) : "");
+            return type + "\t\t" + name + (isLogicalKey ? (" *" + lkOrder) : "") + (isSearchable ? " SEARCHABLE" : "") + (trigramIndex != null ? " TRIGRAM_" + trigramIndex : "") + (isIndexed ? " INDEXED" : "");
         }
     }
 }
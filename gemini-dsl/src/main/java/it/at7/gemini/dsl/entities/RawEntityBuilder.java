@@ -65,6 +65,9 @@ public class RawEntityBuilder {
         private String name;
         private boolean isLogicalKey;
         private int lkOrder;
+        private boolean isSearchable;
+        private String trigramIndex;
+        private boolean isIndexed;
 
         public EntryBuilder(RawEntityBuilder entityBuilder, String type, String name) {
             this.entityBuilder = entityBuilder;
@@ -86,8 +89,20 @@ public class RawEntityBuilder {
             this.lkOrder = lkOrder;
         }
 
+        public void isSearchable() {
+            this.isSearchable = true;
+        }
+
+        public void trigramIndex(String method) {
+            this.trigramIndex = method;
+        }
+
+        public void isIndexed() {
+            this.isIndexed = true;
+        }
+
         public RawEntity.Entry build() {
-            return new RawEntity.Entry(type, name, isLogicalKey, lkOrder);
+            return new RawEntity.Entry(type, name, isLogicalKey, lkOrder, isSearchable, trigramIndex, isIndexed);
         }
     }
 }
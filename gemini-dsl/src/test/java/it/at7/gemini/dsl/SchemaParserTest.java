@@ -5,11 +5,13 @@ import it.at7.gemini.dsl.entities.RawSchema;
 import org.junit.Test;
 
 import java.io.StringReader;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class SchemaParserTest {
@@ -63,6 +65,60 @@ public class SchemaParserTest {
     }
 
 
+    @Test
+    public void testSearchableEntryParse() throws SyntaxError {
+        String dsl = "ENTITY Article {" +
+                "   TEXT    code * SEARCHABLE" +
+                "   TEXT    title SEARCHABLE" +
+                "   TEXT    notes" +
+                " }";
+        RawSchema rawSchema = SchemaParser.parse(new StringReader(dsl));
+        RawEntity article = rawSchema.getRawEntitiesByName().get("ARTICLE");
+        Map<String, RawEntity.Entry> entries = new HashMap<>();
+        article.getEntries().forEach(e -> entries.put(e.getName(), e));
+        assertEquals(3, entries.size());
+        assertTrue(entries.get("code").isLogicalKey());
+        assertTrue(entries.get("code").isSearchable());
+        assertTrue(entries.get("title").isSearchable());
+        assertFalse(entries.get("notes").isSearchable());
+    }
+
+    @Test
+    public void testTrigramEntryParse() throws SyntaxError {
+        String dsl = "ENTITY Customer {" +
+                "   TEXT    code * TRIGRAM" +
+                "   TEXT    name TRIGRAM_GIST SEARCHABLE" +
+                "   TEXT    notes" +
+                " }";
+        RawSchema rawSchema = SchemaParser.parse(new StringReader(dsl));
+        RawEntity customer = rawSchema.getRawEntitiesByName().get("CUSTOMER");
+        Map<String, RawEntity.Entry> entries = new HashMap<>();
+        customer.getEntries().forEach(e -> entries.put(e.getName(), e));
+        assertEquals(3, entries.size());
+        assertTrue(entries.get("code").isLogicalKey());
+        assertEquals("GIN", entries.get("code").getTrigramIndex());
+        assertEquals("GIST", entries.get("name").getTrigramIndex());
+        assertTrue(entries.get("name").isSearchable());
+        assertEquals(null, entries.get("notes").getTrigramIndex());
+    }
+
+    @Test
+    public void testIndexedEntryParse() throws SyntaxError {
+        String dsl = "ENTITY Customer {" +
+                "   TEXT    code *" +
+                "   [TEXT]  tags INDEXED" +
+                "   [TEXT]  notes" +
+                " }";
+        RawSchema rawSchema = SchemaParser.parse(new StringReader(dsl));
+        RawEntity customer = rawSchema.getRawEntitiesByName().get("CUSTOMER");
+        Map<String, RawEntity.Entry> entries = new HashMap<>();
+        customer.getEntries().forEach(e -> entries.put(e.getName(), e));
+        assertEquals(3, entries.size());
+        assertTrue(entries.get("tags").isIndexed());
+        assertEquals("[TEXT]", entries.get("tags").getType());
+        assertFalse(entries.get("notes").isIndexed());
+    }
+
     @Test
     public void testEmbedableEntityParse() throws SyntaxError {
         String dsl = "ENTITY EMBEDABLE Embedable {" +
@@ -0,0 +1,54 @@
+package it.at7.gemini.gui.api;
+
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.gui.core.GuiMetadataBundle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static it.at7.gemini.api.RestAPIController.API_URL;
+
+/**
+ * Serves the {@link GuiMetadataBundle} with its version as ETag: clients revalidate it with If-None-Match and
+ * download it again only when the GUI metadata changed. It is under the API path, with the same authentication.
+ */
+@RestController
+public class GuiMetadataBundleController {
+
+    public static final String PATH = API_URL + "/_gui/bundle";
+
+    private final GuiMetadataBundle guiMetadataBundle;
+
+    public GuiMetadataBundleController(GuiMetadataBundle guiMetadataBundle) {
+        this.guiMetadataBundle = guiMetadataBundle;
+    }
+
+    @GetMapping(value = PATH)
+    public ResponseEntity<byte[]> bundle(HttpServletRequest request, HttpServletResponse response) throws GeminiException {
+        GuiMetadataBundle.Bundle bundle = guiMetadataBundle.getBundle();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = bundle.getETag(gzip);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(bundle.getGzip());
+        }
+        return builder.body(bundle.getJson());
+    }
+}
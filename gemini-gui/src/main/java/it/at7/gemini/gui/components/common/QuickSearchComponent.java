@@ -1,64 +1,71 @@
 package it.at7.gemini.gui.components.common;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import it.at7.gemini.core.EntityManager;
-import it.at7.gemini.exceptions.GeminiException;
-import it.at7.gemini.exceptions.GeminiRuntimeException;
 import it.at7.gemini.gui.annotation.GeminiGuiComponent;
 import it.at7.gemini.gui.annotation.GeminiGuiComponentHook;
-import it.at7.gemini.gui.schema.EntityGUIRef;
+import it.at7.gemini.gui.core.QuickSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.Nullable;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @GeminiGuiComponent("Common.QuickSearch")
 public class QuickSearchComponent implements GeminiGuiComponentHook {
 
-    private final EntityManager entityManager;
+    private final QuickSearchIndex quickSearchIndex;
 
     @Autowired
-    public QuickSearchComponent(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public QuickSearchComponent(QuickSearchIndex quickSearchIndex) {
+        this.quickSearchIndex = quickSearchIndex;
     }
 
+    /**
+     * Parameters: <code>filter</code> (ONLY_CUSTOM or ALL), <code>query</code> the text to search in the names and
+     * <code>limit</code> the max number of results (all the matches if missing)
+     */
     @Override
     public Optional<Object> onInit(@Nullable Map<String, Object> body) {
 
         // TODO filter could be specialized with parametric data
         Object filterObj = body == null ? null : body.get("filter");
         String filter = (!(filterObj instanceof String)) ? "" : (String) filterObj;
+        Object queryObj = body == null ? null : body.get("query");
+        String query = queryObj == null ? "" : queryObj.toString();
+        int limit = parseLimit(body == null ? null : body.get("limit"));
 
-        List<SearchElement> elements = entityManager.getAllEntities().stream()
-                .filter(entity -> {
-                    switch (filter) {
-                        case "ONLY_CUSTOM":
-                            return !List.of("CORE", "AUTH", "GUI").contains(entity.getModule().getName().toUpperCase());
-                        case "ALL":
-                            return true;
-                        default:
-                            return false;
-                    }
-                })
-                .filter(entity -> !entity.isEmbedable())
-                .map(e -> {
-                    try {
-                        return SearchElement.of(SearchType.ENTITY, e.getName(),
-                                this.entityManager.get(EntityGUIRef.NAME, e.getName()).get(EntityGUIRef.FIELDS.DISPLAY_NAME));
-                    } catch (GeminiException ex) {
-                        throw new GeminiRuntimeException(ex);
-                    }
-                })
-                .collect(Collectors.toList());
+        Predicate<QuickSearchIndex.Element> moduleFilter = element -> {
+            switch (filter) {
+                case "ONLY_CUSTOM":
+                    return !List.of("CORE", "AUTH", "GUI").contains(element.getModule().toUpperCase());
+                case "ALL":
+                    return true;
+                default:
+                    return false;
+            }
+        };
 
-        /* add other elements type here */
+        /* other elements type are added to the index */
+        List<SearchElement> elements = quickSearchIndex.search(query, moduleFilter, limit).stream()
+                .map(e -> SearchElement.of(SearchType.valueOf(e.getType()), e.getRoute(), e.getDisplayName()))
+                .collect(Collectors.toList());
 
         return Optional.of(elements);
     }
 
+    private static int parseLimit(@Nullable Object limitObj) {
+        if (limitObj == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(limitObj.toString()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
     enum SearchType {
         ENTITY
@@ -77,7 +84,6 @@ public class QuickSearchComponent implements GeminiGuiComponentHook {
         }
 
         static SearchElement of(SearchType elementType, String elementRoute, String displayName) {
-            // TODO ADD entity displayName
             return new SearchElement(elementType, elementRoute, displayName);
         }
     }
@@ -0,0 +1,161 @@
+package it.at7.gemini.gui.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.conf.State;
+import it.at7.gemini.core.*;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.gui.schema.EntityGUIRef;
+import it.at7.gemini.gui.schema.FieldGUIRef;
+import it.at7.gemini.schema.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * All the GUI metadata needed to render the shell (EntityGUI, FieldGUI, GUISettings, SideBarElem and the one record
+ * settings) serialized in a single JSON document, with its gzip variant compressed once.
+ * <p>
+ * The bundle version is the data version of its Entities and of the ones they reference (Entity, Field..), read from
+ * the versions maintained by the database: it changes with any change of the stored GUI metadata, also when written by
+ * another instance.
+ * The bundle is built when the GUI is initialized and rebuilt by the first request after a change. GUI Entities missing
+ * from the schema are not part of the bundle.
+ */
+@Service
+public class GuiMetadataBundle implements StateListener {
+    private static final Logger logger = LoggerFactory.getLogger(GuiMetadataBundle.class);
+
+    public static final String GUI_SETTINGS = "GUISETTINGS";
+    public static final String SIDEBAR_ELEM = "SIDEBARELEM";
+    public static final String SIDEBAR_SETTINGS = "SIDEBARSETTINGS";
+    public static final String GENERAL_SETTINGS = "GENERALSETTINGS";
+
+    public static final List<String> ENTITIES = List.of(EntityGUIRef.NAME, FieldGUIRef.NAME, GUI_SETTINGS,
+            SIDEBAR_ELEM, SIDEBAR_SETTINGS, GENERAL_SETTINGS);
+
+    private final EntityManager entityManager;
+    private final EntityVersions entityVersions;
+    private final ObjectMapper objectMapper;
+
+    private volatile Bundle bundle;
+
+    @Autowired
+    public GuiMetadataBundle(EntityManager entityManager, EntityVersions entityVersions, ObjectMapper objectMapper,
+                             StateManager stateManager) {
+        this.entityManager = entityManager;
+        this.entityVersions = entityVersions;
+        this.objectMapper = objectMapper;
+        stateManager.register(this);
+    }
+
+    @Override
+    public void onChange(State previous, State actual, Optional<Transaction> transaction) throws GeminiException {
+        if (actual == State.GUI_INITIALIZED) {
+            getBundle();
+        }
+    }
+
+    /**
+     * @return the bundle of the current version, built if the GUI metadata changed since the last one
+     */
+    public Bundle getBundle() throws GeminiException {
+        List<Entity> bundleEntities = bundleEntities();
+        String version = currentVersion(bundleEntities);
+        Bundle current = bundle;
+        if (current != null && current.version.equals(version)) {
+            return current;
+        }
+        synchronized (this) {
+            current = bundle;
+            if (current == null || !current.version.equals(version)) {
+                current = bundle = build(version, bundleEntities);
+            }
+        }
+        return current;
+    }
+
+    private List<Entity> bundleEntities() {
+        List<Entity> ret = new ArrayList<>();
+        for (String entityName : ENTITIES) {
+            Entity entity = entityManager.getEntity(entityName);
+            if (entity != null) {
+                ret.add(entity);
+            }
+        }
+        return ret;
+    }
+
+    private Bundle build(String version, List<Entity> bundleEntities) throws GeminiException {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("version", version);
+        Map<String, List<Map<String, Object>>> entities = new LinkedHashMap<>();
+        for (Entity entity : bundleEntities) {
+            List<Map<String, Object>> records = new ArrayList<>();
+            entityManager.getALLRecords(entity, record -> records.add(RecordConverters.fieldsToJSONMap(record)));
+            entities.put(entity.getName(), records);
+        }
+        content.put("entities", entities);
+        try {
+            Bundle ret = new Bundle(version, objectMapper.writeValueAsBytes(content));
+            logger.info("GUI metadata bundle {} built: {} bytes, {} compressed", version, ret.json.length, ret.gzip.length);
+            return ret;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String currentVersion(List<Entity> bundleEntities) throws GeminiException {
+        // references are included: the bundle has the logical keys of the referenced Entity and Field records
+        Set<Entity> entities = new HashSet<>(bundleEntities);
+        for (Entity entity : bundleEntities) {
+            entities.addAll(entityVersions.getReferencedEntities(entity));
+        }
+        // read on the primary: a replica may not have the last changes yet
+        return entityManager.getTransactionManager().executeInSingleTrasaction(transaction -> {
+            return entityManager.getDataVersion(entities, transaction);
+        });
+    }
+
+    public static class Bundle {
+        private final String version;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        Bundle(String version, byte[] json) throws IOException {
+            this.version = version;
+            this.json = json;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                gzipOut.write(json);
+            }
+            this.gzip = out.toByteArray();
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @param gzip true for the gzip representation
+         * @return the ETag of the representation: the two encodings are different bytes so they have different tags
+         */
+        public String getETag(boolean gzip) {
+            return "\"gui-" + version + (gzip ? "-gzip" : "") + "\"";
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package it.at7.gemini.gui.core;
+
+import it.at7.gemini.conf.State;
+import it.at7.gemini.core.*;
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.gui.schema.EntityGUIRef;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.EntityRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In memory index of the QuickSearch elements: the Entities with their EntityGUI display name. It is built when Gemini
+ * is initialized and kept updated by the committed changes of the EntityGUI records, so searches do not query the
+ * database.
+ * <p>
+ * Names are indexed by word prefix (for queries shorter than a trigram) and by trigrams (for substrings). Results are
+ * ranked: exact match, name prefix, word prefix, substring. Elements have a type so other kinds (records for example)
+ * can share the index.
+ */
+@Service
+public class QuickSearchIndex implements StateListener, EntityRecordChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(QuickSearchIndex.class);
+
+    public static final String ENTITY_TYPE = "ENTITY";
+    private static final int GRAM = 3;
+
+    private final EntityManager entityManager;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Element> elements = new HashMap<>();
+    private final Map<String, Set<Element>> trigrams = new HashMap<>();
+    private final NavigableMap<String, Set<Element>> words = new TreeMap<>();
+
+    @Autowired
+    public QuickSearchIndex(EntityManager entityManager, StateManager stateManager) {
+        this.entityManager = entityManager;
+        stateManager.register(this);
+        entityManager.registerChangeListener(this);
+    }
+
+    @Override
+    public void onChange(State previous, State actual, Optional<Transaction> transaction) throws GeminiException {
+        if (actual == State.INITIALIZED) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onCommittedChange(ChangeType changeType, EntityRecord record) {
+        if (!record.getEntity().getName().equalsIgnoreCase(EntityGUIRef.NAME)) {
+            return;
+        }
+        String entityName = entityNameOf(record);
+        if (entityName == null) {
+            return;
+        }
+        if (changeType == ChangeType.DELETE) {
+            remove(ENTITY_TYPE, entityName.toUpperCase());
+            return;
+        }
+        Element element = entityElement(entityName, record.get(EntityGUIRef.FIELDS.DISPLAY_NAME));
+        if (element != null) {
+            put(element);
+        }
+    }
+
+    /**
+     * Load all the EntityGUI records, replacing the content of the index
+     */
+    public void rebuild() throws GeminiException {
+        List<Element> loaded = new ArrayList<>();
+        entityManager.getALLRecords(EntityGUIRef.NAME, record -> {
+            String entityName = entityNameOf(record);
+            Element element = entityName == null ? null : entityElement(entityName, record.get(EntityGUIRef.FIELDS.DISPLAY_NAME));
+            if (element != null) {
+                loaded.add(element);
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            elements.clear();
+            trigrams.clear();
+            words.clear();
+            loaded.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("QuickSearch index built with {} elements", loaded.size());
+    }
+
+    public void put(Element element) {
+        lock.writeLock().lock();
+        try {
+            Element previous = elements.get(element.key());
+            if (previous != null) {
+                delete(previous);
+            }
+            add(element);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String type, String route) {
+        lock.writeLock().lock();
+        try {
+            Element previous = elements.get(type + ":" + route);
+            if (previous != null) {
+                delete(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param query  text to search in the names, an empty query matches everything
+     * @param filter elements to consider
+     * @param limit  max number of results, 0 means no limit
+     * @return the matching elements, best ranked first
+     */
+    public List<Element> search(String query, Predicate<Element> filter, int limit) {
+        String q = normalize(query);
+        List<Ranked> ranked = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Element element : candidates(q)) {
+                if (!filter.test(element)) {
+                    continue;
+                }
+                int rank = rank(element, q);
+                if (rank >= 0) {
+                    ranked.add(new Ranked(element, rank));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ranked.stream()
+                .sorted(Comparator.<Ranked>comparingInt(r -> r.rank)
+                        .thenComparingInt(r -> r.element.displayName.length())
+                        .thenComparing(r -> r.element.displayName))
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                .map(r -> r.element)
+                .collect(Collectors.toList());
+    }
+
+    private Collection<Element> candidates(String q) {
+        if (q.isEmpty()) {
+            return elements.values();
+        }
+        if (q.length() < GRAM) {
+            Set<Element> ret = new HashSet<>();
+            words.subMap(q, true, q + Character.MAX_VALUE, true).values().forEach(ret::addAll);
+            return ret;
+        }
+        // the elements containing all the trigrams of the query, starting from the smallest posting
+        List<Set<Element>> postings = new ArrayList<>();
+        for (String gram : trigramsOf(q)) {
+            Set<Element> posting = trigrams.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Element> ret = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !ret.isEmpty(); i++) {
+            ret.retainAll(postings.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * @return 0 exact, 1 name prefix, 2 word prefix, 3 substring, -1 if not matching
+     */
+    private static int rank(Element element, String q) {
+        if (q.isEmpty()) {
+            return 0;
+        }
+        int best = -1;
+        for (String term : element.terms) {
+            int rank;
+            if (term.equals(q)) {
+                rank = 0;
+            } else if (term.startsWith(q)) {
+                rank = 1;
+            } else if (wordsOf(term).stream().anyMatch(w -> w.startsWith(q))) {
+                rank = 2;
+            } else if (term.contains(q)) {
+                rank = 3;
+            } else {
+                continue;
+            }
+            best = best < 0 ? rank : Math.min(best, rank);
+        }
+        return best;
+    }
+
+    private void add(Element element) {
+        elements.put(element.key(), element);
+        for (String term : element.terms) {
+            words.computeIfAbsent(term, k -> new HashSet<>()).add(element);
+            for (String word : wordsOf(term)) {
+                words.computeIfAbsent(word, k -> new HashSet<>()).add(element);
+            }
+            for (String gram : trigramsOf(term)) {
+                trigrams.computeIfAbsent(gram, k -> new HashSet<>()).add(element);
+            }
+        }
+    }
+
+    private void delete(Element element) {
+        elements.remove(element.key());
+        for (String term : element.terms) {
+            removePosting(words, term, element);
+            for (String word : wordsOf(term)) {
+                removePosting(words, word, element);
+            }
+            for (String gram : trigramsOf(term)) {
+                removePosting(trigrams, gram, element);
+            }
+        }
+    }
+
+    private static void removePosting(Map<String, Set<Element>> index, String key, Element element) {
+        Set<Element> posting = index.get(key);
+        if (posting != null) {
+            posting.remove(element);
+            if (posting.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    @Nullable
+    private Element entityElement(String entityName, @Nullable String displayName) {
+        Entity entity = entityManager.getEntity(entityName);
+        if (entity == null || entity.isEmbedable()) {
+            return null;
+        }
+        return new Element(ENTITY_TYPE, entity.getName(), displayName, entity.getModule().getName());
+    }
+
+    @Nullable
+    private static String entityNameOf(EntityRecord guiRecord) {
+        EntityReferenceRecord entityRef = guiRecord.get(EntityGUIRef.FIELDS.ENTITY);
+        if (entityRef == null || !entityRef.hasLogicalKey()) {
+            return null;
+        }
+        return entityRef.getLogicalKeyRecord().get(EntityRef.FIELDS.NAME);
+    }
+
+    private static String normalize(@Nullable String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> wordsOf(String term) {
+        return Arrays.stream(term.split("[^\\p{Alnum}]+"))
+                .filter(w -> !w.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static Set<String> trigramsOf(String term) {
+        Set<String> ret = new HashSet<>();
+        for (int i = 0; i + GRAM <= term.length(); i++) {
+            ret.add(term.substring(i, i + GRAM));
+        }
+        return ret;
+    }
+
+    public static class Element {
+        private final String type;
+        private final String route;
+        private final String displayName;
+        private final String module;
+        private final List<String> terms;
+
+        public Element(String type, String route, @Nullable String displayName, String module) {
+            this.type = type;
+            this.route = route;
+            this.displayName = displayName == null ? route : displayName;
+            this.module = module;
+            this.terms = List.of(normalize(route), normalize(this.displayName));
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        String key() {
+            return type + ":" + route;
+        }
+    }
+
+    private static class Ranked {
+        final Element element;
+        final int rank;
+
+        Ranked(Element element, int rank) {
+            this.element = element;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package it.at7.gemini.gui.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.at7.gemini.core.*;
+import it.at7.gemini.gui.core.GuiMetadataBundle;
+import it.at7.gemini.gui.schema.EntityGUIRef;
+import it.at7.gemini.schema.Entity;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class GuiMetadataBundleControllerTest {
+
+    private final Map<String, Long> dataVersions = new HashMap<>();
+    private MockMvc mockMvc;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        // only the EntityGUI Entity (referencing Entity) is in the schema
+        Entity entityGui = entity(EntityGUIRef.NAME);
+        Entity entity = entity("ENTITY");
+        dataVersions.put(EntityGUIRef.NAME, 1L);
+        dataVersions.put("ENTITY", 1L);
+
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+        TransactionManager transactionManager = Mockito.mock(TransactionManager.class);
+        Transaction transaction = Mockito.mock(Transaction.class);
+        when(entityManager.getEntity(EntityGUIRef.NAME)).thenReturn(entityGui);
+        when(entityManager.getTransactionManager()).thenReturn(transactionManager);
+        when(transactionManager.executeInSingleTrasaction(any(TransactionCallback.class)))
+                .thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(transaction));
+        when(entityManager.getDataVersion(any(Collection.class), any(Transaction.class)))
+                .thenAnswer(i -> ((Collection<Entity>) i.getArgument(0)).stream()
+                        .mapToLong(e -> dataVersions.get(e.getName()))
+                        .sum() + "");
+        EntityVersions entityVersions = Mockito.mock(EntityVersions.class);
+        when(entityVersions.getReferencedEntities(entityGui)).thenReturn(Set.of(entity));
+
+        GuiMetadataBundle bundle = new GuiMetadataBundle(entityManager, entityVersions, new ObjectMapper(),
+                Mockito.mock(StateManager.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(new GuiMetadataBundleController(bundle)).build();
+    }
+
+    @Test
+    public void testMissingEntitiesAreSkipped() throws Exception {
+        mockMvc.perform(get("/api/_gui/bundle"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entities.length()").value(1))
+                .andExpect(jsonPath("$.entities." + EntityGUIRef.NAME).isArray());
+    }
+
+    @Test
+    public void testETagByEncoding() throws Exception {
+        String etag = eTag(false);
+        String gzipETag = eTag(true);
+        Assert.assertNotEquals(etag, gzipETag);
+
+        mockMvc.perform(get(GuiMetadataBundleController.PATH).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(GuiMetadataBundleController.PATH).header(IF_NONE_MATCH, gzipETag).header(ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isNotModified());
+        // the identity tag does not validate the gzip representation
+        mockMvc.perform(get(GuiMetadataBundleController.PATH).header(IF_NONE_MATCH, etag).header(ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CONTENT_ENCODING, "gzip"));
+    }
+
+    @Test
+    public void testVersionFollowsTheDataVersions() throws Exception {
+        String etag = eTag(false);
+        Assert.assertEquals(etag, eTag(false));
+
+        // a change of a referenced Entity, for example written by another instance
+        dataVersions.put("ENTITY", 2L);
+        String changed = eTag(false);
+        Assert.assertNotEquals(etag, changed);
+        mockMvc.perform(get(GuiMetadataBundleController.PATH).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(GuiMetadataBundleController.PATH).header(IF_NONE_MATCH, changed))
+                .andExpect(status().isNotModified());
+    }
+
+    private String eTag(boolean gzip) throws Exception {
+        return mockMvc.perform(get(GuiMetadataBundleController.PATH).header(ACCEPT_ENCODING, gzip ? "gzip" : "identity"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(ETAG);
+    }
+
+    private static Entity entity(String name) {
+        Entity entity = Mockito.mock(Entity.class);
+        when(entity.getName()).thenReturn(name);
+        return entity;
+    }
+}
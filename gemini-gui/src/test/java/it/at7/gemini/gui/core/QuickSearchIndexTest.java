@@ -0,0 +1,101 @@
+package it.at7.gemini.gui.core;
+
+import it.at7.gemini.core.EntityManager;
+import it.at7.gemini.core.StateManager;
+import it.at7.gemini.gui.core.QuickSearchIndex.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static it.at7.gemini.gui.core.QuickSearchIndex.ENTITY_TYPE;
+
+public class QuickSearchIndexTest {
+
+    private QuickSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new QuickSearchIndex(Mockito.mock(EntityManager.class), Mockito.mock(StateManager.class));
+        index.put(new Element(ENTITY_TYPE, "CUSTOMER", "Customer", "SALES"));
+        index.put(new Element(ENTITY_TYPE, "CUSTOMERORDER", "Customer Order", "SALES"));
+        index.put(new Element(ENTITY_TYPE, "ORDERLINE", "Order Line", "SALES"));
+        index.put(new Element(ENTITY_TYPE, "REORDERPOLICY", "Reorder Policy", "STOCK"));
+        index.put(new Element(ENTITY_TYPE, "VENDOR", null, "STOCK"));
+    }
+
+    @Test
+    public void testRanking() {
+        // exact, then name prefix
+        Assert.assertEquals(List.of("CUSTOMER", "CUSTOMERORDER"), search("customer"));
+        // name prefix, word prefix, substring
+        Assert.assertEquals(List.of("ORDERLINE", "CUSTOMERORDER", "REORDERPOLICY"), search("Order"));
+        // same rank: the shorter name first
+        Assert.assertEquals(List.of("CUSTOMER", "CUSTOMERORDER"), search("tomer"));
+    }
+
+    @Test
+    public void testPrefixCandidates() {
+        // shorter than a trigram: word prefixes only, no substrings
+        Assert.assertEquals(List.of("ORDERLINE", "CUSTOMERORDER"), search("or"));
+        Assert.assertEquals(List.of("VENDOR"), search("v"));
+        Assert.assertEquals(List.of(), search("do"));
+    }
+
+    @Test
+    public void testTrigramCandidates() {
+        Assert.assertEquals(List.of("VENDOR"), search("endo"));
+        Assert.assertEquals(List.of("VENDOR"), search("dor"));
+        // all the trigrams of the query are required
+        Assert.assertEquals(List.of(), search("orderx"));
+        Assert.assertEquals(List.of(), search("xyz"));
+        // the display name is indexed with the route
+        Assert.assertEquals(List.of("ORDERLINE"), search("order li"));
+    }
+
+    @Test
+    public void testEmptyQueryFilterAndLimit() {
+        Assert.assertEquals(5, index.search("", e -> true, 0).size());
+        Assert.assertEquals(2, index.search(" ", e -> true, 2).size());
+        List<String> stock = index.search(null, e -> e.getModule().equals("STOCK"), 0).stream()
+                .map(Element::getRoute)
+                .collect(Collectors.toList());
+        Assert.assertEquals(List.of("VENDOR", "REORDERPOLICY"), stock);
+        Assert.assertEquals(List.of(), index.search("customer", e -> !e.getType().equals(ENTITY_TYPE), 0));
+    }
+
+    @Test
+    public void testIncrementalPut() {
+        index.put(new Element(ENTITY_TYPE, "ORDERLINE", "Order Row", "SALES"));
+        Assert.assertEquals(List.of("ORDERLINE"), search("row"));
+        Assert.assertEquals(List.of("ORDERLINE"), search("ro"));
+        // the previous display name is no longer indexed, the route is
+        Assert.assertEquals(List.of(), search("order line"));
+        Assert.assertEquals(List.of("ORDERLINE"), search("orderline"));
+        Assert.assertEquals("Order Row", index.search("orderline", e -> true, 0).get(0).getDisplayName());
+        Assert.assertEquals(5, index.search("", e -> true, 0).size());
+    }
+
+    @Test
+    public void testIncrementalRemove() {
+        index.remove(ENTITY_TYPE, "CUSTOMERORDER");
+        Assert.assertEquals(List.of("CUSTOMER"), search("customer"));
+        Assert.assertEquals(List.of("ORDERLINE"), search("or"));
+        Assert.assertEquals(List.of(), search("customer order"));
+        Assert.assertEquals(4, index.search("", e -> true, 0).size());
+
+        // removing a missing element is a no-op
+        index.remove(ENTITY_TYPE, "CUSTOMERORDER");
+        index.remove("RECORD", "CUSTOMER");
+        Assert.assertEquals(List.of("CUSTOMER"), search("customer"));
+    }
+
+    private List<String> search(String query) {
+        return index.search(query, e -> true, 0).stream()
+                .map(Element::getRoute)
+                .collect(Collectors.toList());
+    }
+}
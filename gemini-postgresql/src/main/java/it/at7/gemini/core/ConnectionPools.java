@@ -0,0 +1,76 @@
+package it.at7.gemini.core;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Workload isolated DataSources. The {@link ConnectionPool#INTERACTIVE} pool is the primary (Spring) DataSource, the
+ * other pools connect to the same database with their own Hikari pool, created on first use and configured by
+ * <code>gemini.datasource.pool.&lt;name&gt;.size</code> and
+ * <code>gemini.datasource.pool.&lt;name&gt;.connectionTimeout</code> (milliseconds).
+ */
+@Service
+public class ConnectionPools {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPools.class);
+
+    private static final int DEFAULT_POOL_SIZE = 2;
+    private static final long DEFAULT_CONNECTION_TIMEOUT = 60000;
+
+    private final DataSource primary;
+    private final Environment environment;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Map<ConnectionPool, HikariDataSource> pools = new EnumMap<>(ConnectionPool.class);
+
+    @Autowired
+    public ConnectionPools(DataSource primary, Environment environment,
+                           @Value("${spring.datasource.url:}") String url,
+                           @Value("${spring.datasource.username:}") String username,
+                           @Value("${spring.datasource.password:}") String password) {
+        this.primary = primary;
+        this.environment = environment;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    public synchronized DataSource getDataSource(ConnectionPool pool) {
+        if (pool == ConnectionPool.INTERACTIVE || url.isEmpty()) {
+            return primary;
+        }
+        return pools.computeIfAbsent(pool, this::createPool);
+    }
+
+    private HikariDataSource createPool(ConnectionPool pool) {
+        String prefix = "gemini.datasource.pool." + pool.name().toLowerCase() + ".";
+        int size = environment.getProperty(prefix + "size", Integer.class, DEFAULT_POOL_SIZE);
+        long connectionTimeout = environment.getProperty(prefix + "connectionTimeout", Long.class, DEFAULT_CONNECTION_TIMEOUT);
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("gemini-" + pool.name().toLowerCase());
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(size);
+        dataSource.setMinimumIdle(0);
+        dataSource.setConnectionTimeout(connectionTimeout);
+        logger.info("Connection pool {} created: size {} connectionTimeout {}ms", pool, size, connectionTimeout);
+        return dataSource;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        pools.values().forEach(HikariDataSource::close);
+        pools.clear();
+    }
+}
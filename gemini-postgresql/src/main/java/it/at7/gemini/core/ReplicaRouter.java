@@ -0,0 +1,259 @@
+package it.at7.gemini.core;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses the DataSource of the read only transactions. Writes always use the primary (Spring) DataSource.
+ * <p>
+ * Replicas are configured with <code>gemini.datasource.replica.urls</code> (comma separated JDBC urls, empty to
+ * disable routing) and are checked every <code>checkInterval</code> milliseconds. A replica is used only if the last
+ * check succeeded and its replication lag is not greater than <code>maxLag</code> seconds, otherwise reads fall back
+ * to the primary. A replica whose WAL receiver is not running is stale, whatever its replay position.
+ * <p>
+ * Read-your-writes follows the client: the WAL position of each write commit is returned to the client (see
+ * {@link ReadConsistency}), a request carrying a position uses a replica only if it already replayed it.
+ */
+@Service
+public class ReplicaRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    // NULL when the WAL receiver is not running: without it received and replayed positions are equal but stale
+    static final String LAG_QUERY = "SELECT CASE " +
+            "WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver) THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+    static final String REPLAYED_QUERY = "SELECT NOT pg_is_in_recovery() OR pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn)";
+    static final String POSITION_QUERY = "SELECT CAST(pg_current_wal_lsn() AS TEXT)";
+
+    private final DataSource primary;
+    private final List<String> replicaUrls;
+    private final String username;
+    private final String password;
+    private final double maxLagSeconds;
+    private final long checkIntervalMillis;
+    private final int poolSize;
+    private final long connectionTimeoutMillis;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private ScheduledExecutorService healthChecker;
+
+    @Autowired
+    public ReplicaRouter(DataSource primary,
+                         @Value("${gemini.datasource.replica.urls:}") String replicaUrls,
+                         @Value("${gemini.datasource.replica.username:${spring.datasource.username:}}") String username,
+                         @Value("${gemini.datasource.replica.password:${spring.datasource.password:}}") String password,
+                         @Value("${gemini.datasource.replica.maxLag:5}") double maxLagSeconds,
+                         @Value("${gemini.datasource.replica.checkInterval:5000}") long checkIntervalMillis,
+                         @Value("${gemini.datasource.replica.poolSize:10}") int poolSize,
+                         @Value("${gemini.datasource.replica.connectionTimeout:2000}") long connectionTimeoutMillis) {
+        this.primary = primary;
+        this.replicaUrls = Arrays.stream(replicaUrls.split(","))
+                .map(String::trim)
+                .filter(u -> !u.isEmpty())
+                .collect(Collectors.toList());
+        this.username = username;
+        this.password = password;
+        this.maxLagSeconds = maxLagSeconds;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.poolSize = poolSize;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (replicaUrls.isEmpty()) {
+            return;
+        }
+        for (String url : replicaUrls) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setConnectionTimeout(connectionTimeoutMillis);
+            dataSource.setReadOnly(true);
+            dataSource.setInitializationFailTimeout(-1); // an unreachable replica must not break the startup
+            replicas.add(new Replica(url, dataSource));
+        }
+        logger.info("Read replicas configured: {}", replicaUrls);
+        checkReplicas();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gemini-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        replicas.forEach(r -> r.dataSource.close());
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return a usable replica or the primary DataSource
+     */
+    public DataSource getReadDataSource() {
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isUsable(maxLagSeconds)) {
+                return replica.dataSource;
+            }
+        }
+        return primary;
+    }
+
+    /**
+     * @return the WAL position after a write commit on the primary connection, null if there are no replicas
+     */
+    @Nullable
+    public String commitPosition(Connection connection) throws SQLException {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(POSITION_QUERY)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        } finally {
+            connection.commit(); // the query opened a new transaction
+        }
+    }
+
+    /**
+     * @return true if the replica connection already replayed the WAL position
+     */
+    public boolean hasReplayed(Connection connection, String position) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(REPLAYED_QUERY)) {
+            statement.setString(1, position);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Mark the replica unhealthy until the next successful check
+     */
+    public void replicaFailed(DataSource dataSource, Exception cause) {
+        for (Replica replica : replicas) {
+            if (replica.dataSource == dataSource && replica.healthy) {
+                replica.healthy = false;
+                replica.lastError = cause.getMessage();
+                logger.warn("Read replica {} failed, falling back to the primary", replica.url, cause);
+            }
+        }
+    }
+
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                double lag = resultSet.getDouble(1);
+                if (resultSet.wasNull()) {
+                    replica.lagSeconds = Double.POSITIVE_INFINITY;
+                    replica.lastError = "WAL receiver not running";
+                } else {
+                    replica.lagSeconds = lag;
+                    replica.lastError = null;
+                }
+                if (!replica.healthy) {
+                    logger.info("Read replica {} is healthy", replica.url);
+                }
+                replica.healthy = true;
+            } catch (SQLException | RuntimeException e) {
+                if (replica.healthy) {
+                    logger.warn("Read replica {} health check failed: {}", replica.url, e.getMessage());
+                }
+                replica.healthy = false;
+                replica.lastError = e.getMessage();
+            }
+            replica.lastCheck = LocalDateTime.now();
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    public static class Replica {
+        private final String url;
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+        private volatile LocalDateTime lastCheck;
+        private volatile String lastError;
+
+        Replica(String url, HikariDataSource dataSource) {
+            this.url = url;
+            this.dataSource = dataSource;
+        }
+
+        boolean isUsable(double maxLagSeconds) {
+            return healthy && lagSeconds <= maxLagSeconds;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public double getLagSeconds() {
+            return lagSeconds;
+        }
+
+        public LocalDateTime getLastCheck() {
+            return lastCheck;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+}
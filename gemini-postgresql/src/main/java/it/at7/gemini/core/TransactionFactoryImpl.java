@@ -0,0 +1,39 @@
+package it.at7.gemini.core;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class TransactionFactoryImpl implements TransactionFactory {
+    private final ReplicaRouter replicaRouter;
+    private final ConnectionPools connectionPools;
+
+    /**
+     * Read only transactions are reused by the same thread when the previous one is closed. A nested read opens a new
+     * one.
+     */
+    private final ThreadLocal<TransactionImpl> readOnlyTransactions = new ThreadLocal<>();
+
+    @Autowired
+    public TransactionFactoryImpl(ReplicaRouter replicaRouter, ConnectionPools connectionPools) {
+        this.replicaRouter = replicaRouter;
+        this.connectionPools = connectionPools;
+    }
+
+    @Override
+    public Transaction newReadOnlyTransaction() {
+        TransactionImpl transaction = readOnlyTransactions.get();
+        if (transaction == null) {
+            transaction = new TransactionImpl(replicaRouter, replicaRouter.getPrimary(), true);
+            readOnlyTransactions.set(transaction);
+        } else if (transaction.isOpen()) {
+            transaction = new TransactionImpl(replicaRouter, replicaRouter.getPrimary(), true);
+        }
+        return transaction;
+    }
+
+    @Override
+    public Transaction newTransaction(ConnectionPool pool) {
+        return new TransactionImpl(replicaRouter, connectionPools.getDataSource(pool), false);
+    }
+}
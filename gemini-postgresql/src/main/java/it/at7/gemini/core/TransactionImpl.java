@@ -2,6 +2,7 @@ package it.at7.gemini.core;
 
 import it.at7.gemini.exceptions.GeminiException;
 import it.at7.gemini.exceptions.GeminiGenericException;
+import it.at7.gemini.exceptions.QueryBudgetException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,9 +21,14 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -30,66 +36,231 @@ import java.util.Optional;
 @Component
 @Scope("prototype")
 public class TransactionImpl implements Transaction {
+    private static final String QUERY_CANCELED = "57014";
     private final Logger logger = LoggerFactory.getLogger(TransactionImpl.class);
-    private final DataSource dataSource;
+    private final ReplicaRouter replicaRouter;
+    private final DataSource writeDataSource;
+    private final boolean readOnly;
 
     private Connection connection;
     private boolean committed;
+    private String commitPosition;
     private LocalDateTime openTime;
     private TransactionCache transactionCache;
+    private int statementCount;
+    private final Map<String, Savepoint> savepoints = new HashMap<>();
+    private final Map<String, Integer> afterCommitSizeBySavepoint = new HashMap<>();
+    private final List<Runnable> afterCommitActions = new ArrayList<>();
 
     @Autowired
-    public TransactionImpl(DataSource dataSource) {
-        this.dataSource = dataSource;
+    public TransactionImpl(ReplicaRouter replicaRouter) {
+        this(replicaRouter, replicaRouter.getPrimary(), false);
+    }
+
+    /**
+     * Read only transactions and transactions of the non interactive pools are not Spring managed, they are created
+     * by {@link TransactionFactoryImpl}
+     */
+    TransactionImpl(ReplicaRouter replicaRouter, DataSource writeDataSource, boolean readOnly) {
+        this.replicaRouter = replicaRouter;
+        this.writeDataSource = writeDataSource;
+        this.readOnly = readOnly;
     }
 
     @Override
     public void open() throws GeminiGenericException {
         try {
-            this.connection = dataSource.getConnection();
+            this.connection = readOnly ? getReadConnection() : writeDataSource.getConnection();
             this.openTime = LocalDateTime.now(ZoneOffset.UTC);
-            this.transactionCache = new TransactionCache();
+            this.committed = false;
+            this.commitPosition = null;
+            this.transactionCache = null; // lazily allocated
+            this.statementCount = 0;
             connection.setAutoCommit(false);
+            if (readOnly) {
+                // the driver opens the transaction with BEGIN READ ONLY
+                connection.setReadOnly(true);
+            }
+            setStatementTimeout();
         } catch (SQLException e) {
             throw GeminiGenericException.wrap(e);
         }
     }
 
+    /**
+     * Statements of a transaction opened inside a query budget cannot run longer than the time left. SET LOCAL ends
+     * with the transaction, the pooled connection keeps its default.
+     */
+    private void setStatementTimeout() throws SQLException {
+        Optional<QueryBudget> budget = QueryBudget.current();
+        if (budget.isPresent() && budget.get().getTimeoutMillis() > 0) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(String.format("SET LOCAL statement_timeout = %d", budget.get().remainingMillis()));
+            }
+        }
+    }
+
     @Override
     public void close() throws GeminiException {
         try {
             if (!committed) {
                 rollback();
             }
+            if (readOnly) {
+                this.connection.setReadOnly(false);
+            }
             this.connection.close();
         } catch (SQLException e) {
             throw GeminiGenericException.wrap(e);
+        } finally {
+            this.connection = null;
+            this.transactionCache = null;
+            this.savepoints.clear();
+            this.afterCommitSizeBySavepoint.clear();
+            this.afterCommitActions.clear();
+        }
+    }
+
+    private Connection getReadConnection() throws SQLException {
+        DataSource dataSource = replicaRouter.getReadDataSource();
+        try {
+            Connection readConnection = dataSource.getConnection();
+            String requiredPosition = ReadConsistency.getRequiredPosition();
+            if (dataSource == replicaRouter.getPrimary() || requiredPosition == null) {
+                return readConnection;
+            }
+            try {
+                if (replicaRouter.hasReplayed(readConnection, requiredPosition)) {
+                    return readConnection;
+                }
+            } catch (SQLException e) {
+                readConnection.close();
+                throw e;
+            }
+            // the replica has not seen the writes of the client yet
+            readConnection.close();
+            return replicaRouter.getPrimary().getConnection();
+        } catch (SQLException e) {
+            if (dataSource == replicaRouter.getPrimary()) {
+                throw e;
+            }
+            replicaRouter.replicaFailed(dataSource, e);
+            return replicaRouter.getPrimary().getConnection();
         }
     }
 
+    public boolean isOpen() {
+        return connection != null;
+    }
+
+    @Override
+    @Nullable
+    public String getCommitPosition() {
+        return commitPosition;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     public Connection getConnection() {
         return connection;
     }
 
+    /**
+     * @return the number of statements executed since the Transaction was opened
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
     public void commit() throws GeminiException {
         try {
             this.connection.commit();
             this.committed = true;
+            if (!readOnly) {
+                commitPosition = replicaRouter.commitPosition(connection);
+                ReadConsistency.writeCommitted(commitPosition);
+            }
         } catch (SQLException e) {
             throw GeminiGenericException.wrap(e);
         }
+        runAfterCommitActions();
+    }
+
+    private void runAfterCommitActions() {
+        List<Runnable> actions = new ArrayList<>(afterCommitActions);
+        afterCommitActions.clear();
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // data is already committed, a failing action must not affect the caller
+                logger.error("After commit action failed", e);
+            }
+        }
     }
 
     public void rollback() throws GeminiException {
         try {
             this.connection.rollback();
+            this.afterCommitActions.clear();
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public void savepoint(String name) throws GeminiException {
+        try {
+            Savepoint savepoint = this.connection.setSavepoint(name);
+            this.savepoints.put(name, savepoint);
+            this.afterCommitSizeBySavepoint.put(name, afterCommitActions.size());
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public void rollbackToSavepoint(String name) throws GeminiException {
+        try {
+            Savepoint savepoint = this.savepoints.remove(name);
+            Integer afterCommitSize = this.afterCommitSizeBySavepoint.remove(name);
+            if (savepoint != null) {
+                this.connection.rollback(savepoint);
+                this.afterCommitActions.subList(afterCommitSize, afterCommitActions.size()).clear();
+                // cached records may refer to rolled back rows
+                this.transactionCache = null;
+            }
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public void releaseSavepoint(String name) throws GeminiException {
+        try {
+            Savepoint savepoint = this.savepoints.remove(name);
+            this.afterCommitSizeBySavepoint.remove(name);
+            if (savepoint != null) {
+                this.connection.releaseSavepoint(savepoint);
+            }
         } catch (SQLException e) {
             throw GeminiGenericException.wrap(e);
         }
     }
 
+    @Override
+    public void afterCommit(Runnable action) {
+        this.afterCommitActions.add(action);
+    }
+
     @Override
     public Optional<TransactionCache> getTransactionCache() {
+        if (transactionCache == null && isOpen()) {
+            transactionCache = new TransactionCache();
+        }
         return Optional.ofNullable(transactionCache);
     }
 
@@ -109,7 +280,8 @@ public class TransactionImpl implements Transaction {
     }
 
     public int executeUpdate(String sql, @Nullable Map<String, Object> parameters) throws GeminiException {
-        return createStatement(sql, parameters, PreparedStatement::executeUpdate);
+        // no generated keys: the driver would append a RETURNING clause to any statement containing INSERT (triggers)
+        return createStatement(sql, parameters, false, PreparedStatement::executeUpdate);
     }
 
     public long executeInsert(String sql) throws GeminiException {
@@ -134,6 +306,7 @@ public class TransactionImpl implements Transaction {
 
     public void executeInsertNoResult(String sql, @Nullable Map<String, Object> parameters) throws GeminiException {
         try (PreparedStatement preparedStatement = getPreparedStatement(sql, parameters, false)) {
+            statementCount++;
             preparedStatement.executeUpdate();
         } catch (SQLException e1) {
             throw GeminiGenericException.wrap(e1);
@@ -148,6 +321,23 @@ public class TransactionImpl implements Transaction {
         });
     }
 
+    /**
+     * Execute the top level query of a request (list, page, named query...): the driver fetches at most one row more
+     * than the query budget of the thread, the callback checks them with {@link QueryBudget#checkRows}. The other
+     * statements of the request (references, lookups, writes) are not capped.
+     */
+    public <R> R executeBudgetedQuery(String sql, @Nullable Map<String, Object> parameters, CallbackWithResultThrowingSqlException<R, ResultSet> callback) throws SQLException, GeminiException {
+        return createStatement(sql, parameters, ps -> {
+            Optional<QueryBudget> budget = QueryBudget.current();
+            if (budget.isPresent() && budget.get().getMaxRows() > 0) {
+                // one more row than the budget, to detect the violation without fetching the whole result
+                ps.setMaxRows(budget.get().getMaxRows() + 1);
+            }
+            ResultSet resultSet = ps.executeQuery();
+            return callback.accept(resultSet);
+        });
+    }
+
     public <R> R executeQuery(String sql, CallbackWithResultThrowingSqlException<R, ResultSet> callback) throws SQLException, GeminiException {
         return executeQuery(sql, null, callback);
     }
@@ -163,6 +353,25 @@ public class TransactionImpl implements Transaction {
         });
     }
 
+    /**
+     * Prepare the query on the database without executing it
+     *
+     * @return the labels of the result columns
+     */
+    public List<String> describeQuery(String sql, @Nullable Map<String, Object> parameters) throws GeminiException {
+        try (PreparedStatement preparedStatement = getPreparedStatement(sql, parameters, false)) {
+            statementCount++;
+            ResultSetMetaData metaData = preparedStatement.getMetaData();
+            List<String> columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnLabel(i));
+            }
+            return columns;
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
     private PreparedStatement getPreparedStatement(String sql, @Nullable Map<String, ?> parameters, boolean returnKeys) throws SQLException {
         SqlParameterSource paramSource = new MapSqlParameterSource(parameters);
         ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
@@ -178,14 +387,31 @@ public class TransactionImpl implements Transaction {
     }
 
     private <R> R createStatement(String sql, Map<String, Object> parameters, PsAccept<R> psa) throws GeminiException {
-        try (PreparedStatement ps = getPreparedStatement(sql, parameters, true)) {
+        return createStatement(sql, parameters, true, psa);
+    }
+
+    private <R> R createStatement(String sql, Map<String, Object> parameters, boolean returnKeys, PsAccept<R> psa) throws GeminiException {
+        QueryBudget budget = QueryBudget.current().orElse(null);
+        try (PreparedStatement ps = getPreparedStatement(sql, parameters, returnKeys)) {
+            statementCount++;
+            if (budget != null) {
+                budget.started(ps);
+            }
             try {
                 return psa.accept(ps);
             } catch (SQLException e) {
                 logger.error(ps.unwrap(PreparedStatement.class).toString());
                 throw e;
+            } finally {
+                if (budget != null) {
+                    budget.finished(ps);
+                }
             }
         } catch (SQLException e1) {
+            if (budget != null && QUERY_CANCELED.equals(e1.getSQLState())) {
+                // statement timeout or cancelled on the budget expiration
+                throw QueryBudgetException.QUERY_TIMEOUT(budget.getName(), budget.getTimeoutMillis());
+            }
             throw GeminiGenericException.wrap(e1);
         }
     }
@@ -0,0 +1,80 @@
+package it.at7.gemini.core.persistence;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+import it.at7.gemini.core.FieldConverters;
+import it.at7.gemini.core.persistence.FilterVisitor.FilterVisitorContext;
+import it.at7.gemini.exceptions.GeminiRuntimeException;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.EntityField;
+import it.at7.gemini.schema.Field;
+import it.at7.gemini.schema.FieldType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.*;
+import static it.at7.gemini.core.persistence.FilterVisitor.*;
+
+/**
+ * Filters on TEXT_ARRAY and ENTITY_REF_ARRAY fields. The containment operators are applied to the column as is, so they
+ * are served by its GIN index.
+ */
+public class ArrayTypeFilterVisitor implements GeminiTypeFilterVisitor {
+
+    Map<ComparisonOperator, String> supportedOperators = Map.of(
+            CONTAINS_OPERATOR, " %1$s @> %2$s ",
+            OVERLAPS_OPERATOR, " %1$s && %2$s ",
+            CONTAINED_BY_OPERATOR, " ( %1$s <@ %2$s OR %1$s IS NULL ) ", // empty ref arrays are stored as NULL
+            EMPTY_OPERATOR, " ( %1$s IS NULL OR cardinality(%1$s) = 0 ) "
+    );
+
+    @Override
+    public QueryWithParams visit(EntityField field, ComparisonNode node, FilterVisitorContext filterVisitorContext) {
+        String sqlOperator = supportedOperators.get(node.getOperator());
+        if (sqlOperator == null) {
+            throw new GeminiRuntimeException(String.format("ArrayTypeFilterVisitor unsupported operator %s", node.getOperator().getSymbol()));
+        }
+        String column = wrapDoubleQuotes(filterVisitorContext.tableAlias) + "." + fieldName(field, true);
+        if (node.getOperator().equals(EMPTY_OPERATOR)) {
+            return new QueryWithParams(String.format(sqlOperator, column), Map.of());
+        }
+        String parameterName = filterVisitorContext.parameterFor(fieldName(field, false));
+        List<String> arguments = node.getArguments();
+        if (field.getType().equals(FieldType.TEXT_ARRAY)) {
+            String array = String.format("ARRAY[:%s ]::TEXT[]", parameterName); // the space ends the parameter name
+            return new QueryWithParams(String.format(sqlOperator, column, array), Map.of(parameterName, arguments));
+        }
+        assert field.getType().equals(FieldType.ENTITY_REF_ARRAY);
+        return entityRefArray(field, arguments, sqlOperator, column, parameterName);
+    }
+
+    /**
+     * Arguments are UUIDs or logical keys of the referenced Entity, resolved to their ids. An argument not found is
+     * resolved to 0: no record references it.
+     */
+    private QueryWithParams entityRefArray(EntityField field, List<String> arguments, String sqlOperator, String column, String parameterName) {
+        Entity entityRef = field.getEntityRef();
+        String refTable = wrapDoubleQuotes(entityRef.getName().toLowerCase());
+        String refId = wrapDoubleQuotes(entityRef.getIdEntityField().getName().toLowerCase());
+        String keyColumn;
+        List<Object> parameters;
+        try {
+            parameters = arguments.stream().map(UUID::fromString).collect(Collectors.toList());
+            keyColumn = Field.UUID_NAME;
+        } catch (IllegalArgumentException e) {
+            List<EntityField> logicalKey = entityRef.getLogicalKey().getLogicalKeyList();
+            if (logicalKey.size() != 1) {
+                throw new GeminiRuntimeException(String.format("ArrayTypeFilterVisitor unsupported Entity %s - multiple logical key fields", entityRef.getName()));
+            }
+            EntityField lkField = logicalKey.get(0);
+            parameters = arguments.stream().map(a -> FieldConverters.getConvertedFieldValue(lkField, a)).collect(Collectors.toList());
+            keyColumn = fieldName(lkField, true);
+        }
+        String ids = String.format("ARRAY(SELECT coalesce((SELECT r.%1$s FROM %2$s r WHERE r.%3$s = a.k), 0) FROM unnest(ARRAY[:%4$s ]) AS a(k))::%5$s",
+                refId, refTable, keyColumn, parameterName, pkDomainArrayFromEntity(entityRef.getName()));
+        return new QueryWithParams(String.format(sqlOperator, column, ids), Map.of(parameterName, parameters));
+    }
+}
@@ -24,7 +24,8 @@ public class BasicTypeFilterVisitor implements GeminiTypeFilterVisitor {
             GREATER_THAN_OR_EQUAL, " >= ",
             LESS_THAN, " < ",
             LESS_THAN_OR_EQUAL, " <= ",
-            FilterVisitor.LIKE_OPERATOR, " LIKE "
+            FilterVisitor.LIKE_OPERATOR, " LIKE ",
+            FilterVisitor.ILIKE_OPERATOR, " ILIKE " // on the column as is: served by its trigram index
     );
     Map<ComparisonOperator, String> multipleArgumentsOperators = Map.of(
             IN, " IN ",
@@ -51,7 +52,7 @@ public class BasicTypeFilterVisitor implements GeminiTypeFilterVisitor {
             return null;
         Object resArgument = handleStringValueForField(field, argument);
         String parameterName = filterVisitorContext.parameterFor(fieldName(field, false));
-        String sql = String.format(" \"%s\".\"%s\" %s :%s ", field.getEntity().getName().toLowerCase(), fieldName(field, false), stOperator, parameterName);
+        String sql = String.format(" \"%s\".\"%s\" %s :%s ", filterVisitorContext.tableAlias, fieldName(field, false), stOperator, parameterName);
         return new QueryWithParams(sql, Map.of(parameterName, resArgument));
     }
 
@@ -63,7 +64,7 @@ public class BasicTypeFilterVisitor implements GeminiTypeFilterVisitor {
         List<Object> parameters = arguments.stream().map(a -> handleStringValueForField(field, a)).collect(Collectors.toList());
         String parameterName = filterVisitorContext.parameterFor(fieldName(field, false));
 
-        String sql = String.format(" \"%s\".\"%s\" %s (:%s) ", field.getEntity().getName().toLowerCase(), fieldName(field, false), stOperator, parameterName);
+        String sql = String.format(" \"%s\".\"%s\" %s (:%s) ", filterVisitorContext.tableAlias, fieldName(field, false), stOperator, parameterName);
         return new QueryWithParams(sql, Map.of(parameterName, parameters));
     }
 
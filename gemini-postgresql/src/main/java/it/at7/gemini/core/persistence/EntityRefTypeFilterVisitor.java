@@ -22,6 +22,7 @@ import static cz.jirutka.rsql.parser.ast.RSQLOperators.*;
 import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.fieldName;
 import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.wrapDoubleQuotes;
 import static it.at7.gemini.core.persistence.FilterVisitor.EMPTY_OPERATOR;
+import static it.at7.gemini.core.persistence.FilterVisitor.ILIKE_OPERATOR;
 import static it.at7.gemini.core.persistence.FilterVisitor.LIKE_OPERATOR;
 
 public class EntityRefTypeFilterVisitor implements GeminiTypeFilterVisitor {
@@ -33,6 +34,7 @@ public class EntityRefTypeFilterVisitor implements GeminiTypeFilterVisitor {
             IN, " IN ( %s )",
             NOT_IN, " NOT IN ( %s ) UNION ALL SELECT 0",
             LIKE_OPERATOR, " LIKE %s",
+            ILIKE_OPERATOR, " ILIKE %s",
             EMPTY_OPERATOR, " = 0"
     );
 
@@ -49,7 +51,7 @@ public class EntityRefTypeFilterVisitor implements GeminiTypeFilterVisitor {
             String sqlOperator = supportedOperators.get(operator);
 
             if (operator.equals(EMPTY_OPERATOR)) {
-                return new QueryWithParams(wrapDoubleQuotes(field.getEntity().getName().toLowerCase()) + "." +
+                return new QueryWithParams(wrapDoubleQuotes(filterVisitorContext.tableAlias) + "." +
                         fieldName(field, true) + sqlOperator, Map.of());
             }
 
@@ -68,7 +70,7 @@ public class EntityRefTypeFilterVisitor implements GeminiTypeFilterVisitor {
                     innerINQuery = handleMultipleLogicalKeyEntities(field, node, sqlOperator, filterVisitorContext);
                 }
             }
-            String sqlFullString = wrapDoubleQuotes(field.getEntity().getName().toLowerCase()) + "." +
+            String sqlFullString = wrapDoubleQuotes(filterVisitorContext.tableAlias) + "." +
                     fieldName(field, true)
                     + " IN ( " + innerINQuery.getSql() + " )";
             return new QueryWithParams(sqlFullString, innerINQuery.getParams());
@@ -100,9 +102,10 @@ public class EntityRefTypeFilterVisitor implements GeminiTypeFilterVisitor {
 
             // we need to parse again the argument if we dont' have a UUID.. since it contains other conditions on keys
             Node rootNode = new RSQLParser().parse(argument);
-            QueryWithParams innerQuery = rootNode.accept(this.parentFilterVisitor, FilterVisitorContext.of(entityRef, filterVisitorContext.counterByParameter));
+            FilterVisitorContext innerContext = FilterVisitorContext.of(entityRef, filterVisitorContext.counterByParameter);
+            QueryWithParams innerQuery = rootNode.accept(this.parentFilterVisitor, innerContext);
             return new QueryWithParams(String.format("SELECT %1$s.%2$s" +
-                    "  FROM %1$s WHERE ", entityName, idName)
+                    "  FROM %1$s %3$s WHERE ", entityName, idName, innerContext.getJoins().getSql())
                     + innerQuery.getSql(), innerQuery.getParams());
         }
         throw new GeminiRuntimeException(String.format("EntityRefTypeFilterVisitor unsupported operator %s withRecord for that one argument", node.getOperator().getSymbol()));
@@ -6,13 +6,51 @@ import it.at7.gemini.schema.FieldType;
 import org.springframework.lang.Nullable;
 
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class FieldTypePersistenceUtility {
     public static final String META_PREFIX = "_meta_";
     public static final String ENTITY_PREFIX = "_entity_";
     public static final String REF_PREFIX = "_ref_";
 
+    // delta sync: every insert/update takes a new value from the sequence and stores its transaction id, deletes are
+    // stored in the tombstone table. The horizon is the last purged tombstone of each Entity
+    public static final String CHANGE_SEQUENCE = "gemini_change_seq";
+    public static final String CHANGE_MARKER_COLUMN = "_changeseq";
+    public static final String CHANGE_TX_COLUMN = "_changetx";
+    public static final String TOMBSTONE_TABLE = "gemini_tombstone";
+    public static final String TOMBSTONE_HORIZON_TABLE = "gemini_tombstone_horizon";
+    public static final String ENTITY_COUNT_TABLE = "gemini_entity_count";
+    // data versions: each writing transaction logs (entity, tx), the log is periodically folded into the version rows
+    public static final String ENTITY_VERSION_TABLE = "gemini_entity_version";
+    public static final String ENTITY_VERSION_LOG_TABLE = "gemini_entity_version_log";
+
+    // full text search: generated tsvector of the searchable fields
+    public static final String FTS_COLUMN = "_fts";
+
+    /**
+     * @return the searchable fields of the Entity, ordered by name
+     */
+    public static List<EntityField> searchableFields(Entity entity) {
+        return entity.getDataEntityFields().stream()
+                .filter(EntityField::isSearchable)
+                .sorted(Comparator.comparing(EntityField::getName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the text search configuration literal (for example 'simple'::regconfig)
+     */
+    public static String textSearchConfig(String config) {
+        if (!config.matches("[A-Za-z0-9_.]+")) {
+            throw new IllegalArgumentException(String.format("Invalid text search configuration %s", config));
+        }
+        return String.format("'%s'::regconfig", config);
+    }
+
     public static boolean oneToOneType(FieldType type) {
         switch (type) {
             case PK:
@@ -10,38 +10,61 @@ import it.at7.gemini.schema.EntityField;
 import it.at7.gemini.schema.FieldType;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.*;
 import static it.at7.gemini.schema.FieldType.*;
 
 public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor.FilterVisitorContext> {
     public static final ComparisonOperator LIKE_OPERATOR = new ComparisonOperator("=like=", false);
+    public static final ComparisonOperator ILIKE_OPERATOR = new ComparisonOperator("=ilike=", false);
     public static final ComparisonOperator EMPTY_OPERATOR = new ComparisonOperator("=empty=", false);
+    public static final ComparisonOperator FTS_OPERATOR = new ComparisonOperator("=fts=", false);
+    public static final ComparisonOperator CONTAINS_OPERATOR = new ComparisonOperator("=contains=", true);
+    public static final ComparisonOperator OVERLAPS_OPERATOR = new ComparisonOperator("=overlaps=", true);
+    public static final ComparisonOperator CONTAINED_BY_OPERATOR = new ComparisonOperator("=containedby=", true);
 
+    /**
+     * Full text search selector on all the searchable fields of the Entity (for example {@code _search=fts=term})
+     */
+    public static final String FTS_SELECTOR = "_search";
+
+    private final String textSearchConfig;
 
     private Set<ComparisonOperator> comparisonOperators;
 
     private final GeminiTypeFilterVisitor BASIC_TYPE_FILTER;
     private final GeminiTypeFilterVisitor ENTITY_REF_TYPE_FILTER;
+    private final GeminiTypeFilterVisitor ARRAY_TYPE_FILTER;
     private final Map<FieldType, GeminiTypeFilterVisitor> geminiTypeVisitors;
 
-    public FilterVisitor() {
+    public FilterVisitor(String textSearchConfig) {
+        this.textSearchConfig = textSearchConfig(textSearchConfig);
         comparisonOperators = RSQLOperators.defaultOperators();
         comparisonOperators.add(LIKE_OPERATOR);
+        comparisonOperators.add(ILIKE_OPERATOR);
         comparisonOperators.add(EMPTY_OPERATOR);
+        comparisonOperators.add(FTS_OPERATOR);
+        comparisonOperators.add(CONTAINS_OPERATOR);
+        comparisonOperators.add(OVERLAPS_OPERATOR);
+        comparisonOperators.add(CONTAINED_BY_OPERATOR);
         BASIC_TYPE_FILTER = new BasicTypeFilterVisitor();
         ENTITY_REF_TYPE_FILTER = new EntityRefTypeFilterVisitor(this);
-        geminiTypeVisitors = Map.of(
-                TEXT, BASIC_TYPE_FILTER,
-                LONG, BASIC_TYPE_FILTER,
-                BOOL, BASIC_TYPE_FILTER,
-                DOUBLE, BASIC_TYPE_FILTER,
-                NUMBER, BASIC_TYPE_FILTER,
-                DATE, BASIC_TYPE_FILTER,
-                DATETIME, BASIC_TYPE_FILTER,
-                TIME, BASIC_TYPE_FILTER,
-                ENTITY_REF, ENTITY_REF_TYPE_FILTER
+        ARRAY_TYPE_FILTER = new ArrayTypeFilterVisitor();
+        geminiTypeVisitors = Map.ofEntries(
+                Map.entry(TEXT, BASIC_TYPE_FILTER),
+                Map.entry(LONG, BASIC_TYPE_FILTER),
+                Map.entry(BOOL, BASIC_TYPE_FILTER),
+                Map.entry(DOUBLE, BASIC_TYPE_FILTER),
+                Map.entry(NUMBER, BASIC_TYPE_FILTER),
+                Map.entry(DATE, BASIC_TYPE_FILTER),
+                Map.entry(DATETIME, BASIC_TYPE_FILTER),
+                Map.entry(TIME, BASIC_TYPE_FILTER),
+                Map.entry(ENTITY_REF, ENTITY_REF_TYPE_FILTER),
+                Map.entry(TEXT_ARRAY, ARRAY_TYPE_FILTER),
+                Map.entry(ENTITY_REF_ARRAY, ARRAY_TYPE_FILTER)
         );
     }
 
@@ -62,6 +85,15 @@ public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor
     @Override
     public QueryWithParams visit(ComparisonNode node, FilterVisitorContext filterVisitorContext) {
         String selector = node.getSelector();
+        if (ReferencePathJoins.isPath(selector)) {
+            // the predicate applies to the last Entity of the path, through the joins of the query
+            ReferencePathJoins.Target target = filterVisitorContext.joins.resolve(selector);
+            filterVisitorContext = filterVisitorContext.joined(target.getEntity(), target.getTableAlias());
+            selector = target.getFieldName();
+        }
+        if (node.getOperator().equals(FTS_OPERATOR)) {
+            return fullTextSearch(selector, node.getArguments().get(0), filterVisitorContext);
+        }
         try {
             EntityField field = resolveEntityField(filterVisitorContext.entity, selector);
             GeminiTypeFilterVisitor geminiTypeFilterVisitor = geminiTypeVisitors.get(field.getType());
@@ -76,6 +108,35 @@ public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor
     }
 
 
+    /**
+     * The search selector and the only searchable field use the indexed tsvector column, a field of an Entity with more
+     * searchable fields is searched alone (without index).
+     */
+    private QueryWithParams fullTextSearch(String selector, String text, FilterVisitorContext filterVisitorContext) {
+        Entity entity = filterVisitorContext.entity;
+        List<EntityField> searchable = searchableFields(entity);
+        if (searchable.isEmpty()) {
+            throw new GeminiRuntimeException(String.format("Entity %s has no searchable fields", entity.getName()));
+        }
+        String table = wrapDoubleQuotes(filterVisitorContext.tableAlias);
+        String document;
+        if (selector.equals(FTS_SELECTOR) || (searchable.size() == 1 && searchable.get(0).getName().equalsIgnoreCase(selector))) {
+            document = table + "." + FTS_COLUMN;
+        } else {
+            EntityField field = searchable.stream()
+                    .filter(f -> f.getName().equalsIgnoreCase(selector))
+                    .findFirst()
+                    .orElseThrow(() -> new GeminiRuntimeException(String.format("Field %s of %s is not searchable", selector, entity.getName())));
+            document = String.format("to_tsvector(%s, coalesce(%s.%s, ''))", textSearchConfig, table, fieldName(field, true));
+        }
+        String parameterName = filterVisitorContext.parameterFor("fts");
+        String query = String.format("websearch_to_tsquery(%s, :%s)", textSearchConfig, parameterName);
+        Map<String, Object> params = new HashMap<>();
+        params.put(parameterName, text);
+        return new QueryWithParams(String.format(" %s @@ %s ", document, query), params)
+                .setRankExpression(String.format("ts_rank(%s, %s)", document, query));
+    }
+
     private EntityField resolveEntityField(Entity entity, String selector) throws EntityFieldNotFoundException {
         /**
          * try to resolve first of all data fields... then meta fields..
@@ -104,6 +165,9 @@ public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor
             QueryWithParams childQP = child.accept(this, filterVisitorContext);
             q.addToSql(childQP.getSql());
             q.addParams(childQP.getParams());
+            if (q.getRankExpression() == null) {
+                q.setRankExpression(childQP.getRankExpression());
+            }
 
         }
         q.addToSql(" )");
@@ -114,6 +178,16 @@ public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor
     public static class FilterVisitorContext {
         Entity entity;
 
+        /**
+         * Table (or join alias) of the Entity in the query
+         */
+        String tableAlias;
+
+        /**
+         * Joins of the reference paths, shared by all the predicates of the query
+         */
+        ReferencePathJoins joins;
+
         /**
          * Used to store the index for the same parameter name resolution
          */
@@ -121,12 +195,17 @@ public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor
         Map<String, Long> counterByParameter;
 
         public FilterVisitorContext(Entity entity) {
-            this.entity = entity;
-            counterByParameter = new HashMap<>();
+            this(entity, new HashMap<>());
         }
 
         public FilterVisitorContext(Entity entity, Map<String, Long> counterByParameter) {
+            this(entity, entity.getName().toLowerCase(), new ReferencePathJoins(entity), counterByParameter);
+        }
+
+        private FilterVisitorContext(Entity entity, String tableAlias, ReferencePathJoins joins, Map<String, Long> counterByParameter) {
             this.entity = entity;
+            this.tableAlias = tableAlias;
+            this.joins = joins;
             this.counterByParameter = counterByParameter;
         }
 
@@ -138,6 +217,14 @@ public class FilterVisitor implements RSQLVisitor<QueryWithParams, FilterVisitor
             return new FilterVisitorContext(entity, counterByParameter);
         }
 
+        FilterVisitorContext joined(Entity entity, String tableAlias) {
+            return new FilterVisitorContext(entity, tableAlias, joins, counterByParameter);
+        }
+
+        public ReferencePathJoins getJoins() {
+            return joins;
+        }
+
         public String parameterFor(String fieldName) {
             Long index = counterByParameter.compute(fieldName, (k, v) -> v == null ? 1 : (v + 1));
             return fieldName + "_" + index;
@@ -42,14 +42,27 @@ import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.*;
 public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
     private static final Logger logger = LoggerFactory.getLogger(PersistenceEntityManagerImpl.class);
 
+    /**
+     * Tables smaller than this (8MB with the default block size) are counted exactly even if an estimate is requested
+     */
+    private static final int EXACT_COUNT_MAX_PAGES = 1000;
+    private static final String TOTAL_COLUMN = "__gemini_total";
+    private static final String EXPLAIN = "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) ";
+
+    /**
+     * orderBy element sorting by the relevance of the full text search filter
+     */
+    public static final String RANK_ORDER = "_rank";
+
     private final SchemaManager schemaManager;
     private FilterVisitor filterVisitor;
 
     @Autowired
     public PersistenceEntityManagerImpl(@Lazy SchemaManager schemaManager,
-                                        StateManager stateManager) {
+                                        StateManager stateManager,
+                                        GeminiConfigurationService configurationService) {
         this.schemaManager = schemaManager;
-        this.filterVisitor = new FilterVisitor(); // is a singleton insede the persistence entity manager
+        this.filterVisitor = new FilterVisitor(configurationService.getFtsConfig()); // is a singleton insede the persistence entity manager
     }
 
     @Override
@@ -202,6 +215,18 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         }
         QueryWithParams queryWithParams = makeDeleteQueryByID(record, transaction);
         transactionImpl.executeUpdate(queryWithParams.getSql(), null);
+        if (!record.getEntity().isEmbedable() && record.getUUID() != null) {
+            insertTombstone(record, transactionImpl);
+        }
+    }
+
+    private void insertTombstone(EntityRecord record, TransactionImpl transaction) throws GeminiException {
+        String sql = String.format("INSERT INTO %s (entity, uuid, deleted) VALUES (:entity, :uuid, :deleted)", TOMBSTONE_TABLE);
+        Map<String, Object> params = new HashMap<>();
+        params.put("entity", record.getEntity().getName().toUpperCase());
+        params.put("uuid", record.getUUID());
+        params.put("deleted", transaction.getOpenTime());
+        transaction.executeUpdate(sql, params);
     }
 
     @Override
@@ -253,39 +278,610 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         TransactionImpl transactionImpl = (TransactionImpl) transaction;
         try {
             QueryWithParams query = createSelectQueryFor(entity);
-            addFilter(query, filterContext, entity);
-            addOrderBy(query, filterContext, entity);
+            QueryWithParams condition = filterCondition(filterContext, entity);
+            addConditionAndOrderBy(query, filterContext, entity, condition);
             addLimit(query, filterContext);
             addOffset(query, filterContext);
-            return transactionImpl.executeQuery(query.getSql(), query.getParams(), resultSet -> {
-                return fromResultSetToEntityRecord(resultSet, entity, transaction);
+            return transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                return fromBudgetedResultSetToEntityRecord(resultSet, entity, transaction);
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public QueryPlan explainEntityRecordsMatching(Entity entity, FilterContext filterContext, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        try {
+            QueryWithParams query = createSelectQueryFor(entity);
+            QueryWithParams condition = filterCondition(filterContext, entity);
+            addConditionAndOrderBy(query, filterContext, entity, condition);
+            addLimit(query, filterContext);
+            addOffset(query, filterContext);
+            // the rows are converted as the list does, every statement after the select resolves a reference
+            int statementsBefore = transactionImpl.getStatementCount();
+            int rows = transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                return fromBudgetedResultSetToEntityRecord(resultSet, entity, transaction).size();
+            });
+            int referenceQueries = transactionImpl.getStatementCount() - statementsBefore - 1;
+            String planJson = transactionImpl.executeQuery(EXPLAIN + query.getSql(), query.getParams(), resultSet -> {
+                resultSet.next();
+                return resultSet.getString(1);
+            });
+            Object plan = new ObjectMapper().readValue(planJson, Object.class);
+            return new QueryPlan(query.getSql(), query.getParams(), plan, rows, referenceQueries);
+        } catch (SQLException | IOException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public void prepareNamedQuery(NamedQuery namedQuery, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        Entity entity = namedQuery.getEntity();
+        Map<String, Object> parameters = namedQuery.sampleParameters();
+        FilterContext filterContext = new FilterContextBuilder().withLimit(1).build();
+        if (namedQuery.isSearch()) {
+            assert entity != null;
+            FilterContext searchContext = new FilterContextBuilder()
+                    .withGeminiSearchString(namedQuery.searchWith(parameters))
+                    .withOrderBy(namedQuery.getOrderBy())
+                    .build();
+            QueryWithParams query = createSelectQueryFor(entity);
+            QueryWithParams condition;
+            try {
+                condition = filterCondition(searchContext, entity);
+                addConditionAndOrderBy(query, searchContext, entity, condition);
+            } catch (RuntimeException e) {
+                // RSQL syntax, unknown fields or paths
+                throw GeminiGenericException.wrap(e);
+            }
+            transactionImpl.describeQuery(query.getSql(), query.getParams());
+            return;
+        }
+        QueryWithParams query = namedQuerySql(namedQuery, parameters, filterContext);
+        List<String> columns = transactionImpl.describeQuery(query.getSql(), query.getParams());
+        if (entity != null) {
+            // the rows are converted to records by column name
+            Set<String> labels = columns.stream().map(String::toLowerCase).collect(Collectors.toSet());
+            List<String> missing = entityColumns(entity).stream().filter(c -> !labels.contains(c)).collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                throw new GeminiGenericException(new IllegalArgumentException(String.format("columns %s of entity %s not selected", missing, entity.getName())));
+            }
+        }
+    }
+
+    @Override
+    public List<EntityRecord> getEntityRecordsByNamedQuery(NamedQuery namedQuery, Map<String, Object> parameters, FilterContext filterContext, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        Entity entity = namedQuery.getEntity();
+        assert entity != null;
+        try {
+            QueryWithParams query = namedQuerySql(namedQuery, parameters, filterContext);
+            return transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                return fromBudgetedResultSetToEntityRecord(resultSet, entity, transaction);
             });
         } catch (SQLException e) {
             throw GeminiGenericException.wrap(e);
         }
     }
 
+    @Override
+    public List<Map<String, Object>> getRowsByNamedQuery(NamedQuery namedQuery, Map<String, Object> parameters, FilterContext filterContext, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        try {
+            QueryWithParams query = namedQuerySql(namedQuery, parameters, filterContext);
+            return transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                List<Map<String, Object>> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    QueryBudget.checkRows(rows.size() + 1);
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        row.put(metaData.getColumnLabel(i), rowValue(resultSet.getObject(i)));
+                    }
+                    rows.add(row);
+                }
+                return rows;
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    /**
+     * The declared SQL as a subquery, to apply limit and start of the request
+     */
+    private QueryWithParams namedQuerySql(NamedQuery namedQuery, Map<String, Object> parameters, FilterContext filterContext) {
+        assert namedQuery.getSql() != null;
+        QueryWithParams query = new QueryWithParams(String.format("SELECT * FROM (%s) AS %s", namedQuery.getSql(),
+                wrapDoubleQuotes(namedQuery.getName().toLowerCase())), new HashMap<>(parameters));
+        addLimit(query, filterContext);
+        addOffset(query, filterContext);
+        return query;
+    }
+
+    /**
+     * Columns read by the conversion of a row to an Entity Record
+     */
+    private List<String> entityColumns(Entity entity) {
+        List<String> columns = new ArrayList<>();
+        columns.add(entity.getIdEntityField().getName().toLowerCase());
+        if (!entity.isEmbedable()) {
+            columns.add(Field.UUID_NAME.toLowerCase());
+        }
+        for (EntityField field : entity.getAllRootEntityFields()) {
+            if (field.getType() == FieldType.GENERIC_ENTITY_REF) {
+                columns.add(genericRefEntityFieldName(field, false).toLowerCase());
+                columns.add(genericRefActualRefFieldName(field, false).toLowerCase());
+            } else {
+                columns.add(fieldName(field, false).toLowerCase());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * JSON friendly values of the plain rows: ISO dates and times, lists for arrays, strings for the other types
+     */
+    private Object rowValue(Object value) throws SQLException {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().toString();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        }
+        if (value instanceof Time) {
+            return ((Time) value).toLocalTime().toString();
+        }
+        if (value instanceof Array) {
+            List<Object> ret = new ArrayList<>();
+            for (Object elem : (Object[]) ((Array) value).getArray()) {
+                ret.add(rowValue(elem));
+            }
+            return ret;
+        }
+        return value.toString(); // uuid, json, intervals
+    }
+
+    @Override
+    public EntityRecordsPage getEntityRecordsPage(Entity entity, FilterContext filterContext, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        try {
+            // the window function counts the filtered rows before limit and offset, the total comes with every row
+            QueryWithParams query = createSelectWithTotalQueryFor(entity);
+            QueryWithParams condition = filterCondition(filterContext, entity);
+            addConditionAndOrderBy(query, filterContext, entity, condition);
+            addLimit(query, filterContext);
+            addOffset(query, filterContext);
+            long[] total = {0};
+            List<EntityRecord> records = transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                List<EntityRecord> ret = new ArrayList<>();
+                while (resultSet.next()) {
+                    QueryBudget.checkRows(ret.size() + 1);
+                    total[0] = resultSet.getLong(TOTAL_COLUMN);
+                    ret.add(rsRowToEntityRecord(resultSet, entity, transaction));
+                }
+                return ret;
+            });
+            if (records.isEmpty() && filterContext.getStart() > 0) {
+                // a page after the end has no rows to carry the total
+                total[0] = exactCount(entity, condition, transactionImpl);
+            }
+            return new EntityRecordsPage(records, total[0]);
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
     @Override
     public long countEntityRecordsMatching(Entity entity, FilterContext filterContext, EntityOperationContext entityOperationContext, Transaction transaction) throws GeminiException {
         TransactionImpl transactionImpl = (TransactionImpl) transaction;
         try {
-            QueryWithParams query = createCountQueryFor(entity);
-            addFilter(query, filterContext, entity);
-            // addOrderBy(query, filterContext, entity);
+            QueryWithParams condition = filterCondition(filterContext, entity);
+            switch (filterContext.getCountMode()) {
+                case ESTIMATED:
+                    return estimatedCount(entity, condition, transactionImpl);
+                case MAINTAINED:
+                    if (condition == null) {
+                        Optional<Long> maintainedCount = maintainedCount(entity, transactionImpl);
+                        if (maintainedCount.isPresent()) {
+                            return maintainedCount.get();
+                        }
+                    }
+                    // not maintained or filtered
+                    return exactCount(entity, condition, transactionImpl);
+                default:
+                    return exactCount(entity, condition, transactionImpl);
+            }
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    private long exactCount(Entity entity, @Nullable QueryWithParams condition, TransactionImpl transaction) throws SQLException, GeminiException {
+        // the count covers all the matching records, limit and offset are only for the list
+        QueryWithParams query = createCountQueryFor(entity);
+        addCondition(query, condition);
+        return transaction.executeQuery(query.getSql(), query.getParams(), resultSet -> {
+            boolean next = resultSet.next();
+            if (!next) {
+                throw new GeminiRuntimeException("Expected one long in query");
+            }
+            return resultSet.getLong(1);
+        });
+    }
+
+    private long estimatedCount(Entity entity, @Nullable QueryWithParams condition, TransactionImpl transaction) throws SQLException, GeminiException {
+        // reltuples density scaled on the current table size, the same extrapolation used by the planner
+        String sql = "SELECT pg_relation_size(c.oid) / current_setting('block_size')::int, " +
+                "CASE WHEN c.relpages > 0 THEN c.reltuples / c.relpages ELSE -1 END " +
+                "FROM pg_class c WHERE c.oid = to_regclass(:table)";
+        double[] pagesAndDensity = transaction.executeQuery(sql, Map.of("table", wrapDoubleQuotes(entity.getName().toLowerCase())), resultSet -> {
+            if (!resultSet.next()) {
+                throw new GeminiRuntimeException("Storage not found for Entity " + entity.getName());
+            }
+            return new double[]{resultSet.getDouble(1), resultSet.getDouble(2)};
+        });
+        double pages = pagesAndDensity[0];
+        double tuplesPerPage = pagesAndDensity[1];
+        if (pages < EXACT_COUNT_MAX_PAGES) {
+            return exactCount(entity, condition, transaction);
+        }
+        if (condition == null && tuplesPerPage >= 0) {
+            return Math.round(tuplesPerPage * pages);
+        }
+        QueryWithParams query = new QueryWithParams(String.format("EXPLAIN (FORMAT JSON) SELECT 1 FROM %s", wrapDoubleQuotes(entity.getName().toLowerCase())));
+        addCondition(query, condition);
+        String plan = transaction.executeQuery(query.getSql(), query.getParams(), resultSet -> {
+            resultSet.next();
+            return resultSet.getString(1);
+        });
+        try {
+            return new ObjectMapper().readTree(plan).get(0).get("Plan").get("Plan Rows").asLong();
+        } catch (IOException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    private Optional<Long> maintainedCount(Entity entity, TransactionImpl transaction) throws SQLException, GeminiException {
+        String sql = String.format("SELECT count FROM %s WHERE entity = :entity", ENTITY_COUNT_TABLE);
+        return transaction.executeQuery(sql, Map.of("entity", entity.getName().toLowerCase()), resultSet -> {
+            return resultSet.next() ? Optional.of(resultSet.getLong(1)) : Optional.empty();
+        });
+    }
+
+    @Override
+    public AggregationResult aggregateEntityRecords(Entity entity, Aggregation aggregation, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        try {
+            FilterContext filterContext = aggregation.getFilterContext();
+            QueryWithParams condition = filterCondition(filterContext, entity);
+            // the group and aggregate paths share the joins of the filter
+            ReferencePathJoins joins = condition != null && condition.getJoins() != null ? condition.getJoins() : new ReferencePathJoins(entity);
+            List<Aggregation.GroupBy> groupBy = aggregation.getGroupBy();
+            List<Aggregation.Aggregate> aggregates = aggregation.getAggregates();
+            StringJoiner columns = new StringJoiner(", ");
+            StringJoiner groups = new StringJoiner(", ");
+            for (int i = 0; i < groupBy.size(); i++) {
+                Aggregation.GroupBy group = groupBy.get(i);
+                String column = pathColumn(group.getPath(), group.getField(), joins);
+                // references are grouped by id (as unique as their logical key), resolved after the query
+                // 0 is a missing reference too
+                columns.add(group.getField().getType() == FieldType.ENTITY_REF ? "NULLIF(" + column + ", 0)" : column);
+                groups.add(String.valueOf(i + 1));
+            }
+            for (Aggregation.Aggregate aggregate : aggregates) {
+                String function = aggregate.getFunction().name().toLowerCase();
+                columns.add(aggregate.getField() == null ? function + "(*)" :
+                        function + "(" + pathColumn(aggregate.getPath(), aggregate.getField(), joins) + ")");
+            }
+            QueryWithParams query = new QueryWithParams(String.format("SELECT %s FROM %s", columns, wrapDoubleQuotes(entity.getName().toLowerCase())));
+            addCondition(query, condition, joins);
+            if (groups.length() > 0) {
+                query.addToSql(" GROUP BY " + groups);
+            }
+            query.addToSql(aggregationOrderBy(aggregation));
             addLimit(query, filterContext);
             addOffset(query, filterContext);
-            return transactionImpl.executeQuery(query.getSql(), query.getParams(), resultSet -> {
-                boolean next = resultSet.next();
-                if (!next) {
-                    throw new GeminiRuntimeException("Expected one long in query");
+            List<Object[]> rows = transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                List<Object[]> ret = new ArrayList<>();
+                while (resultSet.next()) {
+                    QueryBudget.checkRows(ret.size() + 1);
+                    Object[] row = new Object[groupBy.size() + aggregates.size()];
+                    for (int i = 0; i < groupBy.size(); i++) {
+                        row[i] = aggregationValue(resultSet, i + 1, groupBy.get(i).getField().getType());
+                    }
+                    for (int i = 0; i < aggregates.size(); i++) {
+                        int index = groupBy.size() + i;
+                        row[index] = aggregationValue(resultSet, index + 1, aggregates.get(i).getResultType());
+                    }
+                    ret.add(row);
+                }
+                return ret;
+            });
+            for (int i = 0; i < groupBy.size(); i++) {
+                EntityField field = groupBy.get(i).getField();
+                if (field.getType() == FieldType.ENTITY_REF) {
+                    resolveGroupReferences(field.getEntityRef(), rows, i, transactionImpl);
                 }
+            }
+            return new AggregationResult(aggregation, rows);
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    private String pathColumn(String path, EntityField field, ReferencePathJoins joins) {
+        ReferencePathJoins.Target target = joins.resolve(path);
+        return wrapDoubleQuotes(target.getTableAlias()) + "." + fieldName(field, true);
+    }
+
+    private String aggregationOrderBy(Aggregation aggregation) {
+        // by position, the groups and aggregates are the columns of the query
+        StringJoiner oby = new StringJoiner(", ");
+        String[] orderBy = aggregation.getFilterContext().getOrderBy();
+        if (orderBy != null && orderBy.length > 0) {
+            for (String obElem : orderBy) {
+                boolean desc = obElem.charAt(0) == '-';
+                int index = aggregation.columnIndex(desc ? obElem.substring(1) : obElem);
+                oby.add((index + 1) + (desc ? " DESC" : " ASC"));
+            }
+        } else {
+            for (int i = 0; i < aggregation.getGroupBy().size(); i++) {
+                oby.add(String.valueOf(i + 1));
+            }
+        }
+        return oby.length() > 0 ? " ORDER BY " + oby.toString() : "";
+    }
+
+    @Nullable
+    private Object aggregationValue(ResultSet rs, int index, FieldType type) throws SQLException {
+        switch (type) {
+            case LONG:
+            case ENTITY_REF: {
+                // sum of bigint is a numeric
+                Object value = rs.getObject(index);
+                return value == null ? null : ((Number) value).longValue();
+            }
+            case DOUBLE: {
+                Object value = rs.getObject(index);
+                return value == null ? null : ((Number) value).doubleValue();
+            }
+            case DATE:
+                return rs.getObject(index, LocalDate.class);
+            case TIME:
+                return rs.getObject(index, LocalTime.class);
+            case DATETIME:
+                return rs.getObject(index, LocalDateTime.class);
+            default:
+                return rs.getObject(index);
+        }
+    }
+
+    /**
+     * Replace the ids of the referenced records with their references, loaded with one query
+     */
+    private void resolveGroupReferences(Entity entityRef, List<Object[]> rows, int index, TransactionImpl transaction) throws SQLException, GeminiException {
+        Set<Long> ids = new HashSet<>();
+        for (Object[] row : rows) {
+            if (row[index] != null) {
+                ids.add((long) row[index]);
+            }
+        }
+        Map<Long, EntityRecord> recordsById = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Array idArray = transaction.getConnection().createArrayOf("bigint", ids.toArray());
+            String condition = String.format("%s.%s = ANY(:ids)", wrapDoubleQuotes(entityRef.getName().toLowerCase()), wrapDoubleQuotes(entityRef.getIdEntityField().getName().toLowerCase()));
+            for (EntityRecord record : getEntityRecordsWhere(entityRef, condition, Map.of("ids", idArray), transaction)) {
+                recordsById.put((long) record.getID(), record);
+            }
+        }
+        for (Object[] row : rows) {
+            EntityRecord record = row[index] == null ? null : recordsById.get(row[index]);
+            row[index] = record == null ? null : createEntityReferenceRecordFromER(entityRef, row[index], record);
+        }
+    }
+
+    /**
+     * Changes are ordered by (writing transaction id, marker) and only the ones written by transactions older than the
+     * snapshot xmin are returned: those transactions are finished, so no later commit can add a change before the
+     * returned token. A long running write transaction delays the changes written after it started.
+     */
+    @Override
+    public EntityRecordChanges getEntityRecordChanges(Entity entity, FilterContext filterContext, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        ChangeToken since = ChangeToken.parse(filterContext.getChangedSince());
+        int limit = filterContext.getLimit() > 0 ? filterContext.getLimit() : Integer.MAX_VALUE - 1;
+        String entityName = wrapDoubleQuotes(entity.getName().toLowerCase());
+        String marker = entityName + "." + wrapDoubleQuotes(CHANGE_MARKER_COLUMN);
+        String tx = entityName + "." + wrapDoubleQuotes(CHANGE_TX_COLUMN);
+        try {
+            checkTombstoneHorizon(entity, since, transactionImpl);
+            long xmin = transactionImpl.executeQuery("SELECT txid_snapshot_xmin(txid_current_snapshot())", resultSet -> {
+                resultSet.next();
                 return resultSet.getLong(1);
             });
+            Map<String, Object> changeParams = Map.of("sinceTx", since.tx, "since", since.seq, "xmin", xmin);
+
+            // keyset paging: limit + 1 elements from each source to know if there are more changes
+            QueryWithParams query = createSelectQueryFor(entity);
+            QueryWithParams condition = filterCondition(filterContext, entity);
+            if (condition != null && condition.getJoins() != null) {
+                query.addToSql(condition.getJoins().getSql());
+            }
+            query.addToSql(String.format(" WHERE (%1$s, %2$s) > (:sinceTx, :since) AND %1$s < :xmin", tx, marker));
+            query.addParams(changeParams);
+            if (condition != null) {
+                query.addToSql(" AND (" + condition.getSql() + ")");
+                query.addParams(condition.getParams());
+            }
+            query.addToSql(String.format(" ORDER BY %s, %s LIMIT %d", tx, marker, limit + 1));
+            List<EntityRecordChanges.Change> upserts = transactionImpl.executeBudgetedQuery(query.getSql(), query.getParams(), resultSet -> {
+                List<EntityRecordChanges.Change> res = new ArrayList<>();
+                while (resultSet.next()) {
+                    QueryBudget.checkRows(res.size() + 1);
+                    EntityRecord record = rsRowToEntityRecord(resultSet, entity, transaction);
+                    res.add(EntityRecordChanges.Change.upsert(resultSet.getLong(CHANGE_TX_COLUMN), resultSet.getLong(CHANGE_MARKER_COLUMN), record));
+                }
+                return res;
+            });
+
+            String deleteSql = String.format("SELECT tx, seq, uuid FROM %s WHERE entity = :entity AND (tx, seq) > (:sinceTx, :since) AND tx < :xmin ORDER BY tx, seq LIMIT %d", TOMBSTONE_TABLE, limit + 1);
+            Map<String, Object> deleteParams = new HashMap<>(changeParams);
+            deleteParams.put("entity", entity.getName().toUpperCase());
+            List<EntityRecordChanges.Change> deletes = transactionImpl.executeQuery(deleteSql, deleteParams, resultSet -> {
+                List<EntityRecordChanges.Change> res = new ArrayList<>();
+                while (resultSet.next()) {
+                    res.add(EntityRecordChanges.Change.delete(resultSet.getLong(1), resultSet.getLong(2), resultSet.getObject(3, UUID.class)));
+                }
+                return res;
+            });
+
+            List<EntityRecordChanges.Change> changes = new ArrayList<>(upserts);
+            changes.addAll(deletes);
+            changes.sort(Comparator.comparingLong(EntityRecordChanges.Change::getTx).thenComparingLong(EntityRecordChanges.Change::getMarker));
+            boolean hasMore = changes.size() > limit;
+            if (hasMore) {
+                changes = new ArrayList<>(changes.subList(0, limit));
+            }
+            ChangeToken next = changes.isEmpty() ? since : ChangeToken.of(changes.get(changes.size() - 1));
+            return new EntityRecordChanges(changes, next.toString(), hasMore);
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    /**
+     * Folded versions plus the logged writing transactions: each committed write adds one, whatever the commit order,
+     * and folding the log does not change the sum
+     */
+    @Override
+    public String getEntitiesDataVersion(Collection<Entity> entities, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        String sql = String.format("" +
+                "SELECT (SELECT coalesce(sum(version), 0) FROM %s WHERE entity = ANY(:entities)) + " +
+                "       (SELECT count(*) FROM %s WHERE entity = ANY(:entities))", ENTITY_VERSION_TABLE, ENTITY_VERSION_LOG_TABLE);
+        try {
+            Array names = transactionImpl.getConnection().createArrayOf("text", entities.stream()
+                    .filter(e -> !e.isEmbedable())
+                    .map(e -> e.getName().toLowerCase())
+                    .toArray());
+            return transactionImpl.executeQuery(sql, Map.of("entities", names), resultSet -> {
+                resultSet.next();
+                return Long.toHexString(resultSet.getLong(1));
+            });
         } catch (SQLException e) {
             throw GeminiGenericException.wrap(e);
         }
     }
 
+    /**
+     * Tombstones older than the purge horizon are gone: a token before it would miss deletes
+     */
+    private void checkTombstoneHorizon(Entity entity, ChangeToken since, TransactionImpl transaction) throws SQLException, GeminiException {
+        if (since.isInitial()) {
+            return;
+        }
+        String sql = String.format("SELECT (:sinceTx, :since) < (tx, seq) FROM %s WHERE entity = :entity", TOMBSTONE_HORIZON_TABLE);
+        boolean tooOld = transaction.executeQuery(sql, Map.of("entity", entity.getName().toUpperCase(), "sinceTx", since.tx, "since", since.seq),
+                resultSet -> resultSet.next() && resultSet.getBoolean(1));
+        if (tooOld) {
+            throw InvalidRequesException.CHANGE_TOKEN_TOO_OLD(since.toString());
+        }
+    }
+
+    @Override
+    public int foldDataVersions(Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        // only committed log rows are deleted: the transactions still writing keep theirs
+        String sql = String.format("" +
+                "WITH folded AS (DELETE FROM %1$s RETURNING entity), " +
+                "     versions AS (INSERT INTO %2$s (entity, version) " +
+                "         SELECT entity, count(*) FROM folded GROUP BY entity " +
+                "         ON CONFLICT (entity) DO UPDATE SET version = %2$s.version + EXCLUDED.version) " +
+                "SELECT count(*) FROM folded", ENTITY_VERSION_LOG_TABLE, ENTITY_VERSION_TABLE);
+        try {
+            return transactionImpl.executeQuery(sql, resultSet -> {
+                resultSet.next();
+                return resultSet.getInt(1);
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public int purgeTombstones(LocalDateTime deletedBefore, Transaction transaction) throws GeminiException {
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        String sql = String.format("" +
+                "WITH purged AS (DELETE FROM %1$s WHERE deleted < :before RETURNING entity, tx, seq), " +
+                "     horizon AS (INSERT INTO %2$s (entity, tx, seq) " +
+                "         SELECT DISTINCT ON (entity) entity, tx, seq FROM purged ORDER BY entity, tx DESC, seq DESC " +
+                "         ON CONFLICT (entity) DO UPDATE SET tx = EXCLUDED.tx, seq = EXCLUDED.seq " +
+                "         WHERE (%2$s.tx, %2$s.seq) < (EXCLUDED.tx, EXCLUDED.seq)) " +
+                "SELECT count(*) FROM purged", TOMBSTONE_TABLE, TOMBSTONE_HORIZON_TABLE);
+        try {
+            return transactionImpl.executeQuery(sql, Map.of("before", deletedBefore), resultSet -> {
+                resultSet.next();
+                return resultSet.getInt(1);
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    /**
+     * Position in the changes of an Entity: transaction id and marker of the last change, <code>0</code> to start
+     */
+    static class ChangeToken {
+        static final ChangeToken INITIAL = new ChangeToken(0, 0);
+
+        final long tx;
+        final long seq;
+
+        ChangeToken(long tx, long seq) {
+            this.tx = tx;
+            this.seq = seq;
+        }
+
+        boolean isInitial() {
+            return tx == 0 && seq == 0;
+        }
+
+        static ChangeToken of(EntityRecordChanges.Change change) {
+            return new ChangeToken(change.getTx(), change.getMarker());
+        }
+
+        static ChangeToken parse(String token) throws InvalidRequesException {
+            if (token == null || token.isEmpty() || token.equals("0")) {
+                return INITIAL;
+            }
+            String[] parts = token.split("\\.");
+            try {
+                if (parts.length != 2) {
+                    throw InvalidRequesException.INVALID_CHANGE_TOKEN(token);
+                }
+                ChangeToken ret = new ChangeToken(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                if (ret.tx < 0 || ret.seq < 0) {
+                    throw InvalidRequesException.INVALID_CHANGE_TOKEN(token);
+                }
+                return ret;
+            } catch (NumberFormatException e) {
+                throw InvalidRequesException.INVALID_CHANGE_TOKEN(token);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return isInitial() ? "0" : tx + "." + seq;
+        }
+    }
+
     @Override
     public Optional<EntityRecord> getEntityRecordById(Entity entity, long recordId, Transaction transaction) throws GeminiException {
         Optional<TransactionCache> transactionCache = transaction.getTransactionCache();
@@ -316,6 +912,104 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         }
     }
 
+    @Override
+    public List<Optional<EntityRecord>> getEntityRecordsByUUIDs(Entity entity, Collection<UUID> uuids, Transaction transaction) throws GeminiException {
+        if (uuids.isEmpty()) {
+            return List.of();
+        }
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        try {
+            Array uuidArray = transactionImpl.getConnection().createArrayOf("uuid", uuids.toArray());
+            String condition = String.format("%s.%s = ANY(:uuids)", wrapDoubleQuotes(entity.getName().toLowerCase()), wrapDoubleQuotes(Field.UUID_NAME.toLowerCase()));
+            List<EntityRecord> records = getEntityRecordsWhere(entity, condition, Map.of("uuids", uuidArray), transactionImpl);
+            Map<UUID, EntityRecord> recordsByUUID = new HashMap<>();
+            for (EntityRecord record : records) {
+                recordsByUUID.put(record.getUUID(), record);
+            }
+            return uuids.stream()
+                    .map(uuid -> Optional.ofNullable(recordsByUUID.get(uuid)))
+                    .collect(Collectors.toList());
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    @Override
+    public List<Optional<EntityRecord>> getEntityRecordsByLogicalKeys(Entity entity, Collection<? extends Collection<? extends FieldValue>> logicalKeys, Transaction transaction) throws GeminiException {
+        if (logicalKeys.isEmpty()) {
+            return List.of();
+        }
+        List<EntityField> logicalKeyFields = entity.getLogicalKey().getLogicalKeyList();
+        if (logicalKeyFields.size() != 1 || logicalKeyFields.get(0).getType() != FieldType.TEXT) {
+            // composite or reference logical keys cannot be matched with a single array - one query each
+            List<Optional<EntityRecord>> records = new ArrayList<>();
+            for (Collection<? extends FieldValue> logicalKey : logicalKeys) {
+                records.add(getEntityRecordByLogicalKey(entity, logicalKey, transaction));
+            }
+            return records;
+        }
+        EntityField lkField = logicalKeyFields.get(0);
+        TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        try {
+            List<Object> lkValues = logicalKeys.stream()
+                    .map(lk -> lk.isEmpty() ? null : lk.iterator().next().getValue())
+                    .collect(Collectors.toList());
+            Array lkArray = transactionImpl.getConnection().createArrayOf("text", lkValues.toArray());
+            String condition = String.format("%s.%s = ANY(:lks)", wrapDoubleQuotes(entity.getName().toLowerCase()), fieldName(lkField, true));
+            List<EntityRecord> records = getEntityRecordsWhere(entity, condition, Map.of("lks", lkArray), transactionImpl);
+            Map<Object, EntityRecord> recordsByLk = new HashMap<>();
+            for (EntityRecord record : records) {
+                recordsByLk.put(record.get(lkField), record);
+            }
+            return lkValues.stream()
+                    .map(lk -> Optional.ofNullable(lk == null ? null : recordsByLk.get(lk)))
+                    .collect(Collectors.toList());
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    private List<EntityRecord> getEntityRecordsWhere(Entity entity, String condition, Map<String, Object> params, TransactionImpl transaction) throws SQLException, GeminiException {
+        prefetchReferences(entity, condition, params, transaction);
+        QueryWithParams query = createSelectQueryFor(entity);
+        query.addToSql("WHERE " + condition);
+        query.addParams(params);
+        return transaction.executeQuery(query.getSql(), query.getParams(), resultSet -> {
+            return fromResultSetToEntityRecord(resultSet, entity, transaction);
+        });
+    }
+
+    /**
+     * Load with one query per reference field all the records referenced by the rows matching the condition. They are
+     * stored in the Transaction Cache, so the row conversion does not need a query for each reference.
+     */
+    private void prefetchReferences(Entity entity, String condition, Map<String, Object> params, TransactionImpl transaction) throws SQLException, GeminiException {
+        if (!transaction.getTransactionCache().isPresent()) {
+            return;
+        }
+        String entityName = wrapDoubleQuotes(entity.getName().toLowerCase());
+        for (EntityField field : entity.getAllRootEntityFields()) {
+            String refIds;
+            if (field.getType() == FieldType.ENTITY_REF) {
+                refIds = fieldName(field, true);
+            } else if (field.getType() == FieldType.ENTITY_REF_ARRAY) {
+                refIds = String.format("unnest(%s)", fieldName(field, true));
+            } else {
+                continue;
+            }
+            Entity entityRef = field.getEntityRef();
+            String refEntityName = wrapDoubleQuotes(entityRef.getName().toLowerCase());
+            QueryWithParams query = createSelectQueryFor(entityRef);
+            query.addToSql(String.format("WHERE %s.%s IN (SELECT %s FROM %s WHERE %s)",
+                    refEntityName, wrapDoubleQuotes(entityRef.getIdEntityField().getName().toLowerCase()),
+                    refIds, entityName, condition));
+            query.addParams(params);
+            transaction.executeQuery(query.getSql(), query.getParams(), resultSet -> {
+                return fromResultSetToEntityRecord(resultSet, entityRef, transaction);
+            });
+        }
+    }
+
     @Override
     public EntityRecord getEntityRecordSingleton(Entity entity, Transaction transaction) throws GeminiException {
         TransactionImpl transactionImpl = (TransactionImpl) transaction;
@@ -347,46 +1041,82 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         query.addToSql(String.format("WHERE \"%s\".\"%s\" = '%s'", entity.getName().toUpperCase().toLowerCase(), Field.UUID_NAME.toLowerCase(), uuid.toString()));
     }
 
-    private void addFilter(QueryWithParams query, FilterContext filterContext, Entity entity) {
+    private void addCondition(QueryWithParams query, @Nullable QueryWithParams condition) {
+        if (condition != null) {
+            if (condition.getJoins() != null) {
+                query.addToSql(condition.getJoins().getSql());
+            }
+            query.addToSql(" WHERE " + condition.getSql());
+            query.addParams(condition.getParams());
+        }
+    }
+
+    private void addCondition(QueryWithParams query, @Nullable QueryWithParams condition, ReferencePathJoins joins) {
+        query.addToSql(joins.getSql());
+        if (condition != null) {
+            query.addToSql(" WHERE " + condition.getSql());
+            query.addParams(condition.getParams());
+        }
+    }
+
+    @Nullable
+    private QueryWithParams filterCondition(FilterContext filterContext, Entity entity) {
         FilterContext.FilterType filterType = filterContext.getFilterType();
         if (filterType == FilterContext.FilterType.GEMINI && !filterContext.getSearchString().isEmpty()) {
             Node rootNode = new RSQLParser(filterVisitor.getOperators()).parse(filterContext.getSearchString());
-
-            QueryWithParams queryWithParams = rootNode.accept(filterVisitor, FilterVisitor.FilterVisitorContext.of(entity));
-            query.addToSql(" WHERE " + queryWithParams.getSql());
-            query.addParams(queryWithParams.getParams());
+            FilterVisitor.FilterVisitorContext filterVisitorContext = FilterVisitor.FilterVisitorContext.of(entity);
+            return rootNode.accept(filterVisitor, filterVisitorContext).setJoins(filterVisitorContext.getJoins());
         }
         if (filterType == FilterContext.FilterType.PERSISTENCE) {
-            query.addToSql(" WHERE " + filterContext.getSearchString());
-            query.addParams(filterContext.getParams());
+            return new QueryWithParams(filterContext.getSearchString(), filterContext.getParams());
         }
+        return null;
+    }
+
+    private void addConditionAndOrderBy(QueryWithParams query, FilterContext filterContext, Entity entity, @Nullable QueryWithParams condition) {
+        // the orderBy paths share the joins of the filter
+        ReferencePathJoins joins = condition != null && condition.getJoins() != null ? condition.getJoins() : new ReferencePathJoins(entity);
+        String orderBy = orderByClause(filterContext, entity, condition, joins);
+        addCondition(query, condition, joins);
+        query.addToSql(orderBy);
     }
 
-    private void addOrderBy(QueryWithParams query, FilterContext filterContext, Entity entity) {
+    private String orderByClause(FilterContext filterContext, Entity entity, @Nullable QueryWithParams condition, ReferencePathJoins joins) {
+        String entityName = wrapDoubleQuotes(entity.getName().toLowerCase());
         String[] orderBy = filterContext.getOrderBy();
         if (orderBy != null && orderBy.length > 0) {
             StringJoiner oby = new StringJoiner(", ");
             for (String obElem : orderBy) {
                 obElem = obElem.toLowerCase();
-                if (obElem.charAt(0) == '-') {
-                    oby.add(wrapDoubleQuotes(obElem.substring(1)) + " DESC");
+                if (obElem.equals(RANK_ORDER) || obElem.equals("-" + RANK_ORDER)) {
+                    // most relevant first, reversed by the minus sign as the other fields
+                    if (condition == null || condition.getRankExpression() == null) {
+                        throw new GeminiRuntimeException(String.format("orderBy %s requires a full text search filter", RANK_ORDER));
+                    }
+                    oby.add(condition.getRankExpression() + (obElem.charAt(0) == '-' ? " ASC" : " DESC"));
+                    continue;
+                }
+                boolean desc = obElem.charAt(0) == '-';
+                String element = desc ? obElem.substring(1) : obElem;
+                String column;
+                if (ReferencePathJoins.isPath(element)) {
+                    ReferencePathJoins.Target target = joins.resolve(element);
+                    column = wrapDoubleQuotes(target.getTableAlias()) + "." + wrapDoubleQuotes(target.getFieldName());
                 } else {
-                    oby.add(wrapDoubleQuotes(obElem) + " ASC");
+                    column = entityName + "." + wrapDoubleQuotes(element);
                 }
+                oby.add(column + (desc ? " DESC" : " ASC"));
             }
-            query.addToSql(" ORDER BY " + oby.toString());
-        } else {
-            // deterministic order by API
-            // TODO need order by update field
-            Entity.LogicalKey logicalKey = entity.getLogicalKey();
-            StringJoiner sj = new StringJoiner(", ");
-            for (EntityField field : logicalKey.getLogicalKeyList()) {
-                sj.add(wrapDoubleQuotes(field.getName().toLowerCase()));
-            }
-            if (sj.length() > 0) {
-                query.addToSql(" ORDER BY " + sj.toString());
-            }
+            return " ORDER BY " + oby.toString();
+        }
+        // deterministic order by API
+        // TODO need order by update field
+        Entity.LogicalKey logicalKey = entity.getLogicalKey();
+        StringJoiner sj = new StringJoiner(", ");
+        for (EntityField field : logicalKey.getLogicalKeyList()) {
+            sj.add(entityName + "." + wrapDoubleQuotes(field.getName().toLowerCase()));
         }
+        return sj.length() > 0 ? " ORDER BY " + sj.toString() : "";
     }
 
     private void addLimit(QueryWithParams query, FilterContext filterContext) {
@@ -416,6 +1146,11 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         return new QueryWithParams(select);
     }
 
+    private QueryWithParams createSelectWithTotalQueryFor(Entity entity) {
+        String entityName = entity.getName().toLowerCase();
+        return new QueryWithParams(String.format("SELECT %1$s.*, count(*) OVER() AS %2$s FROM %1$s ", wrapDoubleQuotes(entityName), wrapDoubleQuotes(TOTAL_COLUMN)));
+    }
+
     private QueryWithParams createSelectQueryFor(Entity entity) {
         String select = createSelectQuerySQLFor(entity);
         return new QueryWithParams(select);
@@ -514,6 +1249,18 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         }
     }
 
+    /**
+     * Records of the top level query of a request, checked against the query budget
+     */
+    private List<EntityRecord> fromBudgetedResultSetToEntityRecord(ResultSet rs, Entity entity, Transaction transaction) throws SQLException, GeminiException {
+        List<EntityRecord> ret = new ArrayList<>();
+        while (rs.next()) {
+            QueryBudget.checkRows(ret.size() + 1);
+            ret.add(rsRowToEntityRecord(rs, entity, transaction));
+        }
+        return ret;
+    }
+
     private List<EntityRecord> fromResultSetToEntityRecord(ResultSet rs, Entity entity, Transaction transaction) throws SQLException, GeminiException {
         List<EntityRecord> ret = new ArrayList<>();
         while (rs.next()) {
@@ -794,6 +1541,9 @@ public class PersistenceEntityManagerImpl implements PersistenceEntityManager {
         Map<EntityField, EntityRecord> embededEntityRecords = checkAndModifyEmbededEntyRecords(record, transaction);
         StringBuilder sql = new StringBuilder(String.format("UPDATE %s SET ", wrapDoubleQuotes(entity.getName().toLowerCase())));
         Map<String, Object> params = new HashMap<>();
+        if (!record.getEntity().isEmbedable()) {
+            sql.append(String.format(" %s = nextval('%s') , %s = txid_current() , ", wrapDoubleQuotes(CHANGE_MARKER_COLUMN), CHANGE_SEQUENCE, wrapDoubleQuotes(CHANGE_TX_COLUMN)));
+        }
         if (!record.getEntity().isEmbedable() && record.getUUID() != null) { // uuis should be updated only if it is provided
             sql.append(String.format(" %s = :%s , ", Field.UUID_NAME, Field.UUID_NAME));
             params.put(Field.UUID_NAME, record.getUUID());
@@ -1,5 +1,6 @@
 package it.at7.gemini.core.persistence;
 
+import it.at7.gemini.core.GeminiConfigurationService;
 import it.at7.gemini.core.Transaction;
 import it.at7.gemini.core.TransactionImpl;
 import it.at7.gemini.exceptions.GeminiException;
@@ -10,11 +11,13 @@ import it.at7.gemini.schema.*;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.*;
 import static java.util.stream.Collectors.toList;
@@ -22,9 +25,17 @@ import static java.util.stream.Collectors.toList;
 @Service
 public class PostgresPersistenceSchemaManager implements PersistenceSchemaManager {
     private static final Logger logger = LoggerFactory.getLogger(PostgresPersistenceSchemaManager.class);
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+    private static final String TRIGRAM_SAVEPOINT = "gemini_trgm";
 
+    private final GeminiConfigurationService configurationService;
     private String schemaName;
 
+    @Autowired
+    public PostgresPersistenceSchemaManager(GeminiConfigurationService configurationService) {
+        this.configurationService = configurationService;
+    }
+
     @Override
     public void beforeLoadSchema(Transaction transaction) throws GeminiException {
         try {
@@ -38,9 +49,298 @@ public class PostgresPersistenceSchemaManager implements PersistenceSchemaManage
         }
     }
 
+    private void checkOrCreateChangeTracking(TransactionImpl transaction) throws GeminiException {
+        transaction.executeUpdate(String.format("CREATE SEQUENCE IF NOT EXISTS %s", CHANGE_SEQUENCE));
+        transaction.executeUpdate(String.format("" +
+                "CREATE TABLE IF NOT EXISTS %s ( " +
+                "   seq BIGINT PRIMARY KEY DEFAULT nextval('%s'), " +
+                "   entity TEXT NOT NULL, " +
+                "   uuid uuid NOT NULL, " +
+                "   tx BIGINT NOT NULL DEFAULT txid_current(), " +
+                "   deleted TIMESTAMP NOT NULL )", TOMBSTONE_TABLE, CHANGE_SEQUENCE));
+        transaction.executeUpdate(String.format("CREATE INDEX IF NOT EXISTS %1$s_entity_tx_seq ON %1$s (entity, tx, seq)", TOMBSTONE_TABLE));
+        transaction.executeUpdate(String.format("CREATE INDEX IF NOT EXISTS %1$s_deleted ON %1$s (deleted)", TOMBSTONE_TABLE));
+        transaction.executeUpdate(String.format("" +
+                "CREATE TABLE IF NOT EXISTS %s ( " +
+                "   entity TEXT PRIMARY KEY, " +
+                "   tx BIGINT NOT NULL, " +
+                "   seq BIGINT NOT NULL )", TOMBSTONE_HORIZON_TABLE));
+    }
+
+    /**
+     * Maintained counts use statement level triggers with transition tables, so batch inserts update the counter once.
+     * The counter is rebuilt every time an Entity is enabled, and removed when it is disabled, so it cannot become
+     * stale across configuration changes.
+     */
+    private void checkOrCreateMaintainedCounts(TransactionImpl transaction, Collection<Entity> entities) throws GeminiException {
+        transaction.executeUpdate(String.format("" +
+                "CREATE TABLE IF NOT EXISTS %s ( " +
+                "   entity TEXT PRIMARY KEY, " +
+                "   count BIGINT NOT NULL )", ENTITY_COUNT_TABLE));
+        transaction.executeUpdate(String.format("" +
+                "CREATE OR REPLACE FUNCTION %1$s_trg() RETURNS trigger AS $$ " +
+                "BEGIN " +
+                "   IF TG_OP = 'INSERT' THEN " +
+                "       UPDATE %1$s SET count = count + (SELECT count(*) FROM gemini_new_rows) WHERE entity = TG_TABLE_NAME; " +
+                "   ELSIF TG_OP = 'DELETE' THEN " +
+                "       UPDATE %1$s SET count = count - (SELECT count(*) FROM gemini_old_rows) WHERE entity = TG_TABLE_NAME; " +
+                "   ELSE " +
+                "       UPDATE %1$s SET count = 0 WHERE entity = TG_TABLE_NAME; " +
+                "   END IF; " +
+                "   RETURN NULL; " +
+                "END $$ LANGUAGE plpgsql", ENTITY_COUNT_TABLE));
+        Set<String> maintained = configurationService.getCountMaintainedEntities().stream()
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+        for (Entity entity : entities) {
+            if (entity.isEmbedable()) {
+                continue;
+            }
+            String tableName = entity.getName().toLowerCase();
+            String table = wrapDoubleQuotes(tableName);
+            Map<String, Object> params = Map.of("entity", tableName);
+            boolean enabled = maintained.contains(tableName);
+            boolean counted = hasTrigger(table, tableName + "_count_ins", transaction);
+            if (enabled && !counted) {
+                logger.info("Enabling maintained count for {}", entity.getName());
+                transaction.executeUpdate(String.format("CREATE TRIGGER %s AFTER INSERT ON %s REFERENCING NEW TABLE AS gemini_new_rows FOR EACH STATEMENT EXECUTE PROCEDURE %s_trg()",
+                        wrapDoubleQuotes(tableName + "_count_ins"), table, ENTITY_COUNT_TABLE));
+                transaction.executeUpdate(String.format("CREATE TRIGGER %s AFTER DELETE ON %s REFERENCING OLD TABLE AS gemini_old_rows FOR EACH STATEMENT EXECUTE PROCEDURE %s_trg()",
+                        wrapDoubleQuotes(tableName + "_count_del"), table, ENTITY_COUNT_TABLE));
+                transaction.executeUpdate(String.format("CREATE TRIGGER %s AFTER TRUNCATE ON %s FOR EACH STATEMENT EXECUTE PROCEDURE %s_trg()",
+                        wrapDoubleQuotes(tableName + "_count_trunc"), table, ENTITY_COUNT_TABLE));
+                transaction.executeUpdate(String.format("INSERT INTO %s (entity, count) SELECT :entity, count(*) FROM %s " +
+                        "ON CONFLICT (entity) DO UPDATE SET count = EXCLUDED.count", ENTITY_COUNT_TABLE, table), params);
+            }
+            if (!enabled && counted) {
+                logger.info("Disabling maintained count for {}", entity.getName());
+                for (String trigger : List.of("_count_ins", "_count_del", "_count_trunc")) {
+                    transaction.executeUpdate(String.format("DROP TRIGGER IF EXISTS %s ON %s", wrapDoubleQuotes(tableName + trigger), table));
+                }
+            }
+            if (!enabled) {
+                transaction.executeUpdate(String.format("DELETE FROM %s WHERE entity = :entity", ENTITY_COUNT_TABLE), params);
+            }
+        }
+    }
+
+    /**
+     * Every Entity has a data version: a statement level trigger logs the transactions that insert, update, delete or
+     * truncate it, and the version is the folded count plus the logged transactions. Each transaction inserts its own
+     * key, so concurrent writers of the same Entity never wait for each other, and the log is written by the writing
+     * transaction, so readers see it with the data. Version rows are kept when a table is dropped: it never goes back.
+     */
+    private void checkOrCreateEntityVersions(TransactionImpl transaction, Collection<Entity> entities) throws GeminiException {
+        transaction.executeUpdate(String.format("" +
+                "CREATE TABLE IF NOT EXISTS %s ( " +
+                "   entity TEXT PRIMARY KEY, " +
+                "   version BIGINT NOT NULL )", ENTITY_VERSION_TABLE));
+        transaction.executeUpdate(String.format("" +
+                "CREATE TABLE IF NOT EXISTS %s ( " +
+                "   entity TEXT NOT NULL, " +
+                "   tx BIGINT NOT NULL, " +
+                "   PRIMARY KEY (entity, tx) )", ENTITY_VERSION_LOG_TABLE));
+        transaction.executeUpdate(String.format("" +
+                "CREATE OR REPLACE FUNCTION %1$s_trg() RETURNS trigger AS $$ " +
+                "BEGIN " +
+                "   INSERT INTO %2$s (entity, tx) VALUES (TG_TABLE_NAME, txid_current()) ON CONFLICT DO NOTHING; " +
+                "   RETURN NULL; " +
+                "END $$ LANGUAGE plpgsql", ENTITY_VERSION_TABLE, ENTITY_VERSION_LOG_TABLE));
+        for (Entity entity : entities) {
+            if (entity.isEmbedable()) {
+                continue;
+            }
+            String tableName = entity.getName().toLowerCase();
+            String table = wrapDoubleQuotes(tableName);
+            if (!hasTrigger(table, tableName + "_version", transaction)) {
+                transaction.executeUpdate(String.format("CREATE TRIGGER %s AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON %s FOR EACH STATEMENT EXECUTE PROCEDURE %s_trg()",
+                        wrapDoubleQuotes(tableName + "_version"), table, ENTITY_VERSION_TABLE));
+            }
+        }
+    }
+
+    private boolean hasTrigger(String table, String trigger, TransactionImpl transaction) throws GeminiException {
+        try {
+            // the triggers are checked, not the counter rows: a dropped and recreated table keeps its rows but loses the triggers
+            String sql = "SELECT 1 FROM pg_trigger WHERE tgrelid = to_regclass(:table) AND tgname = :trigger";
+            return transaction.executeQuery(sql, Map.of("table", table, "trigger", trigger), resultSet -> {
+                return resultSet.next();
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    /**
+     * Entities with searchable fields have a generated tsvector column with a GIN index. The column comment stores the
+     * configuration and the fields used to generate it: the column is rebuilt only when they change.
+     */
+    private void checkOrCreateFullTextSearch(TransactionImpl transaction, Collection<Entity> entities) throws GeminiException {
+        String config = textSearchConfig(configurationService.getFtsConfig());
+        for (Entity entity : entities) {
+            if (entity.isEmbedable()) {
+                continue;
+            }
+            List<EntityField> searchable = searchableFields(entity);
+            String tableName = entity.getName().toLowerCase();
+            String table = wrapDoubleQuotes(tableName);
+            String definition = searchable.isEmpty() ? null : config + " " + searchable.stream().map(EntityField::getName).collect(Collectors.joining(","));
+            Optional<String> actualDefinition = fullTextSearchDefinition(table, transaction);
+            if (actualDefinition.isPresent() && actualDefinition.get().equals(definition)) {
+                continue;
+            }
+            if (actualDefinition.isPresent()) {
+                // generation expressions cannot be altered: the index is dropped with the column
+                transaction.executeUpdate(String.format("ALTER TABLE %s DROP COLUMN %s", table, FTS_COLUMN));
+            }
+            if (definition != null) {
+                logger.info("Creating full text search for {}: {}", entity.getName(), definition);
+                String document = searchable.stream()
+                        .map(f -> String.format("coalesce(%s, '')", fieldName(f, true)))
+                        .collect(Collectors.joining(" || ' ' || "));
+                transaction.executeUpdate(String.format("ALTER TABLE %s ADD COLUMN %s tsvector GENERATED ALWAYS AS (to_tsvector(%s, %s)) STORED",
+                        table, FTS_COLUMN, config, document));
+                transaction.executeUpdate(String.format("CREATE INDEX %s ON %s USING GIN (%s)", wrapDoubleQuotes(tableName + FTS_COLUMN + "_idx"), table, FTS_COLUMN));
+                transaction.executeUpdate(String.format("COMMENT ON COLUMN %s.%s IS '%s'", table, FTS_COLUMN, definition.replace("'", "''")));
+            }
+        }
+    }
+
+    private Optional<String> fullTextSearchDefinition(String table, TransactionImpl transaction) throws GeminiException {
+        try {
+            String sql = "SELECT coalesce(col_description(attrelid, attnum), '') FROM pg_attribute " +
+                    "WHERE attrelid = to_regclass(:table) AND attname = :column AND NOT attisdropped";
+            return transaction.executeQuery(sql, Map.of("table", table, "column", FTS_COLUMN), resultSet -> {
+                return resultSet.next() ? Optional.of(resultSet.getString(1)) : Optional.<String>empty();
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+    }
+
+    private void checkOrCreateTrigramIndexes(TransactionImpl transaction, Collection<Entity> entities) throws GeminiException {
+        Boolean trigramAvailable = null; // checked once, and only if some field has a trigram index
+        for (Entity entity : entities) {
+            if (entity.isEmbedable()) {
+                continue;
+            }
+            String tableName = entity.getName().toLowerCase();
+            Map<String, String> indexes = new HashMap<>();
+            for (EntityField field : entity.getDataEntityFields()) {
+                if (field.getTrigramIndex() != null) {
+                    String method = field.getTrigramIndex().name().toLowerCase();
+                    indexes.put(managedIndexName("trgm_" + method, field), String.format("USING %s (%s %s_trgm_ops)", method, fieldName(field, true), method));
+                }
+            }
+            Set<String> actualIndexes = dropUndeclaredIndexes(tableName, "^trgm_(gin|gist)_", indexes.keySet(), transaction);
+            if (indexes.isEmpty()) {
+                continue;
+            }
+            if (trigramAvailable == null) {
+                trigramAvailable = enableTrigramExtension(transaction);
+            }
+            if (!trigramAvailable) {
+                logger.warn("pg_trgm extension not available - skipping trigram indexes of {}", entity.getName());
+                continue;
+            }
+            for (Map.Entry<String, String> index : indexes.entrySet()) {
+                if (!actualIndexes.contains(index.getKey())) {
+                    logger.info("Creating trigram index {}", index.getKey());
+                    transaction.executeUpdate(String.format("CREATE INDEX %s ON %s %s", wrapDoubleQuotes(index.getKey()), wrapDoubleQuotes(tableName), index.getValue()));
+                }
+            }
+        }
+    }
+
+    private void checkOrCreateArrayIndexes(TransactionImpl transaction, Collection<Entity> entities) throws GeminiException {
+        for (Entity entity : entities) {
+            if (entity.isEmbedable()) {
+                continue;
+            }
+            String tableName = entity.getName().toLowerCase();
+            Map<String, String> indexes = new HashMap<>();
+            for (EntityField field : entity.getDataEntityFields()) {
+                if (field.isIndexed() && (field.getType() == FieldType.TEXT_ARRAY || field.getType() == FieldType.ENTITY_REF_ARRAY)) {
+                    indexes.put(managedIndexName("arr_gin", field), String.format("USING GIN (%s)", fieldName(field, true)));
+                }
+            }
+            Set<String> actualIndexes = dropUndeclaredIndexes(tableName, "^arr_gin_", indexes.keySet(), transaction);
+            for (Map.Entry<String, String> index : indexes.entrySet()) {
+                if (!actualIndexes.contains(index.getKey())) {
+                    logger.info("Creating array index {}", index.getKey());
+                    transaction.executeUpdate(String.format("CREATE INDEX %s ON %s %s", wrapDoubleQuotes(index.getKey()), wrapDoubleQuotes(tableName), index.getValue()));
+                }
+            }
+        }
+    }
+
+    private static String managedIndexName(String prefix, EntityField field) {
+        String indexName = String.format("%s_%s_%s", prefix, field.getEntity().getName().toLowerCase(), fieldName(field, false));
+        return indexName.substring(0, Math.min(indexName.length(), MAX_IDENTIFIER_LENGTH));
+    }
+
+    /**
+     * Drop the indexes of the table matching the pattern that are no longer declared
+     *
+     * @return the existing indexes matching the pattern
+     */
+    private Set<String> dropUndeclaredIndexes(String tableName, String pattern, Set<String> declared, TransactionImpl transaction) throws GeminiException {
+        Set<String> actualIndexes;
+        try {
+            String sql = "SELECT indexname FROM pg_indexes " +
+                    "WHERE schemaname = current_schema() AND tablename = :table AND indexname ~ :pattern";
+            actualIndexes = transaction.executeQuery(sql, Map.of("table", tableName, "pattern", pattern), resultSet -> {
+                Set<String> result = new HashSet<>();
+                while (resultSet.next()) {
+                    result.add(resultSet.getString(1));
+                }
+                return result;
+            });
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+        for (String actualIndex : actualIndexes) {
+            if (!declared.contains(actualIndex)) {
+                transaction.executeUpdate(String.format("DROP INDEX %s", wrapDoubleQuotes(actualIndex)));
+            }
+        }
+        return actualIndexes;
+    }
+
+    /**
+     * @return true if pg_trgm is installed, or available and installable by the current user
+     */
+    private boolean enableTrigramExtension(TransactionImpl transaction) throws GeminiException {
+        try {
+            Optional<Boolean> installed = transaction.executeQuery("SELECT installed_version IS NOT NULL FROM pg_available_extensions WHERE name = 'pg_trgm'", resultSet -> {
+                return resultSet.next() ? Optional.of(resultSet.getBoolean(1)) : Optional.<Boolean>empty();
+            });
+            if (!installed.isPresent()) {
+                return false;
+            }
+            if (installed.get()) {
+                return true;
+            }
+        } catch (SQLException e) {
+            throw GeminiGenericException.wrap(e);
+        }
+        // creating an extension may require privileges the user doesn't have: the failure must not abort the schema transaction
+        transaction.savepoint(TRIGRAM_SAVEPOINT);
+        try {
+            transaction.executeUpdate("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            transaction.releaseSavepoint(TRIGRAM_SAVEPOINT);
+            return true;
+        } catch (GeminiException e) {
+            logger.warn("Unable to create the pg_trgm extension", e);
+            transaction.rollbackToSavepoint(TRIGRAM_SAVEPOINT);
+            return false;
+        }
+    }
+
     @Override
     public void handleSchemaStorage(Transaction transaction, Collection<Entity> entities) throws GeminiException {
         TransactionImpl transactionImpl = (TransactionImpl) transaction;
+        checkOrCreateChangeTracking(transactionImpl);
         for (Entity entity : entities) {
             // two cycle.. it is a beforeAll
             invokeCreateEntityStorageBefore(entity, transactionImpl);
@@ -48,6 +348,11 @@ public class PostgresPersistenceSchemaManager implements PersistenceSchemaManage
         for (Entity entity : entities) {
             handleSingleEntityStorage(transactionImpl, entity, OPE.UPDATE);
         }
+        checkOrCreateMaintainedCounts(transactionImpl, entities);
+        checkOrCreateEntityVersions(transactionImpl, entities);
+        checkOrCreateFullTextSearch(transactionImpl, entities);
+        checkOrCreateTrigramIndexes(transactionImpl, entities);
+        checkOrCreateArrayIndexes(transactionImpl, entities);
     }
 
     @Override
@@ -251,6 +556,8 @@ public class PostgresPersistenceSchemaManager implements PersistenceSchemaManage
         sqlBuilder.append(primaryKeyField(Field.ID_NAME));
         if (!entity.isEmbedable()) {
             sqlBuilder.append(uuidField());
+            sqlBuilder.append(", ").append(changeMarkerField());
+            sqlBuilder.append(", ").append(changeTxField());
             entity.getMetaEntityFields().forEach(mf -> sqlBuilder.append(", ").append(field(mf)));
         }
 
@@ -258,6 +565,9 @@ public class PostgresPersistenceSchemaManager implements PersistenceSchemaManage
         handleUniqueLogicalKeyConstraint(sqlBuilder, entity);
         sqlBuilder.append(" );");
         transaction.executeUpdate(sqlBuilder.toString());
+        if (!entity.isEmbedable()) {
+            checkOrCreateChangeMarkerIndex(entity, transaction);
+        }
 
         // TODO for runtime is better unique constrain or index ?? check later
         // checkOrCreteLogicalKeyUniqueIndex(entity.getName(), entity.getLogicalKey(), transaction);
@@ -272,6 +582,13 @@ public class PostgresPersistenceSchemaManager implements PersistenceSchemaManage
             NB meta fields columns are creted or updated always starting from the schema file.
             If you delete the field from the schema, the column isn't removed from the database.
          */
+        if (!entity.isEmbedable()) {
+            // existing rows get a marker from the column default
+            transaction.executeUpdate(String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS %s", getEntityNameForSQL(entity), changeMarkerField()));
+            transaction.executeUpdate(String.format("ALTER TABLE %s ADD COLUMN IF NOT EXISTS %s", getEntityNameForSQL(entity), changeTxField()));
+            checkOrCreateChangeMarkerIndex(entity, transaction);
+        }
+
         HashSet<EntityField> updateSet = new HashSet<>(entity.getMetaEntityFields());
         updateSet.addAll(entity.getDataEntityFields());
 
@@ -482,6 +799,23 @@ public class PostgresPersistenceSchemaManager implements PersistenceSchemaManage
         return String.format("%s BIGSERIAL PRIMARY KEY", wrapDoubleQuotes(id));
     }
 
+    private String changeMarkerField() {
+        return String.format("%s BIGINT NOT NULL DEFAULT nextval('%s')", wrapDoubleQuotes(CHANGE_MARKER_COLUMN), CHANGE_SEQUENCE);
+    }
+
+    /**
+     * Transaction id of the last write, changes are ordered by it to skip the transactions still in progress
+     */
+    private String changeTxField() {
+        return String.format("%s BIGINT NOT NULL DEFAULT txid_current()", wrapDoubleQuotes(CHANGE_TX_COLUMN));
+    }
+
+    private void checkOrCreateChangeMarkerIndex(Entity entity, TransactionImpl transaction) throws GeminiException {
+        String indexName = wrapDoubleQuotes(entity.getName().toLowerCase() + CHANGE_TX_COLUMN);
+        transaction.executeUpdate(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s, %s)", indexName, getEntityNameForSQL(entity),
+                wrapDoubleQuotes(CHANGE_TX_COLUMN), wrapDoubleQuotes(CHANGE_MARKER_COLUMN)));
+    }
+
     private String uuidField() {
         return String.format(", %s uuid UNIQUE", wrapDoubleQuotes(Field.UUID_NAME));
     }
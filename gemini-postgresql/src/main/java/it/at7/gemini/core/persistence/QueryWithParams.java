@@ -1,11 +1,15 @@
 package it.at7.gemini.core.persistence;
 
+import org.springframework.lang.Nullable;
+
 import java.util.HashMap;
 import java.util.Map;
 
 public class QueryWithParams {
     private StringBuilder sqlBuilder;
     private Map<String, Object> params;
+    private String rankExpression;
+    private ReferencePathJoins joins;
 
     public QueryWithParams(String sql) {
         this.sqlBuilder = new StringBuilder(sql);
@@ -34,4 +38,30 @@ public class QueryWithParams {
     public Map<String, Object> getParams() {
         return params;
     }
+
+    /**
+     * @return the relevance of the rows matching a full text search condition, null if there is no such condition
+     */
+    @Nullable
+    public String getRankExpression() {
+        return rankExpression;
+    }
+
+    public QueryWithParams setRankExpression(String rankExpression) {
+        this.rankExpression = rankExpression;
+        return this;
+    }
+
+    /**
+     * @return the joins of the reference paths used by the condition, null if it has none
+     */
+    @Nullable
+    public ReferencePathJoins getJoins() {
+        return joins;
+    }
+
+    public QueryWithParams setJoins(ReferencePathJoins joins) {
+        this.joins = joins;
+        return this;
+    }
 }
@@ -0,0 +1,120 @@
+package it.at7.gemini.core.persistence;
+
+import it.at7.gemini.exceptions.EntityFieldNotFoundException;
+import it.at7.gemini.exceptions.GeminiRuntimeException;
+import it.at7.gemini.schema.Entity;
+import it.at7.gemini.schema.EntityField;
+import it.at7.gemini.schema.FieldType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.fieldName;
+import static it.at7.gemini.core.persistence.FieldTypePersistenceUtility.wrapDoubleQuotes;
+
+/**
+ * Joins of the dotted reference paths (for example {@code customer.country}) used by the filter and the orderBy of a
+ * query on an Entity. Every path prefix is joined once, whatever the number of predicates using it. References are
+ * many to one, so the (left) joins never multiply the rows of the query Entity.
+ */
+public class ReferencePathJoins {
+    private static final String PATH_SEPARATOR = ".";
+
+    private final Entity entity;
+    private final Map<String, Join> joinsByPath = new LinkedHashMap<>();
+
+    public ReferencePathJoins(Entity entity) {
+        this.entity = entity;
+    }
+
+    public static boolean isPath(String selector) {
+        return selector.contains(PATH_SEPARATOR);
+    }
+
+    /**
+     * Join all the references of the path but the last element
+     *
+     * @return the Entity (and its table alias) of the last element of the path
+     */
+    public Target resolve(String path) {
+        String[] elements = path.split("\\.");
+        Entity current = entity;
+        String alias = entity.getName().toLowerCase();
+        StringBuilder joinedPath = new StringBuilder();
+        for (int i = 0; i < elements.length - 1; i++) {
+            EntityField field = referenceField(current, elements[i], path);
+            joinedPath.append(PATH_SEPARATOR).append(field.getName().toLowerCase());
+            Entity entityRef = field.getEntityRef();
+            String fromAlias = alias;
+            Join join = joinsByPath.computeIfAbsent(joinedPath.toString(), p -> {
+                String joinAlias = "_j" + (joinsByPath.size() + 1);
+                String sql = String.format(" LEFT JOIN %1$s AS %2$s ON %2$s.%3$s = %4$s.%5$s",
+                        wrapDoubleQuotes(entityRef.getName().toLowerCase()),
+                        wrapDoubleQuotes(joinAlias),
+                        wrapDoubleQuotes(entityRef.getIdEntityField().getName().toLowerCase()),
+                        wrapDoubleQuotes(fromAlias),
+                        fieldName(field, true));
+                return new Join(joinAlias, sql);
+            });
+            alias = join.alias;
+            current = entityRef;
+        }
+        return new Target(current, alias, elements[elements.length - 1]);
+    }
+
+    public boolean isEmpty() {
+        return joinsByPath.isEmpty();
+    }
+
+    public String getSql() {
+        StringBuilder sql = new StringBuilder();
+        joinsByPath.values().forEach(j -> sql.append(j.sql));
+        return sql.append(" ").toString();
+    }
+
+    private static EntityField referenceField(Entity entity, String name, String path) {
+        try {
+            EntityField field = entity.getField(name);
+            if (field.getType() != FieldType.ENTITY_REF && field.getType() != FieldType.ENTITY_EMBEDED) {
+                throw new GeminiRuntimeException(String.format("Invalid path %s - %s is not a reference of %s", path, name, entity.getName()));
+            }
+            return field;
+        } catch (EntityFieldNotFoundException e) {
+            throw new GeminiRuntimeException(String.format("Invalid path %s - %s is not a field of %s", path, name, entity.getName()), e);
+        }
+    }
+
+    private static class Join {
+        final String alias;
+        final String sql;
+
+        Join(String alias, String sql) {
+            this.alias = alias;
+            this.sql = sql;
+        }
+    }
+
+    public static class Target {
+        private final Entity entity;
+        private final String tableAlias;
+        private final String fieldName;
+
+        Target(Entity entity, String tableAlias, String fieldName) {
+            this.entity = entity;
+            this.tableAlias = tableAlias;
+            this.fieldName = fieldName;
+        }
+
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public String getTableAlias() {
+            return tableAlias;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+    }
+}
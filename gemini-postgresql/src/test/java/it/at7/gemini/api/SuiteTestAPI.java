@@ -11,7 +11,22 @@ import org.junit.runners.Suite;
         ClosedDomainRESTAPIControllerAbstTest.class,
         RestAPIControllerOneRecordEntityAbstTest.class,
         RestAPIControllerUUIDAbstTest.class,
-        RestAPIControllerListAbstTest.class
+        RestAPIControllerListAbstTest.class,
+        RestAPIControllerBinaryFormatsAbstTest.class,
+        BatchAPIControllerAbstTest.class,
+        RestAPIControllerMultiGetAbstTest.class,
+        RestAPIControllerChangesAbstTest.class,
+        RestAPIControllerCountAbstTest.class,
+        RestAPIControllerTotalAbstTest.class,
+        RestAPIControllerListCacheAbstTest.class,
+        RestAPIControllerETagAbstTest.class,
+        RestAPIControllerJsonCacheAbstTest.class,
+        RestAPIControllerFullTextAbstTest.class,
+        RestAPIControllerReferencePathAbstTest.class,
+        RestAPIControllerAggregateAbstTest.class,
+        QueryPlanControllerAbstTest.class,
+        NamedQueryControllerAbstTest.class,
+        EntityEventStreamControllerAbstTest.class
 })
 public class SuiteTestAPI extends SuiteTestWebApiINIT {
 }
@@ -2,6 +2,7 @@ package it.at7.gemini.core;
 
 import it.at7.gemini.core.persistence.PersistenceEntityManager;
 import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.GeminiGenericException;
 import it.at7.gemini.exceptions.IdFieldException;
 import it.at7.gemini.schema.Entity;
 import org.junit.FixMethodOrder;
@@ -10,6 +11,7 @@ import org.junit.runners.MethodSorters;
 
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -175,6 +177,70 @@ public class PersistenceEntityManagerAbstTest {
         assertEquals(Long.valueOf(3L), counter.get("counter"));
     }
 
+    @Test
+    public void n5_entityDataVersion() throws GeminiException {
+        List<Entity> entities = List.of(domainEntity);
+        String version = transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+            return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+        });
+        assertEquals(version, transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+            return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+        }));
+
+        // a rolled back write leaves the version unchanged
+        try {
+            transactionManager.executeInSingleTrasaction((VoidTransactionCallback) t -> {
+                ((TransactionImpl) t).executeUpdate("UPDATE testdomain1 SET code = code");
+                throw new GeminiGenericException(new IllegalStateException("rollback"));
+            });
+            fail("expected the rollback");
+        } catch (GeminiGenericException e) {
+            // rolled back
+        }
+        assertEquals(version, transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+            return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+        }));
+
+        // written with SQL, as done by another instance
+        transactionManager.executeInSingleTrasaction(t -> {
+            ((TransactionImpl) t).executeUpdate("UPDATE testdomain1 SET code = code");
+        });
+        String changed = transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+            return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+        });
+        assertNotEquals(version, changed);
+        // the data version of a set changes with any of its Entities
+        assertNotEquals(changed, transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+            return persistenceEntityManager.getEntitiesDataVersion(List.of(domainEntity, dataTypeEntity), t);
+        }));
+
+        // concurrent writers of the same Entity do not wait for each other
+        String committed;
+        try (Transaction open = transactionManager.openTransaction()) {
+            // the statement trigger logs the write even without rows, no row locks are taken
+            ((TransactionImpl) open).executeUpdate("UPDATE testdomain1 SET code = code WHERE false");
+            transactionManager.executeInSingleTrasaction(t -> {
+                ((TransactionImpl) t).executeUpdate("UPDATE testdomain1 SET code = code");
+            });
+            committed = transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+                return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+            });
+            assertNotEquals(changed, committed);
+
+            // folding skips the open transaction and does not change the version
+            transactionManager.executeInSingleTrasaction(t -> {
+                assertTrue(persistenceEntityManager.foldDataVersions(t) > 0);
+            });
+            assertEquals(committed, transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+                return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+            }));
+            open.commit();
+        }
+        assertNotEquals(committed, transactionManager.executeInSingleReadOnlyTrasaction(t -> {
+            return persistenceEntityManager.getEntitiesDataVersion(entities, t);
+        }));
+    }
+
 
     //@Test(expected = AssertionError.class)
     public void n4_TestExpectAssertionError() throws SQLException, GeminiException {
@@ -0,0 +1,126 @@
+package it.at7.gemini.core;
+
+import it.at7.gemini.exceptions.GeminiException;
+import it.at7.gemini.exceptions.QueryBudgetException;
+import it.at7.gemini.schema.Entity;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+public class QueryBudgetAbstTest {
+
+    private QueryBudgets budgets;
+
+    @After
+    public void clean() {
+        budgets.shutdown();
+    }
+
+    @Test
+    public void statementTimeout() throws GeminiException {
+        budgets = new QueryBudgets(200, 0, Map.of());
+        long start = System.currentTimeMillis();
+        QueryBudget budget = budgets.open(entity("TestDomain1"), null);
+        try {
+            Services.getTransactionManager().executeInSingleReadOnlyTrasaction(transaction -> {
+                return sleep(transaction, 5);
+            });
+            Assert.fail("expected the query timeout");
+        } catch (QueryBudgetException e) {
+            Assert.assertEquals(QueryBudgetException.Code.QUERY_TIMEOUT, e.getErrorCode());
+        } finally {
+            budget.close();
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void expiredBudgetCancelsTheRunningStatement() throws GeminiException {
+        budgets = new QueryBudgets(300, 0, Map.of());
+        long start = System.currentTimeMillis();
+        // the transaction is opened before the budget: no statement timeout, only the cancel
+        try (Transaction transaction = Services.getTransactionManager().openReadOnlyTransaction()) {
+            QueryBudget budget = budgets.open(entity("TestDomain1"), null);
+            try {
+                sleep(transaction, 5);
+                Assert.fail("expected the query timeout");
+            } finally {
+                budget.close();
+            }
+        } catch (QueryBudgetException e) {
+            Assert.assertEquals(QueryBudgetException.Code.QUERY_TIMEOUT, e.getErrorCode());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void maxRowsByEntityAndClient() throws GeminiException {
+        budgets = new QueryBudgets(0, 0, Map.of("entity:TestDomain1", "0/1", "client:reporting", "0/0"));
+        Entity entity = entity("TestDomain1");
+        EntityManager entityManager = Services.getEntityManager();
+        for (String code : List.of("budget-1", "budget-2")) {
+            EntityRecord record = new EntityRecord(entity);
+            record.put("code", code);
+            entityManager.putIfAbsent(record);
+        }
+        FilterContext filterContext = new FilterContextBuilder().withGeminiSearchString("code=like=budget-%").build();
+        QueryBudget budget = budgets.open(entity, null);
+        try {
+            entityManager.getRecordsMatching(entity, filterContext);
+            Assert.fail("expected the row budget violation");
+        } catch (QueryBudgetException e) {
+            Assert.assertEquals(QueryBudgetException.Code.TOO_MANY_ROWS, e.getErrorCode());
+        } finally {
+            budget.close();
+        }
+        budget = budgets.open(entity, "reporting");
+        try {
+            Assert.assertEquals(2, entityManager.getRecordsMatching(entity, filterContext).size());
+        } finally {
+            budget.close();
+        }
+        try (QueryBudget dataTypeBudget = budgets.open(entity("TestDataType"), null)) {
+            Assert.assertEquals(0, dataTypeBudget.getMaxRows());
+        }
+    }
+
+    @Test
+    public void maxRowsOnlyForTheTopLevelQuery() throws GeminiException {
+        budgets = new QueryBudgets(0, 0, Map.of("entity:TestDomain1", "0/1"));
+        Entity entity = entity("TestDomain1");
+        EntityManager entityManager = Services.getEntityManager();
+        List<UUID> uuids = List.of(entityManager.get("TestDomain1", "budget-1").getUUID(), entityManager.get("TestDomain1", "budget-2").getUUID());
+        QueryBudget budget = budgets.open(entity, null);
+        try {
+            // the lookups are not capped: both records are found
+            List<Optional<EntityRecord>> records = entityManager.getRecordsByUUIDs(entity, uuids);
+            Assert.assertTrue(records.get(0).isPresent());
+            Assert.assertTrue(records.get(1).isPresent());
+        } finally {
+            budget.close();
+        }
+        try (QueryBudget writeBudget = budgets.openForWrite(entity, null)) {
+            Assert.assertEquals(0, writeBudget.getMaxRows());
+        }
+    }
+
+    private static Entity entity(String name) {
+        return Services.getSchemaManager().getEntity(name);
+    }
+
+    private static Object sleep(Transaction transaction, int seconds) throws GeminiException {
+        try {
+            return ((TransactionImpl) transaction).executeQuery(String.format("SELECT pg_sleep(%d)", seconds), resultSet -> {
+                return resultSet.next();
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
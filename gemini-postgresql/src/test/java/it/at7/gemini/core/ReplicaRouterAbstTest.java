@@ -0,0 +1,67 @@
+package it.at7.gemini.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+public class ReplicaRouterAbstTest {
+    private static final String SAME_INSTANCE_REPLICA = "jdbc:postgresql://localhost:5432/test-gem";
+    private static final String UNREACHABLE_REPLICA = "jdbc:postgresql://localhost:1/test-gem";
+
+    private DataSource primary;
+    private ReplicaRouter router;
+
+    @Before
+    public void setup() {
+        primary = SuiteTestCore.applictionContext.getBean(DataSource.class);
+        router = new ReplicaRouter(primary, SAME_INSTANCE_REPLICA + "," + UNREACHABLE_REPLICA, "gem", "gem",
+                5, 60000, 2, 300);
+        router.init();
+    }
+
+    @After
+    public void clean() {
+        router.shutdown();
+    }
+
+    @Test
+    public void unhealthyReplicaIsSkipped() {
+        List<ReplicaRouter.Replica> replicas = router.getReplicas();
+        Assert.assertTrue(replicas.get(0).isHealthy());
+        Assert.assertEquals(0, replicas.get(0).getLagSeconds(), 0);
+        Assert.assertFalse(replicas.get(1).isHealthy());
+        Assert.assertNotNull(replicas.get(1).getLastError());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(replicas.get(0).getDataSource(), router.getReadDataSource());
+        }
+    }
+
+    @Test
+    public void commitPositionIsCheckedOnTheReplica() throws SQLException {
+        try (Connection connection = primary.getConnection()) {
+            connection.setAutoCommit(false);
+            String position = router.commitPosition(connection);
+            Assert.assertNotNull(position);
+            Assert.assertTrue(position.matches("[0-9A-F]+/[0-9A-F]+"));
+            // the test replica is the primary itself: it has every position
+            try (Connection replica = router.getReplicas().get(0).getDataSource().getConnection()) {
+                Assert.assertTrue(router.hasReplayed(replica, position));
+            }
+        }
+    }
+
+    @Test
+    public void failedReplicaFallsBackToPrimary() {
+        DataSource replica = router.getReplicas().get(0).getDataSource();
+        router.replicaFailed(replica, new RuntimeException("test"));
+        Assert.assertSame(primary, router.getReadDataSource());
+        router.checkReplicas();
+        Assert.assertSame(replica, router.getReadDataSource());
+    }
+}
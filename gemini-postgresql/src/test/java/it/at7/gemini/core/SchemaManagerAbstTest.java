@@ -13,8 +13,10 @@ import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -70,5 +72,40 @@ public class SchemaManagerAbstTest {
             return true;
         });
     }
-}
 
+    @Test
+    public void n3_TestTrigramIndexes() throws GeminiException {
+        Set<String> indexes = tableIndexes("testfulltext");
+        assertTrue(indexes.contains("trgm_gin_testfulltext_code"));
+        assertTrue(indexes.contains("trgm_gist_testfulltext_description"));
+    }
+
+    @Test
+    public void n4_TestArrayIndexes() throws GeminiException {
+        Set<String> indexes = tableIndexes("testdatatype");
+        assertTrue(indexes.contains("arr_gin_testdatatype_textarray"));
+        assertTrue(indexes.contains("arr_gin_testdatatype_domain1array"));
+
+        // not declared INDEXED
+        Set<String> notIndexed = tableIndexes("testdatatypefilter");
+        assertFalse(notIndexed.contains("arr_gin_testdatatypefilter_textarray"));
+        assertFalse(notIndexed.contains("arr_gin_testdatatypefilter_domain1array"));
+    }
+
+    private static Set<String> tableIndexes(String table) throws GeminiException {
+        return transactionManager.executeInSingleTrasaction(t -> {
+            TransactionImpl transaction = (TransactionImpl) t;
+            try {
+                return transaction.executeQuery("SELECT indexname FROM pg_indexes WHERE tablename = :table", Map.of("table", table), rs -> {
+                    Set<String> result = new HashSet<>();
+                    while (rs.next()) {
+                        result.add(rs.getString(1));
+                    }
+                    return result;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
@@ -14,6 +14,11 @@ import org.springframework.context.ConfigurableApplicationContext;
 @Suite.SuiteClasses({
         DynamicSchemaEntityManagerAbstTest.class,
         TransactionManagerAbstTest.class,
+        ReplicaRouterAbstTest.class,
+        WriteCoalescerAbstTest.class,
+        ReadCoalescerAbstTest.class,
+        EntityRecordMatcherAbstTest.class,
+        QueryBudgetAbstTest.class,
         SchemaManagerAbstTest.class,
         SchemaManagerInitAbstTest.class,
         PersistenceEntityManagerAbstTest.class,